@@ -38,6 +38,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 import javax.swing.JButton;
@@ -171,6 +172,18 @@ public class Automaton implements Serializable, Cloneable {
 	 * @param src
 	 */
 	public static void become(Automaton dest, Automaton src){
+		dest.beginBulkUpdate();
+		try {
+			copy(dest, src);
+		} finally {
+			dest.endBulkUpdate();
+		}
+	}
+
+	/**
+	 * Does the work of {@link #become}.
+	 */
+	private static void copy(Automaton dest, Automaton src){
 		
 		dest.clear();
 		// Copy over the states.
@@ -245,6 +258,27 @@ public class Automaton implements Serializable, Cloneable {
 		return toReturn;
 	}
 
+	/**
+	 * Retrieves the transitions that eminate from a state on some input. This
+	 * is a lookup in an index kept up to date as transitions are added and
+	 * removed, rather than a search through the transitions of the state.
+	 * 
+	 * @param from
+	 *            the <CODE>State</CODE> from which returned transitions
+	 *            should come from
+	 * @param input
+	 *            the input the returned transitions should read, as returned
+	 *            by {@link Transition#getInput}
+	 * @return an array of the <CODE>Transition</CODE> objects emanating from
+	 *         this state on this input
+	 */
+	public Transition[] getTransitionsFromState(State from, String input) {
+		Map map = (Map) transitionFromStateOnInputMap.get(from);
+		Transition[] toReturn = map == null ? null : (Transition[]) map
+				.get(input);
+		return toReturn == null ? NO_TRANSITIONS : toReturn;
+	}
+
 	/**
 	 * Retrieves all transitions that travel from a state.
 	 * 
@@ -318,6 +352,7 @@ public class Automaton implements Serializable, Cloneable {
         if(transitionToStateMap == null) transitionToStateMap = new HashMap();
 		list = (List)transitionToStateMap.get(trans.getToState()) ;
 		list.add(trans);
+		indexInput(trans);
 		transitionArrayFromStateMap.remove(trans.getFromState());
 		transitionArrayToStateMap.remove(trans.getToState());
 		cachedTransitions = null;
@@ -356,6 +391,8 @@ public class Automaton implements Serializable, Cloneable {
 		list.set(list.indexOf(oldTrans), newTrans);
 		list = (List) transitionToStateMap.get(oldTrans.getToState());
 		list.set(list.indexOf(oldTrans), newTrans);
+		unindexInput(oldTrans);
+		indexInput(newTrans);
 		transitionArrayFromStateMap.remove(oldTrans.getFromState());
 		transitionArrayToStateMap.remove(oldTrans.getToState());
 		cachedTransitions = null;
@@ -375,6 +412,7 @@ public class Automaton implements Serializable, Cloneable {
 		l.remove(trans);
 		l = (List) transitionToStateMap.get(trans.getToState());
 		l.remove(trans);
+		unindexInput(trans);
 		// Remove cached arrays.
 		transitionArrayFromStateMap.remove(trans.getFromState());
 		transitionArrayToStateMap.remove(trans.getToState());
@@ -384,11 +422,57 @@ public class Automaton implements Serializable, Cloneable {
 				false, false));
 	}
 
-	
-	
+	/**
+	 * Enters a transition in the index of transitions by state and input.
+	 * 
+	 * @param trans
+	 *            the transition to enter
+	 */
+	private void indexInput(Transition trans) {
+		Map map = (Map) transitionFromStateOnInputMap.get(trans.getFromState());
+		if (map == null) {
+			map = new HashMap();
+			transitionFromStateOnInputMap.put(trans.getFromState(), map);
+		}
+		Transition[] old = (Transition[]) map.get(trans.getInput());
+		if (old == null) {
+			map.put(trans.getInput(), new Transition[] { trans });
+			return;
+		}
+		Transition[] array = new Transition[old.length + 1];
+		System.arraycopy(old, 0, array, 0, old.length);
+		array[old.length] = trans;
+		map.put(trans.getInput(), array);
+	}
 
+	/**
+	 * Removes a transition from the index of transitions by state and input.
+	 * 
+	 * @param trans
+	 *            the transition to remove
+	 */
+	private void unindexInput(Transition trans) {
+		Map map = (Map) transitionFromStateOnInputMap.get(trans.getFromState());
+		Transition[] old = map == null ? null : (Transition[]) map.get(trans
+				.getInput());
+		if (old == null)
+			return;
+		int i = 0;
+		while (i < old.length && !old[i].equals(trans))
+			i++;
+		if (i == old.length)
+			return;
+		if (old.length == 1) {
+			map.remove(trans.getInput());
+			return;
+		}
+		// The arrays are given out, so make a new one.
+		Transition[] array = new Transition[old.length - 1];
+		System.arraycopy(old, 0, array, 0, i);
+		System.arraycopy(old, i + 1, array, i, array.length - i);
+		map.put(trans.getInput(), array);
+	}
 
-	
 	/**
 	 * Moves objects from Array to List
 	 * 
@@ -411,14 +495,31 @@ public class Automaton implements Serializable, Cloneable {
 	 *            the point to put the state at
 	 */
 	public State createState(Point point) {
-		int i = 0;
-		while (getStateWithID(i) != null)
-			i++;
-		State state = new State(i, point, this);
+		State state = new State(getFreeID(), point, this);
 		addState(state);
 		return state;
 	}
 
+	/**
+	 * Returns the lowest ID that no state of this automaton has. IDs below
+	 * the highest ID given out that become free again, when their states are
+	 * removed or renumbered, are kept in a heap, so this does not search the
+	 * states.
+	 * 
+	 * @return the lowest free state ID
+	 */
+	protected final int getFreeID() {
+		while (!freeIDs.isEmpty()) {
+			Integer id = (Integer) freeIDs.poll();
+			// A freed ID may have been taken again by a state given its ID.
+			if (!idToState.containsKey(id))
+				return id.intValue();
+		}
+		while (idToState.containsKey(new Integer(nextID)))
+			nextID++;
+		return nextID;
+	}
+
 	/**
 	 * Creates a state, inserts it in this automaton, and returns that state.
 	 * The ID for the state is set appropriately.
@@ -441,9 +542,11 @@ public class Automaton implements Serializable, Cloneable {
 	 */
 	protected final void addState(State state) {
 		states.add(state);
+		indexID(state);
 		transitionFromStateMap.put(state, new LinkedList());
 		transitionToStateMap.put(state, new LinkedList());
-		cachedStates = null;
+		if (cachedStates != null)
+			addedStates.add(state);
 		distributeStateEvent(new AutomataStateEvent(this, state, true, false,
 				false));
 	}
@@ -464,7 +567,8 @@ public class Automaton implements Serializable, Cloneable {
 			removeTransition(t[i]);
 		distributeStateEvent(new AutomataStateEvent(this, state, false, false,
 				false));
-		states.remove(state);
+		if (states.remove(state))
+			unindexID(state, state.getID());
 		finalStates.remove(state);
 		if (state == initialState)
 			initialState = null;
@@ -474,8 +578,11 @@ public class Automaton implements Serializable, Cloneable {
 
 		transitionArrayFromStateMap.remove(state);
 		transitionArrayToStateMap.remove(state);
+		transitionFromStateOnInputMap.remove(state);
 
 		cachedStates = null;
+		addedStates.clear();
+		modified();
 //		Iterator statIt = states.iterator();
 //		while (statIt.hasNext()) {
 //			State temp = (State) statIt.next();
@@ -487,6 +594,71 @@ public class Automaton implements Serializable, Cloneable {
 //		}
 	}
 
+	/**
+	 * Enters a state in the index of states by ID.
+	 * 
+	 * @param state
+	 *            the state to enter
+	 */
+	private void indexID(State state) {
+		Integer id = new Integer(state.getID());
+		if (idToState.containsKey(id))
+			sharedIDs++; // Keep the first, as if found by a search.
+		else
+			idToState.put(id, state);
+	}
+
+	/**
+	 * Takes a state that no longer has an ID out of the index of states by
+	 * ID, and frees the ID if no other state has it.
+	 * 
+	 * @param state
+	 *            the state that no longer has the ID
+	 * @param oldID
+	 *            the ID the state had
+	 */
+	private void unindexID(State state, int oldID) {
+		Integer id = new Integer(oldID);
+		if (idToState.get(id) != state) {
+			if (sharedIDs > 0)
+				sharedIDs--;
+			return;
+		}
+		idToState.remove(id);
+		if (sharedIDs > 0) {
+			// Some other state may have had the same ID.
+			Iterator it = states.iterator();
+			while (it.hasNext()) {
+				State other = (State) it.next();
+				if (other != state && other.getID() == oldID) {
+					idToState.put(id, other);
+					sharedIDs--;
+					return;
+				}
+			}
+		}
+		if (oldID < nextID)
+			freeIDs.add(id);
+	}
+
+	/**
+	 * Called by a state of this automaton when its ID changes, to keep the
+	 * index of states by ID and the sorted array of states up to date.
+	 * 
+	 * @param state
+	 *            the state whose ID changed
+	 * @param oldID
+	 *            the ID the state had before
+	 */
+	void stateIDChanged(State state, int oldID) {
+		if (!states.contains(state))
+			return;
+		unindexID(state, oldID);
+		indexID(state);
+		cachedStates = null;
+		addedStates.clear();
+	}
+
 	/**
 	 * Sets the new initial state to <CODE>initialState</CODE> and returns
 	 * what used to be the initial state, or <CODE>null</CODE> if there was no
@@ -516,25 +688,44 @@ public class Automaton implements Serializable, Cloneable {
 
 	/**
 	 * Returns an array that contains every state in this automaton. The array
-	 * is gauranteed to be in order of ascending state IDs.
+	 * is gauranteed to be in order of ascending state IDs. The states added
+	 * since the array was last made are sorted by themselves and merged into
+	 * it, rather than sorting all the states again.
 	 * 
 	 * @return an array containing all the states in this automaton
 	 */
 	public State[] getStates() {
 		if (cachedStates == null) {
 			cachedStates = (State[]) states.toArray(new State[0]);
-			Arrays.sort(cachedStates, new Comparator() {
-				public int compare(Object o1, Object o2) {
-					return ((State) o1).getID() - ((State) o2).getID();
-				}
-
-				public boolean equals(Object o) {
-					return this == o;
-				}
-			});
+			Arrays.sort(cachedStates, ID_ORDER);
+		} else if (!addedStates.isEmpty()) {
+			State[] added = (State[]) addedStates.toArray(new State[0]);
+			Arrays.sort(added, ID_ORDER);
+			State[] merged = new State[cachedStates.length + added.length];
+			int i = 0, j = 0, k = 0;
+			while (i < cachedStates.length && j < added.length)
+				merged[k++] = ID_ORDER.compare(added[j], cachedStates[i]) < 0 ? added[j++]
+						: cachedStates[i++];
+			while (i < cachedStates.length)
+				merged[k++] = cachedStates[i++];
+			while (j < added.length)
+				merged[k++] = added[j++];
+			cachedStates = merged;
 		}
+		addedStates.clear();
 		return cachedStates;
 	}
+
+	/** Orders states by ascending ID. */
+	private static final Comparator ID_ORDER = new Comparator() {
+		public int compare(Object o1, Object o2) {
+			return ((State) o1).getID() - ((State) o2).getID();
+		}
+
+		public boolean equals(Object o) {
+			return this == o;
+		}
+	};
 	
 	public void selectStatesWithinBounds(Rectangle bounds){
 		State[] states = getStates();
@@ -553,13 +744,17 @@ public class Automaton implements Serializable, Cloneable {
 
 	public void addNote(Note note){
 		myNotes.add(note);
+		note.setAutomaton(this);
         distributeNoteEvent(new AutomataNoteEvent(this, note, true, false));
 	}
 	
 
 	public void deleteNote(Note note){
 		for(int k = 0; k < myNotes.size(); k++){
-			if(note == myNotes.get(k)) myNotes.remove(k);
+			if(note == myNotes.get(k)){
+				myNotes.remove(k);
+				note.setAutomaton(null);
+			}
 		}
         distributeNoteEvent(new AutomataNoteEvent(this, note, true, false));
 	}
@@ -639,13 +834,7 @@ public class Automaton implements Serializable, Cloneable {
 	 *         ID, or <CODE>null</CODE> if no such state exists
 	 */
 	public State getStateWithID(int id) {
-		Iterator it = states.iterator();
-		while (it.hasNext()) {
-			State state = (State) it.next();
-			if (state.getID() == id)
-				return state;
-		}
-		return null;
+		return (State) idToState.get(new Integer(id));
 	}
 
 	/**
@@ -736,7 +925,12 @@ public class Automaton implements Serializable, Cloneable {
 	 * @param event
 	 *            the event to distribute
 	 */
-	void distributeStateEvent(AutomataStateEvent event) {
+	protected void distributeStateEvent(AutomataStateEvent event) {
+		modified();
+		if (bulkUpdates > 0) {
+			statesChanged = true;
+			return;
+		}
 		Iterator it = stateListeners.iterator();
 		while (it.hasNext()) {
 			AutomataStateListener listener = (AutomataStateListener) it.next();
@@ -783,6 +977,11 @@ public class Automaton implements Serializable, Cloneable {
 	 *            the event to distribute
 	 */
 	void distributeTransitionEvent(AutomataTransitionEvent event) {
+		modified();
+		if (bulkUpdates > 0) {
+			transitionsChanged = true;
+			return;
+		}
 		Iterator it = transitionListeners.iterator();
 		while (it.hasNext()) {
 			AutomataTransitionListener listener = (AutomataTransitionListener) it
@@ -791,6 +990,41 @@ public class Automaton implements Serializable, Cloneable {
 		}
 	}
 
+	/**
+	 * Begins a bulk update of this automaton. Until the matching call to
+	 * {@link #endBulkUpdate}, no state or transition events are given to the
+	 * listeners; instead, when the update ends, each kind of listener that
+	 * missed an event is given a single event with no state or transition,
+	 * saying that any part of the automaton may have changed. Bulk updates may
+	 * be nested, in which case only the outermost one gives events.
+	 */
+	public void beginBulkUpdate() {
+		bulkUpdates++;
+	}
+
+	/**
+	 * Ends a bulk update of this automaton begun by {@link #beginBulkUpdate}.
+	 * 
+	 * @throws IllegalStateException
+	 *             if no bulk update has begun
+	 */
+	public void endBulkUpdate() {
+		if (bulkUpdates == 0)
+			throw new IllegalStateException("No bulk update has begun!");
+		if (--bulkUpdates > 0)
+			return;
+		if (statesChanged) {
+			statesChanged = false;
+			distributeStateEvent(new AutomataStateEvent(this, null, false,
+					true, false));
+		}
+		if (transitionsChanged) {
+			transitionsChanged = false;
+			distributeTransitionEvent(new AutomataTransitionEvent(this, null,
+					false, true));
+		}
+	}
+
 	/**
 	 * Gives an automata note change event to all state listeners.
 	 * 
@@ -798,6 +1032,7 @@ public class Automaton implements Serializable, Cloneable {
 	 *            the event to distribute
 	 */
 	void distributeNoteEvent(AutomataNoteEvent event) {
+		modified();
 		Iterator it = noteListeners.iterator();
 		while (it.hasNext()) {
 			AutomataNoteListener listener = (AutomataNoteListener) it.next();
@@ -905,20 +1140,53 @@ public class Automaton implements Serializable, Cloneable {
 		return fileName.substring(0, last+1);
 	}
 	
+	/**
+	 * Returns a hash of the contents of this automaton, so that an automaton
+	 * and its clone have the same hash. The hash is only worked out again
+	 * when the version of the automaton has changed.
+	 * 
+	 * @return the hash of the contents of this automaton
+	 * @see #getVersion
+	 */
 	public int hashCode(){
-//        EDebug.print("The Hash is that is hashed, is truly hashed");
-		int ret = 0;
-		for (Object o: states)
-			ret+= ((State) o).specialHash();
-		for (Object o:transitions)
-			ret+=((Transition) o).specialHash();
-		for (Object o: myNotes)
-			ret+=((Note) o).specialHash();
-        ret+=finalStates.hashCode(); 
-        ret+=initialState == null? 0: (int)(initialState.specialHash()*Math.PI); 
-
-//        EDebug.print(ret);
-		return ret;
+		if (hashedVersion != version) {
+			int ret = 0;
+			for (Object o: states)
+				ret+= ((State) o).specialHash();
+			for (Object o:transitions)
+				ret+=((Transition) o).specialHash();
+			// The states themselves hash by identity, which clones do not share.
+			for (Object o: finalStates)
+				ret+=31 * ((State) o).specialHash();
+			ret+=initialState == null? 0: (int)(initialState.specialHash()*Math.PI);
+			for (Object o: myNotes)
+				ret+=((Note) o).specialHash();
+			structuralHash = ret;
+			hashedVersion = version;
+		}
+		return structuralHash;
+	}
+
+	/**
+	 * Returns the version of this automaton. The version goes up whenever a
+	 * state, transition or note is added or removed, the initial or final
+	 * states change, a state or transition is changed through its setters, or
+	 * the text or place of a note changes, so if two calls return the same
+	 * version, the automaton did not change between them.
+	 * 
+	 * @return the version of this automaton
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Records that this automaton has changed, moving it on to a new version.
+	 * The methods that change the automaton call this themselves, so
+	 * subclasses need only call it when they change something of their own.
+	 */
+	protected final void modified() {
+		version++;
 	}
 
 	// AUTOMATA SPECIFIC CRAP
@@ -935,6 +1203,21 @@ public class Automaton implements Serializable, Cloneable {
 	/** The cached array of states. */
 	private State[] cachedStates = null;
 
+	/** The states added since the cached array of states was made. */
+	private ArrayList addedStates = new ArrayList();
+
+	/** A mapping from IDs to the state with that ID. */
+	private HashMap idToState = new HashMap();
+
+	/** The number of states whose ID another state already had. */
+	private int sharedIDs = 0;
+
+	/** The IDs below the next ID that have been freed, lowest first. */
+	private PriorityQueue freeIDs = new PriorityQueue();
+
+	/** The ID past which no ID has been given out by a search. */
+	private int nextID = 0;
+
 	/** The cached array of transitions. */
 	private Transition[] cachedTransitions = null;
 
@@ -975,6 +1258,15 @@ public class Automaton implements Serializable, Cloneable {
 	 */
 	private HashMap transitionArrayToStateMap = new HashMap();
 
+	/**
+	 * A mapping from states to a mapping from inputs to an array holding the
+	 * transitions from the state on the input.
+	 */
+	private HashMap transitionFromStateOnInputMap = new HashMap();
+
+	/** The array of no transitions. */
+	private static final Transition[] NO_TRANSITIONS = new Transition[0];
+
 //	/**
 //	 * A mapping from the name of an automaton to the automaton. Used for
 //	 * referencing the same automaton from multiple buliding blocks
@@ -995,6 +1287,23 @@ public class Automaton implements Serializable, Cloneable {
 	private transient HashSet stateListeners = new HashSet();
 
 	private transient HashSet noteListeners = new HashSet();
+
+	/** The version of this automaton. */
+	private transient long version = 0;
+
+	/**
+	 * The hash of the states, transitions and notes, and the version it was
+	 * worked out for.
+	 */
+	private transient int structuralHash;
+
+	private transient long hashedVersion = -1;
+
+	/** The depth of nested bulk updates under way. */
+	private transient int bulkUpdates = 0;
+
+	/** If states or transitions changed during the bulk update. */
+	private transient boolean statesChanged, transitionsChanged;
 	
 	/**
 	 * Reset all non-transient data structures.
@@ -1015,6 +1324,10 @@ public class Automaton implements Serializable, Cloneable {
 		for (Object o:t)
 			removeState((State)o);
 		states = new HashSet();
+		idToState = new HashMap();
+		sharedIDs = 0;
+		freeIDs = new PriorityQueue();
+		nextID = 0;
 		
 		
 		finalStates = new HashSet();
@@ -1024,15 +1337,18 @@ public class Automaton implements Serializable, Cloneable {
     
     
     	cachedStates = null;
+    	addedStates.clear();
     
     	 cachedTransitions = null;
     
     	 cachedFinalStates = null;
+    	 modified();
     
     	transitionFromStateMap = new HashMap();
     	transitionToStateMap = new HashMap();
     
     	transitionArrayFromStateMap = new HashMap();
+    	transitionFromStateOnInputMap = new HashMap();
     
     	transitionArrayToStateMap = new HashMap();
     
@@ -53,7 +53,9 @@ public class ClosureTaker {
 		list.add(state);
 		for (int i = 0; i < list.size(); i++) {
 			state = (State) list.get(i);
-			Transition transitions[] = automaton.getTransitionsFromState(state);
+			// Lambda transitions read no input.
+			Transition transitions[] = automaton.getTransitionsFromState(state,
+					"");
 			for (int k = 0; k < transitions.length; k++) {
 				Transition transition = transitions[k];
 				LambdaTransitionChecker checker = LambdaCheckerFactory
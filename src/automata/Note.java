@@ -35,12 +35,18 @@ import java.awt.event.MouseMotionListener;
 import debug.EDebug;
 
 import javax.swing.JTextArea;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 /**
  * A class that represents notes on the JFLAP canvas.
  */
 public class Note extends JTextArea{
 	private Point myAutoPoint = null;
+	/** The automaton this note is in, or <CODE>null</CODE>. */
+	private transient Automaton myAutomaton = null;
+	/** Tells the automaton of edits to the text, once it is set. */
+	private transient DocumentListener myEditListener = null;
 	public boolean moving = false;
 	protected Point initialPointState;
 	protected Point initialPointClick;
@@ -174,6 +180,9 @@ public class Note extends JTextArea{
      */
 	public void setLocationManually(Point point) {
 		moving = true;
+		if (myAutomaton != null && (point == null ? myAutoPoint != null
+				: !point.equals(myAutoPoint)))
+			myAutomaton.modified();
 		myAutoPoint = point;
 		if(myView != null){
 			setLocation(myView.transformFromAutomatonToView(point));	
@@ -202,6 +211,40 @@ public class Note extends JTextArea{
 		
 	}
 	
+	/**
+	 * Sets the automaton this note is in, which is told whenever the text or
+	 * place of this note changes so that its version moves on.
+	 * 
+	 * @param automaton
+	 *            the automaton this note is in, or <CODE>null</CODE> if it is
+	 *            in none
+	 * @see Automaton#getVersion
+	 */
+	void setAutomaton(Automaton automaton) {
+		myAutomaton = automaton;
+		if (myEditListener != null)
+			return;
+		myEditListener = new DocumentListener() {
+			public void insertUpdate(DocumentEvent e) {
+				edited();
+			}
+
+			public void removeUpdate(DocumentEvent e) {
+				edited();
+			}
+
+			public void changedUpdate(DocumentEvent e) {
+				edited();
+			}
+
+			private void edited() {
+				if (myAutomaton != null)
+					myAutomaton.modified();
+			}
+		};
+		getDocument().addDocumentListener(myEditListener);
+	}
+
 	public int specialHash(){
 //        EDebug.print(myAutoPoint.hashCode() + getText().hashCode());
         return myAutoPoint == null? -1 : myAutoPoint.hashCode() + this.getText().hashCode();
@@ -115,7 +115,9 @@ public class State implements Serializable {
 	protected void setID(int id) {
 		if (("q" + this.id).equals(name))
 			name = null;
+		int oldID = this.id;
 		this.id = id;
+		getAutomaton().stateIDChanged(this, oldID);
 		getAutomaton()
 				.distributeStateEvent(
 						new AutomataStateEvent(getAutomaton(), this, false,
@@ -280,6 +282,7 @@ public class State implements Serializable {
 	
 	public void setNote(Note note){
 		myNote = note;
+		getAutomaton().modified();
 	}
 	
 	private Note myNote;
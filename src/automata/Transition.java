@@ -21,6 +21,7 @@
 package automata;
 
 import automata.State;
+import automata.event.AutomataTransitionEvent;
 import java.io.Serializable;
 import java.awt.Point;
 
@@ -117,6 +118,19 @@ public abstract class Transition implements Serializable, Cloneable {
 		return this.from.getAutomaton();
 	}
 
+	/**
+	 * Returns the input this transition reads, by which an automaton indexes
+	 * the transitions from a state. A transition that reads nothing, as a
+	 * lambda transition does, returns the empty string, and this defaults to
+	 * that. Subclasses that read input should override.
+	 * 
+	 * @return the input this transition reads
+	 * @see automata.Automaton#getTransitionsFromState(State, String)
+	 */
+	public String getInput() {
+		return "";
+	}
+
 	/**
 	 * Gets the description for a Transition. This defaults to nothing.
 	 * Subclasses should override.
@@ -181,6 +195,10 @@ public abstract class Transition implements Serializable, Cloneable {
 
     public void setControl(Point p){
         myControlPoint = p; 
+        Automaton automaton = from == null ? null : from.getAutomaton();
+        if (automaton != null && automaton.isState(from))
+            automaton.distributeTransitionEvent(new AutomataTransitionEvent(
+                    automaton, this, false, true));
     }
 
 
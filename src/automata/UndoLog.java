@@ -0,0 +1,773 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata;
+
+import gui.viewer.AutomatonPane;
+
+import java.awt.Point;
+import java.util.*;
+
+import automata.event.AutomataNoteEvent;
+import automata.event.AutomataNoteListener;
+import automata.event.AutomataStateEvent;
+import automata.event.AutomataStateListener;
+import automata.event.AutomataTransitionEvent;
+import automata.event.AutomataTransitionListener;
+import automata.mealy.MooreMachine;
+
+/**
+ * An <CODE>UndoLog</CODE> records the edits made to an automaton so that they
+ * may be undone and redone. Rather than keep a copy of the automaton for each
+ * step, the log listens to the automaton and writes down each change as an
+ * operation that knows how to reverse itself: a state or transition added or
+ * removed, a state moved, renamed, relabeled or made final, a control point
+ * moved, or a note added, removed or edited. A step is the list of the
+ * operations between two calls to {@link #mark}, so the memory a step takes
+ * and the time to undo it both go with the size of the edit, not the size of
+ * the automaton.
+ * <P>
+ *
+ * To know what a change was, the log keeps a small record of the automaton
+ * as it last saw it: the points, names, labels and outputs of the states, the
+ * transitions out of each state with their control points, the initial and
+ * final states, and the notes. The same objects are added back when an edit
+ * is undone, so anything that refers to them, such as the inner machine of a
+ * Turing machine block, lives through the undo.
+ *
+ * @see gui.editor.UndoKeeper
+ */
+
+public class UndoLog implements AutomataStateListener,
+		AutomataTransitionListener, AutomataNoteListener {
+	/**
+	 * Instantiates a log for an automaton, and starts listening to it.
+	 *
+	 * @param automaton
+	 *            the automaton to record the edits of
+	 * @param limit
+	 *            the most steps that may be undone
+	 */
+	public UndoLog(Automaton automaton, int limit) {
+		this.automaton = automaton;
+		this.limit = limit;
+		recording = false;
+		reconcile();
+		recording = true;
+		automaton.addStateListener(this);
+		automaton.addTransitionListener(this);
+		automaton.addNoteListener(this);
+	}
+
+	/**
+	 * Sets the most steps that may be undone, forgetting the oldest steps if
+	 * there are more than that.
+	 *
+	 * @param limit
+	 *            the most steps that may be undone
+	 */
+	public void setLimit(int limit) {
+		this.limit = limit;
+		while (undoSteps.size() > limit)
+			undoSteps.removeLast();
+	}
+
+	/**
+	 * Ends the current step. The edits made from now until the next mark are
+	 * undone together. If there were any edits in the step, the steps that
+	 * could be redone are forgotten.
+	 */
+	public void mark() {
+		noteRecords();
+		if (step.isEmpty())
+			return;
+		undoSteps.addFirst(step);
+		redoSteps.clear();
+		while (undoSteps.size() > limit)
+			undoSteps.removeLast();
+		step = new ArrayList();
+		lastEdits.clear();
+	}
+
+	/**
+	 * Undoes the last step.
+	 *
+	 * @return <CODE>true</CODE> if there was a step to undo,
+	 *         <CODE>false</CODE> if not
+	 */
+	public boolean undo() {
+		mark();
+		if (undoSteps.isEmpty())
+			return false;
+		List ops = (List) undoSteps.removeFirst();
+		replay(ops, false);
+		redoSteps.addFirst(ops);
+		return true;
+	}
+
+	/**
+	 * Redoes the last step undone.
+	 *
+	 * @return <CODE>true</CODE> if there was a step to redo,
+	 *         <CODE>false</CODE> if not
+	 */
+	public boolean redo() {
+		mark();
+		if (redoSteps.isEmpty())
+			return false;
+		List ops = (List) redoSteps.removeFirst();
+		replay(ops, true);
+		undoSteps.addFirst(ops);
+		return true;
+	}
+
+	/**
+	 * Applies the operations of a step, backwards to undo it or forwards to
+	 * redo it. The changes this makes are seen by the log as for any other
+	 * edit, which keeps the record up to date, but are not recorded.
+	 */
+	private void replay(List ops, boolean forward) {
+		recording = false;
+		try {
+			if (forward)
+				for (int i = 0; i < ops.size(); i++)
+					((Op) ops.get(i)).redo();
+			else
+				for (int i = ops.size() - 1; i >= 0; i--)
+					((Op) ops.get(i)).undo();
+			noteRecords();
+		} finally {
+			recording = true;
+		}
+	}
+
+	/**
+	 * Adds an operation to the current step.
+	 */
+	private void record(Op op) {
+		if (recording)
+			step.add(op);
+	}
+
+	public void automataStateChange(AutomataStateEvent event) {
+		State state = event.getState();
+		if (state == null) {
+			reconcile();
+			return;
+		}
+		if (event.isAdd()) {
+			if (records.containsKey(state))
+				return;
+			track(state);
+			record(new StateAdded(state, (StateRecord) records.get(state)));
+		} else if (!event.isMove() && !event.isLabel()) {
+			StateRecord old = (StateRecord) records.get(state);
+			if (old == null)
+				return;
+			// The state is still in the automaton while this is heard.
+			removedTransitions(state);
+			untrack(state);
+			record(new StateRemoved(state, old, initial == state));
+			if (initial == state)
+				initial = null;
+		} else {
+			edited(state);
+			editedInitial();
+		}
+	}
+
+	public void automataTransitionChange(AutomataTransitionEvent event) {
+		Transition transition = event.getTransition();
+		if (transition == null) {
+			reconcile();
+			return;
+		}
+		State from = transition.getFromState();
+		if (records.containsKey(from)) {
+			removedTransitions(from);
+			addedTransitions(from);
+		}
+		if (event.isChange())
+			editedControl(transition);
+	}
+
+	public void automataNoteChange(AutomataNoteEvent event) {
+		Set now = Collections.newSetFromMap(new IdentityHashMap());
+		now.addAll(automaton.getNotes());
+		Iterator it = new ArrayList(notes.keySet()).iterator();
+		while (it.hasNext()) {
+			Note note = (Note) it.next();
+			if (!now.contains(note))
+				record(new NoteRemoved(note, (NoteRecord) notes.remove(note)));
+		}
+		it = automaton.getNotes().iterator();
+		while (it.hasNext()) {
+			Note note = (Note) it.next();
+			if (notes.containsKey(note))
+				continue;
+			NoteRecord record = new NoteRecord(note);
+			notes.put(note, record);
+			record(new NoteAdded(note, record));
+		}
+	}
+
+	/**
+	 * Brings the whole record up to date with the automaton, after a bulk
+	 * update whose changes were not heard one by one. The changes are
+	 * recorded in an order that may be undone backwards: transitions before
+	 * the states they go between are removed, and after they are added. The
+	 * edits to states come before the transitions added, since a Moore
+	 * transition hashes by the output of the state it goes to, and so must
+	 * be taken out again before that output is undone.
+	 */
+	private void reconcile() {
+		State[] s = automaton.getStates();
+		Iterator it = new ArrayList(records.keySet()).iterator();
+		while (it.hasNext())
+			removedTransitions((State) it.next());
+		it = new ArrayList(records.keySet()).iterator();
+		while (it.hasNext()) {
+			State state = (State) it.next();
+			if (automaton.isState(state))
+				continue;
+			StateRecord old = (StateRecord) records.get(state);
+			untrack(state);
+			record(new StateRemoved(state, old, initial == state));
+			if (initial == state)
+				initial = null;
+		}
+		for (int i = 0; i < s.length; i++) {
+			if (records.containsKey(s[i]))
+				continue;
+			track(s[i]);
+			record(new StateAdded(s[i], (StateRecord) records.get(s[i])));
+		}
+		for (int i = 0; i < s.length; i++)
+			edited(s[i]);
+		editedInitial();
+		for (int i = 0; i < s.length; i++) {
+			addedTransitions(s[i]);
+			Transition[] t = automaton.getTransitionsFromState(s[i]);
+			for (int j = 0; j < t.length; j++)
+				editedControl(t[j]);
+		}
+		automataNoteChange(null);
+	}
+
+	/**
+	 * Starts keeping a record of a state with no transitions.
+	 */
+	private void track(State state) {
+		records.put(state, new StateRecord(state));
+		outgoing.put(state, new ArrayList());
+	}
+
+	/**
+	 * Stops keeping a record of a state.
+	 */
+	private void untrack(State state) {
+		records.remove(state);
+		outgoing.remove(state);
+		lastEdits.remove(state);
+	}
+
+	/**
+	 * Records the transitions from a state that are no longer in the
+	 * automaton as removed.
+	 */
+	private void removedTransitions(State from) {
+		List old = (List) outgoing.get(from);
+		if (old.isEmpty())
+			return;
+		Set now = Collections.newSetFromMap(new IdentityHashMap());
+		if (automaton.isState(from))
+			now.addAll(Arrays.asList(automaton.getTransitionsFromState(from)));
+		for (int i = 0; i < old.size(); i++) {
+			Transition transition = (Transition) old.get(i);
+			if (now.contains(transition))
+				continue;
+			old.remove(i--);
+			record(new TransitionRemoved(transition, (Point) controls
+					.remove(transition)));
+		}
+	}
+
+	/**
+	 * Records the transitions from a state that are new to the automaton as
+	 * added.
+	 */
+	private void addedTransitions(State from) {
+		List old = (List) outgoing.get(from);
+		Transition[] now = automaton.getTransitionsFromState(from);
+		// The removed transitions are always taken out first, so what is
+		// left is all in the automaton.
+		if (now.length == old.size())
+			return;
+		Set seen = Collections.newSetFromMap(new IdentityHashMap());
+		seen.addAll(old);
+		for (int i = 0; i < now.length; i++) {
+			if (seen.contains(now[i]))
+				continue;
+			old.add(now[i]);
+			controls.put(now[i], copy(now[i].getControl()));
+			record(new TransitionAdded(now[i]));
+		}
+	}
+
+	/**
+	 * Records the move of the control point of a transition. A run of moves
+	 * of one control point, as in a drag, is one operation.
+	 */
+	private void editedControl(Transition transition) {
+		if (!controls.containsKey(transition))
+			return;
+		Point before = (Point) controls.get(transition);
+		Point after = transition.getControl();
+		if (before == null ? after == null : before.equals(after))
+			return;
+		controls.put(transition, copy(after));
+		if (!recording)
+			return;
+		Op last = lastOp();
+		ControlEdit edit;
+		if (last instanceof ControlEdit
+				&& ((ControlEdit) last).transition == transition)
+			edit = (ControlEdit) last;
+		else
+			record(edit = new ControlEdit(transition, before));
+		edit.after = copy(after);
+	}
+
+	/**
+	 * Records the changes to a state since it was last seen. A run of changes
+	 * to one state is one operation. Other changes are not put together
+	 * across other operations, since the order matters to a Moore machine,
+	 * whose transitions hash by the output of the state they go to; but no
+	 * other operation depends on where a state is, so a move is put into the
+	 * last operation of the step on that state, which keeps a layout shown
+	 * as it goes from recording every state at every frame.
+	 */
+	private void edited(State state) {
+		StateRecord before = (StateRecord) records.get(state);
+		if (before == null)
+			return;
+		StateRecord after = new StateRecord(state);
+		if (after.equals(before))
+			return;
+		records.put(state, after);
+		if (!recording)
+			return;
+		StateEdit edit = (StateEdit) lastEdits.get(state);
+		if (edit == null || (edit != lastOp() && !after.equalsButPoint(before))) {
+			record(edit = new StateEdit(state, before));
+			lastEdits.put(state, edit);
+		}
+		edit.after = after;
+	}
+
+	/**
+	 * Records a change of the initial state since it was last seen.
+	 */
+	private void editedInitial() {
+		State now = automaton.getInitialState();
+		if (now == initial)
+			return;
+		if (recording) {
+			Op last = lastOp();
+			InitialEdit edit;
+			if (last instanceof InitialEdit)
+				edit = (InitialEdit) last;
+			else
+				record(edit = new InitialEdit(initial));
+			edit.after = now;
+		}
+		initial = now;
+	}
+
+	/**
+	 * Returns the last operation of the current step, or <CODE>null</CODE>
+	 * if there is none.
+	 */
+	private Op lastOp() {
+		return step.isEmpty() ? null : (Op) step.get(step.size() - 1);
+	}
+
+	/**
+	 * Records edits to the text or place of the notes. Notes do not say when
+	 * they are edited, so this is checked whenever a step ends.
+	 */
+	private void noteRecords() {
+		Iterator it = notes.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry entry = (Map.Entry) it.next();
+			Note note = (Note) entry.getKey();
+			NoteRecord before = (NoteRecord) entry.getValue();
+			NoteRecord after = new NoteRecord(note);
+			if (after.equals(before))
+				continue;
+			entry.setValue(after);
+			record(new NoteEdit(note, before, after));
+		}
+	}
+
+	private static Point copy(Point point) {
+		return point == null ? null : new Point(point);
+	}
+
+	/**
+	 * What the log knows of a state.
+	 */
+	private class StateRecord {
+		StateRecord(State state) {
+			point = copy(state.getPoint());
+			label = state.getLabel();
+			id = state.getID();
+			// A name that is only the default for the ID is not kept.
+			name = state.name == null || state.name.equals("q" + id) ? null
+					: state.name;
+			isFinal = automaton.isFinalState(state);
+			if (automaton instanceof MooreMachine)
+				output = ((MooreMachine) automaton).getOutput(state);
+		}
+
+		public boolean equals(Object object) {
+			StateRecord r = (StateRecord) object;
+			return point.equals(r.point) && equalsButPoint(r);
+		}
+
+		public int hashCode() {
+			return id * 31 + point.hashCode();
+		}
+
+		/**
+		 * Returns if this record and another differ in at most the point.
+		 */
+		boolean equalsButPoint(StateRecord r) {
+			return id == r.id && isFinal == r.isFinal && same(label, r.label)
+					&& same(name, r.name) && same(output, r.output);
+		}
+
+		/**
+		 * Makes a state as it was when this record was made.
+		 */
+		void restore(State state) {
+			StateRecord now = new StateRecord(state);
+			if (!point.equals(now.point))
+				state.setPoint(new Point(point));
+			if (id != now.id)
+				state.setID(id);
+			if (!same(name, now.name))
+				state.setName(name);
+			if (!same(label, now.label))
+				state.setLabel(label);
+			if (isFinal && !now.isFinal)
+				automaton.addFinalState(state);
+			if (!isFinal && now.isFinal)
+				automaton.removeFinalState(state);
+			if (!same(output, now.output))
+				((MooreMachine) automaton).setOutput(state, output);
+		}
+
+		Point point;
+
+		String label, name, output;
+
+		int id;
+
+		boolean isFinal;
+	}
+
+	/**
+	 * What the log knows of a note.
+	 */
+	private static class NoteRecord {
+		NoteRecord(Note note) {
+			text = note.getText();
+			point = copy(note.getAutoPoint());
+		}
+
+		public boolean equals(Object object) {
+			NoteRecord r = (NoteRecord) object;
+			return same(text, r.text)
+					&& (point == null ? r.point == null : point.equals(r.point));
+		}
+
+		public int hashCode() {
+			return (text == null ? 0 : text.hashCode()) * 31
+					+ (point == null ? 0 : point.hashCode());
+		}
+
+		/**
+		 * Makes a note as it was when this record was made.
+		 */
+		void restore(Note note) {
+			note.setText(text);
+			if (point != null)
+				note.setLocationManually(new Point(point));
+		}
+
+		String text;
+
+		Point point;
+	}
+
+	private static boolean same(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/**
+	 * An edit that knows how to reverse itself.
+	 */
+	private static abstract class Op {
+		abstract void undo();
+
+		abstract void redo();
+	}
+
+	private class StateAdded extends Op {
+		StateAdded(State state, StateRecord record) {
+			this.state = state;
+			this.record = record;
+		}
+
+		void undo() {
+			automaton.removeState(state);
+		}
+
+		void redo() {
+			automaton.addState(state);
+			record.restore(state);
+		}
+
+		State state;
+
+		/** The state as it was added. */
+		StateRecord record;
+	}
+
+	private class StateRemoved extends Op {
+		StateRemoved(State state, StateRecord record, boolean wasInitial) {
+			this.state = state;
+			this.record = record;
+			this.wasInitial = wasInitial;
+		}
+
+		void undo() {
+			automaton.addState(state);
+			record.restore(state);
+			if (wasInitial)
+				automaton.setInitialState(state);
+		}
+
+		void redo() {
+			automaton.removeState(state);
+		}
+
+		State state;
+
+		StateRecord record;
+
+		boolean wasInitial;
+	}
+
+	private class StateEdit extends Op {
+		StateEdit(State state, StateRecord before) {
+			this.state = state;
+			this.before = before;
+		}
+
+		void undo() {
+			before.restore(state);
+		}
+
+		void redo() {
+			after.restore(state);
+		}
+
+		State state;
+
+		StateRecord before, after;
+	}
+
+	private class InitialEdit extends Op {
+		InitialEdit(State before) {
+			this.before = before;
+		}
+
+		void undo() {
+			automaton.setInitialState(before);
+		}
+
+		void redo() {
+			automaton.setInitialState(after);
+		}
+
+		State before, after;
+	}
+
+	private class TransitionAdded extends Op {
+		TransitionAdded(Transition transition) {
+			this.transition = transition;
+		}
+
+		void undo() {
+			automaton.removeTransition(transition);
+		}
+
+		void redo() {
+			automaton.addTransition(transition);
+		}
+
+		Transition transition;
+	}
+
+	private class TransitionRemoved extends Op {
+		TransitionRemoved(Transition transition, Point control) {
+			this.transition = transition;
+			this.control = control;
+		}
+
+		void undo() {
+			transition.setControl(copy(control));
+			automaton.addTransition(transition);
+		}
+
+		void redo() {
+			automaton.removeTransition(transition);
+		}
+
+		Transition transition;
+
+		Point control;
+	}
+
+	private class ControlEdit extends Op {
+		ControlEdit(Transition transition, Point before) {
+			this.transition = transition;
+			this.before = before;
+		}
+
+		void undo() {
+			transition.setControl(copy(before));
+		}
+
+		void redo() {
+			transition.setControl(copy(after));
+		}
+
+		Transition transition;
+
+		Point before, after;
+	}
+
+	private class NoteAdded extends Op {
+		NoteAdded(Note note, NoteRecord record) {
+			this.note = note;
+			this.record = record;
+		}
+
+		void undo() {
+			AutomatonPane view = note.getView();
+			if (view != null)
+				view.remove(note);
+			automaton.deleteNote(note);
+		}
+
+		void redo() {
+			automaton.addNote(note);
+			AutomatonPane view = note.getView();
+			if (view != null)
+				view.add(note);
+			record.restore(note);
+		}
+
+		Note note;
+
+		NoteRecord record;
+	}
+
+	private class NoteRemoved extends NoteAdded {
+		NoteRemoved(Note note, NoteRecord record) {
+			super(note, record);
+		}
+
+		void undo() {
+			super.redo();
+		}
+
+		void redo() {
+			super.undo();
+		}
+	}
+
+	private class NoteEdit extends Op {
+		NoteEdit(Note note, NoteRecord before, NoteRecord after) {
+			this.note = note;
+			this.before = before;
+			this.after = after;
+		}
+
+		void undo() {
+			before.restore(note);
+		}
+
+		void redo() {
+			after.restore(note);
+		}
+
+		Note note;
+
+		NoteRecord before, after;
+	}
+
+	/** The automaton whose edits are recorded. */
+	private Automaton automaton;
+
+	/** The most steps that may be undone. */
+	private int limit;
+
+	/** If changes heard should be recorded, which they are not while undoing. */
+	private boolean recording = true;
+
+	/** The steps that may be undone and redone, the latest first. */
+	private LinkedList undoSteps = new LinkedList(),
+			redoSteps = new LinkedList();
+
+	/** The operations of the current step. */
+	private List step = new ArrayList();
+
+	/** Maps the states edited in the current step to their last edits. */
+	private Map lastEdits = new HashMap();
+
+	/** Maps the states of the automaton to their records. */
+	private Map records = new HashMap();
+
+	/** Maps the states to the lists of transitions from them. */
+	private Map outgoing = new HashMap();
+
+	/** Maps the transitions of the automaton to their control points. */
+	private Map controls = new IdentityHashMap();
+
+	/** The initial state as last seen. */
+	private State initial;
+
+	/** Maps the notes of the automaton to their records, in order. */
+	private Map notes = new LinkedHashMap();
+}
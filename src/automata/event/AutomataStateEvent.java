@@ -73,9 +73,12 @@ public class AutomataStateEvent extends EventObject {
 	}
 
 	/**
-	 * Returns the <CODE>State</CODE> that was added/removed.
+	 * Returns the <CODE>State</CODE> that was added/removed. At the end of a
+	 * bulk update this is <CODE>null</CODE>, and the event is a move that may
+	 * stand for any number of changes to the states of the automaton.
 	 * 
 	 * @return the <CODE>State</CODE> that was added/removed
+	 * @see automata.Automaton#beginBulkUpdate
 	 */
 	public State getState() {
 		return myState;
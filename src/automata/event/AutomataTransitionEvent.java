@@ -70,9 +70,12 @@ public class AutomataTransitionEvent extends EventObject {
 	}
 
 	/**
-	 * Returns the <CODE>Transition</CODE> that was added/removed.
+	 * Returns the <CODE>Transition</CODE> that was added/removed. At the end of a
+	 * bulk update this is <CODE>null</CODE>, and the event is a change that may
+	 * stand for any number of changes to the transitions of the automaton.
 	 * 
 	 * @return the <CODE>Transition</CODE> that was added/removed
+	 * @see automata.Automaton#beginBulkUpdate
 	 */
 	public Transition getTransition() {
 		return myTransition;
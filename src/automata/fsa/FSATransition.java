@@ -85,6 +85,15 @@ public class FSATransition extends Transition {
 		myLabel = label;
 	}
 
+	/**
+	 * Returns the input this transition reads, that is, its label.
+	 * 
+	 * @return the label for this transition
+	 */
+	public String getInput() {
+		return getLabel();
+	}
+
 	/**
 	 * Returns the description for this transition.
 	 * 
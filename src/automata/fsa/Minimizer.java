@@ -236,13 +236,11 @@ public class Minimizer {
 	 */
 	public boolean stateGoesToGroupOnTerminal(State state, State[] group,
 			String terminal, Automaton automaton) {
-		for (int k = 0; k < group.length; k++) {
-			Transition[] transitions = automaton
-					.getTransitionsFromStateToState(state, group[k]);
-			for (int j = 0; j < transitions.length; j++) {
-				FSATransition trans = (FSATransition) transitions[j];
-				String label = trans.getLabel();
-				if (label.equals(terminal)) {
+		Transition[] transitions = automaton.getTransitionsFromState(state,
+				terminal);
+		for (int j = 0; j < transitions.length; j++) {
+			for (int k = 0; k < group.length; k++) {
+				if (transitions[j].getToState() == group[k]) {
 					return true;
 				}
 			}
@@ -269,16 +267,13 @@ public class Minimizer {
 		for (int k = 0; k < group.length; k++) {
 			if (group[k].getAutomaton() != automaton)
 				System.err.println("BADNESS!  BADNESS!");
-			Transition[] transitions = automaton
-					.getTransitionsFromState(group[k]);
+			Transition[] transitions = automaton.getTransitionsFromState(
+					group[k], terminal);
 			for (int j = 0; j < transitions.length; j++) {
-				FSATransition trans = (FSATransition) transitions[j];
-				if (trans.getLabel().equals(terminal)) {
-					State[] node = getGroupForState(
-							transitions[j].getToState(), tree);
-					if (!list.contains(node)) {
-						list.add(node);
-					}
+				State[] node = getGroupForState(transitions[j].getToState(),
+						tree);
+				if (!list.contains(node)) {
+					list.add(node);
 				}
 			}
 		}
@@ -424,10 +419,8 @@ public class Minimizer {
 		String[] alphabet = far.getAlphabet(automaton);
 		State[] states = automaton.getStates();
 		for (int k = 0; k < states.length; k++) {
-			Transition[] transitions = automaton
-					.getTransitionsFromState(states[k]);
 			for (int j = 0; j < alphabet.length; j++) {
-				if (!isTransitionOnTerminal(transitions, alphabet[j])) {
+				if (automaton.getTransitionsFromState(states[k], alphabet[j]).length == 0) {
 					return true;
 				}
 			}
@@ -454,10 +447,8 @@ public class Minimizer {
 		String[] alphabet = far.getAlphabet(automaton);
 		State[] states = automaton.getStates();
 		for (int k = 0; k < states.length; k++) {
-			Transition[] transitions = automaton
-					.getTransitionsFromState(states[k]);
 			for (int j = 0; j < alphabet.length; j++) {
-				if (!isTransitionOnTerminal(transitions, alphabet[j])) {
+				if (automaton.getTransitionsFromState(states[k], alphabet[j]).length == 0) {
 					FSATransition trans = new FSATransition(states[k],
 							trapState, alphabet[j]);
 					automaton.addTransition(trans);
@@ -0,0 +1,411 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.fsa;
+
+import java.util.*;
+
+import automata.Automaton;
+import automata.State;
+import automata.Transition;
+
+/**
+ * The <CODE>StateEliminationConverter</CODE> converts a finite state
+ * automaton to an equivalent regular expression without any user interaction
+ * and without changing the automaton. Where the
+ * {@link FSAToRegularExpressionConverter} first adds a transition on the
+ * empty set between every pair of states and then removes states in whatever
+ * order they come, this converter keeps only the arcs that exist, in maps from
+ * each state to the states it has arcs to and from, and each time removes the
+ * state whose removal makes the fewest and smallest new arcs.
+ * <P>
+ *
+ * The labels of the arcs are expressions kept as a graph of shared nodes:
+ * each distinct expression is made only once, and unions, concatenations and
+ * stars are simplified as they are made (the empty set and lambda are
+ * identities or zeros where they should be, nested unions and concatenations
+ * are flattened, a union never holds the same expression twice, and
+ * <I>r</I>** and (&lambda;+<I>r</I>)* become <I>r</I>*). The expression
+ * returned is written in the same form as those of the
+ * <CODE>FSAToRegularExpressionConverter</CODE>.
+ *
+ * @see automata.fsa.FSAToRegularExpressionConverter
+ */
+
+public class StateEliminationConverter {
+	/**
+	 * Instantiates a converter.
+	 */
+	private StateEliminationConverter() {
+		lambda = intern(new Node(LAMBDA_NODE, null, null));
+		empty = intern(new Node(EMPTY_NODE, null, null));
+	}
+
+	/**
+	 * Returns a regular expression for the language of a finite state
+	 * automaton. The automaton may have any number of final states, and is not
+	 * changed.
+	 *
+	 * @param automaton
+	 *            the finite state automaton
+	 * @return the regular expression for the language of the automaton
+	 */
+	public static String convertToRegularExpression(Automaton automaton) {
+		return new StateEliminationConverter().convert(automaton);
+	}
+
+	/**
+	 * Does the conversion.
+	 */
+	private String convert(Automaton automaton) {
+		State[] states = automaton.getStates();
+		int n = states.length;
+		// The states are numbered from 0, and then come a new initial state
+		// and a new final state.
+		int initial = n, last = n + 1;
+		out = new HashMap[n + 2];
+		in = new HashMap[n + 2];
+		for (int k = 0; k < n + 2; k++) {
+			out[k] = new HashMap();
+			in[k] = new HashMap();
+		}
+		Map number = new HashMap();
+		for (int k = 0; k < n; k++)
+			number.put(states[k], new Integer(k));
+		Transition[] transitions = automaton.getTransitions();
+		for (int k = 0; k < transitions.length; k++) {
+			FSATransition t = (FSATransition) transitions[k];
+			String label = t.getLabel();
+			addArc(((Integer) number.get(t.getFromState())).intValue(),
+					((Integer) number.get(t.getToState())).intValue(), label
+							.length() == 0 ? lambda : intern(new Node(
+							SYMBOL_NODE, label, null)));
+		}
+		if (automaton.getInitialState() != null)
+			addArc(initial, ((Integer) number
+					.get(automaton.getInitialState())).intValue(), lambda);
+		State[] finals = automaton.getFinalStates();
+		for (int k = 0; k < finals.length; k++)
+			addArc(((Integer) number.get(finals[k])).intValue(), last, lambda);
+
+		boolean[] removed = new boolean[n];
+		for (int count = 0; count < n; count++) {
+			int best = -1;
+			long bestCost = Long.MAX_VALUE;
+			for (int k = 0; k < n; k++) {
+				if (removed[k])
+					continue;
+				long cost = cost(k);
+				if (cost < bestCost) {
+					bestCost = cost;
+					best = k;
+				}
+			}
+			removed[best] = true;
+			eliminate(best);
+		}
+		Node result = (Node) out[initial].get(new Integer(last));
+		return toString(result == null ? empty : result, 0);
+	}
+
+	/**
+	 * Returns the cost of removing a state: the number of arcs that will be
+	 * made or changed, then the total size of the arcs of the state to break
+	 * ties.
+	 *
+	 * @param k
+	 *            the state
+	 */
+	private long cost(int k) {
+		int ins = in[k].size(), outs = out[k].size();
+		long weight = 0;
+		Integer self = new Integer(k);
+		if (in[k].containsKey(self)) {
+			ins--;
+			outs--;
+		}
+		Iterator it = in[k].values().iterator();
+		while (it.hasNext())
+			weight += ((Node) it.next()).size;
+		it = out[k].values().iterator();
+		while (it.hasNext())
+			weight += ((Node) it.next()).size;
+		return ((long) ins * outs << 32) + Math.min(weight, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Removes a state, adding an arc from each state with an arc into it to
+	 * each state with an arc out of it.
+	 *
+	 * @param k
+	 *            the state to remove
+	 */
+	private void eliminate(int k) {
+		Integer self = new Integer(k);
+		Node loop = (Node) out[k].remove(self);
+		in[k].remove(self);
+		Node star = loop == null ? lambda : star(loop);
+		Iterator it = in[k].entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry entry = (Map.Entry) it.next();
+			int p = ((Integer) entry.getKey()).intValue();
+			Node into = concatenate((Node) entry.getValue(), star);
+			out[p].remove(self);
+			Iterator it2 = out[k].entrySet().iterator();
+			while (it2.hasNext()) {
+				Map.Entry entry2 = (Map.Entry) it2.next();
+				int q = ((Integer) entry2.getKey()).intValue();
+				addArc(p, q, concatenate(into, (Node) entry2.getValue()));
+			}
+		}
+		it = out[k].keySet().iterator();
+		while (it.hasNext())
+			in[((Integer) it.next()).intValue()].remove(self);
+		out[k].clear();
+		in[k].clear();
+	}
+
+	/**
+	 * Adds an expression to the arc between two states, as a union with what
+	 * is already on the arc.
+	 */
+	private void addArc(int from, int to, Node expression) {
+		Integer key = new Integer(to);
+		Node old = (Node) out[from].get(key);
+		if (old != null)
+			expression = or(old, expression);
+		out[from].put(key, expression);
+		in[to].put(new Integer(from), expression);
+	}
+
+	/**
+	 * Returns the single shared node equal to a node.
+	 */
+	private Node intern(Node node) {
+		Node old = (Node) nodes.get(node);
+		if (old != null)
+			return old;
+		node.id = nodes.size();
+		nodes.put(node, node);
+		return node;
+	}
+
+	/**
+	 * Returns the union of two expressions.
+	 */
+	private Node or(Node r1, Node r2) {
+		if (r1 == r2 || r2 == empty)
+			return r1;
+		if (r1 == empty)
+			return r2;
+		TreeSet parts = new TreeSet();
+		addParts(r1, OR_NODE, parts);
+		addParts(r2, OR_NODE, parts);
+		if (parts.contains(lambda)) {
+			// Lambda is already in any starred expression.
+			Iterator it = parts.iterator();
+			while (it.hasNext())
+				if (((Node) it.next()).kind == STAR_NODE) {
+					parts.remove(lambda);
+					break;
+				}
+		}
+		if (parts.size() == 1)
+			return (Node) parts.first();
+		return intern(new Node(OR_NODE, null, (Node[]) parts
+				.toArray(new Node[0])));
+	}
+
+	/**
+	 * Returns the concatenation of two expressions.
+	 */
+	private Node concatenate(Node r1, Node r2) {
+		if (r1 == empty || r2 == empty)
+			return empty;
+		if (r1 == lambda)
+			return r2;
+		if (r2 == lambda)
+			return r1;
+		List parts = new ArrayList();
+		addParts(r1, CAT_NODE, parts);
+		addParts(r2, CAT_NODE, parts);
+		return intern(new Node(CAT_NODE, null, (Node[]) parts
+				.toArray(new Node[0])));
+	}
+
+	/**
+	 * Returns an expression starred.
+	 */
+	private Node star(Node r) {
+		if (r == empty || r == lambda)
+			return lambda;
+		if (r.kind == STAR_NODE)
+			return r;
+		if (r.kind == OR_NODE && Arrays.asList(r.children).contains(lambda)) {
+			Node rest = empty;
+			for (int i = 0; i < r.children.length; i++)
+				if (r.children[i] != lambda)
+					rest = or(rest, r.children[i]);
+			return star(rest);
+		}
+		return intern(new Node(STAR_NODE, null, new Node[] { r }));
+	}
+
+	/**
+	 * Adds an expression to a collection, or its parts if it is of the given
+	 * kind.
+	 */
+	private static void addParts(Node r, int kind, Collection parts) {
+		if (r.kind == kind)
+			parts.addAll(Arrays.asList(r.children));
+		else
+			parts.add(r);
+	}
+
+	/**
+	 * Writes an expression in the form of the
+	 * <CODE>FSAToRegularExpressionConverter</CODE>.
+	 *
+	 * @param r
+	 *            the expression
+	 * @param context
+	 *            0 at the top or in a union, 1 in a concatenation, and 2
+	 *            under a star
+	 * @return the string for the expression
+	 */
+	private String toString(Node r, int context) {
+		StringBuffer buffer = new StringBuffer();
+		write(r, context, buffer);
+		return buffer.toString();
+	}
+
+	private void write(Node r, int context, StringBuffer buffer) {
+		switch (r.kind) {
+		case EMPTY_NODE:
+			buffer.append(FSAToRegularExpressionConverter.EMPTY);
+			return;
+		case LAMBDA_NODE:
+			buffer.append(FSAToRegularExpressionConverter.LAMBDA);
+			return;
+		case SYMBOL_NODE:
+			if (context == 2 && r.label.length() > 1)
+				buffer.append(FSAToRegularExpressionConverter.LEFT_PAREN
+						+ r.label + FSAToRegularExpressionConverter.RIGHT_PAREN);
+			else
+				buffer.append(r.label);
+			return;
+		case STAR_NODE:
+			write(r.children[0], 2, buffer);
+			buffer.append(FSAToRegularExpressionConverter.KLEENE_STAR);
+			return;
+		}
+		boolean paren = context > (r.kind == OR_NODE ? 0 : 1);
+		if (paren)
+			buffer.append(FSAToRegularExpressionConverter.LEFT_PAREN);
+		for (int i = 0; i < r.children.length; i++) {
+			if (r.kind == OR_NODE) {
+				if (i > 0)
+					buffer.append(FSAToRegularExpressionConverter.OR);
+				if (r.children[i] == lambda) {
+					buffer.append(FSAToRegularExpressionConverter.LAMBDA_DISPLAY);
+					continue;
+				}
+				write(r.children[i], 0, buffer);
+			} else
+				write(r.children[i], 1, buffer);
+		}
+		if (paren)
+			buffer.append(FSAToRegularExpressionConverter.RIGHT_PAREN);
+	}
+
+	/**
+	 * A node of an expression. Nodes are compared by kind, label and children,
+	 * and ordered by the order they were interned in.
+	 */
+	private static class Node implements Comparable {
+		Node(int kind, String label, Node[] children) {
+			this.kind = kind;
+			this.label = label;
+			this.children = children;
+			long size = label == null ? 1 : label.length();
+			for (int i = 0; children != null && i < children.length; i++)
+				size += children[i].size;
+			this.size = size;
+		}
+
+		public boolean equals(Object object) {
+			if (this == object)
+				return true;
+			if (!(object instanceof Node))
+				return false;
+			Node node = (Node) object;
+			if (kind != node.kind
+					|| !(label == null ? node.label == null : label
+							.equals(node.label)))
+				return false;
+			if (children == null || node.children == null)
+				return children == node.children;
+			if (children.length != node.children.length)
+				return false;
+			// The children are interned, so they are equal only if they are
+			// the same.
+			for (int i = 0; i < children.length; i++)
+				if (children[i] != node.children[i])
+					return false;
+			return true;
+		}
+
+		public int hashCode() {
+			int hash = kind * 31 + (label == null ? 0 : label.hashCode());
+			// The children are interned, so their ids identify them.
+			for (int i = 0; children != null && i < children.length; i++)
+				hash = hash * 31 + children[i].id;
+			return hash;
+		}
+
+		public int compareTo(Object object) {
+			return id - ((Node) object).id;
+		}
+
+		final int kind;
+
+		final String label;
+
+		final Node[] children;
+
+		/** The number of symbols and operators in the expression. */
+		final long size;
+
+		int id;
+	}
+
+	/** The kinds of node. */
+	private static final int EMPTY_NODE = 0, LAMBDA_NODE = 1, SYMBOL_NODE = 2,
+			STAR_NODE = 3, CAT_NODE = 4, OR_NODE = 5;
+
+	/** The interned nodes. */
+	private Map nodes = new HashMap();
+
+	/** The empty set and lambda. */
+	private Node empty, lambda;
+
+	/** The arcs out of and into each state, as maps from states to labels. */
+	private HashMap[] out, in;
+}
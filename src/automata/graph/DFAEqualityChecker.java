@@ -61,24 +61,21 @@ public class DFAEqualityChecker {
 				return false;
 		}
 
-		Map labelToTrans1 = new HashMap(), labelToTrans2 = new HashMap();
 		Transition[] t1 = state1.getAutomaton().getTransitionsFromState(state1);
 		Transition[] t2 = state2.getAutomaton().getTransitionsFromState(state2);
 		// If they're not even the same length...
 		if (t1.length != t2.length)
 			return false;
-		for (int i = 0; i < t1.length; i++) {
-			labelToTrans1.put(((FSATransition) t1[i]).getLabel(), t1[i]);
-			labelToTrans2.put(((FSATransition) t2[i]).getLabel(), t2[i]);
-		}
 		// Now, for each transition from state1, we can find the
 		// corresponding transition in state2, if it exists.
 		for (int i = 0; i < t1.length; i++) {
 			String label = ((FSATransition) t1[i]).getLabel();
-			Transition counterpart = (Transition) labelToTrans2.get(label);
+			Transition[] counterparts = state2.getAutomaton()
+					.getTransitionsFromState(state2, label);
 			// Does the same transition exist in the other automaton?
-			if (counterpart == null)
+			if (counterparts.length == 0)
 				return false;
+			Transition counterpart = counterparts[0];
 			matching.put(state1, state2);
 			boolean equal = hypothesize(t1[i].getToState(), counterpart
 					.getToState(), matching);
@@ -22,9 +22,14 @@ package automata.graph;
 
 import gui.tree.DefaultNodeDrawer;
 
+import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.Dimension;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 /**
@@ -46,6 +51,31 @@ public abstract class LayoutAlgorithm {
 	 * The minimum space between vertices.
 	 */
 	protected double vertexBuffer;
+	/**
+	 * The source of the random choices of the algorithm, if it makes any.
+	 */
+	protected Random random = new Random();
+	/**
+	 * How many milliseconds must pass between the positions given to <code>progress</code>.
+	 */
+	public static final long FRAME_MILLIS = 40;
+	/**
+	 * The most pairs of edges {@link #countCrossings} tests for crossings.
+	 */
+	public static final int MAX_CROSSING_TESTS = 2000000;
+	/**
+	 * The object told of the positions of the vertices as the algorithm runs, or <code>null</code>.
+	 * It may be set from another thread while the algorithm runs.
+	 */
+	private volatile LayoutProgress progress = null;
+	/**
+	 * When <code>progress</code> was last told of the positions.
+	 */
+	private long lastFrame = 0;
+	/**
+	 * If the algorithm has been asked to stop.
+	 */
+	private volatile boolean cancelled = false;
 	
 	public LayoutAlgorithm() {
 		size = new Dimension(900, 900);
@@ -77,6 +107,138 @@ public abstract class LayoutAlgorithm {
 	 */
 	public abstract void layout(Graph graph, Set notMoving);		
 	
+	/**
+	 * Returns if the layout depends on random choices, so that running it again with another
+	 * seed may give a better layout.
+	 * 
+	 * @return <code>true</code> if the layout depends on random choices
+	 */
+	public boolean isRandomized() {
+		return false;
+	}
+	
+	/**
+	 * Seeds the random choices of the algorithm, so that the same seed gives the same layout.
+	 * 
+	 * @param seed - the seed
+	 */
+	public void setSeed(long seed) {
+		random = new Random(seed);
+	}
+	
+	/**
+	 * Sets the object to tell of the positions of the vertices while the algorithm runs.  Only 
+	 * algorithms that move the vertices step by step tell it anything, and no more often than
+	 * once every <code>FRAME_MILLIS</code> milliseconds.
+	 * 
+	 * @param p - the object to tell, or <code>null</code> for none
+	 */
+	public void setProgress(LayoutProgress p) {
+		progress = p;
+	}
+	
+	/**
+	 * Asks the algorithm, which may be running in another thread, to stop as soon as it can.  It
+	 * then finishes as if it had run to the end from the positions the vertices have reached.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	/**
+	 * Returns if the algorithm has been asked to stop.
+	 * 
+	 * @return <code>true</code> if {@link #cancel} has been called
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
+	/**
+	 * Tells the <code>progress</code> object of the positions of the vertices, if there is one
+	 * and a frame has passed since it was last told.  Algorithms that move the vertices step by
+	 * step call this after each step.
+	 * 
+	 * @param vertices - the vertices being moved
+	 * @param x - the x coordinate of each vertex
+	 * @param y - the y coordinate of each vertex
+	 */
+	protected void reportPositions(Object[] vertices, double[] x, double[] y) {
+		LayoutProgress p = progress;
+		if (p == null)
+			return;
+		long now = System.currentTimeMillis();
+		if (now - lastFrame < FRAME_MILLIS)
+			return;
+		lastFrame = now;
+		p.positionsReached(vertices, x.clone(), y.clone());
+	}
+	
+	/**
+	 * Counts the pairs of edges of a graph that cross as straight lines, not counting edges that
+	 * share a vertex.  Testing every pair takes time quadratic in the number of edges, so when
+	 * there are more than <code>MAX_CROSSING_TESTS</code> pairs, only that many pairs chosen at
+	 * random are tested and the count is scaled up to all pairs.  The result is then only an
+	 * estimate, and of two layouts with close counts the one with fewer crossings may not be the
+	 * one with the lower estimate.  The random pairs come from a generator seeded with the number
+	 * of edges, so every call for one graph tests the same pairs of edges, and choosing among
+	 * layouts of the graph by this count gives the same choice each time.
+	 * 
+	 * @param graph - the graph
+	 * @return the number of crossings, or an estimate of it for a graph with more than about
+	 * 2000 edges
+	 */
+	public static long countCrossings(Graph graph) {
+		Object[] vertices = graph.vertices();
+		Map index = new HashMap();
+		for (int i=0; i<vertices.length; i++)
+			index.put(vertices[i], new Integer(i));
+		ArrayList ends = new ArrayList();
+		for (int i=0; i<vertices.length; i++) {
+			Iterator it = graph.adjacent(vertices[i]).iterator();
+			while (it.hasNext()) {
+				int j = ((Integer) index.get(it.next())).intValue();
+				if (j > i)
+					ends.add(new int[] {i, j});
+			}
+		}
+		int m = ends.size();
+		int[] from = new int[m], to = new int[m];
+		Line2D[] lines = new Line2D[m];
+		for (int e=0; e<m; e++) {
+			from[e] = ((int[]) ends.get(e))[0];
+			to[e] = ((int[]) ends.get(e))[1];
+			lines[e] = new Line2D.Double(graph.pointForVertex(vertices[from[e]]),
+					graph.pointForVertex(vertices[to[e]]));
+		}
+		long pairs = (long) m * (m - 1) / 2, crossings = 0;
+		if (pairs <= MAX_CROSSING_TESTS) {
+			for (int e=0; e<m; e++)
+				for (int f=e+1; f<m; f++)
+					if (cross(e, f, from, to, lines))
+						crossings++;
+			return crossings;
+		}
+		Random sample = new Random(m);
+		for (int k=0; k<MAX_CROSSING_TESTS; k++) {
+			int e = sample.nextInt(m), f = sample.nextInt(m - 1);
+			if (f >= e)
+				f++;
+			if (cross(e, f, from, to, lines))
+				crossings++;
+		}
+		return Math.round((double) crossings * pairs / MAX_CROSSING_TESTS);
+	}
+	
+	/**
+	 * Returns if two edges cross, for {@link #countCrossings}.
+	 */
+	private static boolean cross(int e, int f, int[] from, int[] to, Line2D[] lines) {
+		if (from[e] == from[f] || from[e] == to[f] || to[e] == from[f] || to[e] == to[f])
+			return false;
+		return lines[e].intersectsLine(lines[f]);
+	}
+	
 	/**
 	 * Method that can make sure that all vertices are visible in the screen.  The
 	 * leftmost vertex is shifted to an x-coordinate of <code>buffer.width</code>, the highest
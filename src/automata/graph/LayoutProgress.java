@@ -0,0 +1,45 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.graph;
+
+/**
+ * An interface for objects that want to see the positions of the vertices
+ * while a {@link LayoutAlgorithm} is still moving them, as to show the layout
+ * as it goes.
+ *
+ * @see LayoutAlgorithm#setProgress
+ */
+
+public interface LayoutProgress {
+	/**
+	 * Called from the thread running the layout with the positions the
+	 * vertices have reached. The positions are those the algorithm works
+	 * with, before they are shifted onto the screen.
+	 *
+	 * @param vertices
+	 *            the vertices being moved
+	 * @param x
+	 *            the x coordinate of each vertex, which the receiver may keep
+	 * @param y
+	 *            the y coordinate of each vertex, which the receiver may keep
+	 */
+	public void positionsReached(Object[] vertices, double[] x, double[] y);
+}
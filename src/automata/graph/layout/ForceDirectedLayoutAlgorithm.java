@@ -1,6 +1,7 @@
 package automata.graph.layout;
 
 import java.awt.Dimension;
+import java.awt.geom.Point2D;
 import java.util.*;
 import java.lang.Math;
 
@@ -10,6 +11,8 @@ import automata.graph.LayoutAlgorithm;
 /**
  * An implementation of a barycentric force-directed graph drawing algorithm as described
  * here https://cs.brown.edu/people/rtamassi/gdhandbook/chapters/force-directed.pdf
+ * The repulsion between all pairs of vertices is approximated with a Barnes-Hut quadtree,
+ * so each iteration takes about n log n time rather than n^2.
  *
  * @see LayoutAlgorithm
  * @author Elijah Cirioli
@@ -20,6 +23,18 @@ public class ForceDirectedLayoutAlgorithm extends LayoutAlgorithm {
      */
     private Graph graph;
     private final int NUM_ITERATIONS = 5000;
+    private final double ATTRACTION_SCALAR = 1;
+    private final double REPULSION_SCALAR = 1;
+    /**
+     * The most iterations times vertices to run; larger graphs get fewer iterations, down to
+     * <code>MIN_ITERATIONS</code>
+     */
+    private final int MAX_VERTEX_UPDATES = 2500000;
+    private final int MIN_ITERATIONS = 200;
+    /**
+     * The opening criterion of the Barnes-Hut approximation of the repulsion
+     */
+    private double openingCriterion = QuadTree.DEFAULT_OPENING_CRITERION;
 
     /**
      * Assigns some default values.  To have different values, use the other constructor.
@@ -46,21 +61,29 @@ public class ForceDirectedLayoutAlgorithm extends LayoutAlgorithm {
         if (graph == null || vertices.size() == 0)
             return;
 
-        /* wrap the graph vertices in physics objects and create HashMap of undirected neighborhoods */
-        HashMap<Object, HashSet<Object>> allNeighborhoods = new HashMap<>();
-        ArrayList<PhysicsVertex> physicsVertices = new ArrayList<>(vertices.size());
-        for (Object v : vertices) {
-            physicsVertices.add(new PhysicsVertex(v, g));
-            if (!allNeighborhoods.containsKey(v))
-                allNeighborhoods.put(v, new HashSet<>());
-            for (Object other : vertices) {
-                if (other.equals(v) || !graph.adjacent(v).contains(other)) {
+        /* number the vertices and read their positions into arrays */
+        int n = vertices.size();
+        HashMap<Object, Integer> index = new HashMap<>();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            Object v = vertices.get(i);
+            index.put(v, i);
+            x[i] = graph.pointForVertex(v).getX();
+            y[i] = graph.pointForVertex(v).getY();
+        }
+
+        /* build the undirected neighborhoods from the adjacency lists */
+        ArrayList<HashSet<Integer>> allNeighborhoods = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            allNeighborhoods.add(new HashSet<Integer>());
+        for (int i = 0; i < n; i++) {
+            for (Object other : (Set<Object>) graph.adjacent(vertices.get(i))) {
+                Integer j = index.get(other);
+                if (j == null || j == i)
                     continue;
-                }
-                if (!allNeighborhoods.containsKey(other))
-                    allNeighborhoods.put(other, new HashSet<>());
-                allNeighborhoods.get(v).add(other);
-                allNeighborhoods.get(other).add(v);
+                allNeighborhoods.get(i).add(j);
+                allNeighborhoods.get(j).add(i);
             }
         }
 
@@ -68,38 +91,96 @@ public class ForceDirectedLayoutAlgorithm extends LayoutAlgorithm {
         Object firstVertex = vertices.get(0);
         Set<Object> connections = getConnected(firstVertex);
         if (vertices.size() != connections.size()) {
-            for (Object v : vertices) {
+            for (int i = 1; i < n; i++) {
                 /* if this vertex is disconnected from the start */
-                if (!connections.contains(v)) {
+                if (!connections.contains(vertices.get(i))) {
                     /* add it to the first vertex's neighborhood */
-                    allNeighborhoods.get(firstVertex).add(v);
-                    allNeighborhoods.get(v).add(firstVertex);
+                    allNeighborhoods.get(0).add(i);
+                    allNeighborhoods.get(i).add(0);
                 }
             }
         }
+        int[][] neighbors = new int[n][];
+        for (int i = 0; i < n; i++) {
+            neighbors[i] = new int[allNeighborhoods.get(i).size()];
+            int j = 0;
+            for (int other : allNeighborhoods.get(i))
+                neighbors[i][j++] = other;
+        }
 
         /* define important variables */
         double width =  size.getWidth() - 2 * vertexBuffer;
         double height =  size.getHeight() - 2 * vertexBuffer;
         double area = width * height;
-        double k = Math.min(Math.sqrt(area / physicsVertices.size()), 4 * vertexDim.getWidth());
+        double k = Math.min(Math.sqrt(area / n), 4 * vertexDim.getWidth());
+
+        /* large graphs get fewer iterations, so that the layout does not take forever */
+        int iterations = Math.max(MIN_ITERATIONS, Math.min(NUM_ITERATIONS, MAX_VERTEX_UPDATES / n));
 
         /* run the physics on the vertices */
-        for (int i = 0; i < NUM_ITERATIONS; i++) {
+        Object[] vertexArray = vertices.toArray();
+        double[] displacement = new double[2];
+        for (int i = 0; i < iterations && !isCancelled(); i++) {
             /* temperature cools over time and describes how much the vertices can move */
-            double temperature = (width / (5 * Math.sqrt(NUM_ITERATIONS))) * Math.sqrt(NUM_ITERATIONS - i);
-            for (PhysicsVertex v : physicsVertices) {
-                v.applyForces(physicsVertices, allNeighborhoods.get(v.vertex), k, temperature);
+            double temperature = (width / (5 * Math.sqrt(iterations))) * Math.sqrt(iterations - i);
+            QuadTree tree = new QuadTree(x, y, n);
+            for (int v = 0; v < n; v++) {
+                displacement[0] = 0;
+                displacement[1] = 0;
+                /* repulsive forces of k^2 / d from every other vertex */
+                tree.addRepulsion(v, REPULSION_SCALAR * k * k, 1, openingCriterion, displacement);
+                /* attractive forces of d^2 / k toward the neighbors */
+                for (int other : neighbors[v]) {
+                    double differenceX = x[other] - x[v];
+                    double differenceY = y[other] - y[v];
+                    double distance = Math.max(Math.sqrt(differenceX * differenceX + differenceY * differenceY), 1);
+                    displacement[0] += ATTRACTION_SCALAR * differenceX * distance / k;
+                    displacement[1] += ATTRACTION_SCALAR * differenceY * distance / k;
+                }
+                /* max length of displacement at temperature */
+                double magnitude = Math.sqrt(displacement[0] * displacement[0] + displacement[1] * displacement[1]);
+                if (magnitude > temperature) {
+                    displacement[0] *= temperature / magnitude;
+                    displacement[1] *= temperature / magnitude;
+                }
+
+                /* move the vertex */
+                x[v] += displacement[0];
+                y[v] += displacement[1];
+                tree.moved(v, displacement[0], displacement[1]);
             }
+            reportPositions(vertexArray, x, y);
         }
 
         /* update the positions of the actual graph vertices */
-        for (PhysicsVertex v : physicsVertices) {
-            graph.moveVertex(v.vertex, v.position);
+        for (int v = 0; v < n; v++) {
+            graph.moveVertex(vertices.get(v), new Point2D.Double(x[v], y[v]));
         }
         shiftOntoScreen(graph, size, vertexDim, vertexBuffer, true);
     }
 
+    /**
+     * Returns the opening criterion of the Barnes-Hut approximation of the repulsion.
+     *
+     * @return the opening criterion
+     * @see #setOpeningCriterion
+     */
+    public double getOpeningCriterion() {
+        return openingCriterion;
+    }
+
+    /**
+     * Sets the opening criterion of the Barnes-Hut approximation of the repulsion.  A group of
+     * vertices repels a vertex as one body if the group's width is less than
+     * <code>openingCriterion</code> times its distance from the vertex, so 0 gives the exact
+     * repulsion of every pair of vertices, and larger values are faster but rougher.
+     *
+     * @param openingCriterion the opening criterion
+     */
+    public void setOpeningCriterion(double openingCriterion) {
+        this.openingCriterion = openingCriterion;
+    }
+
     private Set<Object> getConnected(Object startingVertex) {
         HashSet<Object> visited = new HashSet<>();
         LinkedList<Object> queue = new LinkedList<>();
@@ -25,8 +25,8 @@ import java.awt.Dimension;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
 
 import automata.graph.Graph;
@@ -36,7 +36,8 @@ import automata.graph.LayoutAlgorithm;
  * Implements the GEM algorithm, by Arne Frick, Andreas Ludwig, and Heiko
  * Mehldau in their 1994 paper. At present the rotation detection is not built
  * in, as forcing speedier convergence is totally unnecessary for our limited
- * applications.
+ * applications. The forces of all the other vertices on a vertex are
+ * approximated with the quadtree of Barnes and Hut.
  * 
  * @author Thomas Finley
  */
@@ -74,25 +75,57 @@ public class GEMLayoutAlgorithm extends LayoutAlgorithm {
 		int Rmax = 120 * (vArray.length - isovertices.size());
 		double Tglobal = Tmin + 1.0;
 
+		// Number the vertices, and read their positions and neighbors.
+		Map index = new HashMap();
+		for (int i = 0; i < vArray.length; i++)
+			index.put(vArray[i], new Integer(i));
+		double[] x = new double[vArray.length], y = new double[vArray.length];
+		int[][] neighbors = new int[vArray.length][];
+		for (int i = 0; i < vArray.length; i++) {
+			Point2D point = graph.pointForVertex(vArray[i]);
+			x[i] = point.getX();
+			y[i] = point.getY();
+			Set adjacent = graph.adjacent(vArray[i]);
+			neighbors[i] = new int[adjacent.size()];
+			int count = 0;
+			Iterator it = adjacent.iterator();
+			while (it.hasNext()) {
+				Object other = it.next();
+				if (other != vArray[i])
+					neighbors[i][count++] = ((Integer) index.get(other))
+							.intValue();
+			}
+			if (count < neighbors[i].length) {
+				int[] trimmed = new int[count];
+				System.arraycopy(neighbors[i], 0, trimmed, 0, count);
+				neighbors[i] = trimmed;
+			}
+		}
+
 		// Determine an optimal edge length. With isovertices, we
 		// want optimal length to be about average of existing edges
 		// that will remain unchanged due to isovertex status.
 		double optimalEdgeLength = OPTIMAL_EDGE_LENGTH;
 		if (isovertices.size() > 0) {
-			Object[] iso = isovertices.toArray();
 			int count = 0;
 			double lengths = 0.0;
-			for (int i = 0; i < iso.length; i++)
-				for (int j = i + 1; j < iso.length; j++) {
-					if (!graph.hasEdge(iso[i], iso[j]))
+			Iterator it = isovertices.iterator();
+			while (it.hasNext()) {
+				int i = ((Integer) index.get(it.next())).intValue();
+				for (int n = 0; n < neighbors[i].length; n++) {
+					int j = neighbors[i][n];
+					// Each edge is met from both ends, which leaves the
+					// average alone.
+					if (!isovertices.contains(vArray[j]))
 						continue;
-					lengths += graph.pointForVertex(iso[i]).distance(
-							graph.pointForVertex(iso[j]));
+					lengths += Point2D.distance(x[i], y[i], x[j], y[j]);
 					count++;
 				}
+			}
 			if (count > 0)
 				optimalEdgeLength = lengths / (double) count;
 		}
+		double O2 = optimalEdgeLength * optimalEdgeLength;
 
 		// The barycenter of the graph.
 		double[] c = new double[] { 0.0, 0.0 };
@@ -108,49 +141,50 @@ public class GEMLayoutAlgorithm extends LayoutAlgorithm {
 			records.put(vArray[i], r);
 		}
 
-		// Iterate until done.
+		// Iterate until done. The quadtree for the repulsion is made anew
+		// each round, once every vertex has been updated.
 		ArrayList vertices = new ArrayList();
-		for (int i = 0; i < Rmax && Tglobal > Tmin; i++) {
+		QuadTree tree = null;
+		double[] repulsion = new double[2];
+		for (int i = 0; i < Rmax && Tglobal > Tmin && !isCancelled(); i++) {
 			if (vertices.isEmpty()) {
 				vertices = getMovableVertices(graph, isovertices);
 				if (vertices.size() == 0)
 					return;
+				tree = new QuadTree(x, y, vArray.length);
 			}
 
 			// Choose a vertex V to update.
-			int index = RANDOM.nextInt(vertices.size());
-			Object vertex = vertices.remove(index);
+			int choice = random.nextInt(vertices.size());
+			Object vertex = vertices.get(choice);
+			vertices.set(choice, vertices.get(vertices.size() - 1));
+			vertices.remove(vertices.size() - 1);
 			Record record = (Record) records.get(vertex);
-			Point2D point = graph.pointForVertex(vertex);
+			int v = ((Integer) index.get(vertex)).intValue();
 
 			// Compute the impulse of V.
 			double Theta = graph.degree(vertex);
 			Theta *= 1.0 + Theta / 2.0;
 			double[] p = new double[] {
-					(c[0] / graph.numberOfVertices() - point.getX())
+					(c[0] / graph.numberOfVertices() - x[v])
 							* GRAVITATIONAL_CONSTANT * Theta,
-					(c[1] / graph.numberOfVertices() - point.getY())
+					(c[1] / graph.numberOfVertices() - y[v])
 							* GRAVITATIONAL_CONSTANT * Theta }; // Attraction to
 																// BC.
 			// Random disturbance.
-			p[0] += RANDOM.nextDouble() * 10.0 - 5.0;
-			p[1] += RANDOM.nextDouble() * 10.0 - 5.0;
-			// Forces exerted by other nodes.
-			for (int j = 0; j < vArray.length; j++) {
-				if (vArray[j] == vertex)
-					continue;
-				Point2D otherPoint = graph.pointForVertex(vArray[j]);
-				double[] delta = new double[] {
-						point.getX() - otherPoint.getX(),
-						point.getY() - otherPoint.getY() };
+			p[0] += random.nextDouble() * 10.0 - 5.0;
+			p[1] += random.nextDouble() * 10.0 - 5.0;
+			// Forces exerted by other nodes: all of them push V away...
+			repulsion[0] = 0.0;
+			repulsion[1] = 0.0;
+			tree.addRepulsion(v, O2, 0.0, openingCriterion, repulsion);
+			p[0] += repulsion[0];
+			p[1] += repulsion[1];
+			// ...and its neighbors pull it back.
+			for (int n = 0; n < neighbors[v].length; n++) {
+				int j = neighbors[v][n];
+				double[] delta = new double[] { x[v] - x[j], y[v] - y[j] };
 				double D2 = delta[0] * delta[0] + delta[1] * delta[1];
-				double O2 = optimalEdgeLength * optimalEdgeLength;
-				if (delta[0] != 0.0 || delta[1] != 0.0) {
-					for (int k = 0; k < 2; k++)
-						p[k] += delta[k] * O2 / D2;
-				}
-				if (!graph.hasEdge(vertex, vArray[j]))
-					continue;
 				for (int k = 0; k < 2; k++)
 					p[k] -= delta[k] * D2 / (O2 * Theta);
 			}
@@ -161,12 +195,14 @@ public class GEMLayoutAlgorithm extends LayoutAlgorithm {
 				for (int j = 0; j < 2; j++)
 					p[j] *= record.temperature / absp;
 				// update the position!
-				graph.moveVertex(vertex, new Point2D.Double(
-						point.getX() + p[0], point.getY() + p[1]));
+				x[v] += p[0];
+				y[v] += p[1];
+				tree.moved(v, p[0], p[1]);
 				// update the barycenter
 				c[0] += p[0];
 				c[1] += p[1];
 			}
+			reportPositions(vArray, x, y);
 			// Adjust the temperature.
 			/*
 			 * if (record.lastImpulse[0] != 0.0 || record.lastImpulse[1] != 0.0) {
@@ -182,14 +218,51 @@ public class GEMLayoutAlgorithm extends LayoutAlgorithm {
 			 */						
 		}
 
+		// Move the vertices to where they ended up.
+		for (int i = 0; i < vArray.length; i++)
+			graph.moveVertex(vArray[i], new Point2D.Double(x[i], y[i]));
+
 		//Finally, shift all points onto the screen.
 		shiftOntoScreen(graph, size, vertexDim, vertexBuffer, true);
 	}
 
-	private static final Random RANDOM = new Random();
+	/**
+	 * The vertices are updated in a random order, with random disturbances.
+	 */
+	public boolean isRandomized() {
+		return true;
+	}
+
+	/**
+	 * Returns the opening criterion of the Barnes&ndash;Hut approximation of
+	 * the repulsion between vertices.
+	 * 
+	 * @return the opening criterion
+	 * @see #setOpeningCriterion
+	 */
+	public double getOpeningCriterion() {
+		return openingCriterion;
+	}
+
+	/**
+	 * Sets the opening criterion of the Barnes&ndash;Hut approximation of the
+	 * repulsion between vertices. A group of vertices pushes a vertex as one
+	 * body if it is less wide than <code>openingCriterion</code> times its
+	 * distance from the vertex, so 0 makes every vertex push every other one
+	 * exactly.
+	 * 
+	 * @param openingCriterion
+	 *     the opening criterion
+	 */
+	public void setOpeningCriterion(double openingCriterion) {
+		this.openingCriterion = openingCriterion;
+	}
 
 	private Map records;
 
+	/** The opening criterion of the Barnes&ndash;Hut approximation. */
+	private double openingCriterion = QuadTree.DEFAULT_OPENING_CRITERION;
+
 	private static final Set EMPTY_SET = new HashSet();
 
 	private static class Record {
@@ -0,0 +1,331 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.graph.layout;
+
+/**
+ * A quadtree over points, for the Barnes&ndash;Hut approximation of the
+ * repulsion between all pairs of vertices in the force directed layouts. The
+ * square around the points is split into quadrants until each holds a single
+ * point, and each cell keeps the number of points in it and the sum of their
+ * positions. A cell far enough from a point, as decided by the opening
+ * criterion <I>theta</I>, then repels it as a single body at the center of
+ * the points in it, so the repulsion on one point takes time about
+ * logarithmic in the number of points rather than linear.
+ * <P>
+ *
+ * The tree reads the positions from the arrays it was built with, and a point
+ * may be moved after the tree is built if the tree is told of it with
+ * {@link #moved}. Cells keep the points and the bounds they were built with,
+ * so the approximation gets rougher as the points move, and the tree should
+ * be rebuilt once they have moved far.
+ *
+ * @see ForceDirectedLayoutAlgorithm
+ * @see GEMLayoutAlgorithm
+ */
+
+class QuadTree {
+	/**
+	 * Builds the tree over some points.
+	 *
+	 * @param x
+	 *            the x coordinates of the points
+	 * @param y
+	 *            the y coordinates of the points
+	 * @param n
+	 *            the number of points, the first of the arrays
+	 */
+	QuadTree(double[] x, double[] y, int n) {
+		this.x = x;
+		this.y = y;
+		order = new int[n];
+		place = new int[n];
+		leafOf = new int[n];
+		scratch = new int[n];
+		int capacity = Math.max(16, 2 * n);
+		lo = new int[capacity];
+		hi = new int[capacity];
+		parent = new int[capacity];
+		children = new int[4 * capacity];
+		width = new double[capacity];
+		box = new double[4 * capacity];
+		sumX = new double[capacity];
+		sumY = new double[capacity];
+		if (n == 0)
+			return;
+		double minX = x[0], maxX = x[0], minY = y[0], maxY = y[0];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+			minX = Math.min(minX, x[i]);
+			maxX = Math.max(maxX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		build(-1, 0, n, minX, minY, Math.max(maxX - minX, maxY - minY), 0);
+		for (int p = 0; p < n; p++)
+			place[order[p]] = p;
+	}
+
+	/**
+	 * Makes the cell for some points, and the cells below it.
+	 *
+	 * @param up
+	 *            the cell above, or -1 for the root
+	 * @param from
+	 *            the first place in {@link #order} of the points of the cell
+	 * @param to
+	 *            one past the last place of the points of the cell
+	 * @param left
+	 *            the least x coordinate of the cell
+	 * @param top
+	 *            the least y coordinate of the cell
+	 * @param length
+	 *            the length of the sides of the cell
+	 * @param depth
+	 *            the number of cells above this one
+	 * @return the new cell
+	 */
+	private int build(int up, int from, int to, double left, double top,
+			double length, int depth) {
+		int cell = newCell();
+		lo[cell] = from;
+		hi[cell] = to;
+		parent[cell] = up;
+		double sx = 0.0, sy = 0.0;
+		box[4 * cell] = box[4 * cell + 1] = Double.POSITIVE_INFINITY;
+		box[4 * cell + 2] = box[4 * cell + 3] = Double.NEGATIVE_INFINITY;
+		for (int p = from; p < to; p++) {
+			sx += x[order[p]];
+			sy += y[order[p]];
+			include(cell, order[p]);
+		}
+		sumX[cell] = sx;
+		sumY[cell] = sy;
+		// Points on top of each other could be split forever.
+		if (to - from <= 1 || depth == MAX_DEPTH || length == 0.0) {
+			for (int p = from; p < to; p++)
+				leafOf[order[p]] = cell;
+			return cell;
+		}
+		double half = length / 2.0, midX = left + half, midY = top + half;
+		// Sort the points of the cell by quadrant.
+		int[] counts = new int[5];
+		for (int p = from; p < to; p++)
+			counts[quadrant(order[p], midX, midY) + 1]++;
+		for (int q = 1; q < 5; q++)
+			counts[q] += counts[q - 1];
+		int[] starts = counts.clone();
+		for (int p = from; p < to; p++) {
+			int i = order[p];
+			scratch[from + counts[quadrant(i, midX, midY)]++] = i;
+		}
+		System.arraycopy(scratch, from, order, from, to - from);
+		for (int q = 0; q < 4; q++) {
+			int child = -1;
+			if (starts[q] < starts[q + 1])
+				child = build(cell, from + starts[q], from + starts[q + 1],
+						(q & 1) == 0 ? left : midX, (q & 2) == 0 ? top : midY,
+						half, depth + 1);
+			children[4 * cell + q] = child;
+		}
+		return cell;
+	}
+
+	/**
+	 * Returns the quadrant of a cell split at a point that a point lies in.
+	 */
+	private int quadrant(int i, double midX, double midY) {
+		return (x[i] < midX ? 0 : 1) + (y[i] < midY ? 0 : 2);
+	}
+
+	/**
+	 * Returns a new cell with no cells below it.
+	 */
+	private int newCell() {
+		if (cells == lo.length) {
+			int capacity = 2 * cells;
+			lo = grow(lo, capacity);
+			hi = grow(hi, capacity);
+			parent = grow(parent, capacity);
+			children = grow(children, 4 * capacity);
+			width = grow(width, capacity);
+			box = grow(box, 4 * capacity);
+			sumX = grow(sumX, capacity);
+			sumY = grow(sumY, capacity);
+		}
+		for (int q = 0; q < 4; q++)
+			children[4 * cells + q] = -1;
+		return cells++;
+	}
+
+	private static int[] grow(int[] array, int capacity) {
+		int[] grown = new int[capacity];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	private static double[] grow(double[] array, int capacity) {
+		double[] grown = new double[capacity];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	/**
+	 * Grows the bounds of a cell to take in a point.
+	 */
+	private void include(int cell, int i) {
+		int b = 4 * cell;
+		box[b] = Math.min(box[b], x[i]);
+		box[b + 1] = Math.min(box[b + 1], y[i]);
+		box[b + 2] = Math.max(box[b + 2], x[i]);
+		box[b + 3] = Math.max(box[b + 3], y[i]);
+		width[cell] = Math.max(box[b + 2] - box[b], box[b + 3] - box[b + 1]);
+	}
+
+	/**
+	 * Tells the tree that a point was moved, so that the cells it is in keep
+	 * the right center. The point is moved in the coordinate arrays by the
+	 * caller.
+	 *
+	 * @param i
+	 *            the point
+	 * @param dx
+	 *            how far it moved along x
+	 * @param dy
+	 *            how far it moved along y
+	 */
+	void moved(int i, double dx, double dy) {
+		for (int cell = leafOf[i]; cell != -1; cell = parent[cell]) {
+			sumX[cell] += dx;
+			sumY[cell] += dy;
+		}
+	}
+
+	/**
+	 * Adds the repulsion of the other points on a point to a force. Each
+	 * other point at a distance <I>d</I> pushes the point away from it with
+	 * a force of <CODE>strength</CODE>/<I>d</I>; points at the same
+	 * position do not push each other.
+	 *
+	 * @param i
+	 *            the point
+	 * @param strength
+	 *            the strength of the repulsion
+	 * @param minDistance
+	 *            points nearer than this push as if they were this far
+	 * @param theta
+	 *            the opening criterion: a cell repels as one body if the
+	 *            points in it lie within less than <I>theta</I> times its
+	 *            distance from the point, so that 0 gives the exact sum
+	 * @param force
+	 *            the x and y of the force to add to
+	 */
+	void addRepulsion(int i, double strength, double minDistance,
+			double theta, double[] force) {
+		if (cells == 0)
+			return;
+		double xi = x[i], yi = y[i], fx = 0.0, fy = 0.0;
+		double min2 = minDistance * minDistance, theta2 = theta * theta;
+		int at = place[i];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int cell = stack[--top];
+			int from = lo[cell], to = hi[cell];
+			if (children[4 * cell] == -1 && children[4 * cell + 1] == -1
+					&& children[4 * cell + 2] == -1
+					&& children[4 * cell + 3] == -1) {
+				for (int p = from; p < to; p++) {
+					int j = order[p];
+					if (j == i)
+						continue;
+					double dx = xi - x[j], dy = yi - y[j];
+					double d2 = dx * dx + dy * dy;
+					if (d2 == 0.0)
+						continue;
+					if (d2 < min2)
+						d2 = min2;
+					fx += dx / d2;
+					fy += dy / d2;
+				}
+				continue;
+			}
+			int mass = to - from;
+			double dx = xi - sumX[cell] / mass, dy = yi - sumY[cell] / mass;
+			double d2 = dx * dx + dy * dy;
+			if ((at < from || at >= to)
+					&& width[cell] * width[cell] < theta2 * d2) {
+				if (d2 < min2)
+					d2 = min2;
+				fx += mass * dx / d2;
+				fy += mass * dy / d2;
+				continue;
+			}
+			for (int q = 0; q < 4; q++)
+				if (children[4 * cell + q] != -1)
+					stack[top++] = children[4 * cell + q];
+		}
+		force[0] += strength * fx;
+		force[1] += strength * fy;
+	}
+
+	/** The default opening criterion. */
+	static final double DEFAULT_OPENING_CRITERION = 0.8;
+
+	/** How deep cells may go, for points on top of each other. */
+	private static final int MAX_DEPTH = 48;
+
+	/** The coordinates of the points. */
+	private double[] x, y;
+
+	/**
+	 * The points, in an order where the points of each cell are together;
+	 * the place of each point in that order; and the lowest cell each point
+	 * is in.
+	 */
+	private int[] order, place, leafOf;
+
+	/** Room for sorting points by quadrant. */
+	private int[] scratch;
+
+	/** The number of cells. The root is cell 0. */
+	private int cells = 0;
+
+	/** The places in {@link #order} of the points of each cell. */
+	private int[] lo, hi;
+
+	/** The cell above each cell, or -1 for the root. */
+	private int[] parent;
+
+	/** The four cells below each cell, or -1 where a quadrant is empty. */
+	private int[] children;
+
+	/**
+	 * The least x and y and greatest x and y of the points of each cell, and
+	 * the larger of the width and height of that box.
+	 */
+	private double[] box, width;
+
+	/** The sums of the coordinates of the points of each cell. */
+	private double[] sumX, sumY;
+
+	/** The cells yet to visit in {@link #addRepulsion}. */
+	private int[] stack = new int[4 * (MAX_DEPTH + 2)];
+}
@@ -22,7 +22,6 @@ package automata.graph.layout;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Random;
 import java.util.Set;
 import java.awt.Dimension;
 import java.awt.geom.Point2D;
@@ -98,12 +97,15 @@ public class RandomLayoutAlgorithm extends LayoutAlgorithm {
 		shiftOntoScreen(graph, size, vertexDim, vertexBuffer, true);
 	}
 	
+	public boolean isRandomized() {
+		return true;
+	}
+	
 	/**
 	 * This method creates random points and assigns all movable vertices to the VertexChain
 	 */
 	private void assignPointsAndVertices() {
 		double x, y;		
-		Random random = new Random();				
 		points = new ArrayList();		
 		for (int i=0; i<vertices.size(); i++) {			
 			x = random.nextDouble() * (size.getWidth() - vertexBuffer * 2);
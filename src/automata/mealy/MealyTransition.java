@@ -117,6 +117,16 @@ public class MealyTransition extends Transition
         return myLabel;
     }
     
+    /**
+     * Returns the input this transition reads, that is, its label.
+     * 
+     * @return the label for this transition
+     */
+    public String getInput()
+    {
+        return getLabel();
+    }
+    
     /**
      * Returns the output for this transition.
      * 
@@ -25,6 +25,7 @@ import gui.environment.Universe;
 import java.util.*;
 
 import automata.State;
+import automata.event.AutomataStateEvent;
 
 /**
  * A <code>MooreMachine</code> is a special subclass of a
@@ -85,6 +86,8 @@ public class MooreMachine extends MealyMachine
             myMap.put(state, "");
         else
             myMap.put(state, output);
+        distributeStateEvent(new AutomataStateEvent(this, state, false,
+                false, true));
     }
     
     /**
@@ -394,11 +394,17 @@ public class PDAToCFGConverter {
 
 	/**
 	 * Returns a ContextFreeGrammar object that represents a grammar equivalent
-	 * to <CODE>automaton</CODE>.
+	 * to <CODE>automaton</CODE>. Only the productions from
+	 * {@link #getUsefulProductions} are made, and each variable is named by a
+	 * single uppercase character, starting with the letters and going on
+	 * through the other uppercase characters once those run out.
 	 * 
 	 * @param automaton
 	 *            the automaton.
 	 * @return a cfg equivalent to <CODE>automaton</CODE>.
+	 * @throws UnsupportedOperationException
+	 *             if the grammar needs more variables than there are
+	 *             uppercase characters
 	 */
 	public ContextFreeGrammar convertToContextFreeGrammar(Automaton automaton) {
 		/** check if automaton is pda. */
@@ -411,24 +417,285 @@ public class PDAToCFGConverter {
 					"automaton not in correct form for conversion to CFG");
 
 		initializeConverter();
+		ArrayList list = getUsefulProductions(automaton);
 
-		ArrayList list = new ArrayList();
-		ContextFreeGrammar grammar = new ContextFreeGrammar();
-
+		// Input symbols may not be used as variables.
+		HashSet reserved = new HashSet();
+		reserved.add(START_SYMBOL);
 		Transition[] transitions = automaton.getTransitions();
 		for (int k = 0; k < transitions.length; k++) {
-			list.addAll(createProductionsForTransition(transitions[k],
-					automaton));
+			String read = ((PDATransition) transitions[k]).getInputToRead();
+			for (int i = 0; i < read.length(); i++)
+				reserved.add(read.substring(i, i + 1));
 		}
 
+		ContextFreeGrammar grammar = new ContextFreeGrammar();
+		char next = 'A';
 		Iterator it = list.iterator();
 		while (it.hasNext()) {
 			Production p = (Production) it.next();
+			String rhs = p.getRHS();
+			int leftIndex = rhs.indexOf('(');
+			String[] variables = leftIndex == -1 ? new String[] { p.getLHS() }
+					: new String[] { p.getLHS(),
+							rhs.substring(leftIndex, rhs.indexOf(')') + 1),
+							rhs.substring(rhs.indexOf(')') + 1) };
+			for (int i = 0; i < variables.length; i++) {
+				if (MAP.get(variables[i]) != null)
+					continue;
+				if (isStartSymbol(variables[i], automaton)) {
+					MAP.put(variables[i], START_SYMBOL);
+					continue;
+				}
+				while (next != Character.MAX_VALUE
+						&& (!Character.isUpperCase(next) || reserved
+								.contains(String.valueOf(next))))
+					next++;
+				if (next == Character.MAX_VALUE)
+					throw new UnsupportedOperationException(
+							"The grammar needs more variables than there are "
+									+ "uppercase characters!");
+				MAP.put(variables[i], String.valueOf(next++));
+			}
 			grammar.addProduction(getSimplifiedProduction(p));
 		}
-
+		grammar.setStartVariable(START_SYMBOL);
 		return grammar;
 	}
+
+	/**
+	 * Returns the productions of the grammar for <CODE>automaton</CODE> that
+	 * can take part in the derivation of a string of terminals from the start
+	 * variable, with variables written as in the other methods (e.g.
+	 * "(q1Aq3)"). Rather than making productions for every pair of states for
+	 * each transition that pushes two characters, and throwing out those that
+	 * are useless afterwards, the productions are found from the bottom up: a
+	 * variable (pXq) is made only once it is known to derive a string of
+	 * terminals, and a production for a push two transition is made only when
+	 * both variables on its right hand side are. The productions not
+	 * reachable from the start variable are then dropped. The automaton must
+	 * be in the correct form for conversion.
+	 * 
+	 * @param automaton
+	 *            the automaton
+	 * @return the list of useful productions, those on the start variable
+	 *         first
+	 */
+	public ArrayList getUsefulProductions(Automaton automaton) {
+		State[] states = automaton.getStates();
+		HashMap stateIndex = new HashMap();
+		for (int k = 0; k < states.length; k++)
+			stateIndex.put(states[k], new Integer(k));
+		// Push two transitions indexed by their first and their second pushed
+		// symbol.
+		HashMap byFirstPush = new HashMap(), bySecondPush = new HashMap();
+		ArrayList pending = new ArrayList();
+		Triples triples = new Triples(states);
+		Transition[] transitions = automaton.getTransitions();
+		for (int k = 0; k < transitions.length; k++) {
+			PDATransition t = (PDATransition) transitions[k];
+			int from = ((Integer) stateIndex.get(t.getFromState())).intValue();
+			int to = ((Integer) stateIndex.get(t.getToState())).intValue();
+			if (isPushLambdaTransition(t)) {
+				triples.addProduction(triples.get(from, t.getStringToPop(), to),
+						t.getInputToRead(), -1, -1, pending);
+			} else if (isPushTwoTransition(t)) {
+				String push = t.getStringToPush();
+				addToList(byFirstPush, to + push.substring(0, 1), t);
+				addToList(bySecondPush, push.substring(1), t);
+			}
+		}
+
+		// Ends of the variables found so far, by start and stack symbol.
+		HashMap ends = new HashMap();
+		while (!pending.isEmpty()) {
+			int id = ((Integer) pending.remove(pending.size() - 1)).intValue();
+			int u = triples.from(id), v = triples.to(id);
+			String w = triples.symbol(id);
+			addToList(ends, u + w, new Integer(v));
+			// As the first variable: (pXq) -> a (uWv)(vZq).
+			ArrayList list = (ArrayList) byFirstPush.get(u + w);
+			for (int i = 0; list != null && i < list.size(); i++) {
+				PDATransition t = (PDATransition) list.get(i);
+				int p = ((Integer) stateIndex.get(t.getFromState())).intValue();
+				String z = t.getStringToPush().substring(1);
+				ArrayList qs = (ArrayList) ends.get(v + z);
+				for (int j = 0; qs != null && j < qs.size(); j++) {
+					int q = ((Integer) qs.get(j)).intValue();
+					triples.addProduction(triples.get(p, t.getStringToPop(), q),
+							t.getInputToRead(), id, triples.get(v, z, q),
+							pending);
+				}
+			}
+			// As the second variable: (pXv) -> a (rYu)(uWv).
+			list = (ArrayList) bySecondPush.get(w);
+			for (int i = 0; list != null && i < list.size(); i++) {
+				PDATransition t = (PDATransition) list.get(i);
+				int r = ((Integer) stateIndex.get(t.getToState())).intValue();
+				int first = triples.find(r, t.getStringToPush().substring(0, 1),
+						u);
+				// A variable paired with itself was found just above.
+				if (first < 0 || first == id || !triples.isDone(first))
+					continue;
+				int p = ((Integer) stateIndex.get(t.getFromState())).intValue();
+				triples.addProduction(triples.get(p, t.getStringToPop(), v),
+						t.getInputToRead(), first, id, pending);
+			}
+			triples.setDone(id);
+		}
+
+		// Keep what is reachable from the start variable.
+		ArrayList productions = new ArrayList();
+		int start = triples.find(((Integer) stateIndex.get(automaton
+				.getInitialState())).intValue(), BOTTOM_OF_STACK,
+				((Integer) stateIndex.get(automaton.getFinalStates()[0]))
+						.intValue());
+		if (start < 0)
+			return productions;
+		HashSet reached = new HashSet();
+		reached.add(new Integer(start));
+		pending.add(new Integer(start));
+		while (!pending.isEmpty()) {
+			int id = ((Integer) pending.remove(0)).intValue();
+			ArrayList rules = triples.productions(id);
+			for (int i = 0; i < rules.size(); i++) {
+				int[] rule = (int[]) rules.get(i);
+				String rhs = triples.read(rule);
+				for (int k = 1; k < rule.length; k++) {
+					rhs = rhs.concat(triples.name(rule[k]));
+					if (reached.add(new Integer(rule[k])))
+						pending.add(new Integer(rule[k]));
+				}
+				productions.add(new Production(triples.name(id), rhs));
+			}
+		}
+		return productions;
+	}
+
+	/**
+	 * Adds a value to the list kept in a map for a key.
+	 */
+	private static void addToList(HashMap map, Object key, Object value) {
+		ArrayList list = (ArrayList) map.get(key);
+		if (list == null) {
+			list = new ArrayList();
+			map.put(key, list);
+		}
+		list.add(value);
+	}
+
+	/**
+	 * The variables (pXq) found by {@link #getUsefulProductions}, numbered in
+	 * the order they are found, with their productions. A production is kept
+	 * as an array of the index of the input it reads and the numbers of the
+	 * variables on its right hand side.
+	 */
+	private static class Triples {
+		Triples(State[] states) {
+			this.states = states;
+		}
+
+		/**
+		 * Returns the number of a variable, or -1 if it has not been found.
+		 */
+		int find(int from, String symbol, int to) {
+			Integer id = (Integer) ids.get(from + LEFT_PAREN + symbol
+					+ RIGHT_PAREN + to);
+			return id == null ? -1 : id.intValue();
+		}
+
+		/**
+		 * Returns the number of a variable, adding it if it is new.
+		 */
+		int get(int from, String symbol, int to) {
+			int id = find(from, symbol, to);
+			if (id >= 0)
+				return id;
+			ids.put(from + LEFT_PAREN + symbol + RIGHT_PAREN + to,
+					new Integer(variables.size()));
+			variables.add(new Variable(from, symbol, to));
+			return variables.size() - 1;
+		}
+
+		/**
+		 * Adds a production, queueing its left hand side if this is its first.
+		 */
+		void addProduction(int lhs, String read, int first, int second,
+				ArrayList pending) {
+			reads.add(read);
+			int[] rule = first < 0 ? new int[] { reads.size() - 1 }
+					: new int[] { reads.size() - 1, first, second };
+			ArrayList rules = productions(lhs);
+			if (rules.isEmpty())
+				pending.add(new Integer(lhs));
+			rules.add(rule);
+		}
+
+		private Variable variable(int id) {
+			return (Variable) variables.get(id);
+		}
+
+		int from(int id) {
+			return variable(id).from;
+		}
+
+		int to(int id) {
+			return variable(id).to;
+		}
+
+		String symbol(int id) {
+			return variable(id).symbol;
+		}
+
+		ArrayList productions(int id) {
+			return variable(id).productions;
+		}
+
+		String read(int[] rule) {
+			return (String) reads.get(rule[0]);
+		}
+
+		String name(int id) {
+			return LEFT_PAREN + states[from(id)].getName() + symbol(id)
+					+ states[to(id)].getName() + RIGHT_PAREN;
+		}
+
+		boolean isDone(int id) {
+			return variable(id).done;
+		}
+
+		void setDone(int id) {
+			variable(id).done = true;
+		}
+
+		private State[] states;
+
+		private HashMap ids = new HashMap();
+
+		private ArrayList variables = new ArrayList();
+
+		private ArrayList reads = new ArrayList();
+	}
+
+	/**
+	 * A variable (pXq) with its productions.
+	 */
+	private static class Variable {
+		Variable(int from, String symbol, int to) {
+			this.from = from;
+			this.symbol = symbol;
+			this.to = to;
+		}
+
+		int from, to;
+
+		String symbol;
+
+		ArrayList productions = new ArrayList();
+
+		/** If the variable has been paired with those found before it. */
+		boolean done = false;
+	}
 	
 	
 	/**
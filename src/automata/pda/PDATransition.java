@@ -80,6 +80,15 @@ public class PDATransition extends Transition {
 		return myInputToRead;
 	}
 
+	/**
+	 * Returns the input this transition reads, that is, its input to read.
+	 * 
+	 * @return the input to read for this transition
+	 */
+	public String getInput() {
+		return getInputToRead();
+	}
+
 	/**
 	 * Sets the input to read portion of the transition label for this
 	 * transition.
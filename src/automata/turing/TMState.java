@@ -21,7 +21,9 @@ package automata.turing;
 
 import automata.State;
 import java.awt.Point;
+import java.util.ArrayList;
 import automata.Automaton;
+import automata.Note;
 
 
 /**
@@ -45,17 +47,71 @@ public class TMState extends State{
     public TMState(TMState copyMe){ //do we really need a pointer to the parent?
         this(copyMe.getID(), (Point)copyMe.getPoint().clone(), copyMe.getAutomaton());
 
-        myInnerTuringMachine = (TuringMachine) copyMe.getInnerTM().clone(); //this should result in recursion until we reach a TMState whose inner TM does not contain states.
+        myInternalName = copyMe.myInternalName;
+        if (copyMe.myInnerShared) //a shared machine stays shared, so that it is copied only if it is ever needed
+            shareInnerTM(copyMe.myInnerTuringMachine);
+        else
+            setInnerTM((TuringMachine) copyMe.getInnerTM().clone()); //this should result in recursion until we reach a TMState whose inner TM does not contain states.
     }
 
     public void setInnerTM(TuringMachine tm){
         myInnerTuringMachine = tm;
+        myInnerShared = false;
         myInnerTuringMachine.setParent(this);
         assert (myInnerTuringMachine.getParent() == this);
     }
+
+    /**
+      * Gives this block a machine that other blocks may share, as when a file uses the same block many times.
+      * The shared machine is never changed; this block gets its own copy of it the first time {@link #getInnerTM} is called,
+      * since the caller may edit the machine or step out of it through its parent.
+      */
+    public void shareInnerTM(TuringMachine tm){
+        myInnerTuringMachine = tm;
+        myInnerShared = true;
+    }
+
+    /**
+      * Gives this block the machine of another block, which then shares it too, as when a file uses the machine of one
+      * tag for many blocks.  Neither block copies the machine until {@link #getInnerTM} is called on it.
+      */
+    public void shareInnerTMOf(TMState first){
+        TuringMachine machine = first.peekInnerTM();
+        first.shareInnerTM(machine);
+        shareInnerTM(machine);
+    }
+
+    /**
+      * Returns the machine of this block, copying it first if it is shared, so that it may be edited and its parent is this block.
+      */
     public TuringMachine getInnerTM(){
+        if (myInnerShared){
+            TuringMachine shared = myInnerTuringMachine;
+            TuringMachine copy = (TuringMachine) shared.clone();
+            ArrayList notes = shared.getNotes(); //clone() leaves out the notes
+            for (int k = 0; k < notes.size(); k++){
+                Note note = (Note) notes.get(k);
+                copy.addNote(new Note(note.getAutoPoint(), note.getText()));
+            }
+            setInnerTM(copy);
+        }
         return myInnerTuringMachine;
     }
+
+    /**
+      * Returns the machine of this block without copying it if it is shared, for reading it only, as when saving.
+      * The machine must not be changed, and its parent need not be this block.
+      */
+    public TuringMachine peekInnerTM(){
+        return myInnerTuringMachine;
+    }
+
+    /**
+      * Returns if the machine of this block is shared with other blocks, and not yet copied.
+      */
+    public boolean isInnerTMShared(){
+        return myInnerShared;
+    }
     public String getInternalName(){ //just for trying to preserve old way of saving.
         //ASSUME that ID's are Independent
         return myInternalName == null? myInternalName = "Machine"+ getID() : myInternalName; //create an internal name if one has not been assigned explicitly
@@ -66,4 +122,7 @@ public class TMState extends State{
 
     private String myInternalName = null;
 
+    /** If the inner machine is shared with other blocks, to be copied before it is handed out. */
+    private boolean myInnerShared = false;
+
 }
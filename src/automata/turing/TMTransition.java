@@ -135,6 +135,16 @@ public class TMTransition extends Transition {
 	public String getRead(int tape) {
 		return (String) toRead.get(tape);
 	}
+
+	/**
+	 * Returns the input this transition reads, that is, what it reads on the
+	 * first tape.
+	 * 
+	 * @return the input to read on the first tape
+	 */
+	public String getInput() {
+		return getRead(0);
+	}
 	
 	public void setRead(int tape, String symbol) {
 		toRead.set(tape, symbol);
@@ -237,10 +237,7 @@ public class TuringMachine extends Automaton {
       *
       */
     public final TMState createTMState(Point point) {
-		int i = 0;
-		while (getStateWithID(i) != null)
-			i++;
-		TMState state = new TMState(i, point, this);
+		TMState state = new TMState(getFreeID(), point, this);
 		addState(state);
 		return state;
 	}
@@ -304,10 +301,13 @@ public class TuringMachine extends Automaton {
 //		EDebug.print("finished");
     }
 
+    /**
+      * Maps the internal names of the blocks to their machines, for saving. Machines shared among blocks are not copied, so they must not be changed.
+      */
     public Map<String, TuringMachine> getBlockMap(){
         Map<String, TuringMachine> ret = new HashMap<String, TuringMachine>();
         for (TMState s: (Collection<TMState>) states) //that's right, EVERY state in TM has an inner Auto, even if that inner auto might be empty.
-            ret.put(s.getInternalName(), s.getInnerTM());
+            ret.put(s.getInternalName(), s.peekInnerTM());
          
         return ret;
     }
@@ -209,4 +209,183 @@ public class TuringToGrammarConverter {
 		return answer;
 	}
 
+
+	/**
+	 * Returns the productions of the grammar for a whole Turing machine one
+	 * at a time, so that they can be written out or added to a grammar
+	 * without all of them being held at once. The productions are those of
+	 * {@link #createProductionsForInit} and {@link #createProductionsForTransition}
+	 * for every transition, but each is made only when asked for and only once:
+	 * the productions made for the whole cross product of the tape alphabet are
+	 * enumerated by index, and a set of the transitions and final states already
+	 * covered stands in for a set of every production made.
+	 * 
+	 * @param machine
+	 *            the Turing machine to convert
+	 * @return an iterator over the productions of the grammar
+	 * @see file.XMLCodec#encodeProductions
+	 */
+	public Iterator<Production> productions(TuringMachine machine)
+	{
+		final Transition[] transitions=machine.getTransitions();
+		final Production[] init=createProductionsForInit(machine.getInitialState(), transitions);
+		final HashSet<Integer> finalStates=new HashSet<Integer>();
+		State[] states=machine.getFinalStates();
+		for (int i=0; i<states.length; i++)
+			finalStates.add(states[i].getID());
+		final String[] readable=myAllReadableString.toArray(new String[0]);
+		final String[] writable=myAllWritableString.toArray(new String[0]);
+
+		return new Iterator<Production>() {
+			public boolean hasNext()
+			{
+				while (index>=size)
+				{
+					if (!nextBlock())
+						return false;
+				}
+				return true;
+			}
+
+			public Production next()
+			{
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return block.get(index++);
+			}
+
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+
+			/**
+			 * Moves on to the next block of productions not yet made.
+			 */
+			private boolean nextBlock()
+			{
+				index=0;
+				size=0;
+				if (block==null)
+				{
+					block=new Block(init.length) {
+						Production get(int i)
+						{
+							return init[i];
+						}
+					};
+					size=block.size;
+					return true;
+				}
+				if (!pending.isEmpty())
+				{
+					block=pending.remove(0);
+					size=block.size;
+					return true;
+				}
+				while (transition<transitions.length)
+				{
+					TMTransition trans=(TMTransition)transitions[transition];
+					if (tape>=trans.getTapeLength())
+					{
+						transition++;
+						tape=0;
+						continue;
+					}
+					addBlocks(trans, tape++);
+					if (!pending.isEmpty())
+						return nextBlock();
+				}
+				return false;
+			}
+
+			/**
+			 * Queues the blocks of new productions for one tape of a
+			 * transition.
+			 */
+			private void addBlocks(TMTransition trans, int i)
+			{
+				final String direction=trans.getDirection(i);
+				if (!direction.equals("R") && !direction.equals("L"))
+					return;
+				final String fromState=""+trans.getFromState().getID();
+				final String toState=""+trans.getToState().getID();
+				String read=trans.getRead(i);
+				String write=trans.getWrite(i);
+				if (read.equals(SQUARE_SYMBOL))
+					read=SQUARE;
+				if (write.equals(SQUARE_SYMBOL))
+					write=SQUARE;
+				final String moved=VAR_START+fromState+read+VAR_END;
+				final String written=VAR_START+write+VAR_END;
+				final int r=readable.length, w=writable.length;
+				if (covered.add(direction+moved+written+toState))
+				{
+					pending.add(new Block(r*r*w) {
+						Production get(int k)
+						{
+							String p=readable[k/(r*w)], a=readable[k/w%r], q=writable[k%w];
+							String head=VAR_START+a+moved.substring(VAR_START.length());
+							String cell=VAR_START+p+q+VAR_END;
+							String rhsHead=VAR_START+a+written.substring(VAR_START.length());
+							String rhsCell=VAR_START+p+toState+q+VAR_END;
+							if (direction.equals("R"))
+								return new Production(head+cell, rhsHead+rhsCell);
+							return new Production(cell+head, rhsCell+rhsHead);
+						}
+					});
+				}
+				if (!finalStates.contains(trans.getToState().getID()))
+					return;
+				if (covered.add(VAR_END+toState))
+				{
+					pending.add(new Block(r*w) {
+						Production get(int k)
+						{
+							String p=readable[k/w], q=writable[k%w];
+							return new Production(VAR_START+p+toState+q+VAR_END, p);
+						}
+					});
+				}
+				if (covered.add(VAR_END))
+				{
+					pending.add(new Block(2*r*r*w) {
+						Production get(int k)
+						{
+							String a=readable[k/2/(r*w)], p=readable[k/2/w%r], q=writable[k/2%w];
+							if (k%2==0)
+								return new Production(VAR_START+a+q+VAR_END+p, a+p);
+							return new Production(p+VAR_START+a+q+VAR_END, p+a);
+						}
+					});
+				}
+			}
+
+			private Block block=null;
+
+			private int index=0, size=0;
+
+			private int transition=0, tape=0;
+
+			private ArrayList<Block> pending=new ArrayList<Block>();
+
+			private HashSet<String> covered=new HashSet<String>();
+		};
+	}
+
+	/**
+	 * A run of productions made on demand from their index.
+	 */
+	private static abstract class Block
+	{
+		Block(int size)
+		{
+			this.size=size;
+		}
+
+		abstract Production get(int i);
+
+		final int size;
+	}
+
 }
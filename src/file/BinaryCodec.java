@@ -0,0 +1,660 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package file;
+
+import automata.Automaton;
+import automata.Note;
+import automata.State;
+import automata.Transition;
+import automata.fsa.FSATransition;
+import automata.fsa.FiniteStateAutomaton;
+import automata.mealy.MealyMachine;
+import automata.mealy.MealyTransition;
+import automata.mealy.MooreMachine;
+import automata.mealy.MooreTransition;
+import automata.pda.PDATransition;
+import automata.pda.PushdownAutomaton;
+import automata.turing.TMState;
+import automata.turing.TMTransition;
+import automata.turing.TuringMachine;
+import grammar.Grammar;
+import grammar.Production;
+import grammar.UnboundGrammar;
+
+import java.awt.Point;
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * This is the codec for reading and writing automata and grammars in a
+ * compact binary format, for machines too large to keep as XML. A file is
+ * a header, a table of every distinct string in the structure, and then the
+ * structure itself as a run of variable length integers: states and
+ * transitions refer to strings by their place in the table, and transitions
+ * refer to states by their place in the list of states. The coordinates of
+ * states and the control points of transitions are optional. The machine of
+ * a building block is written once however many blocks share it, and later
+ * blocks refer to it by the order in which the machines were written.
+ * <P>
+ *
+ * A file is read from a memory mapped buffer, so the states and transitions
+ * are made straight from the bytes of the file.
+ *
+ * @see XMLCodec
+ */
+
+public class BinaryCodec extends Codec {
+	/**
+	 * Determines which files this file filter will allow, those with the
+	 * suffix for this format.
+	 *
+	 * @param f
+	 *            the file to check for acceptance
+	 * @return if the file is a directory or a binary JFLAP file
+	 */
+	public boolean accept(File f) {
+		return f.isDirectory() || f.getName().endsWith(SUFFIX);
+	}
+
+	/**
+	 * Given a file, this will return a JFLAP structure associated with that
+	 * file.
+	 *
+	 * @param file
+	 *            the file to decode into a structure
+	 * @param parameters
+	 *            these parameters are ignored
+	 * @return a JFLAP structure resulting from the interpretation of the file
+	 * @throws ParseException
+	 *             if there was a problem reading the file
+	 */
+	public Serializable decode(File file, Map parameters) {
+		FileInputStream stream = null;
+		try {
+			stream = new FileInputStream(file);
+			FileChannel channel = stream.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			return new BinaryReader(buffer).read();
+		} catch (BufferUnderflowException e) {
+			throw new ParseException("The binary file ends too soon!");
+		} catch (IllegalArgumentException e) {
+			throw new ParseException("Bad binary file: " + e.getMessage());
+		} catch (IndexOutOfBoundsException e) {
+			throw new ParseException("Bad binary file!");
+		} catch (NegativeArraySizeException e) {
+			throw new ParseException("Bad binary file!");
+		} catch (IOException e) {
+			throw new ParseException("Could not open file to read!");
+		} finally {
+			try {
+				if (stream != null)
+					stream.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Given a structure, this will attempt to write the structure to a file.
+	 *
+	 * @param structure
+	 *            the structure to encode
+	 * @param file
+	 *            the file to save the structure to
+	 * @param parameters
+	 *            if this maps {@link #LAYOUT} to <CODE>Boolean.FALSE</CODE>,
+	 *            the coordinates of the states and the control points of the
+	 *            transitions are left out
+	 * @return the file to which the structure was written
+	 * @throws EncodeException
+	 *             if there was a problem writing the file
+	 */
+	public File encode(Serializable structure, File file, Map parameters) {
+		if (!canEncode(structure))
+			throw new EncodeException(
+					"No binary format available for this structure!");
+		boolean layout = parameters == null
+				|| !Boolean.FALSE.equals(parameters.get(LAYOUT));
+		BinaryWriter writer = new BinaryWriter(layout);
+		if (structure instanceof Grammar)
+			writer.writeGrammar((Grammar) structure);
+		else
+			writer.writeAutomaton((Automaton) structure);
+		OutputStream stream = null;
+		try {
+			stream = new BufferedOutputStream(new FileOutputStream(file));
+			writer.writeTo(stream, type(structure));
+			stream.close();
+			stream = null;
+			return file;
+		} catch (IOException e) {
+			throw new EncodeException("Could not open file to write!");
+		} finally {
+			try {
+				if (stream != null)
+					stream.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Returns the code in the header of a file for a type of structure.
+	 *
+	 * @param structure
+	 *            the structure
+	 * @return the code for the type of structure, or -1 if this format does
+	 *         not hold structures of this type
+	 */
+	private static int type(Serializable structure) {
+		if (structure instanceof Grammar)
+			return GRAMMAR;
+		if (structure instanceof MooreMachine)
+			return MOORE;
+		if (structure instanceof MealyMachine)
+			return MEALY;
+		if (structure instanceof TuringMachine)
+			return TURING;
+		if (structure instanceof PushdownAutomaton)
+			return PDA;
+		if (structure instanceof FiniteStateAutomaton)
+			return FSA;
+		return -1;
+	}
+
+	/**
+	 * Returns if this type of structure can be encoded with this encoder. This
+	 * format holds finite state, pushdown, Mealy, Moore, and Turing machines,
+	 * and grammars.
+	 *
+	 * @param structure
+	 *            the structure to check
+	 * @return if the structure could be written to a file
+	 */
+	public boolean canEncode(Serializable structure) {
+		return type(structure) != -1;
+	}
+
+	/**
+	 * Returns the description of this codec.
+	 *
+	 * @return the description of this codec
+	 */
+	public String getDescription() {
+		return "JFLAP Binary File";
+	}
+
+	/**
+	 * Given a proposed filename, returns a new suggested filename with the
+	 * suffix for this format appended to it.
+	 *
+	 * @param filename
+	 *            the proposed name
+	 * @param structure
+	 *            the structure that will be saved
+	 * @return the new suggestion for a name
+	 */
+	public String proposeFilename(String filename, Serializable structure) {
+		if (!filename.endsWith(SUFFIX))
+			return filename + SUFFIX;
+		return filename;
+	}
+
+	/**
+	 * The writing of one structure. The body of the file is written to memory
+	 * as the strings are gathered into the table, since the table comes
+	 * first in the file.
+	 */
+	private static class BinaryWriter {
+		BinaryWriter(boolean layout) {
+			this.layout = layout;
+		}
+
+		/**
+		 * Writes the header, the string table, and the body.
+		 */
+		void writeTo(OutputStream stream, int type) throws IOException {
+			stream.write(MAGIC);
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			writeInt(header, VERSION);
+			writeInt(header, type);
+			writeInt(header, layout ? HAS_LAYOUT : 0);
+			writeInt(header, table.size());
+			header.writeTo(stream);
+			for (int i = 0; i < table.size(); i++) {
+				byte[] bytes = ((String) table.get(i)).getBytes("UTF-8");
+				header.reset();
+				writeInt(header, bytes.length);
+				header.writeTo(stream);
+				stream.write(bytes);
+			}
+			body.writeTo(stream);
+		}
+
+		void writeGrammar(Grammar grammar) {
+			Production[] productions = grammar.getProductions();
+			writeInt(body, productions.length);
+			for (int i = 0; i < productions.length; i++) {
+				writeString(productions[i].getLHS());
+				writeString(productions[i].getRHS());
+			}
+		}
+
+		void writeAutomaton(Automaton automaton) {
+			if (automaton instanceof TuringMachine)
+				writeInt(body, ((TuringMachine) automaton).tapes());
+			State[] states = automaton.getStates();
+			Map index = new HashMap();
+			writeInt(body, states.length);
+			for (int i = 0; i < states.length; i++) {
+				State state = states[i];
+				index.put(state, new Integer(i));
+				writeSigned(state.getID());
+				writeString(state.getName());
+				writeString(state.getLabel());
+				int flags = 0;
+				if (automaton.getInitialState() == state)
+					flags |= INITIAL;
+				if (automaton.isFinalState(state))
+					flags |= FINAL;
+				writeInt(body, flags);
+				if (layout) {
+					writeSigned(state.getPoint().x);
+					writeSigned(state.getPoint().y);
+				}
+				if (automaton instanceof MooreMachine)
+					writeString(((MooreMachine) automaton).getOutput(state));
+				if (state instanceof TMState)
+					writeBlock((TMState) state);
+			}
+			Transition[] transitions = automaton.getTransitions();
+			writeInt(body, transitions.length);
+			for (int i = 0; i < transitions.length; i++) {
+				Transition t = transitions[i];
+				writeInt(body, ((Integer) index.get(t.getFromState()))
+						.intValue());
+				writeInt(body, ((Integer) index.get(t.getToState()))
+						.intValue());
+				if (layout) {
+					Point control = t.getControl();
+					writeInt(body, control == null ? 0 : 1);
+					if (control != null) {
+						writeSigned(control.x);
+						writeSigned(control.y);
+					}
+				}
+				writeTransition(t);
+			}
+			List notes = automaton.getNotes();
+			writeInt(body, notes.size());
+			for (int i = 0; i < notes.size(); i++) {
+				Note note = (Note) notes.get(i);
+				writeString(note.getText());
+				writeSigned(note.getLocation().x);
+				writeSigned(note.getLocation().y);
+			}
+		}
+
+		/**
+		 * Writes the name and machine of a building block. A machine written
+		 * before, for another block that shares it, is written as its place
+		 * in the order the machines were written, plus one; a machine not
+		 * yet written is written as 0 and then in full.
+		 */
+		private void writeBlock(TMState block) {
+			writeString(block.getInternalName());
+			TuringMachine machine = block.peekInnerTM();
+			Integer i = (Integer) machines.get(machine);
+			if (i != null) {
+				writeInt(body, i.intValue() + 1);
+				return;
+			}
+			machines.put(machine, new Integer(machines.size()));
+			writeInt(body, 0);
+			writeAutomaton(machine);
+		}
+
+		/**
+		 * Writes what the transition reads, and what else it does, for each
+		 * kind of transition.
+		 */
+		private void writeTransition(Transition transition) {
+			if (transition instanceof MooreTransition) {
+				// The output is that of the state the transition goes to.
+				writeString(((MooreTransition) transition).getLabel());
+			} else if (transition instanceof MealyTransition) {
+				MealyTransition t = (MealyTransition) transition;
+				writeString(t.getLabel());
+				writeString(t.getOutput());
+			} else if (transition instanceof TMTransition) {
+				TMTransition t = (TMTransition) transition;
+				writeInt(body, t.isBlockTransition() ? 1 : 0);
+				for (int i = 0; i < t.tapes(); i++) {
+					writeString(t.getRead(i));
+					writeString(t.getWrite(i));
+					writeString(t.getDirection(i));
+				}
+			} else if (transition instanceof PDATransition) {
+				PDATransition t = (PDATransition) transition;
+				writeString(t.getInputToRead());
+				writeString(t.getStringToPop());
+				writeString(t.getStringToPush());
+			} else {
+				writeString(((FSATransition) transition).getLabel());
+			}
+		}
+
+		/**
+		 * Writes the place of a string in the table, plus one, adding the
+		 * string to the table if it is not there yet. A <CODE>null</CODE>
+		 * string is written as 0.
+		 */
+		private void writeString(String string) {
+			if (string == null) {
+				writeInt(body, 0);
+				return;
+			}
+			Integer i = (Integer) strings.get(string);
+			if (i == null) {
+				i = new Integer(table.size());
+				strings.put(string, i);
+				table.add(string);
+			}
+			writeInt(body, i.intValue() + 1);
+		}
+
+		/**
+		 * Writes a signed integer, so that numbers near zero of either sign
+		 * take few bytes.
+		 */
+		private void writeSigned(int n) {
+			writeInt(body, (n << 1) ^ (n >> 31));
+		}
+
+		/**
+		 * Writes an integer seven bits at a time, low bits first, with the
+		 * high bit of each byte set if more bytes follow.
+		 */
+		private static void writeInt(ByteArrayOutputStream stream, int n) {
+			while ((n & ~0x7F) != 0) {
+				stream.write((n & 0x7F) | 0x80);
+				n >>>= 7;
+			}
+			stream.write(n);
+		}
+
+		/** If the coordinates are written. */
+		private boolean layout;
+
+		/** The body of the file, written after the string table. */
+		private ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		/** The strings of the table, in order. */
+		private List table = new ArrayList();
+
+		/** Maps strings to their place in the table. */
+		private Map strings = new HashMap();
+
+		/**
+		 * Maps the machines of building blocks, by identity, to the order in
+		 * which they were written.
+		 */
+		private Map machines = new IdentityHashMap();
+	}
+
+	/**
+	 * The reading of one structure from a buffer.
+	 */
+	private static class BinaryReader {
+		BinaryReader(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		Serializable read() throws IOException {
+			for (int i = 0; i < MAGIC.length; i++)
+				if (buffer.get() != MAGIC[i])
+					throw new ParseException("This is not a binary JFLAP file!");
+			version = readInt();
+			if (version > VERSION)
+				throw new ParseException("This binary file is of version "
+						+ version + ", newer than this JFLAP can read!");
+			int type = readInt();
+			layout = (readInt() & HAS_LAYOUT) != 0;
+			table = new String[readInt()];
+			for (int i = 0; i < table.length; i++) {
+				byte[] bytes = new byte[readInt()];
+				buffer.get(bytes);
+				table[i] = new String(bytes, "UTF-8");
+			}
+			switch (type) {
+			case GRAMMAR:
+				return readGrammar();
+			case FSA:
+				return readAutomaton(new FiniteStateAutomaton(), type);
+			case PDA:
+				return readAutomaton(new PushdownAutomaton(), type);
+			case TURING:
+				return readAutomaton(new TuringMachine(readInt()), type);
+			case MEALY:
+				return readAutomaton(new MealyMachine(), type);
+			case MOORE:
+				return readAutomaton(new MooreMachine(), type);
+			default:
+				throw new ParseException("Unknown structure type " + type
+						+ " in binary file!");
+			}
+		}
+
+		private Grammar readGrammar() {
+			Grammar grammar = new UnboundGrammar();
+			int n = readInt();
+			for (int i = 0; i < n; i++) {
+				String left = readString(), right = readString();
+				grammar.addProduction(new Production(left, right));
+			}
+			return grammar;
+		}
+
+		private Automaton readAutomaton(Automaton automaton, int type) {
+			automaton.beginBulkUpdate();
+			try {
+				State[] states = new State[readInt()];
+				int columns = (int) Math.ceil(Math.sqrt(states.length));
+				for (int i = 0; i < states.length; i++) {
+					int id = readSigned();
+					String name = readString(), label = readString();
+					int flags = readInt();
+					Point point = layout ? new Point(readSigned(),
+							readSigned()) : new Point(60 + 80 * (i % columns),
+							60 + 80 * (i / columns));
+					State state;
+					if (type == TURING)
+						state = ((TuringMachine) automaton).createTMStateWithID(
+								point, id);
+					else
+						state = automaton.createStateWithId(point, id);
+					states[i] = state;
+					if (name != null)
+						state.setName(name);
+					state.setLabel(label);
+					if ((flags & INITIAL) != 0)
+						automaton.setInitialState(state);
+					if ((flags & FINAL) != 0)
+						automaton.addFinalState(state);
+					if (type == MOORE)
+						((MooreMachine) automaton).setOutput(state, readString());
+					if (type == TURING)
+						readBlock((TMState) state);
+				}
+				int n = readInt();
+				for (int i = 0; i < n; i++) {
+					State from = states[readInt()], to = states[readInt()];
+					Point control = null;
+					if (layout && readInt() != 0)
+						control = new Point(readSigned(), readSigned());
+					Transition transition = readTransition(from, to, type);
+					automaton.addTransition(transition);
+					transition.setControl(control);
+				}
+				n = readInt();
+				for (int i = 0; i < n; i++) {
+					String text = readString();
+					automaton.addNote(new Note(new Point(readSigned(),
+							readSigned()), text));
+				}
+			} finally {
+				automaton.endBulkUpdate();
+			}
+			return automaton;
+		}
+
+		/**
+		 * Reads the name and machine of a building block written by
+		 * {@link BinaryWriter#writeBlock}. A block that refers to a machine
+		 * read before shares it with the first block it was read for, in the
+		 * way blocks of one tag share a machine read from XML. Files of the
+		 * first version have every machine in full.
+		 */
+		private void readBlock(TMState block) {
+			block.setInternalName(readString());
+			int i = version < SHARED_BLOCKS ? 0 : readInt();
+			if (i != 0) {
+				block.shareInnerTMOf((TMState) blocks.get(i - 1));
+				return;
+			}
+			TuringMachine machine = new TuringMachine(readInt());
+			blocks.add(block);
+			block.setInnerTM(machine);
+			readAutomaton(machine, TURING);
+		}
+
+		private Transition readTransition(State from, State to, int type) {
+			switch (type) {
+			case MOORE:
+				return new MooreTransition(from, to, readString());
+			case MEALY:
+				return new MealyTransition(from, to, readString(),
+						readString());
+			case TURING:
+				boolean block = readInt() != 0;
+				int tapes = ((TuringMachine) from.getAutomaton()).tapes();
+				String[] read = new String[tapes], write = new String[tapes], move = new String[tapes];
+				for (int i = 0; i < tapes; i++) {
+					read[i] = readString();
+					write[i] = readString();
+					move[i] = readString();
+				}
+				TMTransition t = new TMTransition(from, to, read, write, move);
+				t.setBlockTransition(block);
+				return t;
+			case PDA:
+				return new PDATransition(from, to, readString(), readString(),
+						readString());
+			default:
+				return new FSATransition(from, to, readString());
+			}
+		}
+
+		/**
+		 * Reads a string written by {@link BinaryWriter#writeString}.
+		 */
+		private String readString() {
+			int i = readInt();
+			return i == 0 ? null : table[i - 1];
+		}
+
+		/**
+		 * Reads a signed integer written by {@link BinaryWriter#writeSigned}.
+		 */
+		private int readSigned() {
+			int n = readInt();
+			return (n >>> 1) ^ -(n & 1);
+		}
+
+		/**
+		 * Reads an integer written by {@link BinaryWriter#writeInt}.
+		 */
+		private int readInt() {
+			int n = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = buffer.get();
+				n |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					return n;
+				if (shift > 28)
+					throw new ParseException("Bad number in binary file!");
+			}
+		}
+
+		/** The buffer being read. */
+		private ByteBuffer buffer;
+
+		/** If the file has the coordinates of states and control points. */
+		private boolean layout;
+
+		/** The string table. */
+		private String[] table;
+
+		/** The version of the format of the file. */
+		private int version;
+
+		/**
+		 * The first block read for each machine of a building block, in the
+		 * order the machines were written.
+		 */
+		private List blocks = new ArrayList();
+	}
+
+	/** The key of the parameter that says if coordinates are written. */
+	public static final String LAYOUT = "layout";
+
+	/** The filename suffix. */
+	public static final String SUFFIX = ".jffb";
+
+	/** The bytes every binary file starts with. */
+	private static final byte[] MAGIC = { 'J', 'F', 'L', 'B' };
+
+	/**
+	 * The version of the format written. Files of this or any earlier
+	 * version can be read.
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * The first version in which the machine of a building block is written
+	 * once and shared.
+	 */
+	private static final int SHARED_BLOCKS = 2;
+
+	/** The flag in the header for files that have coordinates. */
+	private static final int HAS_LAYOUT = 1;
+
+	/** The flags of a state. */
+	private static final int INITIAL = 1, FINAL = 2;
+
+	/** The codes for the types of structure. */
+	private static final int FSA = 0, PDA = 1, TURING = 2, MEALY = 3,
+			MOORE = 4, GRAMMAR = 5;
+}
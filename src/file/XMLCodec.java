@@ -22,8 +22,14 @@ package file;
 
 import file.xml.*;
 import java.io.*;
+import java.util.Iterator;
 import java.util.Map;
 import javax.xml.parsers.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import org.w3c.dom.*;
 import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
@@ -62,6 +68,9 @@ public class XMLCodec extends Codec {
 	 *             if there was a problem reading the file
 	 */
 	public Serializable decode(File file, Map parameters) {
+		Serializable structure = decodeStream(file);
+		if (structure != null)
+			return structure;
 		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 		try {
 			DocumentBuilder builder = factory.newDocumentBuilder();
@@ -82,6 +91,48 @@ public class XMLCodec extends Codec {
 		}
 	}
 
+	/**
+	 * Reads a file in one pass, without building a DOM, if the type of the
+	 * file has a {@link StreamTransducer} that can read the file as it is laid
+	 * out.
+	 * 
+	 * @param file
+	 *            the file to decode into a structure
+	 * @return the structure, or <CODE>null</CODE> if the file must be read
+	 *         through the DOM instead
+	 * @throws ParseException
+	 *             if there was a problem opening the file
+	 */
+	private Serializable decodeStream(File file) {
+		InputStream stream = null;
+		try {
+			stream = new BufferedInputStream(new FileInputStream(file));
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+			XMLStreamReader reader = factory.createXMLStreamReader(stream);
+			Transducer transducer;
+			try {
+				transducer = TransducerFactory.getTransducer(reader);
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+			if (!(transducer instanceof StreamTransducer))
+				return null;
+			return ((StreamTransducer) transducer).fromStream(reader);
+		} catch (XMLStreamException e) {
+			// Let the DOM parser report what is wrong.
+			return null;
+		} catch (IOException e) {
+			throw new ParseException("Could not open file to read!");
+		} finally {
+			try {
+				if (stream != null)
+					stream.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
 	/**
 	 * Given a structure, this will attempt to write the structure as a
 	 * serialized object to a file.
@@ -108,6 +159,8 @@ public class XMLCodec extends Codec {
              * lemma from the chooser.
              */
             Document dom;
+            if(transducer instanceof StreamTransducer && !(structure instanceof gui.pumping.PumpingLemmaChooser))
+                return encodeStream((StreamTransducer) transducer, structure, null, file);
             if(structure instanceof gui.pumping.PumpingLemmaChooser)
                 dom = transducer.toDOM(((gui.pumping.PumpingLemmaChooser)structure).getCurrent());
             else
@@ -131,6 +184,70 @@ public class XMLCodec extends Codec {
 		}
 	}
 
+	/**
+	 * Writes a grammar file holding the productions given by an iterator, in
+	 * one pass and without building the grammar. This is for grammars too
+	 * large to hold in memory, like those converted from Turing machines.
+	 * 
+	 * @param productions
+	 *            an iterator over the productions to write
+	 * @param file
+	 *            the file to save the grammar to
+	 * @return the file to which the grammar was written
+	 * @throws EncodeException
+	 *             if there was a problem writing the file
+	 * @see GrammarTransducer#toStream(Iterator, XMLStreamWriter)
+	 */
+	public File encodeProductions(Iterator productions, File file) {
+		return encodeStream(new GrammarTransducer(), null, productions, file);
+	}
+
+	/**
+	 * Writes a structure to a file in one pass, without building a DOM.
+	 * 
+	 * @param transducer
+	 *            the transducer for the structure
+	 * @param structure
+	 *            the structure to encode
+	 * @param productions
+	 *            if not <CODE>null</CODE>, the productions of a grammar to
+	 *            write instead of the structure, with a grammar transducer
+	 * @param file
+	 *            the file to save the structure to
+	 * @return the file to which the structure was written
+	 * @throws EncodeException
+	 *             if there was a problem writing the file
+	 */
+	private File encodeStream(StreamTransducer transducer,
+			Serializable structure, Iterator productions, File file) {
+		Writer out = null;
+		try {
+			out = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(file), "UTF-8"));
+			out.write(DECLARATION);
+			XMLStreamWriter writer = XMLOutputFactory.newInstance()
+					.createXMLStreamWriter(out);
+			if (productions != null)
+				((GrammarTransducer) transducer).toStream(productions, writer);
+			else
+				transducer.toStream(structure, writer);
+			writer.close();
+			out.close();
+			out = null;
+			return file;
+		} catch (IOException e) {
+			throw new EncodeException("Could not open file to write!");
+		} catch (XMLStreamException e) {
+			throw new EncodeException("Could not open file to write!");
+		} finally {
+			try {
+				if (out != null)
+					out.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
 	/**
 	 * Returns if this type of structure can be encoded with this encoder. This
 	 * should not perform a detailed check of the structure, since the user will
@@ -171,6 +288,9 @@ public class XMLCodec extends Codec {
 		return filename;
 	}
 
+	/** The XML declaration the DOM transformer writes. */
+	private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+
 	/** The filename suffix. */
 	public static final String SUFFIX = ".jff";
 }
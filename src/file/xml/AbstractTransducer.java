@@ -23,6 +23,10 @@ package file.xml;
 import java.util.Iterator;
 import java.util.Map;
 import javax.xml.parsers.*;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import org.w3c.dom.*;
 
 /**
@@ -137,16 +141,7 @@ public abstract class AbstractTransducer implements Transducer {
 	protected static Element createElement(Document document, String tagname,
 			Map attributes, String text) {
 		// Create the new element.
-        tagname = tagname.replaceAll("'", "");
-        tagname = tagname.replaceAll("&", "");
-        tagname = tagname.replaceAll("\"", "");
-        tagname = tagname.replaceAll("<", "");
-        tagname = tagname.replaceAll(">", "");
-        tagname = tagname.replaceAll(" ", "");
-
-        
-      //  System.out.println("TAG NAME = "+tagname);
-		Element element = document.createElement(tagname);
+		Element element = document.createElement(tagName(tagname));
 		// Set the attributes.
 		if (attributes != null) {
 			Iterator it = attributes.keySet().iterator();
@@ -162,6 +157,188 @@ public abstract class AbstractTransducer implements Transducer {
 		return element;
 	}
 
+	/**
+	 * Returns a tag name with the characters that may not be in one taken
+	 * out.
+	 * 
+	 * @param tagname
+	 *            the proposed tag name
+	 * @return the tag name to use
+	 */
+	protected static String tagName(String tagname) {
+        tagname = tagname.replaceAll("'", "");
+        tagname = tagname.replaceAll("&", "");
+        tagname = tagname.replaceAll("\"", "");
+        tagname = tagname.replaceAll("<", "");
+        tagname = tagname.replaceAll(">", "");
+        tagname = tagname.replaceAll(" ", "");
+		return tagname;
+	}
+
+	/**
+	 * Writes the start of a document to a stream, that is, the credit comment,
+	 * the start of the structure element, and the type element. This is the
+	 * stream version of {@link #newEmptyDocument}.
+	 * 
+	 * @param writer
+	 *            the stream to write to
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 */
+	protected void startStream(XMLStreamWriter writer)
+			throws XMLStreamException {
+		writer.writeComment("Created with JFLAP " + gui.AboutBox.VERSION + ".");
+		writer.writeStartElement(STRUCTURE_NAME);
+		writeElement(writer, STREAM_INDENT, STRUCTURE_TYPE_NAME, null,
+				getType());
+	}
+
+	/**
+	 * Writes the end of the structure element to a stream.
+	 * 
+	 * @param writer
+	 *            the stream to write to
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 */
+	protected static void endStream(XMLStreamWriter writer)
+			throws XMLStreamException {
+		writer.writeCharacters(NEWLINE);
+		writer.writeEndElement();
+		writer.writeEndDocument();
+	}
+
+	/**
+	 * Writes an element to a stream, indented as {@link DOMPrettier} would
+	 * indent the same element in a DOM.
+	 * 
+	 * @param writer
+	 *            the stream to write to
+	 * @param indent
+	 *            the new line and indentation to put before the element
+	 * @param tagname
+	 *            the tagname for the element
+	 * @param attributes
+	 *            a map from attribute names to attributes, or <CODE>null</CODE>
+	 *            if this element should have no attributes
+	 * @param text
+	 *            the text for the element, or <CODE>null</CODE> if the
+	 *            element should have no children
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 * @see #createElement
+	 */
+	protected static void writeElement(XMLStreamWriter writer, String indent,
+			String tagname, Map attributes, String text)
+			throws XMLStreamException {
+		writer.writeCharacters(indent);
+		if (text == null || text.length() == 0)
+			writer.writeEmptyElement(tagName(tagname));
+		else
+			writer.writeStartElement(tagName(tagname));
+		if (attributes != null) {
+			Iterator it = attributes.keySet().iterator();
+			while (it.hasNext()) {
+				String name = (String) it.next();
+				writer.writeAttribute(name, (String) attributes.get(name));
+			}
+		}
+		if (text == null || text.length() == 0)
+			return;
+		writer.writeCharacters(text);
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Writes a comment to a stream on a line of its own.
+	 * 
+	 * @param writer
+	 *            the stream to write to
+	 * @param indent
+	 *            the new line and indentation to put before the comment
+	 * @param comment
+	 *            the comment text
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 */
+	protected static void writeComment(XMLStreamWriter writer, String indent,
+			String comment) throws XMLStreamException {
+		writer.writeCharacters(indent);
+		writer.writeComment(comment);
+	}
+
+	/**
+	 * Moves a stream to the start of the next child element of the element it
+	 * is in.
+	 * 
+	 * @param reader
+	 *            the stream to read
+	 * @return <CODE>true</CODE> if the stream is at the start of a child
+	 *         element, or <CODE>false</CODE> if it is at the end of the
+	 *         element it was in
+	 * @throws XMLStreamException
+	 *             if the stream could not be read
+	 */
+	protected static boolean nextElement(XMLStreamReader reader)
+			throws XMLStreamException {
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				return true;
+			if (event == XMLStreamConstants.END_ELEMENT)
+				return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Reads an element from a stream, and returns its text. This is the
+	 * stream version of {@link #containedText}: only the first text directly
+	 * in the element is returned. The stream is left at the end of the
+	 * element.
+	 * 
+	 * @param reader
+	 *            the stream, at the start of an element
+	 * @return the text directly in the element, or <CODE>null</CODE> if there
+	 *         is none
+	 * @throws XMLStreamException
+	 *             if the stream could not be read
+	 */
+	protected static String readText(XMLStreamReader reader)
+			throws XMLStreamException {
+		String text = null;
+		int depth = 0;
+		while (true) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT) {
+				if (depth-- == 0)
+					return text;
+			} else if (depth == 0 && text == null && reader.isCharacters())
+				text = reader.getText();
+		}
+	}
+
+	/**
+	 * Reads an element from a stream, and returns the map of the names of
+	 * its child elements to their text. This is the stream version of
+	 * {@link #elementsToText}. The stream is left at the end of the element.
+	 * 
+	 * @param reader
+	 *            the stream, at the start of an element
+	 * @return the map from children element names to their textual contents
+	 * @throws XMLStreamException
+	 *             if the stream could not be read
+	 */
+	protected static Map readElementsToText(XMLStreamReader reader)
+			throws XMLStreamException {
+		Map e2t = new java.util.HashMap();
+		while (nextElement(reader))
+			e2t.put(reader.getLocalName(), readText(reader));
+		return e2t;
+	}
+
 	static {
 		try {
 			DocumentBuilderFactory factory = DocumentBuilderFactory
@@ -176,4 +353,12 @@ public abstract class AbstractTransducer implements Transducer {
 
 	/** The instance of the document builder. */
 	private static DocumentBuilder docBuilder;
+
+	/** The line separator that {@link DOMPrettier} puts between elements. */
+	protected static final String NEWLINE = System
+			.getProperty("line.separator");
+
+	/** The indentation of the children of the structure element. */
+	protected static final String STREAM_INDENT = NEWLINE
+			+ DOMPrettier.INDENT;
 }
@@ -24,9 +24,14 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -42,6 +47,7 @@ import automata.graph.layout.GEMLayoutAlgorithm;
 import automata.mealy.MooreMachine;
 import file.DataException;
 import automata.turing.TMState;
+import automata.turing.TMTransition;
 import automata.turing.TuringMachine;
 import debug.EDebug;
 
@@ -54,7 +60,8 @@ import java.awt.Point;
  * @author Thomas Finley
  */
 
-public abstract class AutomatonTransducer extends AbstractTransducer {
+public abstract class AutomatonTransducer extends AbstractTransducer
+		implements StreamTransducer {
 
 	/**
 	 * Returns an empty automaton of the correct type. This method is used by
@@ -66,6 +73,20 @@ public abstract class AutomatonTransducer extends AbstractTransducer {
 	 */
 	protected abstract Automaton createEmptyAutomaton(Document document);
 
+	/**
+	 * Returns an empty automaton of the correct type. This method is used by
+	 * {@link #fromStream}, and by default returns the same automaton as
+	 * {@link #createEmptyAutomaton(Document)}.
+	 * 
+	 * @param fields
+	 *            the elements to text of the children of the structure
+	 *            element that have been read
+	 * @return an empty automaton
+	 */
+	protected Automaton createEmptyAutomaton(Map fields) {
+		return createEmptyAutomaton((Document) null);
+	}
+
 	/**
 	 * Reads the states from the document and adds them to the automaton. Note
 	 * that in the event of error, the automaton may have been changed up until
@@ -143,6 +164,76 @@ public abstract class AutomatonTransducer extends AbstractTransducer {
 			Element stateNode = (Element) i2sn.get(id);
 			// Get the fields of this state.
 			Map e2t = elementsToText(stateNode);
+			// Read the machine of a building block, once for each tag.
+			Automaton inner = null;
+			String tag = null;
+			if (automaton instanceof TuringMachine && e2t.containsKey(FILE_NAME)) {
+				tag = e2t.get(FILE_NAME).toString();
+				TMState first = (TMState) blocksByTag.get(tag);
+				if (first != null) {
+					inner = first.peekInnerTM();
+				} else {
+					Node tempNode = document.getDocumentElement()
+							.getElementsByTagName(tag).item(0);
+					inner = (TuringMachine) readAutomaton(tempNode, document);
+				}
+			}
+			State state = addState(automaton, id, stateNode
+					.getAttribute(STATE_NAME_NAME), e2t, inner, locatedStates);
+			if (tag != null)
+				shareBlock(blocksByTag, tag, (TMState) state);
+			i2s.put(id, state);
+		}
+	}
+
+	/**
+	 * Records a block made with the machine of its tag. The first block of a
+	 * tag keeps the machine as its own, unless another block of the tag comes
+	 * along, when both share it; each then copies the machine only if it is
+	 * edited or simulated, as {@link TMState#getInnerTM} does.
+	 * 
+	 * @param blocksByTag
+	 *            maps tags to the first block made with each
+	 * @param tag
+	 *            the tag of the block
+	 * @param block
+	 *            the block, made with the machine of the first block of the
+	 *            tag if there is one
+	 */
+	private static void shareBlock(Map blocksByTag, String tag, TMState block) {
+		TMState first = (TMState) blocksByTag.get(tag);
+		if (first == null) {
+			blocksByTag.put(tag, block);
+			return;
+		}
+		block.shareInnerTMOf(first);
+	}
+
+	/**
+	 * Creates a state from the fields read for it, and adds it to the
+	 * automaton.
+	 * 
+	 * @param automaton
+	 *            the automaton to add the state to
+	 * @param id
+	 *            the ID of the state
+	 * @param name
+	 *            the name attribute of the state, or the empty string if it
+	 *            has none
+	 * @param e2t
+	 *            the elements to text of the state element
+	 * @param inner
+	 *            for a state of a Turing machine with a "tag" element, the
+	 *            machine the tag names
+	 * @param locatedStates
+	 *            if not <CODE>null</CODE>, the set to add the state to if it
+	 *            has its X and Y coordinates specified
+	 * @return the new state
+	 * @throws DataException
+	 *             if a coordinate could not be read
+	 */
+	protected State addState(Automaton automaton, Integer id, String name,
+			Map e2t, Automaton inner, Set locatedStates) {
 			// Create the state.
 			java.awt.Point p = new java.awt.Point();
 			boolean hasLocation = true;
@@ -170,30 +261,18 @@ public abstract class AutomatonTransducer extends AbstractTransducer {
 			p.setLocation(x, y);
 			// Create the state.
 			State state = null;
-//			if (!isBlock){
 			if (!(automaton instanceof TuringMachine)){
 				state = automaton.createStateWithId(p, id.intValue());
             }
+			else if (inner != null) {
+                    state = ((TuringMachine) automaton).createInnerTM(p, inner,
+                            e2t.get(FILE_NAME).toString(), id.intValue());
+			}
 			else {
-                Node tempNode = null;
-                if (e2t.containsKey(FILE_NAME)){
-                    String fileName = e2t.get(FILE_NAME).toString();
-                    tempNode = document.getDocumentElement()
-                            .getElementsByTagName(fileName).item(0);
-                    Automaton temp = (TuringMachine) readAutomaton(tempNode, document);
-                    //MERLIN MERLIN MERLIN MERLIN MERLIN//
-//                    EDebug.print("Are we or not creating a block?");
-                    state = ((TuringMachine) automaton).createInnerTM(p, temp, fileName,
-                            id.intValue());
-                }
-                else{
                      state = ((TuringMachine) automaton).createTMStateWithID(p, id.intValue());   
-                }
 			}
 			if (hasLocation && locatedStates != null)
 				locatedStates.add(state);
-			i2s.put(id, state);
-			String name = ((Element) stateNode).getAttribute(STATE_NAME_NAME);
 			if(name.equals("")) state.setName("q"+id.intValue());
             else state.setName(name);
              
@@ -211,8 +290,9 @@ public abstract class AutomatonTransducer extends AbstractTransducer {
              */
             if(automaton instanceof MooreMachine && e2t.containsKey(MooreTransducer.STATE_OUTPUT_NAME))
                 ((MooreMachine) automaton).setOutput(state, (String) e2t.get(MooreTransducer.STATE_OUTPUT_NAME));
-		}
+			return state;
 	}
+
 	//Add the blocks
 	protected void addBlocks(Node node, Automaton automaton, Set locatedStates,
 			Map i2s, Document document) {
@@ -262,6 +342,29 @@ public abstract class AutomatonTransducer extends AbstractTransducer {
 	protected abstract Transition createTransition(State from, State to,
 			Node node, Map e2t, boolean isBlock);
 
+	/**
+	 * Used by {@link #fromStream}, where there is no DOM node for the
+	 * transition. By default this calls the DOM version with a
+	 * <CODE>null</CODE> node, which does for those subclasses that only look
+	 * at the elements to text.
+	 * 
+	 * @param from
+	 *            the from state
+	 * @param to
+	 *            the to state
+	 * @param e2t
+	 *            elements to text of the transition
+	 * @param fields
+	 *            the child elements of the transition in order, each as an
+	 *            array of the element name, its text, and its "tape"
+	 *            attribute
+	 * @return the new transition
+	 */
+	protected Transition createTransition(State from, State to, Map e2t,
+			List fields, boolean isBlock) {
+		return createTransition(from, to, null, e2t, isBlock);
+	}
+
 	/**
 	 * Reads the transitions from the document and adds them to the automaton.
 	 * Note that in the event of error, the automaton may have been changed up
@@ -301,29 +404,52 @@ public abstract class AutomatonTransducer extends AbstractTransducer {
 			if(isBlock.equals("true")){
 				bool = true; //We have a block transition.
 			}
-			String fromName = (String) e2t.get(TRANSITION_FROM_NAME);
-			if (fromName == null)
-				throw new DataException("A transition has no from state!");
-			int id = parseID(fromName).intValue();
-			State from = automaton.getStateWithID(id);
-			if (from == null)
-				throw new DataException("A transition is defined from "
-						+ "non-existent state " + id + "!");
-			// Get the to state.
-			String toName = (String) e2t.get(TRANSITION_TO_NAME);
-			if (toName == null)
-				throw new DataException("A transition has no to state!");
-			id = parseID(toName).intValue();
-			State to = automaton.getStateWithID(id);
-			if (to == null)
-				throw new DataException("A transition is defined to "
-						+ "non-existent state " + id + "!");
+			State from = getTransitionState(automaton, e2t, TRANSITION_FROM_NAME);
+			State to = getTransitionState(automaton, e2t, TRANSITION_TO_NAME);
 			// Now, make the transition.
 			Transition transition = createTransition(from, to, tNode, e2t, bool);
 			automaton.addTransition(transition);
 			bool = false;
+			setControl(transition, e2t);
+		}
+	}
 
+	/**
+	 * Returns the state a transition is from or to.
+	 * 
+	 * @param automaton
+	 *            the automaton the transition is in
+	 * @param e2t
+	 *            the elements to text of the transition
+	 * @param end
+	 *            either {@link #TRANSITION_FROM_NAME} or
+	 *            {@link #TRANSITION_TO_NAME}
+	 * @return the state
+	 * @throws DataException
+	 *             in the case of an absent state
+	 */
+	private static State getTransitionState(Automaton automaton, Map e2t,
+			String end) {
+		String name = (String) e2t.get(end);
+		if (name == null)
+			throw new DataException("A transition has no " + end + " state!");
+		int id = parseID(name).intValue();
+		State state = automaton.getStateWithID(id);
+		if (state == null)
+			throw new DataException("A transition is defined " + end
+					+ " non-existent state " + id + "!");
+		return state;
+	}
 
+	/**
+	 * Sets the control point of a transition, if the file specifies it.
+	 * 
+	 * @param transition
+	 *            the transition
+	 * @param e2t
+	 *            the elements to text of the transition
+	 */
+	private static void setControl(Transition transition, Map e2t) {
             //deal with the shapiness of the transition, if the file specifies it. //add controlX and controlY
             String controlX = (String) e2t.get(TRANSITION_CONTROL_X);
             String controlY = (String) e2t.get(TRANSITION_CONTROL_Y);
@@ -334,7 +460,6 @@ public abstract class AutomatonTransducer extends AbstractTransducer {
             else{ //explicit is better than implicit
                 transition.setControl(null);
             }
-		}
 	}
 
 	/**
@@ -397,6 +522,7 @@ public abstract class AutomatonTransducer extends AbstractTransducer {
 	 */
 	public java.io.Serializable fromDOM(Document document) {
 		automatonMap.clear();
+		blocksByTag.clear();
 		Automaton a = createEmptyAutomaton(document);
         Node parent = document.getDocumentElement()
         .getElementsByTagName(AUTOMATON_NAME).item(0);
@@ -410,18 +536,82 @@ public abstract class AutomatonTransducer extends AbstractTransducer {
 		Set locatedStates = new java.util.HashSet();
 		Automaton root = createEmptyAutomaton(document);
         if(parent == null) return root;
-		readBlocks(parent, root, locatedStates, document);
-		// Read the states and transitions.
-		readTransitions(parent, root, readStates(parent, root, locatedStates,
-				document));
-		//read the notes
-		readnotes(parent, root, document);
-		// Do the layout if necessary.
-		performLayout(root, locatedStates);
+		root.beginBulkUpdate();
+		try {
+			readBlocks(parent, root, locatedStates, document);
+			// Read the states and transitions.
+			readTransitions(parent, root, readStates(parent, root,
+					locatedStates, document));
+			//read the notes
+			readnotes(parent, root, document);
+			// Do the layout if necessary.
+			performLayout(root, locatedStates);
+		} finally {
+			root.endBulkUpdate();
+		}
 		automatonMap.put(parent.getNodeName(), root);
 		return root;
 	}
 
+	/**
+	 * Reads the automaton from a stream. Files laid out as JFLAP writes them
+	 * are read in one pass, but where a file needs the whole DOM to be read
+	 * in the same way as {@link #fromDOM} would, as when a state appears
+	 * after the transitions, or the machine of a building block is not among
+	 * the siblings of the block, this returns <CODE>null</CODE>.
+	 * 
+	 * @param reader
+	 *            the stream to read from, just past the "type" element
+	 * @return the automaton read, or <CODE>null</CODE>
+	 * @throws XMLStreamException
+	 *             if the stream could not be read
+	 */
+	public Serializable fromStream(XMLStreamReader reader)
+			throws XMLStreamException {
+		Map fields = new java.util.HashMap();
+		Automaton automaton = null;
+		StreamReading loose = null;
+		while (nextElement(reader)) {
+			String name = reader.getLocalName();
+			if (name.equals(AUTOMATON_NAME)) {
+				if (loose != null)
+					return null;
+				if (automaton != null) {
+					readText(reader);
+					continue;
+				}
+				automaton = createEmptyAutomaton(fields);
+				StreamReading reading = new StreamReading(automaton, fields);
+				if (!reading.readChildren(reader) || !reading.finish())
+					return null;
+			} else if (name.equals(STATE_NAME) || name.equals(BLOCK_NAME)
+					|| name.equals(TRANSITION_NAME) || name.equals(NOTE_NAME)
+					|| (loose != null && loose.isWaiting(name))) {
+				// The old format, without the automaton element.
+				if (automaton != null && loose == null) {
+					readText(reader);
+					continue;
+				}
+				if (loose == null) {
+					automaton = createEmptyAutomaton(fields);
+					loose = new StreamReading(automaton, fields);
+				}
+				if (!loose.readChild(reader))
+					return null;
+			} else {
+				// The automaton was made without knowing this.
+				if (automaton != null)
+					return null;
+				fields.put(name, readText(reader));
+			}
+		}
+		if (loose != null && !loose.finish())
+			return null;
+		if (automaton == null)
+			automaton = createEmptyAutomaton(fields);
+		return automaton;
+	}
+
 	private void readnotes(Node parent, Automaton root, Document document) {
 
 		NodeList allNodes = parent.getChildNodes();
@@ -436,12 +626,25 @@ public abstract class AutomatonTransducer extends AbstractTransducer {
 			if (noteNode.getNodeType() != Node.ELEMENT_NODE)
 				continue;
 			
-			Map e2t = elementsToText(noteNode);
+			addNote(root, elementsToText(noteNode));
+		}
+	}
 
+	/**
+	 * Adds a note to an automaton.
+	 * 
+	 * @param root
+	 *            the automaton to add the note to
+	 * @param e2t
+	 *            the elements to text of the note
+	 * @throws DataException
+	 *             if a coordinate could not be read
+	 */
+	private static void addNote(Automaton root, Map e2t) {
 			java.awt.Point p = new java.awt.Point();
 			boolean hasLocation = true;
             Object obj = (e2t).get(NOTE_TEXT_NAME);
-            if(obj == null) continue;
+            if(obj == null) return;
 			String textString = obj.toString();
 			
 			// Try to get the X coord.
@@ -469,9 +672,6 @@ public abstract class AutomatonTransducer extends AbstractTransducer {
 			
 			
 			root.addNote(new Note(p, textString));
-		}
-		
-		
 	}
 
 	/**
@@ -714,8 +914,382 @@ public abstract class AutomatonTransducer extends AbstractTransducer {
 		return ne;
 	}
 
+	/**
+	 * Writes an automaton to a stream in the same form as {@link #toDOM}.
+	 * 
+	 * @param structure
+	 *            the JFLAP automaton to encode
+	 * @param writer
+	 *            the stream to write to
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 */
+	public void toStream(Serializable structure, XMLStreamWriter writer)
+			throws XMLStreamException {
+		startStream(writer);
+		writeStructureFields(writer, (Automaton) structure);
+		writeAutomaton(writer, (Automaton) structure, AUTOMATON_NAME,
+				STREAM_INDENT);
+		endStream(writer);
+	}
+
+	/**
+	 * Writes the children of the structure element that come between the
+	 * type and the automaton. By default this writes nothing.
+	 * 
+	 * @param writer
+	 *            the stream to write to
+	 * @param automaton
+	 *            the automaton being written
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 */
+	protected void writeStructureFields(XMLStreamWriter writer,
+			Automaton automaton) throws XMLStreamException {
+	}
+
+	/**
+	 * Writes the element for an automaton, with its states, transitions, the
+	 * machines of its blocks, and its notes, as {@link #writeFields} does.
+	 */
+	private void writeAutomaton(XMLStreamWriter writer, Automaton auto,
+			String name, String indent) throws XMLStreamException {
+		State[] states = auto.getStates();
+		ArrayList notes = auto.getNotes();
+		if (states.length == 0 && notes.isEmpty()) {
+			writeElement(writer, indent, name, null, null);
+			return;
+		}
+		writer.writeCharacters(indent);
+		writer.writeStartElement(tagName(name));
+		String inner = indent + DOMPrettier.INDENT;
+		if (states.length > 0)
+			writeComment(writer, inner, COMMENT_STATES);
+		for (int i = 0; i < states.length; i++)
+			writeState(writer, inner, states[i]);
+		Transition[] transitions = auto.getTransitions();
+		if (transitions.length > 0)
+			writeComment(writer, inner, COMMENT_TRANSITIONS);
+		for (int i = 0; i < transitions.length; i++)
+			writeTransition(writer, inner, transitions[i]);
+		if (auto instanceof TuringMachine) {
+			Map references = ((TuringMachine) auto).getBlockMap();
+			Iterator refer = references.keySet().iterator();
+			if (refer.hasNext())
+				writeComment(writer, inner, COMMENT_AUTOMATA);
+			while (refer.hasNext()) {
+				String block = (String) refer.next();
+				writeAutomaton(writer, (Automaton) references.get(block),
+						block, inner);
+			}
+		}
+		for (int k = 0; k < notes.size(); k++) {
+			Note note = (Note) notes.get(k);
+			writer.writeCharacters(inner);
+			writer.writeStartElement(NOTE_NAME);
+			String field = inner + DOMPrettier.INDENT;
+			writeElement(writer, field, NOTE_TEXT_NAME, null, ""
+					+ note.getText());
+			writeElement(writer, field, STATE_X_COORD_NAME, null, ""
+					+ note.getLocation().getX());
+			writeElement(writer, field, STATE_Y_COORD_NAME, null, ""
+					+ note.getLocation().getY());
+			writer.writeCharacters(inner);
+			writer.writeEndElement();
+		}
+		writer.writeCharacters(indent);
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Writes the element for a state, or for a block of a Turing machine, as
+	 * {@link #createStateElement} and {@link #createBlockElement} do.
+	 */
+	private void writeState(XMLStreamWriter writer, String indent,
+			State state) throws XMLStreamException {
+		boolean block = state instanceof TMState;
+		writer.writeCharacters(indent);
+		writer.writeStartElement(block ? BLOCK_NAME : STATE_NAME);
+		writer.writeAttribute(STATE_ID_NAME, "" + state.getID());
+		if (state.getName() != null)
+			writer.writeAttribute(STATE_NAME_NAME, "" + state.getName());
+		String field = indent + DOMPrettier.INDENT;
+		if (block)
+			writeElement(writer, field, FILE_NAME, null, ""
+					+ ((TMState) state).getInternalName());
+		writeElement(writer, field, STATE_X_COORD_NAME, null, ""
+				+ state.getPoint().getX());
+		writeElement(writer, field, STATE_Y_COORD_NAME, null, ""
+				+ state.getPoint().getY());
+		if (!block && state.getLabel() != null)
+			writeElement(writer, field, STATE_LABEL_NAME, null, state
+					.getLabel());
+		Automaton a = state.getAutomaton();
+		if (a.getInitialState() == state)
+			writeElement(writer, field, STATE_INITIAL_NAME, null, null);
+		if (a.isFinalState(state))
+			writeElement(writer, field, STATE_FINAL_NAME, null, null);
+		writeStateFields(writer, field, state);
+		writer.writeCharacters(indent);
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Writes the elements of a state beyond those every state has. This is the
+	 * stream version of overriding {@link #createStateElement}, and by
+	 * default writes nothing.
+	 * 
+	 * @param writer
+	 *            the stream to write to
+	 * @param indent
+	 *            the new line and indentation to put before each element
+	 * @param state
+	 *            the state being written
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 */
+	protected void writeStateFields(XMLStreamWriter writer, String indent,
+			State state) throws XMLStreamException {
+	}
+
+	/**
+	 * Writes the element for a transition, as {@link #createTransitionElement}
+	 * does.
+	 */
+	private void writeTransition(XMLStreamWriter writer, String indent,
+			Transition transition) throws XMLStreamException {
+		writer.writeCharacters(indent);
+		writer.writeStartElement(TRANSITION_NAME);
+		if (transition instanceof TMTransition
+				&& ((TMTransition) transition).isBlockTransition())
+			writer.writeAttribute(IS_BLOCK, "true");
+		String field = indent + DOMPrettier.INDENT;
+		writeElement(writer, field, TRANSITION_FROM_NAME, null, ""
+				+ transition.getFromState().getID());
+		writeElement(writer, field, TRANSITION_TO_NAME, null, ""
+				+ transition.getToState().getID());
+		if (transition.getControl() != null) {
+			Point p = transition.getControl();
+			writeElement(writer, field, TRANSITION_CONTROL_X, null, p.x + "");
+			writeElement(writer, field, TRANSITION_CONTROL_Y, null, p.y + "");
+		}
+		writeTransitionFields(writer, field, transition);
+		writer.writeCharacters(indent);
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Writes the elements of a transition beyond the from and to states and
+	 * the control point. This is the stream version of overriding
+	 * {@link #createTransitionElement}.
+	 * 
+	 * @param writer
+	 *            the stream to write to
+	 * @param indent
+	 *            the new line and indentation to put before each element
+	 * @param transition
+	 *            the transition being written
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 */
+	protected abstract void writeTransitionFields(XMLStreamWriter writer,
+			String indent, Transition transition) throws XMLStreamException;
+
+	/**
+	 * The reading of the children of one automaton element from a stream.
+	 * States and blocks are gathered and then made in order of their IDs, as
+	 * {@link #readStates} makes them, once the first element that is neither
+	 * is reached. The machines of blocks are read into the empty machines
+	 * the blocks are made with, when the element named by the block's tag is
+	 * reached among the siblings of the block.
+	 */
+	private class StreamReading {
+		/**
+		 * Starts reading into an automaton.
+		 * 
+		 * @param automaton
+		 *            the empty automaton to read into
+		 * @param fields
+		 *            the elements to text of the structure element
+		 */
+		StreamReading(Automaton automaton, Map fields) {
+			this.automaton = automaton;
+			this.fields = fields;
+			automaton.beginBulkUpdate();
+		}
+
+		/**
+		 * Reads the rest of the element the stream is in.
+		 * 
+		 * @return <CODE>false</CODE> if the element must be read from the
+		 *         DOM instead
+		 */
+		boolean readChildren(XMLStreamReader reader) throws XMLStreamException {
+			while (nextElement(reader))
+				if (!readChild(reader))
+					return false;
+			return true;
+		}
+
+		/**
+		 * Reads the child element the stream is at the start of.
+		 * 
+		 * @return <CODE>false</CODE> if the element must be read from the
+		 *         DOM instead
+		 */
+		boolean readChild(XMLStreamReader reader) throws XMLStreamException {
+			String name = reader.getLocalName();
+			if (name.equals(STATE_NAME) || name.equals(BLOCK_NAME)) {
+				if (created)
+					return false;
+				Integer id = parseID(reader.getAttributeValue(null,
+						STATE_ID_NAME));
+				String stateName = reader.getAttributeValue(null,
+						STATE_NAME_NAME);
+				Map e2t = readElementsToText(reader);
+				Map pending = name.equals(BLOCK_NAME) ? blocks : states;
+				if (pending.put(id, new Object[] {
+						stateName == null ? "" : stateName, e2t }) != null)
+					throw new DataException("The state ID " + id
+							+ " appears twice!");
+				return true;
+			}
+			createStates();
+			if (name.equals(TRANSITION_NAME)) {
+				readTransition(reader);
+			} else if (name.equals(NOTE_NAME)) {
+				addNote(automaton, readElementsToText(reader));
+			} else if (waiting.containsKey(name)) {
+				StreamReading inner = new StreamReading((Automaton) waiting
+						.remove(name), fields);
+				return inner.readChildren(reader) && inner.finish();
+			} else {
+				readText(reader);
+			}
+			return true;
+		}
+
+		/**
+		 * Returns if a block is waiting for the machine of this name.
+		 */
+		boolean isWaiting(String name) {
+			createStates();
+			return waiting.containsKey(name);
+		}
+
+		/**
+		 * Reads the transition the stream is at the start of.
+		 */
+		private void readTransition(XMLStreamReader reader)
+				throws XMLStreamException {
+			boolean isBlock = "true".equals(reader.getAttributeValue(null,
+					IS_BLOCK));
+			Map e2t = new java.util.HashMap();
+			List children = new ArrayList();
+			while (nextElement(reader)) {
+				String name = reader.getLocalName();
+				String tape = reader.getAttributeValue(null,
+						TMTransducer.TRANSITION_TAPE_NAME);
+				String text = readText(reader);
+				e2t.put(name, text);
+				children.add(new String[] { name, text, tape });
+			}
+			State from = getTransitionState(automaton, e2t,
+					TRANSITION_FROM_NAME);
+			State to = getTransitionState(automaton, e2t, TRANSITION_TO_NAME);
+			Transition transition = createTransition(from, to, e2t, children,
+					isBlock);
+			automaton.addTransition(transition);
+			setControl(transition, e2t);
+		}
+
+		/**
+		 * Makes the states and blocks that have been gathered, if they have
+		 * not been made yet.
+		 */
+		private void createStates() {
+			if (created)
+				return;
+			created = true;
+			createStates(blocks);
+			createStates(states);
+		}
+
+		private void createStates(Map pending) {
+			Iterator it = pending.keySet().iterator();
+			while (it.hasNext()) {
+				Integer id = (Integer) it.next();
+				Object[] state = (Object[]) pending.get(id);
+				Map e2t = (Map) state[1];
+				// The machine of a block is read later, once for each tag.
+				Automaton inner = null;
+				String tag = null;
+				if (automaton instanceof TuringMachine
+						&& e2t.containsKey(FILE_NAME)) {
+					tag = e2t.get(FILE_NAME).toString();
+					TMState first = (TMState) blocksByTag.get(tag);
+					if (first != null) {
+						inner = first.peekInnerTM();
+					} else {
+						inner = createEmptyAutomaton(fields);
+						waiting.put(tag, inner);
+					}
+				}
+				State block = addState(automaton, id, (String) state[0], e2t,
+						inner, locatedStates);
+				if (tag != null)
+					shareBlock(blocksByTag, tag, (TMState) block);
+			}
+		}
+
+		/**
+		 * Finishes reading, laying out the automaton if necessary.
+		 * 
+		 * @return <CODE>false</CODE> if some block never had its machine
+		 *         read, so that the automaton must be read from the DOM
+		 *         instead
+		 */
+		boolean finish() {
+			createStates();
+			try {
+				performLayout(automaton, locatedStates);
+			} finally {
+				automaton.endBulkUpdate();
+			}
+			return waiting.isEmpty();
+		}
+
+		/** The automaton being read. */
+		private Automaton automaton;
+
+		/** The elements to text of the structure element. */
+		private Map fields;
+
+		/** The states and blocks gathered, from ID to name and fields. */
+		private Map states = new java.util.TreeMap(),
+				blocks = new java.util.TreeMap();
+
+		/** If the gathered states and blocks have been made. */
+		private boolean created = false;
+
+		/** The states that have their X and Y coordinates in the file. */
+		private Set locatedStates = new java.util.HashSet();
+
+		/** Maps block tags to the machines waiting to be read for them. */
+		private Map waiting = new java.util.HashMap();
+
+		/** Maps block tags to the first block made with each. */
+		private Map blocksByTag = new java.util.HashMap();
+	}
+
 	private Map automatonMap = new java.util.HashMap();
 
+	/**
+	 * Maps the block tags of the document being read to the first block made
+	 * with each, so that the machine of a tag is found and read only once.
+	 */
+	private Map blocksByTag = new java.util.HashMap();
+
 	private Automaton originalAutomaton = null;
 
 	private static final String AUTOMATON_NAME = "automaton";
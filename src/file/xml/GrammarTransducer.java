@@ -20,8 +20,16 @@
 
 package file.xml;
 
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -37,7 +45,8 @@ import grammar.UnboundGrammar;
  * @author Thomas Finley
  */
 
-public class GrammarTransducer extends AbstractTransducer {
+public class GrammarTransducer extends AbstractTransducer implements
+		StreamTransducer {
 	/**
 	 * Returns the type this transducer recognizes, "grammar".
 	 * 
@@ -54,7 +63,16 @@ public class GrammarTransducer extends AbstractTransducer {
 	 *            the node the encapsulates a production
 	 */
 	public static Production createProduction(Node node) {
-		Map e2t = elementsToText(node);
+		return createProduction(elementsToText(node));
+	}
+
+	/**
+	 * Returns a production for the elements to text of a production element.
+	 * 
+	 * @param e2t
+	 *            the elements to text of the production element
+	 */
+	private static Production createProduction(Map e2t) {
 		String left = (String) e2t.get(PRODUCTION_LEFT_NAME);
 		String right = (String) e2t.get(PRODUCTION_RIGHT_NAME);
 		if (left == null)
@@ -102,6 +120,26 @@ public class GrammarTransducer extends AbstractTransducer {
 		return g;
 	}
 
+	/**
+	 * Reads a grammar from a stream. As with {@link #fromDOM}, the productions
+	 * are found anywhere in the structure.
+	 * 
+	 * @param reader
+	 *            the stream to read from, just past the "type" element
+	 * @return the {@link grammar.Grammar} instance
+	 * @throws XMLStreamException
+	 *             if the stream could not be read
+	 */
+	public Serializable fromStream(XMLStreamReader reader)
+			throws XMLStreamException {
+		Grammar g = new UnboundGrammar();
+		while (reader.hasNext())
+			if (reader.next() == XMLStreamConstants.START_ELEMENT
+					&& reader.getLocalName().equals(PRODUCTION_NAME))
+				g.addProduction(createProduction(readElementsToText(reader)));
+		return g;
+	}
+
 	/**
 	 * Given a JFLAP grammar, this will return the corresponding DOM encoding of
 	 * the structure.
@@ -124,6 +162,57 @@ public class GrammarTransducer extends AbstractTransducer {
 		return doc;
 	}
 
+	/**
+	 * Writes a JFLAP grammar to a stream in the same form as {@link #toDOM}.
+	 * 
+	 * @param structure
+	 *            the JFLAP grammar to encode
+	 * @param writer
+	 *            the stream to write to
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 */
+	public void toStream(Serializable structure, XMLStreamWriter writer)
+			throws XMLStreamException {
+		Production[] productions = ((Grammar) structure).getProductions();
+		toStream(Arrays.asList(productions).iterator(), writer);
+	}
+
+	/**
+	 * Writes a grammar holding the productions given by an iterator to a
+	 * stream, in the same form as {@link #toStream(Serializable,
+	 * XMLStreamWriter)} but without building the grammar. This is for
+	 * grammars too large to hold in memory, like those converted from Turing
+	 * machines.
+	 * 
+	 * @param productions
+	 *            an iterator over the productions to write
+	 * @param writer
+	 *            the stream to write to
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 * @see automata.turing.TuringToGrammarConverter#productions
+	 */
+	public void toStream(Iterator productions, XMLStreamWriter writer)
+			throws XMLStreamException {
+		startStream(writer);
+		if (productions.hasNext())
+			writeComment(writer, STREAM_INDENT, COMMENT_PRODUCTIONS);
+		String indent = STREAM_INDENT + DOMPrettier.INDENT;
+		while (productions.hasNext()) {
+			Production production = (Production) productions.next();
+			writer.writeCharacters(STREAM_INDENT);
+			writer.writeStartElement(PRODUCTION_NAME);
+			writeElement(writer, indent, PRODUCTION_LEFT_NAME, null,
+					production.getLHS());
+			writeElement(writer, indent, PRODUCTION_RIGHT_NAME, null,
+					production.getRHS());
+			writer.writeCharacters(STREAM_INDENT);
+			writer.writeEndElement();
+		}
+		endStream(writer);
+	}
+
 	/** The tag name for productions. */
 	public static final String PRODUCTION_NAME = "production";
 
@@ -23,7 +23,12 @@ package file.xml;
 import file.ParseException;
 import grammar.*;
 import grammar.lsystem.*;
+import java.io.Serializable;
 import java.util.*;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import org.w3c.dom.*;
 
 /**
@@ -32,7 +37,8 @@ import org.w3c.dom.*;
  * @author Thomas Finley
  */
 
-public class LSystemTransducer extends AbstractTransducer {
+public class LSystemTransducer extends AbstractTransducer implements
+		StreamTransducer {
 	/**
 	 * Returns the type this transducer recognizes, "lsystem".
 	 * 
@@ -183,6 +189,59 @@ public class LSystemTransducer extends AbstractTransducer {
 		return new LSystem(axiom, rules, parameters);
 	}
 
+	/**
+	 * Reads an L-system from a stream. As with {@link #fromDOM}, the axiom,
+	 * rewriting rules, and parameters are found anywhere in the structure,
+	 * and the last axiom is the one used.
+	 * 
+	 * @param reader
+	 *            the stream to read from, just past the "type" element
+	 * @return the {@link grammar.lsystem.LSystem} instance
+	 * @throws ParseException
+	 *             if there is no axiom
+	 * @throws XMLStreamException
+	 *             if the stream could not be read
+	 */
+	public Serializable fromStream(XMLStreamReader reader)
+			throws XMLStreamException {
+		String axiom = null;
+		Grammar rules = new UnboundGrammar();
+		Map parameters = new HashMap();
+		while (reader.hasNext()) {
+			if (reader.next() != XMLStreamConstants.START_ELEMENT)
+				continue;
+			String name = reader.getLocalName();
+			if (name.equals(AXIOM_NAME)) {
+				axiom = readText(reader);
+				if (axiom == null)
+					axiom = "";
+			} else if (name.equals(RULE_NAME)) {
+				String left = null;
+				List rights = new ArrayList();
+				while (nextElement(reader)) {
+					String child = reader.getLocalName();
+					String text = readText(reader);
+					if (child.equals(RULE_LEFT_NAME))
+						left = text;
+					else if (child.equals(RULE_RIGHT_NAME))
+						rights.add(text == null ? "" : text);
+				}
+				for (int i = 0; i < rights.size(); i++)
+					rules.addProduction(new Production(left == null ? ""
+							: left, (String) rights.get(i)));
+			} else if (name.equals(PARAMETER_NAME)) {
+				Map e2t = readElementsToText(reader);
+				String p = (String) e2t.get(PARAMETER_NAME_NAME), value = (String) e2t
+						.get(PARAMETER_VALUE_NAME);
+				if (p != null)
+					parameters.put(p, value == null ? "" : value);
+			}
+		}
+		if (axiom == null)
+			throw new ParseException("No axiom specified in the document!");
+		return new LSystem(axiom, rules, parameters);
+	}
+
 	/**
 	 * Given a JFLAP L-system, this will return the corresponding DOM encoding
 	 * of the structure.
@@ -225,6 +284,59 @@ public class LSystemTransducer extends AbstractTransducer {
 		return doc;
 	}
 
+	/**
+	 * Writes a JFLAP L-system to a stream in the same form as {@link #toDOM}.
+	 * 
+	 * @param structure
+	 *            the JFLAP L-system to encode
+	 * @param writer
+	 *            the stream to write to
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 */
+	public void toStream(Serializable structure, XMLStreamWriter writer)
+			throws XMLStreamException {
+		LSystem lsystem = (LSystem) structure;
+		String indent = STREAM_INDENT + DOMPrettier.INDENT;
+		startStream(writer);
+		// Write the axiom.
+		writeComment(writer, STREAM_INDENT, COMMENT_AXIOM);
+		writeElement(writer, STREAM_INDENT, AXIOM_NAME, null,
+				listAsString(lsystem.getAxiom()));
+		// Write the rewriting rules.
+		Iterator it = lsystem.getSymbolsWithReplacements().iterator();
+		if (it.hasNext())
+			writeComment(writer, STREAM_INDENT, COMMENT_RULE);
+		while (it.hasNext()) {
+			String left = (String) it.next();
+			writer.writeCharacters(STREAM_INDENT);
+			writer.writeStartElement(RULE_NAME);
+			writeElement(writer, indent, RULE_LEFT_NAME, null, left);
+			List[] replacements = lsystem.getReplacements(left);
+			for (int i = 0; i < replacements.length; i++)
+				writeElement(writer, indent, RULE_RIGHT_NAME, null,
+						listAsString(replacements[i]));
+			writer.writeCharacters(STREAM_INDENT);
+			writer.writeEndElement();
+		}
+		// Write the parameters.
+		Map parameters = lsystem.getValues();
+		it = parameters.keySet().iterator();
+		if (it.hasNext())
+			writeComment(writer, STREAM_INDENT, COMMENT_PARAMETER);
+		while (it.hasNext()) {
+			String name = (String) it.next();
+			writer.writeCharacters(STREAM_INDENT);
+			writer.writeStartElement(PARAMETER_NAME);
+			writeElement(writer, indent, PARAMETER_NAME_NAME, null, name);
+			writeElement(writer, indent, PARAMETER_VALUE_NAME, null,
+					(String) parameters.get(name));
+			writer.writeCharacters(STREAM_INDENT);
+			writer.writeEndElement();
+		}
+		endStream(writer);
+	}
+
 	/** The tag name for the axiom. */
 	public static final String AXIOM_NAME = "axiom";
 
@@ -22,6 +22,9 @@ package file.xml;
 
 import java.util.Map;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -106,6 +109,22 @@ public class MealyTransducer extends AutomatonTransducer
         return te;
     }
     
+    /**
+     * Writes the strings to read and the output of a transition to a stream.
+     * 
+     * @param writer the stream to write to
+     * @param indent the new line and indentation to put before each element
+     * @param transition the transition being written
+     * @see #createTransitionElement
+     */
+    protected void writeTransitionFields(XMLStreamWriter writer, String indent, Transition transition)
+        throws XMLStreamException
+    {
+        MealyTransition t = (MealyTransition) transition;
+        writeElement(writer, indent, TRANSITION_READ_NAME, null, t.getLabel());
+        writeElement(writer, indent, TRANSITION_OUTPUT_NAME, null, t.getOutput());
+    }
+    
     /**
      * Returns the type string for this transducer, "mealy".
      * 
@@ -27,6 +27,9 @@ import java.util.Map;
 import java.util.Set;
 
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.*;
 
 import file.DataException;
@@ -118,4 +121,19 @@ public class MooreTransducer extends MealyTransducer
                 ((MooreMachine) state.getAutomaton()).getOutput(state)));
         return se;
     }
+    
+    /**
+     * Writes the output of a state to a stream.
+     * 
+     * @param writer the stream to write to
+     * @param indent the new line and indentation to put before each element
+     * @param state the state being written
+     * @see #createStateElement
+     */
+    protected void writeStateFields(XMLStreamWriter writer, String indent, State state)
+        throws XMLStreamException
+    {
+        writeElement(writer, indent, STATE_OUTPUT_NAME, null,
+                ((MooreMachine) state.getAutomaton()).getOutput(state));
+    }
 }
@@ -22,6 +22,9 @@ package file.xml;
 
 import java.util.Map;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -110,6 +113,28 @@ public class PDATransducer extends AutomatonTransducer {
 		return te;
 	}
 
+	/**
+	 * Writes the strings to read, pop, and push of a transition to a stream.
+	 * 
+	 * @param writer
+	 *            the stream to write to
+	 * @param indent
+	 *            the new line and indentation to put before each element
+	 * @param transition
+	 *            the transition being written
+	 * @see #createTransitionElement
+	 */
+	protected void writeTransitionFields(XMLStreamWriter writer,
+			String indent, Transition transition) throws XMLStreamException {
+		PDATransition t = (PDATransition) transition;
+		writeElement(writer, indent, TRANSITION_READ_NAME, null, t
+				.getInputToRead());
+		writeElement(writer, indent, TRANSITION_POP_NAME, null, t
+				.getStringToPop());
+		writeElement(writer, indent, TRANSITION_PUSH_NAME, null, t
+				.getStringToPush());
+	}
+
 	/**
 	 * Returns the type string for this transducer, "pda".
 	 * 
@@ -0,0 +1,70 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package file.xml;
+
+import file.ParseException;
+import java.io.Serializable;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * This is an interface for transducers that can also read and write their
+ * structures as a stream of XML events, in one pass and without building a
+ * DOM document. The files read and written are the same as those of
+ * {@link Transducer#fromDOM} and {@link Transducer#toDOM}.
+ *
+ * @see TransducerFactory#getTransducer(XMLStreamReader)
+ */
+
+public interface StreamTransducer extends Transducer {
+	/**
+	 * Reads the JFLAP structure from a stream. The reader is just past the
+	 * "type" element, and this reads the rest of the structure element.
+	 *
+	 * @param reader
+	 *            the stream to read from
+	 * @return the structure read, or <CODE>null</CODE> if the document is
+	 *         laid out in a way that needs the whole DOM to read, in which
+	 *         case the caller should read it with {@link #fromDOM}
+	 * @throws ParseException
+	 *             in the event of an error that may lead to undesirable
+	 *             functionality
+	 * @throws XMLStreamException
+	 *             if the stream could not be read
+	 */
+	public Serializable fromStream(XMLStreamReader reader)
+			throws XMLStreamException;
+
+	/**
+	 * Writes a JFLAP structure to a stream, as the whole document but for the
+	 * XML declaration.
+	 *
+	 * @param structure
+	 *            the JFLAP structure to encode
+	 * @param writer
+	 *            the stream to write to
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 */
+	public void toStream(Serializable structure, XMLStreamWriter writer)
+			throws XMLStreamException;
+}
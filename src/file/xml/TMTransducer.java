@@ -20,11 +20,16 @@
 
 package file.xml;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -53,7 +58,19 @@ public class TMTransducer extends AutomatonTransducer {
 	 * @return an empty Turing machine
 	 */
 	protected Automaton createEmptyAutomaton(Document document) {
-		Map e2t = elementsToText(document.getDocumentElement());
+		return createEmptyAutomaton(elementsToText(document
+				.getDocumentElement()));
+	}
+
+	/**
+	 * Creates and returns an empty Turing machine with the number of tapes
+	 * given by the "tapes" element.
+	 * 
+	 * @param e2t
+	 *            the elements to text of the structure element
+	 * @return an empty Turing machine
+	 */
+	protected Automaton createEmptyAutomaton(Map e2t) {
 		String s = (String) e2t.get(TURING_TAPES_NAME);
 		if (s == null)
 			s = "1";
@@ -86,6 +103,37 @@ public class TMTransducer extends AutomatonTransducer {
 	 */
 	protected Transition createTransition(State from, State to, Node node,
 			Map e2t, boolean isBlock) {
+		List fields = new ArrayList();
+		String[] tags = { TRANSITION_READ_NAME, TRANSITION_WRITE_NAME,
+				TRANSITION_MOVE_NAME };
+		for (int k = 0; k < tags.length; k++) {
+			NodeList nodes = ((Element) node).getElementsByTagName(tags[k]);
+			for (int i = 0; i < nodes.getLength(); i++) {
+				Element elem = (Element) nodes.item(i);
+				fields.add(new String[] { tags[k], containedText(elem),
+						elem.getAttribute(TRANSITION_TAPE_NAME) });
+			}
+		}
+		return createTransition(from, to, e2t, fields, isBlock);
+	}
+
+	/**
+	 * Creates and returns a transition from the "read", "write", and "move"
+	 * elements among the children of a transition element.
+	 * 
+	 * @param from
+	 *            the from state
+	 * @param to
+	 *            the to state
+	 * @param e2t
+	 *            elements to text of the transition
+	 * @param fields
+	 *            the child elements of the transition, each as an array of
+	 *            the element name, its text, and its "tape" attribute
+	 * @return the new transition
+	 */
+	protected Transition createTransition(State from, State to, Map e2t,
+			List fields, boolean isBlock) {
 		TuringMachine tm = (TuringMachine) from.getAutomaton();
 		int tapes = tm.tapes();
 		String[] readStrings = new String[tapes], writeStrings = new String[tapes], moveStrings = new String[tapes];
@@ -103,12 +151,15 @@ public class TMTransducer extends AutomatonTransducer {
 		while (it.hasNext()) {
 			String tag = (String) it.next();
 			String[] array = (String[]) tag2array.get(tag);
-			NodeList nodes = ((Element) node).getElementsByTagName(tag);
-			for (int i = 0; i < nodes.getLength(); i++) {
-				Element elem = (Element) nodes.item(i);
+			int i = -1;
+			for (int k = 0; k < fields.size(); k++) {
+				String[] elem = (String[]) fields.get(k);
+				if (!elem[0].equals(tag))
+					continue;
+				i++;
 				// Get which tape this is for.
-				String tapeString = elem.getAttribute(TRANSITION_TAPE_NAME);
-				if (tapeString.length() == 0)
+				String tapeString = elem[2];
+				if (tapeString == null || tapeString.length() == 0)
 					tapeString = "1"; // Default single tape.
 				int tape = 1;
 				try {
@@ -122,7 +173,7 @@ public class TMTransducer extends AutomatonTransducer {
 							+ " tag, error reading " + tapeString + " as tape.");
 				}
 				// Get the contained text.
-				String contained = containedText(elem);
+				String contained = elem[1];
 				if (contained == null)
 					contained = "";
 				// Set the right text.
@@ -189,6 +240,60 @@ public class TMTransducer extends AutomatonTransducer {
 		return te;
 	}
 
+	/**
+	 * Writes the strings to read, write, and move for each tape of a
+	 * transition to a stream, or only the string to read if the transition
+	 * is to a block.
+	 * 
+	 * @param writer
+	 *            the stream to write to
+	 * @param indent
+	 *            the new line and indentation to put before each element
+	 * @param transition
+	 *            the transition being written
+	 * @see #createTransitionElement
+	 */
+	protected void writeTransitionFields(XMLStreamWriter writer,
+			String indent, Transition transition) throws XMLStreamException {
+		TMTransition t = (TMTransition) transition;
+		TuringMachine tm = (TuringMachine) t.getFromState().getAutomaton();
+		Map attr = new HashMap();
+		for (int i = 0; i < tm.tapes(); i++) {
+			if (tm.tapes() > 1)
+				attr.put(TRANSITION_TAPE_NAME, "" + (i + 1));
+			String read = t.getRead(i), write = t.getWrite(i);
+			if (read.equals(TMTransition.BLANK))
+				read = "";
+			if (write.equals(TMTransition.BLANK))
+				write = "";
+			writeElement(writer, indent, TRANSITION_READ_NAME, attr, read);
+			if (t.isBlockTransition())
+				return;
+			writeElement(writer, indent, TRANSITION_WRITE_NAME, attr, write);
+			writeElement(writer, indent, TRANSITION_MOVE_NAME, attr, t
+					.getDirection(i));
+		}
+	}
+
+	/**
+	 * Writes the "tapes" element if the number of tapes is not 1, as
+	 * {@link #toDOM} does.
+	 * 
+	 * @param writer
+	 *            the stream to write to
+	 * @param automaton
+	 *            the Turing machine being written
+	 * @throws XMLStreamException
+	 *             if the stream could not be written
+	 */
+	protected void writeStructureFields(XMLStreamWriter writer,
+			Automaton automaton) throws XMLStreamException {
+		TuringMachine tm = (TuringMachine) automaton;
+		if (tm.tapes() > 1)
+			writeElement(writer, STREAM_INDENT, TURING_TAPES_NAME, null, ""
+					+ tm.tapes());
+	}
+
 	/**
 	 * Returns the type string for this transducer, "pda".
 	 * 
@@ -23,6 +23,9 @@ package file.xml;
 import org.w3c.dom.*;
 import java.io.Serializable;
 import java.util.*;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
  * Maps either a DOM or a object to the appropriate transducer.
@@ -62,7 +65,50 @@ public class TransducerFactory {
 				break;
 			}
 		}
-		// Check for the type.
+		return getTransducer(type);
+	}
+
+	/**
+	 * Given an XML stream, this will read up to the end of the "type" element
+	 * and return an appropriate instance of a transducer for the type of
+	 * document. Unlike the DOM, which may be searched, the stream is read
+	 * only once, so the type must be the first element in the structure, as
+	 * it is in every file JFLAP writes.
+	 * 
+	 * @param reader
+	 *            the stream to get the transducer for, at the start of the
+	 *            document
+	 * @return the correct transducer for this document
+	 * @throws IllegalArgumentException
+	 *             if the document does not map to a transducer, or if its
+	 *             first element is not a "type" tag
+	 * @throws XMLStreamException
+	 *             if the stream could not be read
+	 */
+	public static Transducer getTransducer(XMLStreamReader reader)
+			throws XMLStreamException {
+		// Move to the root, and then to its first child.
+		while (reader.hasNext()
+				&& reader.next() != XMLStreamConstants.START_ELEMENT)
+			;
+		if (!AbstractTransducer.nextElement(reader)
+				|| !reader.getLocalName().equals("type"))
+			throw new IllegalArgumentException(
+					"No <type> tag appears to come first!");
+		String type = AbstractTransducer.readText(reader);
+		return getTransducer(type == null ? "" : type);
+	}
+
+	/**
+	 * Returns an instance of a transducer for a type.
+	 * 
+	 * @param type
+	 *            the text of the "type" tag
+	 * @return the correct transducer for this type
+	 * @throws IllegalArgumentException
+	 *             if the type does not map to a transducer
+	 */
+	private static Transducer getTransducer(String type) {
 		Object o = typeToTransducer.get(type);
 		if (o == null)
 			throw new IllegalArgumentException("The type \"" + type
@@ -0,0 +1,569 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar;
+
+import grammar.cfg.ContextFreeGrammar;
+import java.util.*;
+
+/**
+ * The <CODE>ChomskyNormalForm</CODE> converts a context free grammar to
+ * Chomsky normal form without any user interaction, and without the limit of
+ * the {@link CNFConverter} to the 26 single letter variables. New variables
+ * are named as the <CODE>CNFConverter</CODE> names them before they are
+ * resolved to letters, <CODE>B(a)</CODE> for the variable that derives the
+ * terminal <CODE>a</CODE> and <CODE>D(n)</CODE> for the <I>n</I>th variable
+ * made to shorten a right hand side, so there is no limit to how many may be
+ * made.
+ * <P>
+ *
+ * The conversion replaces terminals in long right hand sides, then shortens
+ * right hand sides to two symbols, then removes lambda productions, then unit
+ * productions, and lastly drops the productions that cannot take part in a
+ * derivation of a string of terminals from the start variable. Shortening
+ * works from the right end of a right hand side, and keeps one variable for
+ * each distinct pair of a symbol and the variable for the rest, so
+ * productions that end the same way share the variables for their common
+ * tails. Since every right hand side has at most two symbols by the time
+ * lambda productions are removed, each production becomes at most three.
+ * <P>
+ *
+ * As in the rest of JFLAP, the converted grammar does not derive lambda. If
+ * the original grammar does, {@link #derivesLambda} says so.
+ *
+ * @see grammar.CNFConverter
+ */
+
+public class ChomskyNormalForm {
+	/**
+	 * Converts a grammar to Chomsky normal form.
+	 *
+	 * @param grammar
+	 *            the context free grammar to convert
+	 * @throws IllegalArgumentException
+	 *             if the grammar uses one of the reserved characters
+	 *             <CODE>(</CODE> and <CODE>)</CODE>
+	 */
+	public ChomskyNormalForm(Grammar grammar) {
+		if (grammar.getStartVariable() != null)
+			start = variable(grammar.getStartVariable());
+		Production[] productions = grammar.getProductions();
+		List rules = new ArrayList();
+		for (int i = 0; i < productions.length; i++) {
+			String rhs = productions[i].getRHS();
+			if (rhs.indexOf('(') != -1)
+				throw new IllegalArgumentException(
+						"Grammar has the ( character, which is reserved.");
+			if (rhs.indexOf(')') != -1)
+				throw new IllegalArgumentException(
+						"Grammar has the ) character, which is reserved.");
+			int[] symbols = new int[rhs.length()];
+			for (int k = 0; k < symbols.length; k++) {
+				char c = rhs.charAt(k);
+				symbols[k] = ProductionChecker.isVariable(c) ? variable(rhs
+						.substring(k, k + 1)) : -(c + 1);
+			}
+			shorten(variable(productions[i].getLHS()), symbols, rules);
+		}
+		boolean[] nullable = nullable(rules);
+		derivesLambda = start >= 0 && nullable[start];
+		rules = prune(removeUnits(removeLambda(rules, nullable)));
+
+		Rule[] byFirst = new Rule[names.size()];
+		Iterator it = rules.iterator();
+		while (it.hasNext()) {
+			Rule rule = (Rule) it.next();
+			if (rule.second == NONE) {
+				Character terminal = new Character((char) -(rule.first + 1));
+				List lhs = (List) terminalRules.get(terminal);
+				if (lhs == null) {
+					lhs = new ArrayList();
+					terminalRules.put(terminal, lhs);
+				}
+				lhs.add(new Integer(rule.lhs));
+			} else {
+				rule.next = byFirst[rule.first];
+				byFirst[rule.first] = rule;
+			}
+		}
+		binaryByFirst = byFirst;
+		this.rules = rules;
+	}
+
+	/**
+	 * Returns the number of a variable, adding it if it is new.
+	 *
+	 * @param name
+	 *            the name of the variable
+	 * @return the number of the variable
+	 */
+	private int variable(String name) {
+		Integer number = (Integer) variableNumbers.get(name);
+		if (number == null) {
+			number = new Integer(names.size());
+			variableNumbers.put(name, number);
+			names.add(name);
+		}
+		return number.intValue();
+	}
+
+	/**
+	 * Adds the productions for one production of the grammar, with the
+	 * terminals of a long right hand side replaced by variables and the right
+	 * hand side shortened to at most two symbols.
+	 *
+	 * @param lhs
+	 *            the left hand side
+	 * @param rhs
+	 *            the symbols of the right hand side
+	 * @param rules
+	 *            the list to add productions to
+	 */
+	private void shorten(int lhs, int[] rhs, List rules) {
+		if (rhs.length < 2) {
+			rules.add(new Rule(lhs, rhs.length == 0 ? NONE : rhs[0], NONE));
+			return;
+		}
+		for (int k = 0; k < rhs.length; k++) {
+			if (rhs[k] >= 0)
+				continue;
+			String name = "B(" + (char) -(rhs[k] + 1) + ")";
+			boolean added = !variableNumbers.containsKey(name);
+			int v = variable(name);
+			if (added)
+				rules.add(new Rule(v, rhs[k], NONE));
+			rhs[k] = v;
+		}
+		int rest = rhs[rhs.length - 1];
+		for (int k = rhs.length - 2; k > 0; k--)
+			rest = tail(rhs[k], rest, rules);
+		rules.add(new Rule(lhs, rhs[0], rest));
+	}
+
+	/**
+	 * Returns the variable that derives exactly two variables, making it if
+	 * no such variable was made before.
+	 *
+	 * @param first
+	 *            the first variable
+	 * @param second
+	 *            the second variable
+	 * @param rules
+	 *            the list to add the production of a new variable to
+	 * @return the variable for the pair
+	 */
+	private int tail(int first, int second, List rules) {
+		Long key = new Long(((long) first << 32) | (second & 0xffffffffL));
+		Integer v = (Integer) tails.get(key);
+		if (v != null)
+			return v.intValue();
+		int made = variable("D(" + (tails.size() + 1) + ")");
+		tails.put(key, new Integer(made));
+		rules.add(new Rule(made, first, second));
+		return made;
+	}
+
+	/**
+	 * Finds the nullable variables. Each production counts the symbols on its
+	 * right hand side not yet known to be nullable, and its left hand side
+	 * becomes nullable when the count reaches zero.
+	 *
+	 * @param rules
+	 *            the productions
+	 * @return the nullable flag of each variable
+	 */
+	private boolean[] nullable(List rules) {
+		int n = names.size();
+		boolean[] nullable = new boolean[n];
+		int[] pending = new int[rules.size()];
+		List[] occurrences = new List[n];
+		int[] worklist = new int[n];
+		int size = 0;
+		for (int i = 0; i < pending.length; i++) {
+			Rule rule = (Rule) rules.get(i);
+			int[] rhs = { rule.first, rule.second };
+			for (int k = 0; k < 2 && rhs[k] != NONE; k++) {
+				pending[i]++;
+				if (rhs[k] < 0)
+					continue;
+				if (occurrences[rhs[k]] == null)
+					occurrences[rhs[k]] = new ArrayList();
+				occurrences[rhs[k]].add(new Integer(i));
+			}
+			if (pending[i] == 0 && !nullable[rule.lhs]) {
+				nullable[rule.lhs] = true;
+				worklist[size++] = rule.lhs;
+			}
+		}
+		while (size > 0) {
+			List in = occurrences[worklist[--size]];
+			if (in == null)
+				continue;
+			for (int j = 0; j < in.size(); j++) {
+				int i = ((Integer) in.get(j)).intValue();
+				if (--pending[i] != 0)
+					continue;
+				int lhs = ((Rule) rules.get(i)).lhs;
+				if (!nullable[lhs]) {
+					nullable[lhs] = true;
+					worklist[size++] = lhs;
+				}
+			}
+		}
+		return nullable;
+	}
+
+	/**
+	 * Removes the lambda productions. A production with two variables also
+	 * gets the forms without either variable that is nullable.
+	 *
+	 * @param rules
+	 *            the productions, with at most two symbols on the right
+	 * @param nullable
+	 *            the nullable flag of each variable
+	 * @return the productions without lambda productions
+	 */
+	private List removeLambda(List rules, boolean[] nullable) {
+		Set result = new LinkedHashSet();
+		Iterator it = rules.iterator();
+		while (it.hasNext()) {
+			Rule rule = (Rule) it.next();
+			if (rule.first == NONE)
+				continue;
+			result.add(rule);
+			if (rule.second == NONE)
+				continue;
+			if (nullable[rule.first])
+				result.add(new Rule(rule.lhs, rule.second, NONE));
+			if (nullable[rule.second])
+				result.add(new Rule(rule.lhs, rule.first, NONE));
+		}
+		return new ArrayList(result);
+	}
+
+	/**
+	 * Removes the unit productions. Each variable gets the other productions
+	 * of every variable reachable from it through unit productions.
+	 *
+	 * @param rules
+	 *            the productions
+	 * @return the productions without unit productions
+	 */
+	private List removeUnits(List rules) {
+		int n = names.size();
+		List[] unitTargets = new List[n];
+		List[] others = new List[n];
+		Set result = new LinkedHashSet();
+		Iterator it = rules.iterator();
+		while (it.hasNext()) {
+			Rule rule = (Rule) it.next();
+			if (rule.isUnit()) {
+				if (unitTargets[rule.lhs] == null)
+					unitTargets[rule.lhs] = new ArrayList();
+				unitTargets[rule.lhs].add(new Integer(rule.first));
+				continue;
+			}
+			if (others[rule.lhs] == null)
+				others[rule.lhs] = new ArrayList();
+			others[rule.lhs].add(rule);
+			result.add(rule);
+		}
+		int[] mark = new int[n];
+		Arrays.fill(mark, -1);
+		int[] worklist = new int[n];
+		for (int v = 0; v < n; v++) {
+			if (unitTargets[v] == null)
+				continue;
+			int size = 0;
+			mark[v] = v;
+			worklist[size++] = v;
+			while (size > 0) {
+				List targets = unitTargets[worklist[--size]];
+				if (targets == null)
+					continue;
+				for (int j = 0; j < targets.size(); j++) {
+					int target = ((Integer) targets.get(j)).intValue();
+					if (mark[target] == v)
+						continue;
+					mark[target] = v;
+					worklist[size++] = target;
+					if (others[target] == null)
+						continue;
+					Iterator it2 = others[target].iterator();
+					while (it2.hasNext()) {
+						Rule rule = (Rule) it2.next();
+						result.add(new Rule(v, rule.first, rule.second));
+					}
+				}
+			}
+		}
+		return new ArrayList(result);
+	}
+
+	/**
+	 * Drops the productions that use a variable that derives no string of
+	 * terminals, and those on variables not reachable from the start
+	 * variable.
+	 *
+	 * @param rules
+	 *            the productions, none of them lambda or unit productions
+	 * @return the productions that may take part in a derivation
+	 */
+	private List prune(List rules) {
+		int n = names.size();
+		// With no unit productions, a variable derives a string of terminals
+		// exactly when it has a production whose variables all do.
+		boolean[] generating = new boolean[n];
+		int[] pending = new int[rules.size()];
+		List[] occurrences = new List[n];
+		int[] worklist = new int[n];
+		int size = 0;
+		for (int i = 0; i < pending.length; i++) {
+			Rule rule = (Rule) rules.get(i);
+			int[] rhs = { rule.first, rule.second };
+			for (int k = 0; k < 2; k++) {
+				if (rhs[k] < 0)
+					continue;
+				pending[i]++;
+				if (occurrences[rhs[k]] == null)
+					occurrences[rhs[k]] = new ArrayList();
+				occurrences[rhs[k]].add(new Integer(i));
+			}
+			if (pending[i] == 0 && !generating[rule.lhs]) {
+				generating[rule.lhs] = true;
+				worklist[size++] = rule.lhs;
+			}
+		}
+		while (size > 0) {
+			List in = occurrences[worklist[--size]];
+			if (in == null)
+				continue;
+			for (int j = 0; j < in.size(); j++) {
+				int i = ((Integer) in.get(j)).intValue();
+				if (--pending[i] != 0)
+					continue;
+				int lhs = ((Rule) rules.get(i)).lhs;
+				if (!generating[lhs]) {
+					generating[lhs] = true;
+					worklist[size++] = lhs;
+				}
+			}
+		}
+		List result = new ArrayList();
+		if (start < 0 || !generating[start])
+			return result;
+
+		List[] byLHS = new List[n];
+		for (int i = 0; i < pending.length; i++) {
+			Rule rule = (Rule) rules.get(i);
+			if (pending[i] != 0)
+				continue;
+			if (byLHS[rule.lhs] == null)
+				byLHS[rule.lhs] = new ArrayList();
+			byLHS[rule.lhs].add(rule);
+		}
+		boolean[] reachable = new boolean[n];
+		reachable[start] = true;
+		worklist[size++] = start;
+		while (size > 0) {
+			List on = byLHS[worklist[--size]];
+			if (on == null)
+				continue;
+			for (int j = 0; j < on.size(); j++) {
+				Rule rule = (Rule) on.get(j);
+				int[] rhs = { rule.first, rule.second };
+				for (int k = 0; k < 2; k++) {
+					if (rhs[k] < 0 || reachable[rhs[k]])
+						continue;
+					reachable[rhs[k]] = true;
+					worklist[size++] = rhs[k];
+				}
+			}
+		}
+		for (int i = 0; i < pending.length; i++) {
+			Rule rule = (Rule) rules.get(i);
+			if (pending[i] == 0 && reachable[rule.lhs])
+				result.add(rule);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns if the original grammar derives lambda. The converted grammar
+	 * never does.
+	 *
+	 * @return if the original grammar derives lambda
+	 */
+	public boolean derivesLambda() {
+		return derivesLambda;
+	}
+
+	/**
+	 * Returns the number of productions of the converted grammar.
+	 *
+	 * @return the number of productions
+	 */
+	public int getProductionCount() {
+		return rules.size();
+	}
+
+	/**
+	 * Returns the productions of the converted grammar. The variables made in
+	 * the conversion have names longer than one character, as described in
+	 * the class comment, so these productions may be passed to
+	 * {@link CNFConverter#convert} if single letter variables are wanted.
+	 *
+	 * @return the productions in Chomsky normal form
+	 */
+	public Production[] getProductions() {
+		Production[] productions = new Production[rules.size()];
+		for (int i = 0; i < productions.length; i++) {
+			Rule rule = (Rule) rules.get(i);
+			String rhs = rule.second == NONE ? ""
+					+ (char) -(rule.first + 1) : names.get(rule.first)
+					+ (String) names.get(rule.second);
+			productions[i] = new Production((String) names.get(rule.lhs), rhs);
+		}
+		return productions;
+	}
+
+	/**
+	 * Returns the converted grammar with single letter variables.
+	 *
+	 * @return the grammar in Chomsky normal form
+	 * @throws UnsupportedOperationException
+	 *             if the converted grammar needs more than 26 variables
+	 */
+	public Grammar getGrammar() {
+		Grammar grammar = new ContextFreeGrammar();
+		grammar.addProductions(CNFConverter.convert(getProductions()));
+		if (start >= 0)
+			grammar.setStartVariable((String) names.get(start));
+		return grammar;
+	}
+
+	/**
+	 * Returns if a string is derived by the original grammar, by the CYK
+	 * algorithm over the converted grammar. The cell for each substring is a
+	 * bit set of variables, and the productions with two variables are found
+	 * through the first of them.
+	 *
+	 * @param input
+	 *            the string to check
+	 * @return if the string is derived from the start variable
+	 */
+	public boolean accepts(CharSequence input) {
+		int n = input.length();
+		if (n == 0)
+			return derivesLambda;
+		if (start < 0)
+			return false;
+		// table[i][l] holds the variables that derive the l+1 characters
+		// starting at i.
+		BitSet[][] table = new BitSet[n][];
+		for (int i = 0; i < n; i++) {
+			table[i] = new BitSet[n - i];
+			table[i][0] = new BitSet();
+			List lhs = (List) terminalRules.get(new Character(input.charAt(i)));
+			if (lhs == null)
+				return false;
+			for (int j = 0; j < lhs.size(); j++)
+				table[i][0].set(((Integer) lhs.get(j)).intValue());
+		}
+		for (int length = 2; length <= n; length++) {
+			for (int i = 0; i + length <= n; i++) {
+				BitSet cell = new BitSet();
+				for (int split = 1; split < length; split++) {
+					BitSet left = table[i][split - 1];
+					BitSet right = table[i + split][length - split - 1];
+					if (right.isEmpty())
+						continue;
+					for (int v = left.nextSetBit(0); v >= 0; v = left
+							.nextSetBit(v + 1))
+						for (Rule rule = binaryByFirst[v]; rule != null; rule = rule.next)
+							if (right.get(rule.second))
+								cell.set(rule.lhs);
+				}
+				table[i][length - 1] = cell;
+			}
+		}
+		return table[0][n - 1].get(start);
+	}
+
+	/**
+	 * A production with at most two symbols on the right hand side.
+	 * <CODE>NONE</CODE> stands in for an absent symbol.
+	 */
+	private static class Rule {
+		Rule(int lhs, int first, int second) {
+			this.lhs = lhs;
+			this.first = first;
+			this.second = second;
+		}
+
+		boolean isUnit() {
+			return first >= 0 && second == NONE;
+		}
+
+		public boolean equals(Object object) {
+			if (!(object instanceof Rule))
+				return false;
+			Rule rule = (Rule) object;
+			return lhs == rule.lhs && first == rule.first
+					&& second == rule.second;
+		}
+
+		public int hashCode() {
+			return (lhs * 31 + first) * 31 + second;
+		}
+
+		final int lhs, first, second;
+
+		/** The next production with the same first variable. */
+		Rule next;
+	}
+
+	/** The value for an absent symbol. */
+	private static final int NONE = Integer.MIN_VALUE;
+
+	/** The names of the variables, indexed by number. */
+	private List names = new ArrayList();
+
+	/** Maps variable names to numbers. */
+	private Map variableNumbers = new HashMap();
+
+	/** Maps pairs of symbols to the variable that derives them. */
+	private Map tails = new HashMap();
+
+	/** The number of the start variable, or -1 if there is none. */
+	private int start = -1;
+
+	/** If the original grammar derives lambda. */
+	private boolean derivesLambda;
+
+	/** The productions of the converted grammar. */
+	private List rules;
+
+	/** The head of the list of productions with each first variable. */
+	private Rule[] binaryByFirst;
+
+	/** Maps terminals to lists of the variables that derive them. */
+	private Map terminalRules = new HashMap();
+}
@@ -98,6 +98,7 @@ public abstract class Grammar implements Serializable, Cloneable {
 	 */
 	public void setStartVariable(String variable) {
 		myStartVariable = variable;
+		myVersion++;
 	}
 
 	/**
@@ -152,11 +153,14 @@ public abstract class Grammar implements Serializable, Cloneable {
 	 */
 	public void addProduction(Production production) {
         checkProduction(production);
-		GrammarChecker gc = new GrammarChecker();
+		ProductionIndex index = index();
 		/** if production already in grammar. */
-		if (GrammarChecker.isProductionInGrammar(production, this))
+		if (index.contains(production))
 			return;
 		myProductions.add(production);
+		index.add(production);
+		production.addGrammar(this);
+		myVersion++;
 
 		/**
 		 * add all new variables introduced by production to set of variables.
@@ -200,16 +204,19 @@ public abstract class Grammar implements Serializable, Cloneable {
 	 *            the production to remove.
 	 */
 	public void removeProduction(Production production) {
-		myProductions.remove(production);
-		GrammarChecker gc = new GrammarChecker();
+		ProductionIndex index = index();
+		int place = myProductions.indexOf(production);
+		if (place != -1)
+			((Production) myProductions.remove(place)).removeGrammar(this);
+		index.remove(production);
+		myVersion++;
 		/**
 		 * Remove any variables that existed only in the production being
 		 * removed.
 		 */
 		String[] variablesInProduction = production.getVariables();
 		for (int k = 0; k < variablesInProduction.length; k++) {
-			if (!GrammarChecker.isVariableInProductions(this,
-					variablesInProduction[k])) {
+			if (!index.occurs(variablesInProduction[k])) {
 				removeVariable(variablesInProduction[k]);
 			}
 		}
@@ -220,13 +227,85 @@ public abstract class Grammar implements Serializable, Cloneable {
 		 */
 		String[] terminalsInProduction = production.getTerminals();
 		for (int i = 0; i < terminalsInProduction.length; i++) {
-			if (!GrammarChecker.isTerminalInProductions(this,
-					terminalsInProduction[i])) {
+			if (!index.occurs(terminalsInProduction[i])) {
 				removeTerminal(terminalsInProduction[i]);
 			}
 		}
 	}
 
+	/**
+	 * Returns the index of the productions of this grammar, building it if
+	 * there is none yet or if a production was changed in place since it was
+	 * built. Building it also makes sure each production knows it is in this
+	 * grammar, which a grammar read back from a serialized form needs.
+	 * 
+	 * @return the up to date index of the productions
+	 */
+	ProductionIndex index() {
+		if (myIndex == null) {
+			for (int i = 0; i < myProductions.size(); i++)
+				((Production) myProductions.get(i)).addGrammar(this);
+			myIndex = new ProductionIndex(myProductions);
+		}
+		return myIndex;
+	}
+
+	/**
+	 * Called by a production of this grammar when either of its sides is
+	 * changed in place, which makes the index of the productions stale.
+	 */
+	void productionChanged() {
+		myIndex = null;
+		myVersion++;
+	}
+
+	/**
+	 * Returns the productions with <CODE>variable</CODE> as the left hand
+	 * side.
+	 * 
+	 * @param variable
+	 *            the left hand side
+	 * @return the productions on that left hand side, in the order they were
+	 *         added
+	 */
+	public Production[] getProductionsOnVariable(String variable) {
+		return index().onLHS(variable);
+	}
+
+	/**
+	 * Returns the productions with <CODE>symbol</CODE> somewhere on the right
+	 * hand side.
+	 * 
+	 * @param symbol
+	 *            the variable or terminal
+	 * @return the productions with that symbol on the right hand side
+	 */
+	public Production[] getProductionsWithSymbolOnRHS(String symbol) {
+		return index().withOnRHS(symbol);
+	}
+
+	/**
+	 * Returns the productions whose right hand side has <CODE>length</CODE>
+	 * symbols. Lambda productions have length 0.
+	 * 
+	 * @param length
+	 *            the number of symbols on the right hand side
+	 * @return the productions with a right hand side of that length
+	 */
+	public Production[] getProductionsWithRHSLength(int length) {
+		return index().ofLength(length);
+	}
+
+	/**
+	 * Returns the productions whose right hand side has no variables,
+	 * including the lambda productions.
+	 * 
+	 * @return the productions with only terminals on the right hand side
+	 */
+	public Production[] getTerminalProductions() {
+		return index().terminalOnly();
+	}
+
 	/**
 	 * Returns all productions in the grammar.
 	 * 
@@ -294,6 +373,18 @@ public abstract class Grammar implements Serializable, Cloneable {
 		return (String[]) myVariables.toArray(new String[0]);
 	}
 
+	/**
+	 * Returns the version of this grammar. The version changes whenever a
+	 * production is added, removed or changed in place or the start variable
+	 * is set, so results computed from a grammar may be cached along with the
+	 * version they were computed for.
+	 * 
+	 * @return the version of this grammar
+	 */
+	public int getVersion() {
+		return myVersion;
+	}
+
 	/**
 	 * Returns true if <CODE>production</CODE> is in the set of productions of
 	 * the grammar.
@@ -304,7 +395,7 @@ public abstract class Grammar implements Serializable, Cloneable {
 	 *         the grammar.
 	 */
 	public boolean isProduction(Production production) {
-		return myProductions.contains(production);
+		return index().contains(production);
 	}
 
 	/**
@@ -428,6 +519,12 @@ public abstract class Grammar implements Serializable, Cloneable {
 	/** Set of Production rules. */
 	protected List myProductions = new ArrayList();
 
+	/** The index of the productions, built when first needed. */
+	private transient ProductionIndex myIndex = null;
+
+	/** The number of changes made to this grammar. */
+	private transient int myVersion = 0;
+
 
 
 }
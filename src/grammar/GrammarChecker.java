@@ -116,15 +116,9 @@ public class GrammarChecker {
 	 */
 	public static boolean isVariableInProductions(Grammar grammar,
 			String variable) {
-		ProductionChecker pc = new ProductionChecker();
-		Production[] productions = grammar.getProductions();
-		for (int k = 0; k < productions.length; k++) {
-			if (ProductionChecker.isVariableInProduction(variable,
-					productions[k])) {
-				return true;
-			}
-		}
-		return false;
+		return variable.length() == 1
+				&& ProductionChecker.isVariable(variable.charAt(0))
+				&& grammar.index().occurs(variable);
 	}
 
 	/**
@@ -137,15 +131,9 @@ public class GrammarChecker {
 	 */
 	public static boolean isTerminalInProductions(Grammar grammar,
 			String terminal) {
-		ProductionChecker pc = new ProductionChecker();
-		Production[] productions = grammar.getProductions();
-		for (int k = 0; k < productions.length; k++) {
-			if (ProductionChecker.isTerminalInProduction(terminal,
-					productions[k])) {
-				return true;
-			}
-		}
-		return false;
+		return terminal.length() == 1
+				&& ProductionChecker.isTerminal(terminal.charAt(0))
+				&& grammar.index().occurs(terminal);
 	}
 
 	/**
@@ -159,15 +147,7 @@ public class GrammarChecker {
 	 */
 	public static Production[] getProductionsOnVariable(String variable,
 			Grammar grammar) {
-		ArrayList list = new ArrayList();
-		ProductionChecker pc = new ProductionChecker();
-		Production[] productions = grammar.getProductions();
-		for (int k = 0; k < productions.length; k++) {
-			if (variable.equals(productions[k].getLHS())) {
-				list.add(productions[k]);
-			}
-		}
-		return (Production[]) list.toArray(new Production[0]);
+		return grammar.getProductionsOnVariable(variable);
 	}
 
 	/**
@@ -186,11 +166,9 @@ public class GrammarChecker {
 	public static Production[] getNonUnitProductionsOnVariable(String variable,
 			Grammar grammar) {
 		ArrayList list = new ArrayList();
-		ProductionChecker pc = new ProductionChecker();
-		Production[] productions = grammar.getProductions();
+		Production[] productions = grammar.getProductionsOnVariable(variable);
 		for (int k = 0; k < productions.length; k++) {
-			if (variable.equals(productions[k].getLHS())
-					&& !ProductionChecker.isUnitProduction(productions[k])) {
+			if (!ProductionChecker.isUnitProduction(productions[k])) {
 				list.add(productions[k]);
 			}
 		}
@@ -210,12 +188,7 @@ public class GrammarChecker {
 	 */
 	public static boolean isProductionInGrammar(Production production,
 			Grammar grammar) {
-		Production[] productions = grammar.getProductions();
-		for (int k = 0; k < productions.length; k++) {
-			if (production.equals(productions[k]))
-				return true;
-		}
-		return false;
+		return grammar.isProduction(production);
 	}
 
 	/**
@@ -256,9 +229,9 @@ public class GrammarChecker {
 	 */
 	public static Production[] getProductionsWithVariableOnRHS(String variable,
 			Grammar grammar) {
-		ProductionChecker pc = new ProductionChecker();
 		ArrayList list = new ArrayList();
-		Production[] productions = grammar.getProductions();
+		Production[] productions = grammar
+				.getProductionsWithSymbolOnRHS(variable);
 		for (int k = 0; k < productions.length; k++) {
 			if (ProductionChecker.isVariableOnRHS(productions[k], variable))
 				list.add(productions[k]);
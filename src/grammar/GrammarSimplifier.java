@@ -0,0 +1,466 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar;
+
+import grammar.cfg.ContextFreeGrammar;
+import java.util.*;
+
+/**
+ * The <CODE>GrammarSimplifier</CODE> removes lambda, unit and useless
+ * productions from a context free grammar without any user interaction. It
+ * does the same transformations as the {@link LambdaProductionRemover},
+ * {@link UnitProductionRemover} and {@link UselessProductionRemover}, which
+ * the step by step views still use, but works on productions with interned
+ * integer symbols. The nullable, generating and reachable variables are each
+ * found with a single worklist pass that keeps, for every production, a count
+ * of the symbols on its right hand side not yet known to have the property, so
+ * each of these sets takes time linear in the size of the grammar. Each
+ * transformation emits its productions in one pass, and
+ * {@link #getSimplifiedGrammar} runs all three without building a grammar in
+ * between.
+ * <P>
+ *
+ * Variables are numbered from 0; a terminal <CODE>c</CODE> is numbered
+ * <CODE>-(c+1)</CODE>.
+ *
+ * @see grammar.LambdaProductionRemover
+ * @see grammar.UnitProductionRemover
+ * @see grammar.UselessProductionRemover
+ */
+
+public class GrammarSimplifier {
+	/**
+	 * Instantiates a simplifier for a grammar.
+	 *
+	 * @param grammar
+	 *            the context free grammar to simplify
+	 */
+	public GrammarSimplifier(Grammar grammar) {
+		String start = grammar.getStartVariable();
+		if (start != null && start.length() == 1)
+			this.start = intern(start.charAt(0));
+		Production[] productions = grammar.getProductions();
+		rules = new ArrayList(productions.length);
+		for (int i = 0; i < productions.length; i++) {
+			String rhs = productions[i].getRHS();
+			int[] symbols = new int[rhs.length()];
+			for (int k = 0; k < symbols.length; k++)
+				symbols[k] = intern(rhs.charAt(k));
+			rules.add(new Rule(intern(productions[i].getLHS().charAt(0)),
+					symbols));
+		}
+	}
+
+	/**
+	 * Returns the number of a symbol, interning it if it is a new variable.
+	 *
+	 * @param symbol
+	 *            the symbol
+	 * @return the number of the symbol
+	 */
+	private int intern(char symbol) {
+		if (!ProductionChecker.isVariable(symbol))
+			return -(symbol + 1);
+		Character key = new Character(symbol);
+		Integer number = (Integer) variableNumbers.get(key);
+		if (number == null) {
+			number = new Integer(variables.length());
+			variableNumbers.put(key, number);
+			variables.append(symbol);
+		}
+		return number.intValue();
+	}
+
+	/**
+	 * Returns the set of variables that derive lambda.
+	 *
+	 * @return the set of nullable variables
+	 */
+	public Set getNullableVariables() {
+		return toSet(nullable(rules));
+	}
+
+	/**
+	 * Returns the set of variables that derive some string of terminals.
+	 *
+	 * @return the set of generating variables
+	 */
+	public Set getGeneratingVariables() {
+		return toSet(generating(rules));
+	}
+
+	/**
+	 * Returns a grammar with the lambda productions removed. This is the
+	 * grammar of {@link LambdaProductionRemover}.
+	 *
+	 * @return the lambda productionless grammar
+	 */
+	public Grammar getLambdaProductionlessGrammar() {
+		return toGrammar(removeLambda(rules));
+	}
+
+	/**
+	 * Returns a grammar with the unit productions removed. This is the grammar
+	 * of {@link UnitProductionRemover}.
+	 *
+	 * @return the unit productionless grammar
+	 */
+	public Grammar getUnitProductionlessGrammar() {
+		return toGrammar(removeUnits(rules));
+	}
+
+	/**
+	 * Returns a grammar with the useless productions removed. This is the
+	 * grammar of {@link UselessProductionRemover}.
+	 *
+	 * @return the useless productionless grammar
+	 */
+	public Grammar getUselessProductionlessGrammar() {
+		return toGrammar(removeUseless(rules));
+	}
+
+	/**
+	 * Returns a grammar with the lambda productions, then the unit
+	 * productions, then the useless productions removed.
+	 *
+	 * @return the simplified grammar
+	 */
+	public Grammar getSimplifiedGrammar() {
+		return toGrammar(removeUseless(removeUnits(removeLambda(rules))));
+	}
+
+	/**
+	 * Finds the nullable variables. A production is counted down once for
+	 * each nullable occurrence on its right hand side, and its left hand side
+	 * becomes nullable when the count reaches zero.
+	 *
+	 * @param rules
+	 *            the productions
+	 * @return the nullable flag of each variable
+	 */
+	private boolean[] nullable(List rules) {
+		return derives(rules, false);
+	}
+
+	/**
+	 * Finds the generating variables, in the same way as the nullable ones
+	 * except that terminals do not count against a production.
+	 *
+	 * @param rules
+	 *            the productions
+	 * @return the generating flag of each variable
+	 */
+	private boolean[] generating(List rules) {
+		return derives(rules, true);
+	}
+
+	/**
+	 * Finds the variables with a production whose right hand side holds only
+	 * symbols that have the property, where variables have it if found so
+	 * and terminals have it if <CODE>terminals</CODE> is true.
+	 *
+	 * @param rules
+	 *            the productions
+	 * @param terminals
+	 *            if terminals have the property
+	 * @return the flag of each variable
+	 */
+	private boolean[] derives(List rules, boolean terminals) {
+		int n = variables.length();
+		boolean[] found = new boolean[n];
+		int[] pending = new int[rules.size()];
+		// For each variable, the productions it occurs in, once per
+		// occurrence.
+		int[] occurrenceCount = new int[n];
+		for (int i = 0; i < pending.length; i++) {
+			int[] rhs = ((Rule) rules.get(i)).rhs;
+			for (int k = 0; k < rhs.length; k++)
+				if (rhs[k] >= 0)
+					occurrenceCount[rhs[k]]++;
+		}
+		int[][] occurrences = new int[n][];
+		for (int v = 0; v < n; v++)
+			occurrences[v] = new int[occurrenceCount[v]];
+		Arrays.fill(occurrenceCount, 0);
+		int[] worklist = new int[n];
+		int size = 0;
+		for (int i = 0; i < pending.length; i++) {
+			Rule rule = (Rule) rules.get(i);
+			for (int k = 0; k < rule.rhs.length; k++) {
+				int s = rule.rhs[k];
+				if (s >= 0)
+					occurrences[s][occurrenceCount[s]++] = i;
+				else if (terminals)
+					continue;
+				pending[i]++;
+			}
+			if (pending[i] == 0 && !found[rule.lhs]) {
+				found[rule.lhs] = true;
+				worklist[size++] = rule.lhs;
+			}
+		}
+		while (size > 0) {
+			int[] in = occurrences[worklist[--size]];
+			for (int j = 0; j < in.length; j++) {
+				if (--pending[in[j]] != 0)
+					continue;
+				int lhs = ((Rule) rules.get(in[j])).lhs;
+				if (!found[lhs]) {
+					found[lhs] = true;
+					worklist[size++] = lhs;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Replaces each production with every form of it where some of the
+	 * nullable variables on its right hand side are left out, except the form
+	 * with an empty right hand side. The forms are built from the end of the
+	 * right hand side, each suffix's distinct forms from those of the next,
+	 * so the work follows the number of distinct forms rather than the number
+	 * of ways to choose the nullable occurrences; repeats of one nullable
+	 * variable give only as many forms as there are repeats.
+	 *
+	 * @param rules
+	 *            the productions
+	 * @return the lambda productionless productions
+	 */
+	private List removeLambda(List rules) {
+		boolean[] nullable = nullable(rules);
+		Set result = new LinkedHashSet();
+		for (int i = 0; i < rules.size(); i++) {
+			Rule rule = (Rule) rules.get(i);
+			int[] rhs = rule.rhs;
+			// The forms of the suffix of rhs from k on.
+			Set forms = new LinkedHashSet();
+			forms.add(new Rule(rule.lhs, new int[0]));
+			for (int k = rhs.length - 1; k >= 0; k--) {
+				Set longer = new LinkedHashSet();
+				Iterator it = forms.iterator();
+				while (it.hasNext()) {
+					int[] suffix = ((Rule) it.next()).rhs;
+					int[] symbols = new int[suffix.length + 1];
+					symbols[0] = rhs[k];
+					System.arraycopy(suffix, 0, symbols, 1, suffix.length);
+					longer.add(new Rule(rule.lhs, symbols));
+				}
+				if (rhs[k] >= 0 && nullable[rhs[k]])
+					longer.addAll(forms);
+				forms = longer;
+			}
+			Iterator it = forms.iterator();
+			while (it.hasNext()) {
+				Rule form = (Rule) it.next();
+				if (form.rhs.length != 0)
+					result.add(form);
+			}
+		}
+		return new ArrayList(result);
+	}
+
+	/**
+	 * Replaces the unit productions. Each variable gets the non-unit
+	 * productions of every variable reachable from it through unit
+	 * productions.
+	 *
+	 * @param rules
+	 *            the productions
+	 * @return the unit productionless productions
+	 */
+	private List removeUnits(List rules) {
+		int n = variables.length();
+		List[] unitTargets = new List[n];
+		List[] nonUnit = new List[n];
+		for (int v = 0; v < n; v++) {
+			unitTargets[v] = new ArrayList();
+			nonUnit[v] = new ArrayList();
+		}
+		for (int i = 0; i < rules.size(); i++) {
+			Rule rule = (Rule) rules.get(i);
+			if (rule.isUnit())
+				unitTargets[rule.lhs].add(new Integer(rule.rhs[0]));
+			else
+				nonUnit[rule.lhs].add(rule);
+		}
+		Set result = new LinkedHashSet();
+		for (int i = 0; i < rules.size(); i++) {
+			Rule rule = (Rule) rules.get(i);
+			if (!rule.isUnit())
+				result.add(rule);
+		}
+		int[] mark = new int[n];
+		Arrays.fill(mark, -1);
+		int[] worklist = new int[n];
+		for (int v = 0; v < n; v++) {
+			if (unitTargets[v].isEmpty())
+				continue;
+			int size = 0;
+			mark[v] = v;
+			worklist[size++] = v;
+			while (size > 0) {
+				Iterator it = unitTargets[worklist[--size]].iterator();
+				while (it.hasNext()) {
+					int target = ((Integer) it.next()).intValue();
+					if (mark[target] == v)
+						continue;
+					mark[target] = v;
+					worklist[size++] = target;
+					Iterator it2 = nonUnit[target].iterator();
+					while (it2.hasNext())
+						result.add(new Rule(v, ((Rule) it2.next()).rhs));
+				}
+			}
+		}
+		return new ArrayList(result);
+	}
+
+	/**
+	 * Removes the productions that use variables that derive no string of
+	 * terminals, then the productions on variables that cannot be reached
+	 * from the start variable. If the start variable derives no string of
+	 * terminals there are no productions left.
+	 *
+	 * @param rules
+	 *            the productions
+	 * @return the useless productionless productions
+	 */
+	private List removeUseless(List rules) {
+		boolean[] generating = generating(rules);
+		List result = new ArrayList();
+		if (start < 0 || !generating[start])
+			return result;
+		int n = variables.length();
+		List[] byLHS = new List[n];
+		for (int v = 0; v < n; v++)
+			byLHS[v] = new ArrayList();
+		boolean[] useful = new boolean[rules.size()];
+		for (int i = 0; i < useful.length; i++) {
+			Rule rule = (Rule) rules.get(i);
+			useful[i] = generating[rule.lhs];
+			for (int k = 0; useful[i] && k < rule.rhs.length; k++)
+				useful[i] = rule.rhs[k] < 0 || generating[rule.rhs[k]];
+			if (useful[i])
+				byLHS[rule.lhs].add(rule);
+		}
+		boolean[] reachable = new boolean[n];
+		int[] worklist = new int[n];
+		int size = 0;
+		reachable[start] = true;
+		worklist[size++] = start;
+		while (size > 0) {
+			Iterator it = byLHS[worklist[--size]].iterator();
+			while (it.hasNext()) {
+				int[] rhs = ((Rule) it.next()).rhs;
+				for (int k = 0; k < rhs.length; k++) {
+					if (rhs[k] < 0 || reachable[rhs[k]])
+						continue;
+					reachable[rhs[k]] = true;
+					worklist[size++] = rhs[k];
+				}
+			}
+		}
+		for (int i = 0; i < useful.length; i++) {
+			Rule rule = (Rule) rules.get(i);
+			if (useful[i] && reachable[rule.lhs])
+				result.add(rule);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the set of variables with a flag set.
+	 */
+	private Set toSet(boolean[] flags) {
+		Set set = new HashSet();
+		for (int v = 0; v < flags.length; v++)
+			if (flags[v])
+				set.add(variables.substring(v, v + 1));
+		return set;
+	}
+
+	/**
+	 * Builds a grammar from productions over interned symbols.
+	 *
+	 * @param rules
+	 *            the productions
+	 * @return the grammar, with the start variable of the original grammar
+	 */
+	private Grammar toGrammar(List rules) {
+		Grammar grammar = new ContextFreeGrammar();
+		if (start >= 0)
+			grammar.setStartVariable(variables.substring(start, start + 1));
+		StringBuffer rhs = new StringBuffer();
+		for (int i = 0; i < rules.size(); i++) {
+			Rule rule = (Rule) rules.get(i);
+			rhs.setLength(0);
+			for (int k = 0; k < rule.rhs.length; k++) {
+				int s = rule.rhs[k];
+				rhs.append(s >= 0 ? variables.charAt(s) : (char) -(s + 1));
+			}
+			grammar.addProduction(new Production(variables.substring(
+					rule.lhs, rule.lhs + 1), rhs.toString()));
+		}
+		return grammar;
+	}
+
+	/**
+	 * A production over interned symbols.
+	 */
+	private static class Rule {
+		Rule(int lhs, int[] rhs) {
+			this.lhs = lhs;
+			this.rhs = rhs;
+		}
+
+		boolean isUnit() {
+			return rhs.length == 1 && rhs[0] >= 0;
+		}
+
+		public boolean equals(Object object) {
+			if (!(object instanceof Rule))
+				return false;
+			Rule rule = (Rule) object;
+			return lhs == rule.lhs && Arrays.equals(rhs, rule.rhs);
+		}
+
+		public int hashCode() {
+			return lhs * 31 + Arrays.hashCode(rhs);
+		}
+
+		final int lhs;
+
+		final int[] rhs;
+	}
+
+	/** The productions of the grammar. */
+	private List rules;
+
+	/** The variables, indexed by number. */
+	private StringBuffer variables = new StringBuffer();
+
+	/** Maps variable characters to numbers. */
+	private Map variableNumbers = new HashMap();
+
+	/** The number of the start variable, or -1 if there is none. */
+	private int start = -1;
+}
@@ -23,8 +23,10 @@ package grammar;
 import gui.environment.Universe;
 
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -59,6 +61,7 @@ public class Production implements Serializable {
 	 */
 	public void setRHS(String rhs) {
 		myRHS = rhs;
+		changed();
 	}
 
 	/**
@@ -69,6 +72,114 @@ public class Production implements Serializable {
 	 */
 	public void setLHS(String lhs) {
 		myLHS = lhs;
+		changed();
+	}
+
+	/**
+	 * Drops the cached symbol arrays after a change to either side, and lets
+	 * the grammars this production is in know that it changed.
+	 */
+	private void changed() {
+		mySymbols = null;
+		if (myGrammars == null)
+			return;
+		for (int i = 0; i < myGrammars.size(); i++) {
+			Grammar grammar = (Grammar) ((WeakReference) myGrammars.get(i)).get();
+			if (grammar != null)
+				grammar.productionChanged();
+		}
+	}
+
+	/**
+	 * Notes that this production is in a grammar, so that the grammar is told
+	 * when this production is changed in place. The grammar is only weakly
+	 * held, since a production may outlive the grammars it was in.
+	 * 
+	 * @param grammar
+	 *            the grammar this production is in
+	 */
+	void addGrammar(Grammar grammar) {
+		if (myGrammars == null)
+			myGrammars = new ArrayList(1);
+		for (int i = myGrammars.size() - 1; i >= 0; i--) {
+			Object known = ((WeakReference) myGrammars.get(i)).get();
+			if (known == grammar)
+				return;
+			if (known == null)
+				myGrammars.remove(i);
+		}
+		myGrammars.add(new WeakReference(grammar));
+	}
+
+	/**
+	 * Notes that this production is no longer in a grammar.
+	 * 
+	 * @param grammar
+	 *            the grammar this production was removed from
+	 */
+	void removeGrammar(Grammar grammar) {
+		if (myGrammars == null)
+			return;
+		for (int i = myGrammars.size() - 1; i >= 0; i--) {
+			Object known = ((WeakReference) myGrammars.get(i)).get();
+			if (known == grammar || known == null)
+				myGrammars.remove(i);
+		}
+	}
+
+	/**
+	 * Returns the cached symbol arrays of this production, indexed by the
+	 * constants below, computing them if needed.
+	 * 
+	 * @return the cached symbol arrays
+	 */
+	private String[][] symbols() {
+		String[][] symbols = mySymbols;
+		if (symbols != null)
+			return symbols;
+		String lhs = myLHS == null ? "" : myLHS;
+		symbols = new String[8][];
+		ArrayList rhsVariables = new ArrayList(), rhsTerminals = new ArrayList();
+		String[] rhsSymbols = new String[myRHS.length()];
+		for (int i = 0; i < myRHS.length(); i++) {
+			rhsSymbols[i] = myRHS.substring(i, i + 1);
+			if (ProductionChecker.isVariable(myRHS.charAt(i)))
+				rhsVariables.add(rhsSymbols[i]);
+			else
+				rhsTerminals.add(rhsSymbols[i]);
+		}
+		ArrayList lhsVariables = new ArrayList(), lhsTerminals = new ArrayList();
+		for (int i = 0; i < lhs.length(); i++) {
+			String symbol = lhs.substring(i, i + 1);
+			if (ProductionChecker.isVariable(lhs.charAt(i)))
+				lhsVariables.add(symbol);
+			else
+				lhsTerminals.add(symbol);
+		}
+		Set variables = new LinkedHashSet(rhsVariables);
+		variables.addAll(lhsVariables);
+		Set terminals = new LinkedHashSet(rhsTerminals);
+		terminals.addAll(lhsTerminals);
+		SortedSet all = new TreeSet(variables);
+		all.addAll(terminals);
+		symbols[RHS_VARIABLES] = (String[]) rhsVariables.toArray(new String[0]);
+		symbols[RHS_TERMINALS] = (String[]) rhsTerminals.toArray(new String[0]);
+		symbols[LHS_VARIABLES] = (String[]) lhsVariables.toArray(new String[0]);
+		symbols[LHS_TERMINALS] = (String[]) lhsTerminals.toArray(new String[0]);
+		symbols[VARIABLES] = (String[]) variables.toArray(new String[0]);
+		symbols[TERMINALS] = (String[]) terminals.toArray(new String[0]);
+		symbols[SYMBOLS] = (String[]) all.toArray(new String[0]);
+		symbols[RHS_SYMBOLS] = rhsSymbols;
+		mySymbols = symbols;
+		return symbols;
+	}
+
+	/**
+	 * Returns a copy of one of the cached symbol arrays, so that callers may
+	 * do what they like with the array they get.
+	 */
+	private String[] copy(int which) {
+		return (String[]) symbols()[which].clone();
 	}
 
 	/**
@@ -97,10 +208,7 @@ public class Production implements Serializable {
 	 * @return all symbols in a production
 	 */
 	public String[] getSymbols() {
-		SortedSet symbols = new TreeSet();
-		symbols.addAll(Arrays.asList(getVariables()));
-		symbols.addAll(Arrays.asList(getTerminals()));
-		return (String[]) symbols.toArray(new String[0]);
+		return copy(SYMBOLS);
 	}
 
 	/**
@@ -109,23 +217,7 @@ public class Production implements Serializable {
 	 * @return all variables in the production.
 	 */
 	public String[] getVariables() {
-
-		ArrayList list = new ArrayList();
-		String[] rhsVariables = getVariablesOnRHS();
-		for (int k = 0; k < rhsVariables.length; k++) {
-			if (!list.contains(rhsVariables[k])) {
-				list.add(rhsVariables[k]);
-			}
-		}
-
-		String[] lhsVariables = getVariablesOnLHS();
-		for (int i = 0; i < lhsVariables.length; i++) {
-			if (!list.contains(lhsVariables[i])) {
-				list.add(lhsVariables[i]);
-			}
-		}
-
-		return (String[]) list.toArray(new String[0]);
+		return copy(VARIABLES);
 	}
 
 	/**
@@ -134,14 +226,7 @@ public class Production implements Serializable {
 	 * @return all variables on the left hand side of the production.
 	 */
 	public String[] getVariablesOnLHS() {
-		ArrayList list = new ArrayList();
-        if(myLHS == null) return new String[0];
-		for(int i = 0; i < myLHS.length(); i++) {
-			char c = myLHS.charAt(i);
-			if (ProductionChecker.isVariable(c))
-				list.add(myLHS.substring(i, i + 1));
-		}
-		return (String[]) list.toArray(new String[0]);
+		return copy(LHS_VARIABLES);
 	}
 
 	/**
@@ -150,14 +235,7 @@ public class Production implements Serializable {
 	 * @return all variables on the right hand side of the production.
 	 */
 	public String[] getVariablesOnRHS() {
-		ProductionChecker pc = new ProductionChecker();
-		ArrayList list = new ArrayList();
-		for (int i = 0; i < myRHS.length(); i++) {
-			char c = myRHS.charAt(i);
-			if (ProductionChecker.isVariable(c))
-				list.add(myRHS.substring(i, i + 1));
-		}
-		return (String[]) list.toArray(new String[0]);
+		return copy(RHS_VARIABLES);
 	}
 
 	/**
@@ -166,22 +244,7 @@ public class Production implements Serializable {
 	 * @return all terminals in the production.
 	 */
 	public String[] getTerminals() {
-		ArrayList list = new ArrayList();
-		String[] rhsTerminals = getTerminalsOnRHS();
-		for (int k = 0; k < rhsTerminals.length; k++) {
-			if (!list.contains(rhsTerminals[k])) {
-				list.add(rhsTerminals[k]);
-			}
-		}
-
-		String[] lhsTerminals = getTerminalsOnLHS();
-		for (int i = 0; i < lhsTerminals.length; i++) {
-			if (!list.contains(lhsTerminals[i])) {
-				list.add(lhsTerminals[i]);
-			}
-		}
-
-		return (String[]) list.toArray(new String[0]);
+		return copy(TERMINALS);
 	}
 
 	/**
@@ -190,14 +253,7 @@ public class Production implements Serializable {
 	 * @return all terminals on the right hand side of the production.
 	 */
 	public String[] getTerminalsOnRHS() {
-		ProductionChecker pc = new ProductionChecker();
-		ArrayList list = new ArrayList();
-		for (int i = 0; i < myRHS.length(); i++) {
-			char c = myRHS.charAt(i);
-			if (ProductionChecker.isTerminal(c))
-				list.add(myRHS.substring(i, i + 1));
-		}
-		return (String[]) list.toArray(new String[0]);
+		return copy(RHS_TERMINALS);
 	}
 
 	/**
@@ -232,13 +288,7 @@ public class Production implements Serializable {
 	 * @return all terminals on the left hand side of the production.
 	 */
 	public String[] getTerminalsOnLHS() {
-		ArrayList list = new ArrayList();
-		for (int i = 0; i < myLHS.length(); i++) {
-			char c = myLHS.charAt(i);
-			if (ProductionChecker.isTerminal(c))
-				list.add(myLHS.substring(i, i + 1));
-		}
-		return (String[]) list.toArray(new String[0]);
+		return copy(LHS_TERMINALS);
 	}
 
 	/**
@@ -263,12 +313,7 @@ public class Production implements Serializable {
 	 * the array of strings <CODE>{"B","C","D"}</CODE>.
 	 */
 	public String[] getSymbolsOnRHS() {
-		ArrayList list = new ArrayList();
-		for (int i = 0; i < myRHS.length(); i++) {
-			char c = myRHS.charAt(i);
-			list.add(myRHS.substring(i, i + 1));
-		}
-		return (String[]) list.toArray(new String[0]);
+		return copy(RHS_SYMBOLS);
 	}
 
 	/** the left hand side of the production. */
@@ -276,4 +321,18 @@ public class Production implements Serializable {
 
 	/** the right hand side of the production. */
 	protected String myRHS;
+
+	/** The indices of the cached symbol arrays. */
+	private static final int RHS_VARIABLES = 0, RHS_TERMINALS = 1,
+			LHS_VARIABLES = 2, LHS_TERMINALS = 3, VARIABLES = 4, TERMINALS = 5,
+			SYMBOLS = 6, RHS_SYMBOLS = 7;
+
+	/** The cached symbol arrays, or <CODE>null</CODE> if not computed. */
+	private transient String[][] mySymbols = null;
+
+	/**
+	 * Weak references to the grammars this production is in, or
+	 * <CODE>null</CODE> if it has not been in any.
+	 */
+	private transient ArrayList myGrammars = null;
 }
@@ -0,0 +1,188 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar;
+
+import java.util.*;
+
+/**
+ * A <CODE>ProductionIndex</CODE> keeps the productions of a grammar indexed
+ * by left hand side, by each symbol occurring on the right hand side, by the
+ * length of the right hand side, and by whether the right hand side holds
+ * only terminals. It also counts, for each symbol, the productions it occurs
+ * in. A grammar keeps one of these up to date as productions are added and
+ * removed, so that questions like "which productions are on this variable"
+ * do not need a scan of every production.
+ *
+ * @see grammar.Grammar
+ */
+
+class ProductionIndex {
+	/**
+	 * Creates an index of a list of productions.
+	 *
+	 * @param productions
+	 *            the productions to index
+	 */
+	ProductionIndex(List productions) {
+		Iterator it = productions.iterator();
+		while (it.hasNext())
+			add((Production) it.next());
+	}
+
+	/**
+	 * Adds a production to the index.
+	 *
+	 * @param production
+	 *            the production to add
+	 */
+	void add(Production production) {
+		all.add(production);
+		add(byLHS, production.getLHS(), production);
+		String[] rhs = production.getSymbolsOnRHS();
+		add(byLength, new Integer(rhs.length), production);
+		Set distinct = new HashSet(Arrays.asList(rhs));
+		Iterator it = distinct.iterator();
+		while (it.hasNext())
+			add(byRHSSymbol, it.next(), production);
+		if (production.getVariablesOnRHS().length == 0)
+			terminalOnly.add(production);
+		count(production.getVariables(), 1);
+		count(production.getTerminals(), 1);
+	}
+
+	/**
+	 * Removes a production from the index.
+	 *
+	 * @param production
+	 *            the production to remove
+	 * @return if the production was in the index
+	 */
+	boolean remove(Production production) {
+		if (!all.remove(production))
+			return false;
+		remove(byLHS, production.getLHS(), production);
+		String[] rhs = production.getSymbolsOnRHS();
+		remove(byLength, new Integer(rhs.length), production);
+		Set distinct = new HashSet(Arrays.asList(rhs));
+		Iterator it = distinct.iterator();
+		while (it.hasNext())
+			remove(byRHSSymbol, it.next(), production);
+		terminalOnly.remove(production);
+		count(production.getVariables(), -1);
+		count(production.getTerminals(), -1);
+		return true;
+	}
+
+	private static void add(Map index, Object key, Production production) {
+		Set set = (Set) index.get(key);
+		if (set == null) {
+			set = new LinkedHashSet();
+			index.put(key, set);
+		}
+		set.add(production);
+	}
+
+	private static void remove(Map index, Object key, Production production) {
+		Set set = (Set) index.get(key);
+		if (set == null)
+			return;
+		set.remove(production);
+		if (set.isEmpty())
+			index.remove(key);
+	}
+
+	private void count(String[] symbols, int delta) {
+		for (int i = 0; i < symbols.length; i++) {
+			Integer n = (Integer) occurrences.get(symbols[i]);
+			int total = (n == null ? 0 : n.intValue()) + delta;
+			if (total <= 0)
+				occurrences.remove(symbols[i]);
+			else
+				occurrences.put(symbols[i], new Integer(total));
+		}
+	}
+
+	/**
+	 * Returns if a production is in the index.
+	 */
+	boolean contains(Production production) {
+		return all.contains(production);
+	}
+
+	/**
+	 * Returns if a symbol occurs anywhere in some production.
+	 */
+	boolean occurs(String symbol) {
+		return occurrences.containsKey(symbol);
+	}
+
+	/**
+	 * Returns the productions with a left hand side.
+	 */
+	Production[] onLHS(String lhs) {
+		return toArray((Set) byLHS.get(lhs));
+	}
+
+	/**
+	 * Returns the productions with a symbol on the right hand side.
+	 */
+	Production[] withOnRHS(String symbol) {
+		return toArray((Set) byRHSSymbol.get(symbol));
+	}
+
+	/**
+	 * Returns the productions with a right hand side of a length.
+	 */
+	Production[] ofLength(int length) {
+		return toArray((Set) byLength.get(new Integer(length)));
+	}
+
+	/**
+	 * Returns the productions whose right hand side has no variables.
+	 */
+	Production[] terminalOnly() {
+		return toArray(terminalOnly);
+	}
+
+	private static Production[] toArray(Set set) {
+		if (set == null)
+			return new Production[0];
+		return (Production[]) set.toArray(new Production[0]);
+	}
+
+	/** All indexed productions. */
+	private Set all = new HashSet();
+
+	/** Maps left hand sides to sets of productions. */
+	private Map byLHS = new HashMap();
+
+	/** Maps right hand side symbols to sets of productions. */
+	private Map byRHSSymbol = new HashMap();
+
+	/** Maps right hand side lengths to sets of productions. */
+	private Map byLength = new HashMap();
+
+	/** The productions whose right hand side is only terminals. */
+	private Set terminalOnly = new LinkedHashSet();
+
+	/** Maps symbols to the number of productions they occur in. */
+	private Map occurrences = new HashMap();
+}
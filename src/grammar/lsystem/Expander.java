@@ -25,6 +25,12 @@ import java.util.*;
 /**
  * Given an L-system, this will expand the L-system, creating the vast lists of
  * symbols generated by successive expansions of the L-system.
+ * <P>
+ * 
+ * Internally each distinct symbol is given a number, the replacements of each
+ * symbol are arrays of numbers, and expansions are arrays of numbers, so that
+ * expanding takes neither string comparisons nor a list entry per symbol.
+ * The lists returned are views that name the numbers only as they are read.
  * 
  * @author Thomas Finley
  */
@@ -51,9 +57,14 @@ public class Expander {
 	 */
 	public Expander(LSystem lsystem, long seed) {
 		stochiastic = new Random(seed);
+		this.seed = seed;
 		this.lsystem = lsystem;
-		cachedExpansions.add(lsystem.getAxiom());
-		initializeContexts();
+		int[] axiom = intern(lsystem.getAxiom());
+		List contextsList = initializeContexts();
+		initializeRules();
+		if (contextsList != null)
+			indexContexts(contextsList);
+		cachedExpansions.add(axiom);
 	}
 
 	/**
@@ -70,22 +81,222 @@ public class Expander {
 		if (level < 0)
 			throw new IllegalArgumentException("Recursion level " + level
 					+ " impossible!");
-		if (level < cachedExpansions.size())
-			return (List) cachedExpansions.get(level);
-		List lastOne = (List) cachedExpansions.get(cachedExpansions.size() - 1);
-		for (int i = cachedExpansions.size(); i <= level; i++)
-			cachedExpansions.add(lastOne = expand(lastOne));
-		return lastOne;
+		if (level >= cachedExpansions.size()) {
+			int[] lastOne = (int[]) cachedExpansions.get(cachedExpansions
+					.size() - 1);
+			for (int i = cachedExpansions.size(); i <= level; i++)
+				cachedExpansions.add(lastOne = expand(lastOne));
+		}
+		return new SymbolList((int[]) cachedExpansions.get(level));
+	}
+
+	/**
+	 * Returns the expansion at a given level of recursion as a collection
+	 * that holds none of its symbols. Each iterator over the collection walks
+	 * the replacements depth first, keeping only a stack of one position for
+	 * each level, so the symbols of even a very deep expansion may be read in
+	 * order without ever being in memory together. Unlike
+	 * {@link #expansionForLevel}, nothing is cached.
+	 * <P>
+	 *
+	 * For a stochiastic L-system, the replacement of each symbol is chosen by
+	 * a random number made from the seed of this expander and the position of
+	 * the symbol in the tree of replacements, not from a shared randomizer,
+	 * so every iterator over the collection gives the same symbols. These are
+	 * not the same symbols {@link #expansionForLevel} would choose. An
+	 * L-system with contexts needs the neighbors of a symbol, which a depth
+	 * first walk does not have, so for those this falls back to iterating over
+	 * {@link #expansionForLevel}.
+	 *
+	 * @param level
+	 *            the level of recursion to sink to
+	 * @return the collection of string symbols
+	 * @throws IllegalArgumentException
+	 *             if the level is less than 0
+	 */
+	public Collection lazyExpansionForLevel(int level) {
+		if (level < 0)
+			throw new IllegalArgumentException("Recursion level " + level
+					+ " impossible!");
+		if (contexts != null)
+			return expansionForLevel(level);
+		return new LazyExpansion(level);
+	}
+
+	/**
+	 * Mixes the bits of a number, for making a random number for a position.
+	 *
+	 * @param z
+	 *            the number to mix
+	 * @return the mixed number
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * The expansion of an L-system without contexts at some level, made as
+	 * it is iterated over.
+	 */
+	private class LazyExpansion extends AbstractCollection {
+		/**
+		 * Instantiates the expansion for a level.
+		 *
+		 * @param level
+		 *            the level of recursion
+		 */
+		public LazyExpansion(int level) {
+			this.level = level;
+		}
+
+		public Iterator iterator() {
+			return new LazyIterator(level);
+		}
+
+		/**
+		 * Returns the number of symbols in the expansion, or
+		 * <CODE>Integer.MAX_VALUE</CODE> if there are more than that. For a
+		 * deterministic L-system the length is found from the lengths of the
+		 * replacements of each symbol at each level, while otherwise the
+		 * symbols are counted once.
+		 */
+		public int size() {
+			if (size >= 0)
+				return size;
+			long length = 0;
+			if (lsystem.nondeterministic()) {
+				Iterator it = iterator();
+				for (; it.hasNext() && length < Integer.MAX_VALUE; length++)
+					it.next();
+			} else {
+				// The lengths of the expansions of each symbol at a level.
+				long[] lengths = new long[rules.length];
+				Arrays.fill(lengths, 1);
+				for (int i = 1; i <= level; i++) {
+					long[] next = new long[rules.length];
+					for (int symbol = 0; symbol < rules.length; symbol++)
+						next[symbol] = rules[symbol].length == 0 ? 1 : length(
+								rules[symbol][0], lengths);
+					lengths = next;
+				}
+				length = length((int[]) cachedExpansions.get(0), lengths);
+			}
+			size = (int) Math.min(length, Integer.MAX_VALUE);
+			return size;
+		}
+
+		/**
+		 * Returns the length of the expansion of a list of symbols, given
+		 * the lengths of the expansions of the symbols with replacements.
+		 */
+		private long length(int[] symbols, long[] lengths) {
+			long length = 0;
+			for (int i = 0; i < symbols.length; i++) {
+				length += lengths[symbols[i]];
+				if (length >= Integer.MAX_VALUE)
+					return Integer.MAX_VALUE;
+			}
+			return length;
+		}
+
+		/** The level of recursion. */
+		private int level;
+
+		/** The number of symbols, or -1 if not yet known. */
+		private int size = -1;
+	}
+
+	/**
+	 * Walks the replacements of an L-system without contexts depth first.
+	 * Each frame of the stack is a list of symbols, the index of the next
+	 * symbol of the list, and the random key of the list's position.
+	 */
+	private class LazyIterator implements Iterator {
+		/**
+		 * Instantiates an iterator over the expansion at a level.
+		 *
+		 * @param level
+		 *            the level of recursion
+		 */
+		public LazyIterator(int level) {
+			lists = new int[level + 1][];
+			indices = new int[level + 1];
+			keys = new long[level + 1];
+			lists[0] = (int[]) cachedExpansions.get(0);
+			keys[0] = seed;
+			advance();
+		}
+
+		/**
+		 * Finds the next symbol that is not replaced any further.
+		 */
+		private void advance() {
+			while (top >= 0) {
+				int[] list = lists[top];
+				int index = indices[top];
+				if (index == list.length) {
+					top--;
+					continue;
+				}
+				indices[top]++;
+				int symbol = list[index];
+				int[][] replacements = rules[symbol];
+				if (top == lists.length - 1 || replacements.length == 0) {
+					next = (String) names.get(symbol);
+					return;
+				}
+				long key = mix(keys[top] * 31 + index);
+				top++;
+				lists[top] = replacements.length == 1 ? replacements[0]
+						: replacements[(int) ((key >>> 1) % replacements.length)];
+				indices[top] = 0;
+				keys[top] = key;
+			}
+			next = null;
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		public Object next() {
+			if (next == null)
+				throw new NoSuchElementException();
+			Object symbol = next;
+			advance();
+			return symbol;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/** The lists being walked at each level. */
+		private int[][] lists;
+
+		/** The index of the next symbol in each list. */
+		private int[] indices;
+
+		/** The random key of each list. */
+		private long[] keys;
+
+		/** The level of the frame on the top of the stack. */
+		private int top = 0;
+
+		/** The next symbol, or <CODE>null</CODE> if there is none. */
+		private String next;
 	}
 
 	/**
 	 * Does the expansion of a given string list thing.
 	 * 
 	 * @param symbols
-	 *            the list of symbols to expand
+	 *            the symbols to expand
 	 * @return the expansion of the passed in symbols
 	 */
-	private List expand(List symbols) {
+	private int[] expand(int[] symbols) {
 		if (contexts == null)
 			return expandNoContext(symbols);
 		return expandContext(symbols);
@@ -96,19 +307,22 @@ public class Expander {
 	 * "contexts" to worry about.
 	 * 
 	 * @param symbols
-	 *            the list of symbols to expand
+	 *            the symbols to expand
 	 * @return the expansion of the passed in symbols
 	 */
-	private List expandNoContext(List symbols) {
-		List ne = new ArrayList();
-		for (int i = 0; i < symbols.size(); i++) {
-			String s = (String) symbols.get(i);
-			List[] replacements = lsystem.getReplacements(s);
-			List replacement = null;
+	private int[] expandNoContext(int[] symbols) {
+		int[] ne = new int[symbols.length * 2 + 16];
+		int size = 0;
+		for (int i = 0; i < symbols.length; i++) {
+			int s = symbols[i];
+			int[][] replacements = rules[s];
+			int[] replacement = null;
 			switch (replacements.length) {
 			case 0:
 				// This cannot be replaced, so we skip to the next symbol.
-				ne.add(s);
+				if (size == ne.length)
+					ne = grow(ne, size + 1);
+				ne[size++] = s;
 				continue;
 			case 1:
 				// There is only one replacement possibility.
@@ -121,65 +335,131 @@ public class Expander {
 						.nextInt(replacements.length)];
 				break;
 			}
-			Iterator it2 = replacement.iterator();
-			while (it2.hasNext())
-				ne.add(it2.next()); // Add replacements!
+			if (size + replacement.length > ne.length)
+				ne = grow(ne, size + replacement.length);
+			System.arraycopy(replacement, 0, ne, size, replacement.length);
+			size += replacement.length;
 		}
-		return ne;
+		return size == ne.length ? ne : Arrays.copyOf(ne, size);
 	}
 
 	/**
 	 * Does the expansion of a given string list thing given that we have
 	 * contexts. This can be computationally more expensive, though not horribly
-	 * so.
+	 * so: only the contexts centered on a symbol are tried against it.
 	 * 
 	 * @param symbols
-	 *            the list of symbols to expand
+	 *            the symbols to expand
 	 * @return the expansion of the passed in symbols
 	 */
-	private List expandContext(List symbols) {
-		List ne = new ArrayList();
-		for (int i = 0; i < symbols.size(); i++) {
-			String s = (String) symbols.get(i);
-			ArrayList replacementsList = new ArrayList();
-			for (int j = 0; j < contexts.length; j++) {
-				List[] l = contexts[j].matches(symbols, i);
-				for (int k = 0; k < l.length; k++)
-					replacementsList.add(l[k]);
-			}
-			List[] replacements = (List[]) replacementsList
-					.toArray(EMPTY_ARRAY);
-			List replacement = null;
-			switch (replacements.length) {
-			case 0:
+	private int[] expandContext(int[] symbols) {
+		int[] ne = new int[symbols.length * 2 + 16];
+		int size = 0;
+		for (int i = 0; i < symbols.length; i++) {
+			int s = symbols[i];
+			Context[] centered = contexts[s];
+			// Count the replacements of every matching context...
+			int count = 0;
+			for (int j = 0; j < centered.length; j++)
+				if (centered[j].matches(symbols, i))
+					count += centered[j].results.length;
+			if (count == 0) {
 				// This cannot be replaced, so we skip to the next symbol.
-				ne.add(s);
+				if (size == ne.length)
+					ne = grow(ne, size + 1);
+				ne[size++] = s;
 				continue;
-			case 1:
-				// There is only one replacement possibility.
-				replacement = replacements[0];
-				break;
-			default:
-				// If there's more than one possibility, we choose one
-				// nearly at random.
-				replacement = replacements[stochiastic
-						.nextInt(replacements.length)];
-				break;
 			}
-			Iterator it2 = replacement.iterator();
-			while (it2.hasNext())
-				ne.add(it2.next()); // Add replacements!
+			// ...and then find the one chosen, nearly at random if there's
+			// more than one possibility.
+			int choice = count == 1 ? 0 : stochiastic.nextInt(count);
+			int[] replacement = null;
+			for (int j = 0; replacement == null; j++) {
+				if (!centered[j].matches(symbols, i))
+					continue;
+				if (choice < centered[j].results.length)
+					replacement = centered[j].results[choice];
+				else
+					choice -= centered[j].results.length;
+			}
+			if (size + replacement.length > ne.length)
+				ne = grow(ne, size + replacement.length);
+			System.arraycopy(replacement, 0, ne, size, replacement.length);
+			size += replacement.length;
 		}
-		return ne;
+		return size == ne.length ? ne : Arrays.copyOf(ne, size);
+	}
+
+	/**
+	 * Returns a copy of an expansion buffer with room for at least some number
+	 * of symbols.
+	 */
+	private static int[] grow(int[] buffer, int needed) {
+		return Arrays.copyOf(buffer, Math.max(needed, buffer.length * 2));
+	}
+
+	/**
+	 * Returns the number for a symbol, giving it one if it has none.
+	 * 
+	 * @param symbol
+	 *            the symbol
+	 * @return the number of the symbol
+	 */
+	private int intern(String symbol) {
+		Integer id = (Integer) ids.get(symbol);
+		if (id == null) {
+			id = new Integer(names.size());
+			ids.put(symbol, id);
+			names.add(symbol);
+		}
+		return id.intValue();
+	}
+
+	/**
+	 * Returns the numbers for a list of symbols.
+	 * 
+	 * @param symbols
+	 *            the list of string symbols
+	 * @return the array of the numbers of the symbols
+	 */
+	private int[] intern(List symbols) {
+		int[] interned = new int[symbols.size()];
+		for (int i = 0; i < interned.length; i++)
+			interned[i] = intern((String) symbols.get(i));
+		return interned;
+	}
+
+	/**
+	 * Returns the numbers for the symbols of each of some lists.
+	 */
+	private int[][] intern(List[] lists) {
+		int[][] interned = new int[lists.length][];
+		for (int i = 0; i < interned.length; i++)
+			interned[i] = intern(lists[i]);
+		return interned;
+	}
+
+	/**
+	 * Initializes the replacements of every symbol. The symbols of a
+	 * replacement are themselves given numbers, so this goes on until every
+	 * numbered symbol has its replacements.
+	 */
+	private final void initializeRules() {
+		List rulesList = new ArrayList();
+		for (int i = 0; i < names.size(); i++)
+			rulesList.add(intern(lsystem.getReplacements((String) names
+					.get(i))));
+		rules = (int[][][]) rulesList.toArray(new int[0][][]);
 	}
 
 	/**
 	 * Initializes the contexts.
+	 * 
+	 * @return the list of contexts, or <CODE>null</CODE> if there are no
+	 *         contexts
 	 */
-	private final void initializeContexts() {
+	private final List initializeContexts() {
 		Iterator symbolIt = lsystem.getSymbolsWithReplacements().iterator();
-		Set searchLengths = new HashSet();
-		Integer one = new Integer(1); // It'll be quite common...
 		ArrayList contextsList = new ArrayList();
 		boolean hasContexts = false;
 		// Build the contexts.
@@ -208,11 +488,58 @@ public class Expander {
 				hasContexts = true;
 				tokens = tokens.subList(1, tokens.size());
 			}
-			contextsList.add(new Context(tokens, context, replacements));
+			contextsList.add(new Context(intern(tokens), context,
+					intern(replacements)));
+		}
+		return hasContexts ? contextsList : null;
+	}
+
+	/**
+	 * Sets the contexts, grouped by the symbol at their center. Since a
+	 * context can only match a symbol at its center, only the contexts of a
+	 * symbol need be tried against it, and they are kept in the order of the
+	 * list, so the choices among them are as they would be among them all.
+	 * 
+	 * @param contextsList
+	 *            the list of all contexts
+	 */
+	private final void indexContexts(List contextsList) {
+		List[] centered = new List[names.size()];
+		for (int i = 0; i < centered.length; i++)
+			centered[i] = new ArrayList();
+		for (int i = 0; i < contextsList.size(); i++) {
+			Context context = (Context) contextsList.get(i);
+			centered[context.tokens[context.center]].add(context);
+		}
+		contexts = new Context[centered.length][];
+		for (int i = 0; i < centered.length; i++)
+			contexts[i] = (Context[]) centered[i].toArray(new Context[0]);
+	}
+
+	/**
+	 * A view of an expansion as a list of string symbols.
+	 */
+	private class SymbolList extends AbstractList implements RandomAccess {
+		/**
+		 * Instantiates a view of an expansion.
+		 * 
+		 * @param symbols
+		 *            the numbers of the symbols
+		 */
+		public SymbolList(int[] symbols) {
+			this.symbols = symbols;
+		}
+
+		public Object get(int index) {
+			return names.get(symbols[index]);
+		}
+
+		public int size() {
+			return symbols.length;
 		}
-		// Set the array.
-		if (hasContexts)
-			contexts = (Context[]) contextsList.toArray(new Context[0]);
+
+		/** The numbers of the symbols. */
+		private int[] symbols;
 	}
 
 	/**
@@ -229,7 +556,7 @@ public class Expander {
 		 * @param results
 		 *            the results of matching
 		 */
-		public Context(List tokens, int center, List[] results) {
+		public Context(int[] tokens, int center, int[][] results) {
 			this.tokens = tokens;
 			this.center = center;
 			this.results = results;
@@ -241,18 +568,17 @@ public class Expander {
 		 * 
 		 * @param list
 		 *            the list of tokens we shoudl check this against
-		 * @return the resulting replacement lists for the center token if there
-		 *         was a match, or an empty array otherwise
+		 * @return if the tokens around the center of the input list are the
+		 *         tokens of this context
 		 */
-		public List[] matches(List list, int centerList) {
+		public boolean matches(int[] list, int centerList) {
 			centerList -= center;
-			try {
-				List sub = list.subList(centerList, centerList + tokens.size());
-				if (sub.equals(tokens))
-					return results;
-			} catch (IndexOutOfBoundsException e) {
-			}
-			return EMPTY_ARRAY;
+			if (centerList < 0 || centerList + tokens.length > list.length)
+				return false;
+			for (int i = 0; i < tokens.length; i++)
+				if (list[centerList + i] != tokens[i])
+					return false;
+			return true;
 		}
 
 		/**
@@ -263,22 +589,23 @@ public class Expander {
 		public String toString() {
 			StringBuffer sb = new StringBuffer(super.toString());
 			sb.append(" : tokens(");
-			sb.append(tokens);
+			sb.append(new SymbolList(tokens));
 			sb.append(") at ");
 			sb.append(center);
 			sb.append(" with ");
-			sb.append(Arrays.asList(results));
+			for (int i = 0; i < results.length; i++)
+				sb.append(new SymbolList(results[i]));
 			return sb.toString();
 		}
 
-		/** The token list to match. */
-		protected List tokens;
+		/** The token numbers to match. */
+		protected int[] tokens;
 
 		/** The center index. */
 		protected int center;
 
-		/** The result of finding a matching. */
-		protected List[] results;
+		/** The results of finding a matching. */
+		protected int[][] results;
 	}
 
 	/** The L-system we are expanding. */
@@ -287,15 +614,24 @@ public class Expander {
 	/** For stochiastic l-systemness, this will generate random numbers. */
 	private Random stochiastic;
 
-	/** The cached expansions. At index 0 is the axiom. */
+	/** The seed for choosing replacements in lazy expansions. */
+	private long seed;
+
+	/** The cached expansions as arrays of numbers. At index 0 is the axiom. */
 	private List cachedExpansions = new ArrayList();
 
+	/** The symbols, indexed by their numbers. */
+	private List names = new ArrayList();
+
+	/** Maps symbols to their numbers. */
+	private Map ids = new HashMap();
+
+	/** The replacements of each symbol, indexed by number. */
+	private int[][][] rules;
+
 	/** For generating random seeds. */
 	private static final Random RANDOM = new Random();
 
-	/** The contexts. */
-	private Context[] contexts = null;
-
-	/** An empty list. */
-	protected static final List[] EMPTY_ARRAY = new List[0];
+	/** The contexts centered on each symbol, indexed by number. */
+	private Context[][] contexts = null;
 }
@@ -0,0 +1,266 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar.parse;
+
+import grammar.*;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * The <CODE>CompiledLRParseTable</CODE> is an immutable, integer encoded form
+ * of an {@link grammar.parse.LRParseTable}. Terminals and variables are
+ * interned to dense column indices, actions are packed into a single
+ * <CODE>int</CODE> per cell, and gotos are stored as plain state numbers, so
+ * a parser driven by this table does no string handling at all.
+ * <P>
+ *
+ * An action is encoded as <CODE>(operand &lt;&lt; 2) | kind</CODE>, where
+ * kind is one of {@link #ERROR}, {@link #SHIFT}, {@link #REDUCE} or
+ * {@link #ACCEPT}. If a cell of the source table holds more than one
+ * directive, the first in the sorted order of the cell is used.
+ *
+ * @see grammar.parse.LRParseTable#compile()
+ */
+
+public class CompiledLRParseTable implements Serializable {
+	/**
+	 * Compiles the given parse table.
+	 *
+	 * @param table
+	 *            the parse table to compile
+	 * @param terminals
+	 *            the terminals of the table, in column order, with "$" last
+	 * @param variables
+	 *            the variables of the table, in column order
+	 * @param grammar
+	 *            the augmented grammar of the table
+	 */
+	CompiledLRParseTable(LRParseTable table, String[] terminals,
+			String[] variables, Grammar grammar) {
+		Arrays.fill(asciiTerminals, -1);
+		for (int i = 0; i < terminals.length; i++) {
+			char c = terminals[i].charAt(0);
+			if (c < asciiTerminals.length)
+				asciiTerminals[c] = i;
+			else
+				otherTerminals.put(new Character(c), new Integer(i));
+		}
+		for (int i = 0; i < variables.length; i++)
+			variableIndex.put(variables[i], new Integer(i));
+		endMarker = terminals.length - 1;
+
+		Production[] productions = grammar.getProductions();
+		productionLength = new int[productions.length];
+		productionVariable = new int[productions.length];
+		for (int i = 0; i < productions.length; i++) {
+			productionLength[i] = productions[i].getRHS().length();
+			productionVariable[i] = variableIndex(productions[i].getLHS());
+		}
+
+		int states = table.getRowCount();
+		actions = new int[states][terminals.length];
+		gotos = new int[states][variables.length];
+		for (int s = 0; s < states; s++) {
+			for (int t = 0; t < terminals.length; t++)
+				actions[s][t] = encode(table.getSetAt(s, t + 1));
+			for (int v = 0; v < variables.length; v++) {
+				SortedSet set = table.getSetAt(s, v + 1 + terminals.length);
+				gotos[s][v] = set.isEmpty() ? -1 : Integer
+						.parseInt((String) set.first());
+			}
+		}
+	}
+
+	/**
+	 * Encodes the first directive of a table cell.
+	 *
+	 * @param directives
+	 *            the directives of the cell
+	 * @return the encoded action
+	 */
+	private static int encode(SortedSet directives) {
+		if (directives.isEmpty())
+			return ERROR;
+		String entry = (String) directives.first();
+		switch (entry.charAt(0)) {
+		case 'a':
+			return ACCEPT;
+		case 's':
+			return (Integer.parseInt(entry.substring(1)) << 2) | SHIFT;
+		case 'r':
+			return (Integer.parseInt(entry.substring(1)) << 2) | REDUCE;
+		default:
+			return ERROR;
+		}
+	}
+
+	/**
+	 * Returns the column index of a terminal.
+	 *
+	 * @param terminal
+	 *            the terminal character
+	 * @return the index of the terminal, or -1 if it is not in the table
+	 */
+	public int terminalIndex(char terminal) {
+		if (terminal < asciiTerminals.length)
+			return asciiTerminals[terminal];
+		Integer in = (Integer) otherTerminals.get(new Character(terminal));
+		return in == null ? -1 : in.intValue();
+	}
+
+	/**
+	 * Returns the column index of the end of input marker "$".
+	 *
+	 * @return the index of the end marker
+	 */
+	public int endMarker() {
+		return endMarker;
+	}
+
+	/**
+	 * Returns the index of a variable.
+	 *
+	 * @param variable
+	 *            the variable
+	 * @return the index of the variable, or -1 if it is not in the table
+	 */
+	public int variableIndex(String variable) {
+		Integer in = (Integer) variableIndex.get(variable);
+		return in == null ? -1 : in.intValue();
+	}
+
+	/**
+	 * Returns the number of states, i.e. rows, in this table.
+	 *
+	 * @return the number of states
+	 */
+	public int getStateCount() {
+		return actions.length;
+	}
+
+	/**
+	 * Returns the encoded action for a state and terminal index.
+	 *
+	 * @param state
+	 *            the state
+	 * @param terminal
+	 *            the terminal index
+	 * @return the encoded action
+	 */
+	public int action(int state, int terminal) {
+		return actions[state][terminal];
+	}
+
+	/**
+	 * Returns the goto state for a state and variable index.
+	 *
+	 * @param state
+	 *            the state
+	 * @param variable
+	 *            the variable index
+	 * @return the goto state, or -1 if there is none
+	 */
+	public int gotoState(int state, int variable) {
+		return gotos[state][variable];
+	}
+
+	/**
+	 * Returns the number of symbols on the right hand side of a production.
+	 *
+	 * @param production
+	 *            the production index
+	 * @return the length of the right hand side
+	 */
+	public int productionLength(int production) {
+		return productionLength[production];
+	}
+
+	/**
+	 * Returns the variable index of the left hand side of a production.
+	 *
+	 * @param production
+	 *            the production index
+	 * @return the index of the left hand side variable
+	 */
+	public int productionVariable(int production) {
+		return productionVariable[production];
+	}
+
+	/**
+	 * Returns the kind of an encoded action.
+	 *
+	 * @param action
+	 *            the encoded action
+	 * @return one of {@link #ERROR}, {@link #SHIFT}, {@link #REDUCE} or
+	 *         {@link #ACCEPT}
+	 */
+	public static int kind(int action) {
+		return action & 3;
+	}
+
+	/**
+	 * Returns the operand of an encoded action, that is, the state to shift
+	 * to or the production to reduce by.
+	 *
+	 * @param action
+	 *            the encoded action
+	 * @return the operand of the action
+	 */
+	public static int operand(int action) {
+		return action >>> 2;
+	}
+
+	/** The action kind for a blank cell. */
+	public static final int ERROR = 0;
+
+	/** The action kind for a shift. */
+	public static final int SHIFT = 1;
+
+	/** The action kind for a reduce. */
+	public static final int REDUCE = 2;
+
+	/** The action kind for acceptance. */
+	public static final int ACCEPT = 3;
+
+	/** The encoded actions, indexed by state and terminal. */
+	private int[][] actions;
+
+	/** The gotos, indexed by state and variable. */
+	private int[][] gotos;
+
+	/** The right hand side lengths of the productions. */
+	private int[] productionLength;
+
+	/** The left hand side variable indices of the productions. */
+	private int[] productionVariable;
+
+	/** The terminal indices of the ASCII characters. */
+	private int[] asciiTerminals = new int[128];
+
+	/** The mapping of non-ASCII terminal characters to indices. */
+	private Map otherTerminals = new HashMap();
+
+	/** The mapping of variables to indices. */
+	private Map variableIndex = new HashMap();
+
+	/** The index of the end of input marker. */
+	private int endMarker;
+}
@@ -0,0 +1,368 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar.parse;
+
+import gui.environment.Universe;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import javax.swing.tree.*;
+
+/**
+ * The <CODE>LLParser</CODE> is a table driven LL(1) parser that runs without
+ * any user interaction. On construction it compiles an
+ * {@link grammar.parse.LLParseTable} into integer arrays, so that a parse is a
+ * loop over a primitive stack of symbol numbers with one array lookup per
+ * expansion. Input is consumed one character at a time, either from a
+ * <CODE>CharSequence</CODE> or from a <CODE>Reader</CODE>, so input of any
+ * length may be checked in time linear in its length without holding it in
+ * memory.
+ * <P>
+ *
+ * If an entry of the table holds more than one expansion, the first in the
+ * sorted order of the entry is used.
+ */
+
+public class LLParser {
+	/**
+	 * Compiles a parse table into a new parser.
+	 *
+	 * @param table
+	 *            the LL(1) parse table
+	 * @param startVariable
+	 *            the start variable of the grammar of the table
+	 * @throws IllegalArgumentException
+	 *             if the start variable is not a variable of the table
+	 */
+	public LLParser(LLParseTable table, String startVariable) {
+		int variableCount = table.getRowCount();
+		terminalCount = table.getColumnCount() - 2;
+		variables = new String[variableCount];
+		for (int v = 0; v < variableCount; v++)
+			variables[v] = (String) table.getValueAt(v, 0);
+		Arrays.fill(asciiTerminals, -1);
+		for (int t = 0; t < terminalCount; t++) {
+			char c = table.getColumnName(t + 1).charAt(0);
+			if (c < asciiTerminals.length)
+				asciiTerminals[c] = t;
+			else
+				otherTerminals.put(new Character(c), new Integer(t));
+		}
+		start = symbolFor(startVariable);
+		if (start <= terminalCount)
+			throw new IllegalArgumentException(startVariable
+					+ " is not a variable!");
+
+		// Intern each distinct expansion once.
+		Map expansionIds = new HashMap();
+		List expansionList = new ArrayList();
+		expansionTable = new int[variableCount][terminalCount + 1];
+		for (int v = 0; v < variableCount; v++) {
+			for (int t = 0; t <= terminalCount; t++) {
+				SortedSet entry = table.get(variables[v],
+						t == terminalCount ? "$" : table.getColumnName(t + 1));
+				if (entry.isEmpty()) {
+					expansionTable[v][t] = -1;
+					continue;
+				}
+				String expansion = (String) entry.first();
+				Integer id = (Integer) expansionIds.get(expansion);
+				if (id == null) {
+					id = new Integer(expansionList.size());
+					expansionIds.put(expansion, id);
+					expansionList.add(expansion);
+				}
+				expansionTable[v][t] = id.intValue();
+			}
+		}
+		expansions = (String[]) expansionList.toArray(new String[0]);
+		reversedExpansions = new int[expansions.length][];
+		for (int e = 0; e < expansions.length; e++) {
+			String expansion = expansions[e];
+			int n = expansion.length();
+			reversedExpansions[e] = new int[n];
+			for (int i = 0; i < n; i++)
+				reversedExpansions[e][n - 1 - i] = symbolFor(expansion
+						.substring(i, i + 1));
+		}
+	}
+
+	/**
+	 * Returns the symbol number of a grammar symbol. Terminals are numbered
+	 * from 0, "$" is the number of terminals, and variables follow.
+	 *
+	 * @param symbol
+	 *            the grammar symbol
+	 * @return the symbol number, or -1 if the symbol is in neither the rows
+	 *         nor the columns of the table
+	 */
+	private int symbolFor(String symbol) {
+		for (int v = 0; v < variables.length; v++)
+			if (variables[v].equals(symbol))
+				return terminalCount + 1 + v;
+		return symbol.length() == 1 ? terminal(symbol.charAt(0)) : -1;
+	}
+
+	/**
+	 * Returns the terminal number of an input character.
+	 *
+	 * @param c
+	 *            the input character
+	 * @return the terminal number, or -1 if it is not a terminal
+	 */
+	private int terminal(char c) {
+		if (c < asciiTerminals.length)
+			return asciiTerminals[c];
+		Integer in = (Integer) otherTerminals.get(new Character(c));
+		return in == null ? -1 : in.intValue();
+	}
+
+	/**
+	 * Returns if a string is in the language of the table.
+	 *
+	 * @param input
+	 *            the input string
+	 * @return <CODE>true</CODE> if the string is accepted
+	 */
+	public boolean parse(CharSequence input) {
+		return parse(new CharSequenceInput(input), null);
+	}
+
+	/**
+	 * Returns if the characters read from a reader form a string in the
+	 * language of the table. The reader is read to its end or until the input
+	 * is known to be rejected, whichever comes first.
+	 *
+	 * @param input
+	 *            the reader to take input from
+	 * @param listener
+	 *            the listener to tell of each expansion, or
+	 *            <CODE>null</CODE>
+	 * @return <CODE>true</CODE> if the input is accepted
+	 * @throws IOException
+	 *             if reading from the reader fails
+	 */
+	public boolean parse(Reader input, LLParserListener listener)
+			throws IOException {
+		ReaderInput in = new ReaderInput(input);
+		boolean accepted = parse(in, listener);
+		if (in.exception != null)
+			throw in.exception;
+		return accepted;
+	}
+
+	/**
+	 * Runs the parse loop over an input.
+	 *
+	 * @param input
+	 *            the input
+	 * @param listener
+	 *            the listener to tell of each expansion, or
+	 *            <CODE>null</CODE>
+	 * @return <CODE>true</CODE> if the input is accepted
+	 */
+	private boolean parse(Input input, LLParserListener listener) {
+		int[] stack = new int[64];
+		int top = 0;
+		stack[0] = start;
+		long position = 0;
+		int read = input.next();
+		while (top >= 0) {
+			int symbol = stack[top];
+			if (symbol <= terminalCount) {
+				// A terminal on the stack must match the input.
+				if (read < 0 || symbol != read || read == terminalCount)
+					return false;
+				top--;
+				position++;
+				read = input.next();
+				continue;
+			}
+			int v = symbol - terminalCount - 1;
+			int e = read < 0 ? -1 : expansionTable[v][read];
+			if (e < 0)
+				return false;
+			if (listener != null)
+				listener.variableExpanded(variables[v], expansions[e],
+						position);
+			int[] rhs = reversedExpansions[e];
+			if (top + rhs.length >= stack.length) {
+				int[] bigger = new int[Math.max(stack.length * 2, top
+						+ rhs.length + 1)];
+				System.arraycopy(stack, 0, bigger, 0, top + 1);
+				stack = bigger;
+			}
+			System.arraycopy(rhs, 0, stack, top, rhs.length);
+			top += rhs.length - 1;
+		}
+		return read == terminalCount;
+	}
+
+	/**
+	 * Parses a string and returns its parse tree. If the string is rejected,
+	 * the tree holds the part of the derivation that was found before the
+	 * parse failed.
+	 *
+	 * @param input
+	 *            the input string
+	 * @return the parse tree
+	 */
+	public TreeModel parseTree(CharSequence input) {
+		Input in = new CharSequenceInput(input);
+		DefaultMutableTreeNode root = new DefaultMutableTreeNode(
+				variables[start - terminalCount - 1]);
+		int[] stack = new int[64];
+		DefaultMutableTreeNode[] nodes = new DefaultMutableTreeNode[64];
+		int top = 0;
+		stack[0] = start;
+		nodes[0] = root;
+		int read = in.next();
+		while (top >= 0) {
+			int symbol = stack[top];
+			if (symbol <= terminalCount) {
+				if (read < 0 || symbol != read || read == terminalCount)
+					break;
+				top--;
+				read = in.next();
+				continue;
+			}
+			int v = symbol - terminalCount - 1;
+			int e = read < 0 ? -1 : expansionTable[v][read];
+			if (e < 0)
+				break;
+			DefaultMutableTreeNode node = nodes[top];
+			String expansion = expansions[e];
+			int[] rhs = reversedExpansions[e];
+			if (top + rhs.length >= stack.length) {
+				int size = Math.max(stack.length * 2, top + rhs.length + 1);
+				int[] bigger = new int[size];
+				System.arraycopy(stack, 0, bigger, 0, top + 1);
+				stack = bigger;
+				DefaultMutableTreeNode[] biggerNodes = new DefaultMutableTreeNode[size];
+				System.arraycopy(nodes, 0, biggerNodes, 0, top + 1);
+				nodes = biggerNodes;
+			}
+			if (rhs.length == 0)
+				node.add(new DefaultMutableTreeNode(Universe.curProfile
+						.getEmptyString()));
+			for (int i = 0; i < rhs.length; i++) {
+				DefaultMutableTreeNode child = new DefaultMutableTreeNode(
+						expansion.substring(i, i + 1));
+				node.add(child);
+				// The children are pushed rightmost first.
+				stack[top + rhs.length - 1 - i] = rhs[rhs.length - 1 - i];
+				nodes[top + rhs.length - 1 - i] = child;
+			}
+			top += rhs.length - 1;
+		}
+		return new DefaultTreeModel(root);
+	}
+
+	/**
+	 * A source of terminal numbers, ending with the number for "$".
+	 */
+	private abstract class Input {
+		/**
+		 * Returns the number of the next terminal, the number for "$" at the
+		 * end of input, or -1 for a character that is not a terminal.
+		 */
+		abstract int next();
+	}
+
+	/**
+	 * Input taken from a character sequence.
+	 */
+	private class CharSequenceInput extends Input {
+		CharSequenceInput(CharSequence sequence) {
+			this.sequence = sequence;
+		}
+
+		int next() {
+			return p < sequence.length() ? terminal(sequence.charAt(p++))
+					: terminalCount;
+		}
+
+		private CharSequence sequence;
+
+		private int p = 0;
+	}
+
+	/**
+	 * Input taken from a reader through a fixed size buffer. An exception
+	 * while reading ends the input, and is kept to be rethrown.
+	 */
+	private class ReaderInput extends Input {
+		ReaderInput(Reader reader) {
+			this.reader = reader;
+		}
+
+		int next() {
+			if (p == length) {
+				if (length < 0)
+					return terminalCount;
+				try {
+					length = reader.read(buffer);
+				} catch (IOException e) {
+					exception = e;
+					length = -1;
+				}
+				p = 0;
+				if (length <= 0) {
+					length = -1;
+					return terminalCount;
+				}
+			}
+			return terminal(buffer[p++]);
+		}
+
+		private Reader reader;
+
+		private char[] buffer = new char[8192];
+
+		private int p = 0, length = 0;
+
+		IOException exception = null;
+	}
+
+	/** The number of terminals, which is also the number for "$". */
+	private int terminalCount;
+
+	/** The variables, in the order of the rows of the table. */
+	private String[] variables;
+
+	/** The symbol number of the start variable. */
+	private int start;
+
+	/** The expansion for each variable and lookahead, or -1. */
+	private int[][] expansionTable;
+
+	/** The distinct expansions of the table. */
+	private String[] expansions;
+
+	/** The symbol numbers of each expansion, last symbol first. */
+	private int[][] reversedExpansions;
+
+	/** The terminal numbers of the ASCII characters. */
+	private int[] asciiTerminals = new int[128];
+
+	/** The mapping of non-ASCII terminal characters to numbers. */
+	private Map otherTerminals = new HashMap();
+}
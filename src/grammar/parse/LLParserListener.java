@@ -0,0 +1,45 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar.parse;
+
+import java.util.EventListener;
+
+/**
+ * The listener to an {@link grammar.parse.LLParser} is told of each step of
+ * the leftmost derivation the parser finds, in order.
+ */
+
+public interface LLParserListener extends EventListener {
+	/**
+	 * An LL parser calls this method when it replaces a variable with one of
+	 * its expansions.
+	 *
+	 * @param variable
+	 *            the variable that was expanded
+	 * @param expansion
+	 *            the right hand side it was replaced with, the empty string
+	 *            for lambda
+	 * @param position
+	 *            the number of input characters consumed so far
+	 */
+	public void variableExpanded(String variable, String expansion,
+			long position);
+}
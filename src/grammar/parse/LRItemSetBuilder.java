@@ -0,0 +1,809 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar.parse;
+
+import grammar.*;
+import java.util.*;
+
+/**
+ * The <CODE>LRItemSetBuilder</CODE> builds the canonical collection of LR(0)
+ * item sets for an augmented grammar without any user interaction, and from
+ * it SLR(1) and LALR(1) parse tables.
+ * <P>
+ *
+ * Unlike the item sets of {@link Operations#closure}, items here are interned
+ * as integers: production <I>p</I> with the dot before symbol <I>d</I> is
+ * item number <CODE>itemBase[p] + d</CODE>. An item set is identified by the
+ * sorted array of its kernel items, so finding whether a goto leads to a new
+ * state is a single hash lookup. States are numbered in the order the
+ * worklist discovers them, with the initial state as state 0.
+ * <P>
+ *
+ * LALR(1) lookaheads are computed by the propagation method: each kernel item
+ * is closed once with a dummy lookahead to discover which lookaheads it
+ * generates spontaneously and which it passes on, and the lookaheads are then
+ * pushed along those links until nothing changes.
+ *
+ * @see Operations#getAugmentedGrammar
+ */
+
+public class LRItemSetBuilder {
+	/**
+	 * Builds the canonical collection of LR(0) item sets for a grammar.
+	 *
+	 * @param augmented
+	 *            the augmented grammar, as returned by
+	 *            {@link Operations#getAugmentedGrammar}, whose first production
+	 *            is the new start production
+	 */
+	public LRItemSetBuilder(Grammar augmented) {
+		grammar = augmented;
+		productions = augmented.getProductions();
+		internSymbols();
+		buildStates();
+	}
+
+	/**
+	 * Assigns integer identifiers to the symbols and items of the grammar.
+	 * Terminals come first in sorted order, then "$", then the variables.
+	 */
+	private void internSymbols() {
+		String[] terms = grammar.getTerminals();
+		Arrays.sort(terms);
+		SortedSet vars = new TreeSet(Arrays.asList(grammar.getVariables()));
+		for (int i = 0; i < productions.length; i++)
+			vars.add(productions[i].getLHS());
+		List all = new ArrayList(Arrays.asList(terms));
+		all.add("$");
+		all.addAll(vars);
+		symbols = (String[]) all.toArray(new String[0]);
+		terminalCount = terms.length;
+		for (int i = 0; i < symbols.length; i++)
+			symbolIds.put(symbols[i], new Integer(i));
+
+		int variableCount = symbols.length - terminalCount - 1;
+		int[] perVariable = new int[variableCount];
+		productionLHS = new int[productions.length];
+		productionRHS = new int[productions.length][];
+		itemBase = new int[productions.length + 1];
+		for (int p = 0; p < productions.length; p++) {
+			productionLHS[p] = symbolId(productions[p].getLHS());
+			perVariable[productionLHS[p] - terminalCount - 1]++;
+			String rhs = productions[p].getRHS();
+			productionRHS[p] = new int[rhs.length()];
+			for (int d = 0; d < rhs.length(); d++)
+				productionRHS[p][d] = symbolId(rhs.substring(d, d + 1));
+			itemBase[p + 1] = itemBase[p] + rhs.length() + 1;
+		}
+		itemProduction = new int[itemBase[productions.length]];
+		for (int p = 0; p < productions.length; p++)
+			for (int i = itemBase[p]; i < itemBase[p + 1]; i++)
+				itemProduction[i] = p;
+		variableProductions = new int[variableCount][];
+		for (int v = 0; v < variableCount; v++)
+			variableProductions[v] = new int[perVariable[v]];
+		Arrays.fill(perVariable, 0);
+		for (int p = 0; p < productions.length; p++) {
+			int v = productionLHS[p] - terminalCount - 1;
+			variableProductions[v][perVariable[v]++] = p;
+		}
+	}
+
+	/**
+	 * Returns the identifier of a symbol.
+	 *
+	 * @param symbol
+	 *            the grammar symbol
+	 * @return the identifier of the symbol
+	 */
+	private int symbolId(String symbol) {
+		return ((Integer) symbolIds.get(symbol)).intValue();
+	}
+
+	/**
+	 * Returns if a symbol identifier is that of a variable.
+	 *
+	 * @param symbol
+	 *            the symbol identifier
+	 * @return if the symbol is a variable
+	 */
+	private boolean isVariable(int symbol) {
+		return symbol > terminalCount;
+	}
+
+	/**
+	 * Returns the symbol after the dot of an item.
+	 *
+	 * @param item
+	 *            the item
+	 * @return the symbol after the dot, or -1 if the dot is at the end
+	 */
+	private int symbolAfterDot(int item) {
+		int p = itemProduction[item];
+		int dot = item - itemBase[p];
+		return dot < productionRHS[p].length ? productionRHS[p][dot] : -1;
+	}
+
+	/**
+	 * Builds the canonical collection of item sets with a worklist, starting
+	 * from the kernel containing only the item for the start production.
+	 */
+	private void buildStates() {
+		Map kernelToState = new HashMap();
+		List gotoList = new ArrayList();
+		kernels.add(new int[] { itemBase[0] });
+		kernelToState.put(new ItemSet(new int[] { itemBase[0] }),
+				new Integer(0));
+
+		int[][] buckets = new int[symbols.length][];
+		int[] bucketSize = new int[symbols.length];
+		int[] touched = new int[symbols.length];
+		for (int s = 0; s < kernels.size(); s++) {
+			int[] closure = closure((int[]) kernels.get(s));
+			int touchedCount = 0;
+			for (int i = 0; i < closure.length; i++) {
+				int x = symbolAfterDot(closure[i]);
+				if (x < 0)
+					continue;
+				if (bucketSize[x] == 0) {
+					touched[touchedCount++] = x;
+					if (buckets[x] == null)
+						buckets[x] = new int[4];
+				} else if (bucketSize[x] == buckets[x].length) {
+					int[] bigger = new int[buckets[x].length * 2];
+					System.arraycopy(buckets[x], 0, bigger, 0,
+							buckets[x].length);
+					buckets[x] = bigger;
+				}
+				buckets[x][bucketSize[x]++] = closure[i] + 1;
+			}
+			int[] row = new int[symbols.length];
+			Arrays.fill(row, -1);
+			for (int i = 0; i < touchedCount; i++) {
+				int x = touched[i];
+				int[] kernel = new int[bucketSize[x]];
+				System.arraycopy(buckets[x], 0, kernel, 0, kernel.length);
+				Arrays.sort(kernel);
+				bucketSize[x] = 0;
+				ItemSet key = new ItemSet(kernel);
+				Integer target = (Integer) kernelToState.get(key);
+				if (target == null) {
+					target = new Integer(kernels.size());
+					kernels.add(kernel);
+					kernelToState.put(key, target);
+				}
+				row[x] = target.intValue();
+			}
+			gotoList.add(row);
+		}
+		gotos = (int[][]) gotoList.toArray(new int[0][]);
+	}
+
+	/**
+	 * Returns the LR(0) closure of a kernel, as the kernel items followed by
+	 * the items with the dot at the start of each production of every
+	 * variable reachable after a dot.
+	 *
+	 * @param kernel
+	 *            the kernel items
+	 * @return the items of the closure
+	 */
+	private int[] closure(int[] kernel) {
+		boolean[] added = new boolean[variableProductions.length];
+		int[] work = new int[variableProductions.length];
+		int workSize = 0, size = kernel.length;
+		for (int i = 0; i < kernel.length; i++) {
+			int x = symbolAfterDot(kernel[i]);
+			if (x >= 0 && isVariable(x) && !added[x - terminalCount - 1]) {
+				added[x - terminalCount - 1] = true;
+				work[workSize++] = x - terminalCount - 1;
+			}
+		}
+		for (int w = 0; w < workSize; w++) {
+			int[] ps = variableProductions[work[w]];
+			size += ps.length;
+			for (int i = 0; i < ps.length; i++) {
+				int[] rhs = productionRHS[ps[i]];
+				if (rhs.length == 0 || !isVariable(rhs[0]))
+					continue;
+				int v = rhs[0] - terminalCount - 1;
+				if (!added[v]) {
+					added[v] = true;
+					work[workSize++] = v;
+				}
+			}
+		}
+		int[] closure = new int[size];
+		System.arraycopy(kernel, 0, closure, 0, kernel.length);
+		int n = kernel.length;
+		for (int w = 0; w < workSize; w++) {
+			int[] ps = variableProductions[work[w]];
+			for (int i = 0; i < ps.length; i++)
+				closure[n++] = itemBase[ps[i]];
+		}
+		return closure;
+	}
+
+	/**
+	 * Returns the number of states in the collection of item sets.
+	 *
+	 * @return the number of states
+	 */
+	public int getStateCount() {
+		return kernels.size();
+	}
+
+	/**
+	 * Returns the state reached from a state on a grammar symbol.
+	 *
+	 * @param state
+	 *            the state
+	 * @param symbol
+	 *            the grammar symbol
+	 * @return the state the goto leads to, or -1 if there is no such goto
+	 */
+	public int getGoto(int state, String symbol) {
+		Integer id = (Integer) symbolIds.get(symbol);
+		return id == null ? -1 : gotos[state][id.intValue()];
+	}
+
+	/**
+	 * Returns the items of a state, in the same form as the items produced by
+	 * {@link Operations#closure}, that is, productions whose right hand side
+	 * contains {@link Operations#ITEM_POSITION}.
+	 *
+	 * @param state
+	 *            the state
+	 * @return the items of the closure of that state
+	 */
+	public Production[] getItems(int state) {
+		int[] closure = closure((int[]) kernels.get(state));
+		Production[] items = new Production[closure.length];
+		for (int i = 0; i < closure.length; i++) {
+			Production p = productions[itemProduction[closure[i]]];
+			int dot = closure[i] - itemBase[itemProduction[closure[i]]];
+			items[i] = new Production(p.getLHS(), p.getRHS().substring(0,
+					dot)
+					+ Operations.ITEM_POSITION + p.getRHS().substring(dot));
+		}
+		return items;
+	}
+
+	/**
+	 * Computes nullability and the terminal FIRST sets of the variables, and
+	 * for each production the FIRST set of its right hand side after the first
+	 * symbol.
+	 */
+	private void computeFirst() {
+		int variableCount = variableProductions.length;
+		nullable = new boolean[variableCount];
+		first = new BitSet[variableCount];
+		for (int v = 0; v < variableCount; v++)
+			first[v] = new BitSet();
+		boolean changed = true;
+		BitSet scratch = new BitSet();
+		while (changed) {
+			changed = false;
+			for (int p = 0; p < productions.length; p++) {
+				int v = productionLHS[p] - terminalCount - 1;
+				scratch.clear();
+				boolean n = firstOf(productionRHS[p], 0, scratch);
+				scratch.andNot(first[v]);
+				if (!scratch.isEmpty()) {
+					first[v].or(scratch);
+					changed = true;
+				}
+				if (n && !nullable[v]) {
+					nullable[v] = true;
+					changed = true;
+				}
+			}
+		}
+		restFirst = new BitSet[productions.length];
+		restNullable = new boolean[productions.length];
+		for (int p = 0; p < productions.length; p++) {
+			restFirst[p] = new BitSet();
+			restNullable[p] = firstOf(productionRHS[p], 1, restFirst[p]);
+		}
+	}
+
+	/**
+	 * Adds the FIRST set of a suffix of a sequence of symbols to a set.
+	 *
+	 * @param sequence
+	 *            the sequence of symbol identifiers
+	 * @param from
+	 *            the start of the suffix
+	 * @param set
+	 *            the set to add the terminals to
+	 * @return if the suffix derives the empty string
+	 */
+	private boolean firstOf(int[] sequence, int from, BitSet set) {
+		for (int i = from; i < sequence.length; i++) {
+			if (!isVariable(sequence[i])) {
+				set.set(sequence[i]);
+				return false;
+			}
+			int v = sequence[i] - terminalCount - 1;
+			set.or(first[v]);
+			if (!nullable[v])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the LR(1) closure of a set of kernel items with lookaheads.
+	 * Afterwards <CODE>closureLookaheads[v]</CODE> holds the lookaheads of
+	 * the items for the productions of variable <CODE>v</CODE>, for every
+	 * variable in the returned array.
+	 *
+	 * @param kernel
+	 *            the kernel items
+	 * @param lookaheads
+	 *            the lookaheads of the kernel items
+	 * @return the variables whose productions are in the closure
+	 */
+	private int[] closure(int[] kernel, BitSet[] lookaheads) {
+		int variableCount = variableProductions.length;
+		boolean[] queued = new boolean[variableCount];
+		boolean[] seen = new boolean[variableCount];
+		int[] seenList = new int[variableCount];
+		int seenCount = 0;
+		int[] queue = new int[variableCount];
+		int head = 0, count = 0;
+		BitSet scratch = new BitSet();
+		for (int i = 0; i < kernel.length; i++) {
+			int p = itemProduction[kernel[i]];
+			int dot = kernel[i] - itemBase[p];
+			if (dot == productionRHS[p].length
+					|| !isVariable(productionRHS[p][dot]))
+				continue;
+			int v = productionRHS[p][dot] - terminalCount - 1;
+			scratch.clear();
+			if (firstOf(productionRHS[p], dot + 1, scratch))
+				scratch.or(lookaheads[i]);
+			if (!seen[v]) {
+				seen[v] = true;
+				seenList[seenCount++] = v;
+				closureLookaheads[v].clear();
+			}
+			if (addAll(closureLookaheads[v], scratch) && !queued[v]) {
+				queued[v] = true;
+				queue[(head + count++) % variableCount] = v;
+			}
+		}
+		while (count > 0) {
+			int b = queue[head];
+			head = (head + 1) % variableCount;
+			count--;
+			queued[b] = false;
+			int[] ps = variableProductions[b];
+			for (int i = 0; i < ps.length; i++) {
+				int[] rhs = productionRHS[ps[i]];
+				if (rhs.length == 0 || !isVariable(rhs[0]))
+					continue;
+				int c = rhs[0] - terminalCount - 1;
+				scratch.clear();
+				scratch.or(restFirst[ps[i]]);
+				if (restNullable[ps[i]])
+					scratch.or(closureLookaheads[b]);
+				if (!seen[c]) {
+					seen[c] = true;
+					seenList[seenCount++] = c;
+					closureLookaheads[c].clear();
+				}
+				if (addAll(closureLookaheads[c], scratch) && !queued[c]) {
+					queued[c] = true;
+					queue[(head + count++) % variableCount] = c;
+				}
+			}
+		}
+		int[] variables = new int[seenCount];
+		System.arraycopy(seenList, 0, variables, 0, seenCount);
+		return variables;
+	}
+
+	/**
+	 * Adds the elements of one set to another.
+	 *
+	 * @return if the first set changed
+	 */
+	private static boolean addAll(BitSet set, BitSet more) {
+		int before = set.cardinality();
+		set.or(more);
+		return set.cardinality() != before;
+	}
+
+	/**
+	 * Computes the LALR(1) lookaheads of all kernel items by determining
+	 * spontaneous lookaheads and propagation links, and then propagating.
+	 */
+	private void computeLookaheads() {
+		if (kernelLookaheads != null)
+			return;
+		if (first == null)
+			computeFirst();
+		int states = kernels.size();
+		closureLookaheads = new BitSet[variableProductions.length];
+		for (int v = 0; v < closureLookaheads.length; v++)
+			closureLookaheads[v] = new BitSet();
+		int[] offset = new int[states + 1];
+		for (int s = 0; s < states; s++)
+			offset[s + 1] = offset[s] + ((int[]) kernels.get(s)).length;
+		BitSet[] lookaheads = new BitSet[offset[states]];
+		for (int k = 0; k < lookaheads.length; k++)
+			lookaheads[k] = new BitSet();
+		int[][] links = new int[lookaheads.length][];
+		int[] linkCount = new int[lookaheads.length];
+
+		int dummy = symbols.length;
+		lookaheads[0].set(symbolId("$"));
+		BitSet[] single = new BitSet[] { new BitSet() };
+		single[0].set(dummy);
+		for (int s = 0; s < states; s++) {
+			int[] kernel = (int[]) kernels.get(s);
+			for (int i = 0; i < kernel.length; i++) {
+				int from = offset[s] + i;
+				int[] one = new int[] { kernel[i] };
+				int[] vars = closure(one, single);
+				// The kernel item itself passes its lookaheads on.
+				int x = symbolAfterDot(kernel[i]);
+				if (x >= 0)
+					links[from] = addLink(links[from], linkCount[from]++,
+							target(offset, s, x, kernel[i] + 1));
+				for (int j = 0; j < vars.length; j++) {
+					BitSet la = closureLookaheads[vars[j]];
+					int[] ps = variableProductions[vars[j]];
+					for (int k = 0; k < ps.length; k++) {
+						if (productionRHS[ps[k]].length == 0)
+							continue;
+						int item = itemBase[ps[k]];
+						int to = target(offset, s, symbolAfterDot(item),
+								item + 1);
+						if (la.get(dummy))
+							links[from] = addLink(links[from],
+									linkCount[from]++, to);
+						lookaheads[to].or(la);
+						lookaheads[to].clear(dummy);
+					}
+				}
+			}
+		}
+
+		// Propagate with a worklist until nothing changes.
+		boolean[] queued = new boolean[lookaheads.length];
+		LinkedList queue = new LinkedList();
+		for (int k = 0; k < lookaheads.length; k++)
+			if (!lookaheads[k].isEmpty()) {
+				queued[k] = true;
+				queue.add(new Integer(k));
+			}
+		while (!queue.isEmpty()) {
+			int k = ((Integer) queue.removeFirst()).intValue();
+			queued[k] = false;
+			for (int j = 0; j < linkCount[k]; j++) {
+				int to = links[k][j];
+				if (addAll(lookaheads[to], lookaheads[k]) && !queued[to]) {
+					queued[to] = true;
+					queue.add(new Integer(to));
+				}
+			}
+		}
+		kernelOffset = offset;
+		kernelLookaheads = lookaheads;
+	}
+
+	/**
+	 * Returns the global index of the kernel item reached by a goto.
+	 *
+	 * @param offset
+	 *            the index of the first kernel item of each state
+	 * @param state
+	 *            the state the goto is from
+	 * @param symbol
+	 *            the symbol of the goto
+	 * @param item
+	 *            the item with the dot moved past the symbol
+	 * @return the index of that item among all kernel items
+	 */
+	private int target(int[] offset, int state, int symbol, int item) {
+		int to = gotos[state][symbol];
+		return offset[to]
+				+ Arrays.binarySearch((int[]) kernels.get(to), item);
+	}
+
+	/**
+	 * Appends a link to an array of links, growing the array if needed.
+	 */
+	private static int[] addLink(int[] links, int size, int link) {
+		if (links == null)
+			links = new int[2];
+		else if (size == links.length) {
+			int[] bigger = new int[size * 2];
+			System.arraycopy(links, 0, bigger, 0, size);
+			links = bigger;
+		}
+		links[size] = link;
+		return links;
+	}
+
+	/**
+	 * Returns the LALR(1) lookaheads of an item in a state. The item must be
+	 * one of the items returned by {@link #getItems} for that state.
+	 *
+	 * @param state
+	 *            the state
+	 * @param item
+	 *            the item, a production with
+	 *            {@link Operations#ITEM_POSITION} in its right hand side
+	 * @return the set of terminals, including "$", that may follow the item
+	 */
+	public Set getLookaheads(int state, Production item) {
+		computeLookaheads();
+		String rhs = item.getRHS();
+		int dot = rhs.indexOf(Operations.ITEM_POSITION);
+		Production p = new Production(item.getLHS(), rhs.substring(0, dot)
+				+ rhs.substring(dot + 1));
+		int prod = Arrays.asList(productions).indexOf(p);
+		if (prod < 0)
+			throw new IllegalArgumentException(item + " is not an item!");
+		int[] kernel = (int[]) kernels.get(state);
+		BitSet la;
+		int k = Arrays.binarySearch(kernel, itemBase[prod] + dot);
+		if (k >= 0) {
+			la = kernelLookaheads[kernelOffset[state] + k];
+		} else {
+			int v = productionLHS[prod] - terminalCount - 1;
+			int[] vars = closure(kernel, stateLookaheads(state));
+			if (dot != 0 || Arrays.binarySearch(sort(vars), v) < 0)
+				throw new IllegalArgumentException(item
+						+ " is not in the state!");
+			la = closureLookaheads[v];
+		}
+		Set set = new TreeSet();
+		for (int t = la.nextSetBit(0); t >= 0; t = la.nextSetBit(t + 1))
+			set.add(symbols[t]);
+		return set;
+	}
+
+	private static int[] sort(int[] array) {
+		Arrays.sort(array);
+		return array;
+	}
+
+	/**
+	 * Returns the lookaheads of the kernel items of a state.
+	 */
+	private BitSet[] stateLookaheads(int state) {
+		BitSet[] la = new BitSet[((int[]) kernels.get(state)).length];
+		System.arraycopy(kernelLookaheads, kernelOffset[state], la, 0,
+				la.length);
+		return la;
+	}
+
+	/**
+	 * Returns the SLR(1) parse table for the grammar, which reduces by a
+	 * completed item on every terminal in the FOLLOW set of its variable.
+	 *
+	 * @return the SLR(1) parse table
+	 */
+	public LRParseTable getSLRParseTable() {
+		BitSet[] follow = computeFollow();
+		LRParseTable table = createTable();
+		for (int s = 0; s < kernels.size(); s++) {
+			int[] closure = closure((int[]) kernels.get(s));
+			for (int i = 0; i < closure.length; i++) {
+				if (symbolAfterDot(closure[i]) >= 0)
+					continue;
+				int p = itemProduction[closure[i]];
+				if (p == 0)
+					table.appendValueAt("acc", s, "$");
+				else
+					appendReduce(table, s, p, follow[productionLHS[p]
+							- terminalCount - 1]);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Computes the FOLLOW sets of the variables. The start production's
+	 * variable is followed by "$".
+	 *
+	 * @return the FOLLOW set of each variable
+	 */
+	private BitSet[] computeFollow() {
+		if (first == null)
+			computeFirst();
+		BitSet[] follow = new BitSet[variableProductions.length];
+		for (int v = 0; v < follow.length; v++)
+			follow[v] = new BitSet();
+		follow[productionLHS[0] - terminalCount - 1].set(symbolId("$"));
+		BitSet scratch = new BitSet();
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int p = 0; p < productions.length; p++) {
+				int[] rhs = productionRHS[p];
+				for (int d = 0; d < rhs.length; d++) {
+					if (!isVariable(rhs[d]))
+						continue;
+					scratch.clear();
+					if (firstOf(rhs, d + 1, scratch))
+						scratch.or(follow[productionLHS[p] - terminalCount - 1]);
+					if (addAll(follow[rhs[d] - terminalCount - 1], scratch))
+						changed = true;
+				}
+			}
+		}
+		return follow;
+	}
+
+	/**
+	 * Returns the LALR(1) parse table for the grammar, which reduces by a
+	 * completed item only on its propagated lookaheads.
+	 *
+	 * @return the LALR(1) parse table
+	 */
+	public LRParseTable getLALRParseTable() {
+		computeLookaheads();
+		LRParseTable table = createTable();
+		for (int s = 0; s < kernels.size(); s++) {
+			int[] kernel = (int[]) kernels.get(s);
+			for (int i = 0; i < kernel.length; i++) {
+				if (symbolAfterDot(kernel[i]) >= 0)
+					continue;
+				int p = itemProduction[kernel[i]];
+				if (p == 0)
+					table.appendValueAt("acc", s, "$");
+				else
+					appendReduce(table, s, p,
+							kernelLookaheads[kernelOffset[s] + i]);
+			}
+			int[] vars = closure(kernel, stateLookaheads(s));
+			for (int j = 0; j < vars.length; j++) {
+				int[] ps = variableProductions[vars[j]];
+				for (int k = 0; k < ps.length; k++)
+					if (productionRHS[ps[k]].length == 0)
+						appendReduce(table, s, ps[k],
+								closureLookaheads[vars[j]]);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Adds reduce directives for a production on a set of lookaheads.
+	 */
+	private void appendReduce(LRParseTable table, int state, int production,
+			BitSet lookaheads) {
+		for (int t = lookaheads.nextSetBit(0); t >= 0; t = lookaheads
+				.nextSetBit(t + 1))
+			table.appendValueAt("r" + production, state, symbols[t]);
+	}
+
+	/**
+	 * Creates a read only parse table holding the shifts and gotos of the
+	 * collection of item sets.
+	 *
+	 * @return the new parse table
+	 */
+	private LRParseTable createTable() {
+		LRParseTable table = new LRParseTable(grammar, kernels.size()) {
+			public boolean isCellEditable(int row, int column) {
+				return false;
+			}
+		};
+		for (int s = 0; s < gotos.length; s++) {
+			for (int x = 0; x < symbols.length; x++) {
+				int to = gotos[s][x];
+				if (to < 0)
+					continue;
+				if (isVariable(x))
+					table.appendValueAt("" + to, s, symbols[x]);
+				else
+					table.appendValueAt("s" + to, s, symbols[x]);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * A sorted array of kernel items, hashed and compared by content.
+	 */
+	private static class ItemSet {
+		ItemSet(int[] items) {
+			this.items = items;
+			hash = Arrays.hashCode(items);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof ItemSet
+					&& Arrays.equals(items, ((ItemSet) o).items);
+		}
+
+		private int[] items;
+
+		private int hash;
+	}
+
+	/** The augmented grammar. */
+	private Grammar grammar;
+
+	/** The productions of the grammar, the start production first. */
+	private Production[] productions;
+
+	/** The interned symbols: terminals, "$", then variables. */
+	private String[] symbols;
+
+	/** The mapping of symbols to their identifiers. */
+	private Map symbolIds = new HashMap();
+
+	/** The number of terminals, not counting "$". */
+	private int terminalCount;
+
+	/** The left hand side symbol of each production. */
+	private int[] productionLHS;
+
+	/** The right hand side symbols of each production. */
+	private int[][] productionRHS;
+
+	/** The productions of each variable, indexed by variable. */
+	private int[][] variableProductions;
+
+	/** The first item of each production, and the item count at the end. */
+	private int[] itemBase;
+
+	/** The production of each item. */
+	private int[] itemProduction;
+
+	/** The kernels of the states, each a sorted <CODE>int[]</CODE>. */
+	private List kernels = new ArrayList();
+
+	/** The goto of each state on each symbol, or -1. */
+	private int[][] gotos;
+
+	/** The nullability of each variable. */
+	private boolean[] nullable;
+
+	/** The terminal FIRST set of each variable. */
+	private BitSet[] first;
+
+	/** The FIRST set of each production after its first symbol. */
+	private BitSet[] restFirst;
+
+	/** If each production derives lambda after its first symbol. */
+	private boolean[] restNullable;
+
+	/** The lookaheads per variable of the last LR(1) closure. */
+	private BitSet[] closureLookaheads;
+
+	/** The index of the first kernel item of each state. */
+	private int[] kernelOffset;
+
+	/** The LALR(1) lookaheads of all kernel items, or null if not computed. */
+	private BitSet[] kernelLookaheads;
+}
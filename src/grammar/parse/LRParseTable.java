@@ -34,6 +34,10 @@ import javax.swing.table.AbstractTableModel;
  * In this table, entries are either of the form "", "s#", "r#", "acc", or "#",
  * where # is a number. If a user change is not parseable into one of those
  * forms, then the entry will be unchanged.
+ * <P>
+ * 
+ * Parsers should not read the string entries directly, but rather use the
+ * integer encoded form returned by {@link #compile()}.
  * 
  * @author Thomas Finley
  */
@@ -49,6 +53,18 @@ public class LRParseTable extends AbstractTableModel implements Serializable,
 	 *            the goto graph for the grammar
 	 */
 	public LRParseTable(Grammar grammar, FiniteStateAutomaton fsa) {
+		this(grammar, fsa.getStates().length);
+	}
+
+	/**
+	 * Instantiates a new LR parse table with a given number of states.
+	 * 
+	 * @param grammar
+	 *            the augmented grammar
+	 * @param states
+	 *            the number of states, i.e. rows, of the table
+	 */
+	public LRParseTable(Grammar grammar, int states) {
 		ArrayList term = new ArrayList(Arrays.asList(grammar.getTerminals()));
 		ArrayList vars = new ArrayList(Arrays.asList(grammar.getVariables()));
 		this.grammar = grammar;
@@ -63,7 +79,7 @@ public class LRParseTable extends AbstractTableModel implements Serializable,
 		for (int i = 0; i < variables.length; i++)
 			symbolsToColumn.put(variables[i], new Integer(i + 1
 					+ terminals.length));
-		entries = new String[fsa.getStates().length][terminals.length
+		entries = new String[states][terminals.length
 				+ variables.length + 1];
 		for (int i = 0; i < entries.length; i++)
 			for (int j = 0; j < entries[i].length; j++)
@@ -180,6 +196,20 @@ public class LRParseTable extends AbstractTableModel implements Serializable,
 		return in.intValue();
 	}
 
+	/**
+	 * Returns the integer encoded form of this table, suitable for driving a
+	 * parser. The compiled table is cached until the next change to an entry
+	 * of this table, so it may be shared between parses.
+	 * 
+	 * @return the compiled form of this table
+	 */
+	public CompiledLRParseTable compile() {
+		if (compiled == null)
+			compiled = new CompiledLRParseTable(this, terminals, variables,
+					grammar);
+		return compiled;
+	}
+
 	// ABSTRACT TABLE MODEL METHODS
 
 	/**
@@ -307,6 +337,7 @@ public class LRParseTable extends AbstractTableModel implements Serializable,
 			sb.append(values[i]);
 		}
 		entries[row][column] = sb.toString();
+		compiled = null;
 		fireTableCellUpdated(row, column);
 	}
 
@@ -433,4 +464,7 @@ public class LRParseTable extends AbstractTableModel implements Serializable,
 
 	/** The mapping of grammar symbols to an Integer indicating the column. */
 	private Map symbolsToColumn = new HashMap();
+
+	/** The cached compiled form of this table, or <CODE>null</CODE>. */
+	private transient CompiledLRParseTable compiled = null;
 }
@@ -21,7 +21,6 @@
 package grammar.parse;
 
 import grammar.*;
-import java.util.*;
 import javax.swing.tree.*;
 
 /**
@@ -40,43 +39,61 @@ public abstract class LRParser {
 	 *            the augmented grammar
 	 * @param table
 	 *            the parse table
+	 * @return <CODE>true</CODE> if the string was accepted,
+	 *         <CODE>false</CODE> otherwise
 	 */
-	public static void parse(String string, Grammar grammar, LRParseTable table) {
-		string = string + "$";
+	public static boolean parse(String string, Grammar grammar,
+			LRParseTable table) {
+		return parse(string, table.compile());
+	}
+
+	/**
+	 * This action will perform parsing of a string against a compiled parse
+	 * table. The parse stack holds only state numbers, since the symbols are
+	 * not needed to recognize the string.
+	 * 
+	 * @param string
+	 *            the string to parse
+	 * @param table
+	 *            the compiled parse table
+	 * @return <CODE>true</CODE> if the string was accepted,
+	 *         <CODE>false</CODE> otherwise
+	 */
+	public static boolean parse(CharSequence string, CompiledLRParseTable table) {
+		int length = string.length();
 		int p = 0;
-		IntStack stack = new IntStack();
-		stack.push(0);
-		Production[] productions = grammar.getProductions();
+		int read = nextTerminal(string, p, table);
+		int[] stack = new int[16];
+		int top = 0;
+		stack[0] = 0;
 		while (true) {
-			int state = stack.peekInt();
-			String read = "" + string.charAt(p);
-			String entry = table.getValueAt(state, read);
-			// //System.out.println("Action: "+entry);
-			// //System.out.println("Stack : "+stack);
-			// //System.out.println("Input : "+string.substring(p));
-			if (entry.length() == 0) {
+			if (read < 0)
+				return false;
+			int action = table.action(stack[top], read);
+			switch (CompiledLRParseTable.kind(action)) {
+			case CompiledLRParseTable.SHIFT:
+				if (++top == stack.length)
+					stack = grow(stack);
+				stack[top] = CompiledLRParseTable.operand(action);
+				read = ++p < length ? nextTerminal(string, p, table) : table
+						.endMarker();
+				break;
+			case CompiledLRParseTable.REDUCE:
+				int prodNumber = CompiledLRParseTable.operand(action);
+				top -= table.productionLength(prodNumber);
+				int next = table.gotoState(stack[top], table
+						.productionVariable(prodNumber));
+				if (next < 0)
+					return false;
+				if (++top == stack.length)
+					stack = grow(stack);
+				stack[top] = next;
+				break;
+			case CompiledLRParseTable.ACCEPT:
+				return true;
+			default:
 				// Error! No derivation.
-				// //System.out.println("Parse error");
-				return;
-			} else if (entry.charAt(0) == 's') {
-				// Shift!
-				stack.push(read); // Push the symbol.
-				stack.push(Integer.parseInt(entry.substring(1)));
-				p++; // Move to next input symbol.
-			} else if (entry.charAt(0) == 'r') {
-				// Reduce!
-				int prodNumber = Integer.parseInt(entry.substring(1));
-				Production red = productions[prodNumber];
-				for (int i = 0; i < 2 * red.getRHS().length(); i++)
-					stack.pop();
-				state = stack.peekInt();
-				stack.push(red.getLHS());
-				stack.push(Integer.parseInt(table.getValueAt(state, red
-						.getLHS())));
-				// //System.out.println(red);
-			} else if (entry.charAt(0) == 'a') {
-				// //System.out.println("Acceptance!");
-				return;
+				return false;
 			}
 		}
 	}
@@ -94,68 +111,102 @@ public abstract class LRParser {
 	 */
 	public static TreeModel parseTree(String string, Grammar grammar,
 			LRParseTable table) {
-		string = string + "$";
-		int p = 0;
-		IntStack stack = new IntStack();
-		stack.push(0);
+		CompiledLRParseTable compiled = table.compile();
 		Production[] productions = grammar.getProductions();
-		int nodeNum = 0;
+		int length = string.length();
+		int p = 0;
+		int read = nextTerminal(string, p, compiled);
+		int[] states = new int[16];
+		MutableTreeNode[] nodes = new MutableTreeNode[16];
+		int top = 0;
+		states[0] = 0;
 		while (true) {
-			int state = stack.peekInt();
-			String read = "" + string.charAt(p);
-			String entry = table.getValueAt(state, read);
-			if (entry.length() == 0) {
-				// Error! No derivation.
-				// //System.out.println("Parse error");
-				DefaultMutableTreeNode node = new DefaultMutableTreeNode();
-				Object[] elements = stack.toArray();
-				for (int i = 0; i < elements.length; i++)
-					if (elements[i] instanceof MutableTreeNode)
-						node.add((MutableTreeNode) elements[i]);
-				return new DefaultTreeModel(node);
-			} else if (entry.charAt(0) == 's') {
-				// Shift!
-				TreeNode node = new DefaultMutableTreeNode(read, false);
-				stack.push(node); // Push the symbol.
-				stack.push(Integer.parseInt(entry.substring(1)));
-				p++; // Move to next input symbol.
-			} else if (entry.charAt(0) == 'r') {
-				// Reduce!
-				int prodNumber = Integer.parseInt(entry.substring(1));
+			int action = read < 0 ? CompiledLRParseTable.ERROR : compiled
+					.action(states[top], read);
+			switch (CompiledLRParseTable.kind(action)) {
+			case CompiledLRParseTable.SHIFT:
+				if (++top == states.length) {
+					states = grow(states);
+					nodes = grow(nodes);
+				}
+				nodes[top] = new DefaultMutableTreeNode(""
+						+ string.charAt(p), false);
+				states[top] = CompiledLRParseTable.operand(action);
+				read = ++p < length ? nextTerminal(string, p, compiled)
+						: compiled.endMarker();
+				break;
+			case CompiledLRParseTable.REDUCE:
+				int prodNumber = CompiledLRParseTable.operand(action);
 				Production red = productions[prodNumber];
 				DefaultMutableTreeNode node = new DefaultMutableTreeNode(red
 						.getLHS());
-				for (int i = 0; i < red.getRHS().length(); i++) {
-					stack.pop(); // Pops the state.
-					MutableTreeNode c = (MutableTreeNode) stack.pop();
-					node.insert(c, 0);
-					// Pops the symbol.
+				int n = compiled.productionLength(prodNumber);
+				for (int i = top - n + 1; i <= top; i++)
+					node.add(nodes[i]);
+				top -= n;
+				int next = compiled.gotoState(states[top], compiled
+						.productionVariable(prodNumber));
+				if (next < 0)
+					return errorTree(nodes, top);
+				if (++top == states.length) {
+					states = grow(states);
+					nodes = grow(nodes);
 				}
-				state = stack.peekInt();
-				stack.push(node);
-				stack.push(Integer.parseInt(table.getValueAt(state, red
-						.getLHS())));
-				// //System.out.println(red);
-			} else if (entry.charAt(0) == 'a') {
-				// //System.out.println("Acceptance!");
-				stack.pop();
-				return new DefaultTreeModel((TreeNode) stack.pop());
+				nodes[top] = node;
+				states[top] = next;
+				break;
+			case CompiledLRParseTable.ACCEPT:
+				return new DefaultTreeModel(nodes[top]);
+			default:
+				// Error! No derivation.
+				return errorTree(nodes, top);
 			}
 		}
 	}
 
-	private static class IntStack extends Stack {
-		int push(int item) {
-			push(new Integer(item));
-			return item;
-		}
+	/**
+	 * Returns the terminal index of the input character at a position.
+	 * 
+	 * @param string
+	 *            the input
+	 * @param p
+	 *            the position in the input
+	 * @param table
+	 *            the compiled parse table
+	 * @return the terminal index, or -1 if the character is not a terminal
+	 */
+	private static int nextTerminal(CharSequence string, int p,
+			CompiledLRParseTable table) {
+		return p < string.length() ? table.terminalIndex(string.charAt(p))
+				: table.endMarker();
+	}
 
-		int popInt() {
-			return ((Integer) pop()).intValue();
-		}
+	/**
+	 * Builds the tree returned for a rejected string, which holds the partial
+	 * subtrees left on the stack.
+	 * 
+	 * @param nodes
+	 *            the node stack
+	 * @param top
+	 *            the index of the top of the stack
+	 * @return the tree of the partial subtrees
+	 */
+	private static TreeModel errorTree(MutableTreeNode[] nodes, int top) {
+		DefaultMutableTreeNode node = new DefaultMutableTreeNode();
+		for (int i = 1; i <= top; i++)
+			node.add(nodes[i]);
+		return new DefaultTreeModel(node);
+	}
 
-		int peekInt() {
-			return ((Integer) peek()).intValue();
-		}
+	private static int[] grow(int[] stack) {
+		int[] bigger = new int[stack.length * 2];
+		System.arraycopy(stack, 0, bigger, 0, stack.length);
+		return bigger;
+	}
+
+	private static MutableTreeNode[] grow(MutableTreeNode[] stack) {
+		MutableTreeNode[] bigger = new MutableTreeNode[stack.length * 2];
+		System.arraycopy(stack, 0, bigger, 0, stack.length);
+		return bigger;
 	}
 }
@@ -47,6 +47,23 @@ public class Operations {
 		return (Set) map.get(key);
 	}
 
+	/**
+	 * Returns the FIRST, FOLLOW and nullable sets of a grammar, computing them
+	 * if the grammar has changed since they were last computed.
+	 * 
+	 * @param grammar
+	 *            the grammar
+	 * @return the sets for the current version of the grammar
+	 */
+	private static SymbolSets symbolSets(Grammar grammar) {
+		SymbolSets sets = (SymbolSets) CACHED_SETS.get(grammar);
+		if (sets == null || sets.version != grammar.getVersion()) {
+			sets = new SymbolSets(grammar);
+			CACHED_SETS.put(grammar, sets);
+		}
+		return sets;
+	}
+
 	/**
 	 * Calculate the first sets of a grammar.
 	 * 
@@ -56,38 +73,7 @@ public class Operations {
 	 *         for this grammar
 	 */
 	public static Map first(Grammar grammar) {
-		if (CACHED_FIRST.containsKey(grammar))
-			return (Map) CACHED_FIRST.get(grammar);
-		Map first = new HashMap();
-		// Put the terminals in the map.
-		String[] terminals = grammar.getTerminals();
-		for (int i = 0; i < terminals.length; i++) {
-			Set termSet = new HashSet();
-			termSet.add(terminals[i]);
-			first.put(terminals[i], termSet);
-		}
-		// Put the variables in the map as empty sets.
-		String[] variables = grammar.getVariables();
-		for (int i = 0; i < variables.length; i++) {
-			first.put(variables[i], new HashSet());
-		}
-
-		// Repeatedly go over the productions until there is no more
-		// change.
-		boolean hasChanged = true;
-		Production[] productions = grammar.getProductions();
-		while (hasChanged) {
-			hasChanged = false;
-			for (int i = 0; i < productions.length; i++) {
-				String variable = productions[i].getLHS();
-				String rhs = productions[i].getRHS();
-				Set firstRhs = first(first, rhs);
-				if (setForKey(first, variable).addAll(firstRhs))
-					hasChanged = true;
-			}
-		}
-		CACHED_FIRST.put(grammar, Collections.unmodifiableMap(first));
-		return first(grammar);
+		return symbolSets(grammar).firstMap();
 	}
 
 	/**
@@ -102,23 +88,19 @@ public class Operations {
 	 */
 	public static Set first(Map firstSets, String sequence) {
 		Set first = new HashSet();
-		if (sequence.equals(""))
-			first.add("");
 		for (int j = 0; j < sequence.length(); j++) {
 			Set s = setForKey(firstSets, sequence.substring(j, j + 1));
-			if (!s.contains("")) {
-				// Doesn't contain lambda. Add it and get the
-				// hell out of dodge.
-				first.addAll(s);
-				break;
+			Iterator it = s.iterator();
+			while (it.hasNext()) {
+				Object symbol = it.next();
+				if (!symbol.equals(""))
+					first.add(symbol);
 			}
-			// Does contain lambda. Damn it.
-			if (j != sequence.length() - 1)
-				s.remove("");
-			first.addAll(s);
-			if (j != sequence.length() - 1)
-				s.add("");
+			if (!s.contains(""))
+				return first;
 		}
+		// Every symbol, if any, derives lambda.
+		first.add("");
 		return first;
 	}
 
@@ -131,52 +113,7 @@ public class Operations {
 	 * @return the map of non-terminals to the follow sets
 	 */
 	public static Map follow(Grammar grammar) {
-		if (CACHED_FOLLOW.containsKey(grammar))
-			return (Map) CACHED_FOLLOW.get(grammar);
-		Map follow = new HashMap();
-		// Add the mapping from the initial variable to the end of
-		// string character.
-		Set initialSet = new HashSet();
-		initialSet.add("$");
-		follow.put(grammar.getStartVariable(), initialSet);
-		// Make every follow mapping empty for now.
-		String[] variables = grammar.getVariables();
-		for (int i = 0; i < variables.length; i++)
-			if (!variables[i].equals(grammar.getStartVariable()))
-				follow.put(variables[i], new HashSet());
-		// Get the first sets.
-		Map firstSets = first(grammar);
-		// Iterate repeatedly over the productions until we're
-		// completely done.
-		Production[] productions = grammar.getProductions();
-		boolean hasChanged = true;
-		while (hasChanged) {
-			hasChanged = false;
-			for (int i = 0; i < productions.length; i++) {
-				String variable = productions[i].getLHS();
-				String rhs = productions[i].getRHS();
-				for (int j = 0; j < rhs.length(); j++) {
-					String rhsVariable = rhs.substring(j, j + 1);
-					if (!grammar.isVariable(rhsVariable))
-						continue;
-					Set firstFollowing = first(firstSets, rhs.substring(j + 1));
-					// Is lambda in that following the variable? For
-					// A->aBb where lambda is in FIRST(b), everything
-					// in FOLLOW(A) is in FOLLOW(B).
-					if (firstFollowing.remove("")) {
-						if (setForKey(follow, rhsVariable).addAll(
-								setForKey(follow, variable)))
-							hasChanged = true;
-					}
-					// For A->aBb, everything in FIRST(b) except
-					// lambda is put in FOLLOW(B).
-					if (setForKey(follow, rhsVariable).addAll(firstFollowing))
-						hasChanged = true;
-				}
-			}
-		}
-		CACHED_FOLLOW.put(grammar, Collections.unmodifiableMap(follow));
-		return follow(grammar);
+		return symbolSets(grammar).followMap();
 	}
 
 	/**
@@ -344,10 +281,13 @@ public class Operations {
 	 * @return the map of variables to productions
 	 */
 	public static Map getVariableProductionMap(Grammar grammar) {
-		if (CACHED_VPMAP.containsKey(grammar))
-			return Collections.unmodifiableMap((Map) CACHED_VPMAP.get(grammar));
+		Object[] cached = (Object[]) CACHED_VPMAP.get(grammar);
+		if (cached != null
+				&& ((Integer) cached[0]).intValue() == grammar.getVersion())
+			return Collections.unmodifiableMap((Map) cached[1]);
 		Map vp = new HashMap();
-		CACHED_VPMAP.put(grammar, vp);
+		CACHED_VPMAP.put(grammar, new Object[] {
+				new Integer(grammar.getVersion()), vp });
 		Production[] p = grammar.getProductions();
 		for (int i = 0; i < p.length; i++) {
 			if (!vp.containsKey(p[i].getLHS()))
@@ -400,11 +340,327 @@ public class Operations {
 		return (String[]) symbols.toArray(new String[0]);
 	}
 
-	/** The cached first sets, maps from grammars to first sets. */
-	private static WeakHashMap CACHED_FIRST = new WeakHashMap();
+	/**
+	 * The FIRST, FOLLOW and nullable sets of one version of a grammar. Symbols
+	 * are interned as integers: terminals first, then "$", then variables.
+	 * FIRST and FOLLOW sets are bit sets over the terminals and "$".
+	 * <P>
+	 * 
+	 * Each set is computed by a worklist over a dependency graph rather than
+	 * by passes over all productions. For nullability, each production keeps a
+	 * count of the symbols on its right hand side not yet known to derive
+	 * lambda, and its variable becomes nullable when the count reaches zero.
+	 * For FIRST, an edge from <I>B</I> to <I>A</I> for every production
+	 * <I>A</I>&rarr;&alpha;<I>B</I>&beta; with &alpha; nullable means the
+	 * FIRST set of <I>B</I> flows into that of <I>A</I>; FOLLOW sets flow the
+	 * other way along the productions whose remainder after <I>B</I> is
+	 * nullable. A set is revisited only when a set it depends on grows.
+	 */
+	private static class SymbolSets {
+		/**
+		 * Computes the sets for the current version of a grammar.
+		 * 
+		 * @param grammar
+		 *            the grammar
+		 */
+		SymbolSets(Grammar grammar) {
+			version = grammar.getVersion();
+			startVariable = grammar.getStartVariable();
+			productions = grammar.getProductions();
+			terminals = grammar.getTerminals();
+			Set vars = new LinkedHashSet(Arrays.asList(grammar.getVariables()));
+			for (int i = 0; i < productions.length; i++)
+				vars.add(productions[i].getLHS());
+			variables = (String[]) vars.toArray(new String[0]);
+			for (int i = 0; i < terminals.length; i++)
+				ids.put(terminals[i], new Integer(i));
+			for (int i = 0; i < variables.length; i++)
+				ids.put(variables[i], new Integer(terminals.length + 1 + i));
+
+			lhs = new int[productions.length];
+			rhs = new int[productions.length][];
+			for (int p = 0; p < productions.length; p++) {
+				lhs[p] = variable(productions[p].getLHS());
+				String r = productions[p].getRHS();
+				rhs[p] = new int[r.length()];
+				for (int j = 0; j < r.length(); j++) {
+					Integer id = (Integer) ids.get(r.substring(j, j + 1));
+					// Unknown symbols are treated as terminals nothing
+					// derives, exactly like a missing FIRST set entry.
+					rhs[p][j] = id == null ? -1 : id.intValue();
+				}
+			}
+			computeNullable();
+			computeFirst();
+		}
+
+		/**
+		 * Returns the variable index of a symbol identifier, or -1 if the
+		 * symbol is a terminal.
+		 */
+		private int variableIndex(int symbol) {
+			return symbol > terminals.length ? symbol - terminals.length - 1
+					: -1;
+		}
+
+		/**
+		 * Returns the variable index of a variable.
+		 */
+		private int variable(String variable) {
+			return ((Integer) ids.get(variable)).intValue() - terminals.length
+					- 1;
+		}
+
+		/**
+		 * Computes which variables derive lambda.
+		 */
+		private void computeNullable() {
+			nullable = new BitSet(variables.length);
+			int[] remaining = new int[productions.length];
+			int[][] occurrences = new int[variables.length][];
+			int[] occurrenceCount = new int[variables.length];
+			int[] queue = new int[variables.length];
+			int tail = 0;
+			for (int p = 0; p < productions.length; p++) {
+				for (int j = 0; j < rhs[p].length; j++) {
+					int v = variableIndex(rhs[p][j]);
+					if (v < 0) {
+						// A terminal, so this production never derives
+						// lambda.
+						remaining[p] = -1;
+						break;
+					}
+					remaining[p]++;
+					occurrences[v] = add(occurrences[v],
+							occurrenceCount[v]++, p);
+				}
+				if (remaining[p] == 0 && !nullable.get(lhs[p])) {
+					nullable.set(lhs[p]);
+					queue[tail++] = lhs[p];
+				}
+			}
+			for (int head = 0; head < tail; head++) {
+				int v = queue[head];
+				for (int i = 0; i < occurrenceCount[v]; i++) {
+					int p = occurrences[v][i];
+					if (remaining[p] > 0 && --remaining[p] == 0
+							&& !nullable.get(lhs[p])) {
+						nullable.set(lhs[p]);
+						queue[tail++] = lhs[p];
+					}
+				}
+			}
+		}
+
+		/**
+		 * Computes the FIRST sets of the variables.
+		 */
+		private void computeFirst() {
+			first = newSets();
+			int[][] dependents = new int[variables.length][];
+			int[] dependentCount = new int[variables.length];
+			for (int p = 0; p < productions.length; p++) {
+				for (int j = 0; j < rhs[p].length; j++) {
+					int v = variableIndex(rhs[p][j]);
+					if (v < 0) {
+						if (rhs[p][j] >= 0)
+							first[lhs[p]].set(rhs[p][j]);
+						break;
+					}
+					if (v != lhs[p])
+						dependents[v] = add(dependents[v],
+								dependentCount[v]++, lhs[p]);
+					if (!nullable.get(v))
+						break;
+				}
+			}
+			propagate(first, dependents, dependentCount);
+		}
+
+		/**
+		 * Computes the FOLLOW sets of the variables.
+		 */
+		private void computeFollow() {
+			follow = newSets();
+			Integer start = (Integer) ids.get(startVariable);
+			if (start != null)
+				follow[start.intValue() - terminals.length - 1]
+						.set(terminals.length);
+			int[][] dependents = new int[variables.length][];
+			int[] dependentCount = new int[variables.length];
+			for (int p = 0; p < productions.length; p++) {
+				// Walk right to left, keeping FIRST of what follows.
+				BitSet after = new BitSet();
+				boolean restNullable = true;
+				for (int j = rhs[p].length - 1; j >= 0; j--) {
+					int v = variableIndex(rhs[p][j]);
+					if (v < 0) {
+						after.clear();
+						if (rhs[p][j] >= 0)
+							after.set(rhs[p][j]);
+						restNullable = false;
+						continue;
+					}
+					follow[v].or(after);
+					if (restNullable && v != lhs[p])
+						dependents[lhs[p]] = add(dependents[lhs[p]],
+								dependentCount[lhs[p]]++, v);
+					if (!nullable.get(v)) {
+						after.clear();
+						restNullable = false;
+					}
+					after.or(first[v]);
+				}
+			}
+			propagate(follow, dependents, dependentCount);
+		}
+
+		/**
+		 * Makes every set include the sets it depends on, revisiting only the
+		 * dependents of sets that grew.
+		 * 
+		 * @param sets
+		 *            the sets, indexed by variable
+		 * @param dependents
+		 *            for each variable, the variables whose sets include its
+		 *            set
+		 * @param dependentCount
+		 *            the number of dependents of each variable
+		 */
+		private void propagate(BitSet[] sets, int[][] dependents,
+				int[] dependentCount) {
+			boolean[] queued = new boolean[variables.length];
+			int[] queue = new int[variables.length];
+			int head = 0, count = 0;
+			for (int v = 0; v < variables.length; v++)
+				if (!sets[v].isEmpty()) {
+					queued[v] = true;
+					queue[count++] = v;
+				}
+			while (count > 0) {
+				int v = queue[head];
+				head = (head + 1) % variables.length;
+				count--;
+				queued[v] = false;
+				for (int i = 0; i < dependentCount[v]; i++) {
+					int d = dependents[v][i];
+					int before = sets[d].cardinality();
+					sets[d].or(sets[v]);
+					if (sets[d].cardinality() != before && !queued[d]) {
+						queued[d] = true;
+						queue[(head + count++) % variables.length] = d;
+					}
+				}
+			}
+		}
+
+		private BitSet[] newSets() {
+			BitSet[] sets = new BitSet[variables.length];
+			for (int v = 0; v < sets.length; v++)
+				sets[v] = new BitSet(terminals.length + 1);
+			return sets;
+		}
+
+		private static int[] add(int[] list, int size, int value) {
+			if (list == null)
+				list = new int[2];
+			else if (size == list.length) {
+				int[] bigger = new int[size * 2];
+				System.arraycopy(list, 0, bigger, 0, size);
+				list = bigger;
+			}
+			list[size] = value;
+			return list;
+		}
+
+		/**
+		 * Converts a bit set to a set of symbols.
+		 */
+		private Set toSymbols(BitSet set) {
+			Set symbols = new HashSet();
+			for (int t = set.nextSetBit(0); t >= 0; t = set.nextSetBit(t + 1))
+				symbols.add(t == terminals.length ? "$" : terminals[t]);
+			return symbols;
+		}
+
+		/**
+		 * Returns the map of symbols to FIRST sets, with lambda in the FIRST
+		 * set of a variable as the empty string.
+		 */
+		Map firstMap() {
+			if (firstMap == null) {
+				Map map = new HashMap();
+				for (int i = 0; i < terminals.length; i++) {
+					Set termSet = new HashSet();
+					termSet.add(terminals[i]);
+					map.put(terminals[i], termSet);
+				}
+				for (int v = 0; v < variables.length; v++) {
+					Set set = toSymbols(first[v]);
+					if (nullable.get(v))
+						set.add("");
+					map.put(variables[v], set);
+				}
+				firstMap = Collections.unmodifiableMap(map);
+			}
+			return firstMap;
+		}
+
+		/**
+		 * Returns the map of variables to FOLLOW sets.
+		 */
+		Map followMap() {
+			if (followMap == null) {
+				computeFollow();
+				Map map = new HashMap();
+				for (int v = 0; v < variables.length; v++)
+					map.put(variables[v], toSymbols(follow[v]));
+				if (startVariable != null && !map.containsKey(startVariable)) {
+					Set initialSet = new HashSet();
+					initialSet.add("$");
+					map.put(startVariable, initialSet);
+				}
+				followMap = Collections.unmodifiableMap(map);
+			}
+			return followMap;
+		}
+
+		/** The grammar version these sets are for. */
+		final int version;
+
+		/**
+		 * The start variable of the grammar. The grammar itself is not kept,
+		 * as it is the key these sets are cached under.
+		 */
+		private String startVariable;
+
+		/** The productions of the grammar. */
+		private Production[] productions;
+
+		/** The terminals and variables of the grammar. */
+		private String[] terminals, variables;
+
+		/** The mapping of symbols to their identifiers. */
+		private Map ids = new HashMap();
+
+		/** The variable index of the left hand side of each production. */
+		private int[] lhs;
+
+		/** The symbol identifiers of the right hand side of each production. */
+		private int[][] rhs;
+
+		/** The variables that derive lambda. */
+		private BitSet nullable;
+
+		/** The FIRST and FOLLOW sets, indexed by variable. */
+		private BitSet[] first, follow;
+
+		/** The FIRST and FOLLOW sets as maps from strings to sets. */
+		private Map firstMap, followMap;
+	}
 
-	/** The cached follow sets, maps from grammars to follow sets. */
-	private static WeakHashMap CACHED_FOLLOW = new WeakHashMap();
+	/** The cached symbol sets, maps from grammars to their symbol sets. */
+	private static WeakHashMap CACHED_SETS = new WeakHashMap();
 
 	/**
 	 * The cached variables to productions maps, maps from grammars to maps from
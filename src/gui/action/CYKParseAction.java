@@ -20,6 +20,7 @@
 package gui.action;
 
 import grammar.CNFConverter;
+import grammar.ChomskyNormalForm;
 import grammar.ConvertedUnrestrictedGrammar;
 import grammar.Grammar;
 import grammar.LambdaProductionRemover;
@@ -68,7 +69,13 @@ public class CYKParseAction extends GrammarAction{
 	/** Boolean variable that would tell whehter or not error has occured during transformation */
 	protected boolean myErrorInTransform;
 
-	private ArrayList <Production> myTempCNF;
+	/**
+	 * The Chomsky normal form of the grammar, kept when it needs more than 26
+	 * variables and so has no single letter form for the CYK parser; strings
+	 * are then only tested for membership. <CODE>null</CODE> otherwise.
+	 */
+	protected ChomskyNormalForm myChomsky;
+
 	/**
 	 * Instantiates a new <CODE>CYKParse Action</CODE>.
 	 * 
@@ -111,6 +118,7 @@ public class CYKParseAction extends GrammarAction{
 		if (!myErrorInTransform)
 		{
 			CYKParsePane cykPane = new CYKParsePane(environment, g, myGrammar);
+			cykPane.setChomskyNormalForm(myChomsky);
 			environment.add(cykPane, "CYK Parse", new CriticalTag() {
 			});
 			environment.setActive(cykPane);
@@ -207,21 +215,20 @@ public class CYKParseAction extends GrammarAction{
 		for (int i = 0; i < p.length; i++)
 			chomsky &= converter.isChomsky(p[i]);
 		
+		myChomsky = null;
 		if (!chomsky) {
-			ArrayList <Production> resultList=new ArrayList <Production>();
-			for (int i=0; i<p.length; i++)
-			{
-				myTempCNF=new ArrayList <Production>();
-				converter = new CNFConverter(g);
-				convertToCNF(converter, p[i]);
-				resultList.addAll(myTempCNF);
+			ChomskyNormalForm normalForm = new ChomskyNormalForm(g);
+			Production[] pp;
+			try {
+				pp = CNFConverter.convert(normalForm.getProductions());
+			} catch (UnsupportedOperationException e) {
+				JOptionPane.showMessageDialog(env, e.getMessage()
+						+ "\nStrings will be tested without a derivation.",
+						"Too Many Variables", JOptionPane.WARNING_MESSAGE);
+				myChomsky = normalForm;
+				myGrammar = g;
+				return;
 			}
-			Production[] pp=new Production[resultList.size()];
-			for (int i=0; i<pp.length; i++)
-			{
-				pp[i]=resultList.get(i);
-			}
-			pp=converter.convert(pp);
 			String var=g.getStartVariable();
 			g=new UnrestrictedGrammar();
 			g.addProductions(pp);
@@ -230,19 +237,5 @@ public class CYKParseAction extends GrammarAction{
 		}
 		myGrammar=g;
 	}
-	
-	private void convertToCNF(CNFConverter converter, Production p)
-	{
-		if (!converter.isChomsky(p))
-		{
-			Production temp[]=converter.replacements(p);
-			for (int j=0; j<temp.length; j++)
-			{
-				p=temp[j];
-				convertToCNF(converter, p);
-			}
-		}	
-		else
-			myTempCNF.add(p);
-	}
+
 }
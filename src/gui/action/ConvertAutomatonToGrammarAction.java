@@ -144,9 +144,22 @@ public abstract class ConvertAutomatonToGrammarAction extends AutomatonAction {
 				controller.exportGrammar();
 			}
 		});
+		addToolbarActions(bar, controller);
 		return bar;
 	}
 
+	/**
+	 * Adds actions particular to a conversion to the end of the toolbar. By
+	 * default this adds nothing.
+	 * 
+	 * @param bar
+	 *            the toolbar of the conversion
+	 * @param controller
+	 *            the converter controller
+	 */
+	protected void addToolbarActions(JToolBar bar, ConvertController controller) {
+	}
+
 	/**
 	 * This method should be overridden to check the automaton. Any reason why
 	 * this checker will fail must be output to the user. If the automaton is
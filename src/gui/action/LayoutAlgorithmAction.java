@@ -20,16 +20,28 @@
 package gui.action;
 
 import java.awt.Dimension;
+import java.awt.Point;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.geom.Point2D;
+import javax.swing.JDialog;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import automata.turing.TuringMachine;
 import automata.pda.PushdownAutomaton;
 import automata.mealy.MealyMachine;
 import automata.Automaton;
 import automata.graph.*;
+import gui.environment.AutomatonEnvironment;
 import gui.environment.Environment;
 
 /**
- * This action allows for a layout algorithm to be applied to an automaton.
+ * This action allows for a layout algorithm to be applied to an automaton.  The algorithm runs
+ * in another thread on a copy of the positions of the states, and the states are moved as it
+ * goes, while a dialog lets the user stop it and keep what it has reached so far.  Algorithms
+ * that make random choices are run from several seeds at once, one for each processor, and the
+ * layout with the fewest crossing transitions is kept.
  * 
  * @author Chris Morgan
  */
@@ -40,6 +52,18 @@ public class LayoutAlgorithmAction extends AutomatonAction {
 	 * stores the relative height and width taken up when starting from the respective borders.
 	 */
 	private final Dimension assumedUsedSpace = new Dimension(25, 100);
+	/**
+	 * The size of the vertices of the states.
+	 */
+	private static final Dimension VERTEX_DIM = new Dimension(30, 30);
+	/**
+	 * The most seeds a randomized algorithm is run from.
+	 */
+	private static final int MAX_STARTS = 4;
+	/**
+	 * How many milliseconds a layout may take before the dialog to stop it is shown.
+	 */
+	private static final long DIALOG_DELAY = 300;
 	/**
 	 * The automaton for which a layout algorithm will be applied.
 	 */
@@ -84,13 +108,204 @@ public class LayoutAlgorithmAction extends AutomatonAction {
 			vertexBuffer = 65;
 		else
 			vertexBuffer = 50;
-		AutomatonGraph graph = LayoutAlgorithmFactory.getAutomatonGraph(algorithm, automaton);
-		LayoutAlgorithm layout = LayoutAlgorithmFactory.getLayoutAlgorithm(algorithm, 
-				new Dimension((int) environment.getSize().getWidth() - (int)assumedUsedSpace.getWidth(),
-				(int)environment.getSize().getHeight() - (int)assumedUsedSpace.getHeight()), 
-				new Dimension(30, 30), vertexBuffer);
-		layout.layout(graph, null);
-		layout.layout(graph, null);
-		graph.moveAutomatonStates();
+		Dimension size = new Dimension((int) environment.getSize().getWidth() - (int)assumedUsedSpace.getWidth(),
+				(int)environment.getSize().getHeight() - (int)assumedUsedSpace.getHeight());
+		// The whole layout, with the frames shown on the way, is undone at once.
+		if (environment instanceof AutomatonEnvironment)
+			((AutomatonEnvironment) environment).saveStatus();
+		
+		LayoutAlgorithm first = LayoutAlgorithmFactory.getLayoutAlgorithm(algorithm, size,
+				VERTEX_DIM, vertexBuffer);
+		int starts = 1;
+		if (first.isRandomized() && algorithm != LayoutAlgorithmFactory.RANDOM_CHOICE)
+			starts = Math.max(1, Math.min(MAX_STARTS, Runtime.getRuntime().availableProcessors()));
+		LayoutAlgorithm[] layouts = new LayoutAlgorithm[starts];
+		AutomatonGraph[] graphs = new AutomatonGraph[starts];
+		long seed = System.currentTimeMillis();
+		for (int i=0; i<starts; i++) {
+			layouts[i] = i == 0 ? first : LayoutAlgorithmFactory.getLayoutAlgorithm(algorithm, 
+					size, VERTEX_DIM, vertexBuffer);
+			layouts[i].setSeed(seed + i);
+			graphs[i] = LayoutAlgorithmFactory.getAutomatonGraph(algorithm, automaton);
+		}
+		
+		LayoutRun run = new LayoutRun(layouts, graphs, size, vertexBuffer);
+		run.start();
+		try {
+			run.join(DIALOG_DELAY);
+		} catch (InterruptedException ex) {
+		}
+		if (!run.isAlive()) {
+			run.finish();
+			return;
+		}
+		run.showFrames();
+		JOptionPane pane = new JOptionPane("Laying out the states...",
+				JOptionPane.INFORMATION_MESSAGE, JOptionPane.DEFAULT_OPTION, null,
+				new Object[] {"Stop"});
+		run.dialog = pane.createDialog(environment, (String) getValue(NAME));
+		// This returns once the layout is done, or the user stops it.
+		run.dialog.setVisible(true);
+		if (run.isAlive()) {
+			for (int i=0; i<layouts.length; i++)
+				layouts[i].cancel();
+			try {
+				run.join();
+			} catch (InterruptedException ex) {
+			}
+		}
+		run.finish();
+	}
+	
+	/**
+	 * The thread that runs the layouts.  The states are moved to the positions the first layout
+	 * reaches as it goes, and to the best of the layouts at the end.  The layouts only move the
+	 * vertices of their graphs, so the states are only ever moved in the event thread.
+	 */
+	private class LayoutRun extends Thread implements LayoutProgress {
+		/**
+		 * Instantiates a run of some layouts.
+		 * 
+		 * @param layouts - the layouts to run, each of which is told its own seed
+		 * @param graphs - the graph for each layout to move
+		 * @param size - the size of the screen the layouts fill
+		 * @param vertexBuffer - the space the layouts leave around a vertex
+		 */
+		public LayoutRun(LayoutAlgorithm[] layouts, AutomatonGraph[] graphs, Dimension size,
+				double vertexBuffer) {
+			this.layouts = layouts;
+			this.graphs = graphs;
+			this.size = size;
+			this.vertexBuffer = vertexBuffer;
+		}
+		
+		public void run() {
+			try {
+				Thread[] others = new Thread[layouts.length - 1];
+				for (int i=0; i<others.length; i++) {
+					final int start = i + 1;
+					others[i] = new Thread() {
+						public void run() {
+							lay(start);
+						}
+					};
+					others[i].start();
+				}
+				lay(0);
+				for (int i=0; i<others.length; i++)
+					others[i].join();
+				// A stopped layout keeps what was shown.
+				if (layouts[0].isCancelled()) {
+					best = 0;
+					return;
+				}
+				// For large graphs the crossings are estimated, the same way for each layout.
+				long fewest = -1;
+				for (int i=0; i<graphs.length; i++) {
+					long crossings = graphs.length == 1 ? 0 : LayoutAlgorithm.countCrossings(graphs[i]);
+					if (fewest == -1 || crossings < fewest) {
+						fewest = crossings;
+						best = i;
+					}
+				}
+			} catch (InterruptedException e) {
+			} finally {
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						finish();
+					}
+				});
+			}
+		}
+		
+		/**
+		 * Runs one of the layouts.  Each runs twice, as applying a layout always has.
+		 */
+		private void lay(int start) {
+			layouts[start].layout(graphs[start], null);
+			if (!layouts[start].isCancelled())
+				layouts[start].layout(graphs[start], null);
+		}
+		
+		public void positionsReached(Object[] vertices, double[] x, double[] y) {
+			frame = new Object[] {vertices, x, y};
+		}
+		
+		/**
+		 * Starts moving the states to the positions the first layout reaches.
+		 */
+		public void showFrames() {
+			layouts[0].setProgress(this);
+			timer = new Timer((int) LayoutAlgorithm.FRAME_MILLIS, new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					Object[] f = frame;
+					if (f == null || f == shown)
+						return;
+					shown = f;
+					Object[] vertices = (Object[]) f[0];
+					double[] x = (double[]) f[1], y = (double[]) f[2];
+					Graph graph = new Graph();
+					for (int i=0; i<vertices.length; i++)
+						graph.addVertex(vertices[i], new Point2D.Double(x[i], y[i]));
+					LayoutAlgorithm.shiftOntoScreen(graph, size, VERTEX_DIM, vertexBuffer, true);
+					automaton.beginBulkUpdate();
+					try {
+						for (int i=0; i<vertices.length; i++) {
+							Point2D point = graph.pointForVertex(vertices[i]);
+							// Thread.State hides the State of an automaton in here.
+							((automata.State) vertices[i]).setPoint(new Point((int) point.getX(), 
+									(int) point.getY()));
+						}
+					} finally {
+						automaton.endBulkUpdate();
+					}
+				}
+			});
+			timer.start();
+		}
+		
+		/**
+		 * Stops showing the layout and moves the states to the best layout found, if any.  This
+		 * is called in the event thread once the run is over, and does nothing after the first
+		 * call.
+		 */
+		public void finish() {
+			if (finished)
+				return;
+			finished = true;
+			if (timer != null)
+				timer.stop();
+			if (dialog != null)
+				dialog.dispose();
+			if (best == -1)
+				return;
+			automaton.beginBulkUpdate();
+			try {
+				graphs[best].moveAutomatonStates();
+			} finally {
+				automaton.endBulkUpdate();
+			}
+		}
+		
+		/** The layouts run. */
+		private LayoutAlgorithm[] layouts;
+		/** The graph each layout moves. */
+		private AutomatonGraph[] graphs;
+		/** The size of the screen the layouts fill. */
+		private Dimension size;
+		/** The space the layouts leave around a vertex. */
+		private double vertexBuffer;
+		/** The vertices and positions last reached by the first layout, or <code>null</code>. */
+		private volatile Object[] frame = null;
+		/** The frame the states were last moved to. */
+		private Object[] shown = null;
+		/** The layout with the fewest crossings, or -1 if the run failed. */
+		private volatile int best = -1;
+		/** The timer that moves the states as the layout goes. */
+		private Timer timer = null;
+		/** The dialog to stop the layout with, once it is shown. */
+		private JDialog dialog = null;
+		/** If the run has been finished. */
+		private boolean finished = false;
 	}
 }
@@ -72,6 +72,7 @@ public class MultipleCYKParseAction extends CYKParseAction{
 		if (!myErrorInTransform)
 		{
 			MultipleCYKSimulateAction mult = new MultipleCYKSimulateAction(g, myGrammar, environment);
+			mult.setChomskyNormalForm(myChomsky);
 			mult.performAction((Component)e.getSource());
 		}
 	}
@@ -46,6 +46,7 @@ import javax.swing.JSplitPane;
 import javax.swing.JTable;
 import javax.swing.JToolBar;
 
+import grammar.ChomskyNormalForm;
 import grammar.Grammar;
 import gui.JTableExtender;
 import gui.SplitPaneFactory;
@@ -74,6 +75,8 @@ public class MultipleCYKSimulateAction extends MultipleSimulateAction {
 	private Grammar myOriginalGrammar;
 	private Grammar myCNFGrammar;
 	private Environment myEnvironment;
+	/** Tests membership when the CNF grammar has no single letter form. */
+	private ChomskyNormalForm myChomsky;
 	
 	public MultipleCYKSimulateAction(Grammar original, Grammar cnf, Environment environment) {
 		super(original, environment);
@@ -82,6 +85,18 @@ public class MultipleCYKSimulateAction extends MultipleSimulateAction {
 		myCNFGrammar=cnf;
 	}
 
+	/**
+	 * Sets the Chomsky normal form the parse panes test strings with, for a
+	 * grammar that needs more than 26 variables in that form.
+	 *
+	 * @param chomsky
+	 *            the normal form, or <CODE>null</CODE> to use the CNF grammar
+	 * @see CYKParsePane#setChomskyNormalForm
+	 */
+	public void setChomskyNormalForm(ChomskyNormalForm chomsky) {
+		myChomsky = chomsky;
+	}
+
 	public void performAction(Component source){
 		
         table = initializeTable(getObject());
@@ -146,6 +161,7 @@ public class MultipleCYKSimulateAction extends MultipleSimulateAction {
 					int uniqueInputs = inputs.length;
 					Grammar currentGram = (Grammar)getObject();
 					CYKParsePane parsePane = new CYKParsePane((GrammarEnvironment)getEnvironment(), myOriginalGrammar, myCNFGrammar, model);
+					parsePane.setChomskyNormalForm(myChomsky);
 					parsePane.inputField.setEditable(false);    
                     parsePane.row = -1;
 					parsePane.parseMultiple();
@@ -463,6 +479,7 @@ public class MultipleCYKSimulateAction extends MultipleSimulateAction {
 
         if(finObject instanceof Grammar){
         	CYKParsePane bp = new CYKParsePane((GrammarEnvironment)getEnvironment(), (Grammar)finObject, myCNFGrammar, (InputTableModel)table.getModel());
+        	bp.setChomskyNormalForm(myChomsky);
         	bp.inputField.setEditable(false);
             if(getEnvironment().myTestStrings != null && getEnvironment().myTestStrings.size()>0) bp.inputField.setText((String)getEnvironment().myTestStrings.get(0));
         	JSplitPane split = SplitPaneFactory.createSplit(getEnvironment(), true,
@@ -527,6 +544,7 @@ public class MultipleCYKSimulateAction extends MultipleSimulateAction {
             	else cur = (Grammar)this.getEnvironment().getObject();
                 
 	                CYKParsePane bp = new CYKParsePane((GrammarEnvironment)getEnvironment(), cur, myCNFGrammar, null);
+	                bp.setChomskyNormalForm(myChomsky);
 	                int column = 1;
 	                if(spot == -1) column = 0;
 	               bp.inputField.setText((String)table.getModel().getValueAt(table.getSelectedRow(), column));
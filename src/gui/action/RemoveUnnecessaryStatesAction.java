@@ -64,6 +64,18 @@ public class RemoveUnnecessaryStatesAction extends AutomatonAction {
      * Remove some unnecessary states
      */
     public void actionPerformed(ActionEvent e) {
+        automaton.beginBulkUpdate();
+        try {
+            removeUnnecessaryStates();
+        } finally {
+            automaton.endBulkUpdate();
+        }
+    }
+
+    /**
+     * Does the work of {@link #actionPerformed}.
+     */
+    private void removeUnnecessaryStates() {
         State[] states = automaton.getStates();
         /* remove states that only exist to lambda to one other state */
         for (State s : states) {
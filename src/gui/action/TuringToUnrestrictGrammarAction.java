@@ -19,6 +19,7 @@
 
 package gui.action;
 
+import gui.TooltipAction;
 import gui.environment.AutomatonEnvironment;
 import gui.environment.GrammarEnvironment;
 import gui.grammar.automata.ConvertController;
@@ -28,6 +29,10 @@ import gui.viewer.SelectionDrawer;
 import automata.Automaton;
 import automata.turing.TuringMachine;
 
+import java.awt.event.ActionEvent;
+
+import javax.swing.JToolBar;
+
 /**
  * Class for converting Turing Machine to Unrestricted Grammar
  * @author Kyung Min (Jason) Lee
@@ -57,6 +62,20 @@ public class TuringToUnrestrictGrammarAction extends ConvertAutomatonToGrammarAc
 				(TuringMachine) automaton);
 	}
 
+	/**
+	 * Adds an action that saves the whole grammar to a file without
+	 * revealing it, for machines whose grammars are too large to show.
+	 */
+	protected void addToolbarActions(JToolBar bar,
+			final ConvertController controller) {
+		bar.add(new TooltipAction("Save Grammar",
+				"Saves the whole grammar to a file without showing it.") {
+			public void actionPerformed(ActionEvent e) {
+				((TuringConvertController) controller).saveGrammar();
+			}
+		});
+	}
+
 	public static boolean isApplicable(Object object) {
 		return object instanceof TuringMachine;
 	}
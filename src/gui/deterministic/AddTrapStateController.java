@@ -232,16 +232,21 @@ public class AddTrapStateController{
 				"Create the State", JOptionPane.ERROR_MESSAGE);
 			return;
 		}
-		for (Integer key:myNeededTransitionMap.keySet())
-		{
-			ArrayList <String> list=myNeededTransitionMap.get(key);
-			for (String terminal: list)
+		automaton.beginBulkUpdate();
+		try {
+			for (Integer key:myNeededTransitionMap.keySet())
 			{
-				FSATransition t=new FSATransition(myStateMap.get(key), myTrapState, terminal);
-				automaton.addTransition(t);
-				frame.repaint();
+				ArrayList <String> list=myNeededTransitionMap.get(key);
+				for (String terminal: list)
+				{
+					FSATransition t=new FSATransition(myStateMap.get(key), myTrapState, terminal);
+					automaton.addTransition(t);
+				}
 			}
+		} finally {
+			automaton.endBulkUpdate();
 		}
+		frame.repaint();
 		currentStep=FINISHED;
 		nextStep();
 		return;
@@ -40,8 +40,6 @@ import javax.swing.JOptionPane;
 import automata.Automaton;
 import automata.State;
 import automata.Transition;
-import automata.event.AutomataStateEvent;
-import automata.event.AutomataStateListener;
 import automata.fsa.FSATransition;
 import automata.fsa.FiniteStateAutomaton;
 import automata.fsa.NFAToDFA;
@@ -157,8 +155,9 @@ public class ConversionController {
 	 * 
 	 * @param state
 	 *            the state to expand
+	 * @return the list of states that were created
 	 */
-	public void expandState(State state) {
+	public List expandState(State state) {
 		List createdStates = converter.expandState(state, nfa, dfa);
 		// We want to lay out those states.
 		// First, get the sets of states the new states represent.
@@ -178,6 +177,7 @@ public class ConversionController {
 			dfaState.getPoint().setLocation(graph.pointForVertex(o));
 			dfaState.setPoint(dfaState.getPoint());
 		}
+		return createdStates;
 	}
 
 	/**
@@ -274,23 +274,15 @@ public class ConversionController {
 		final LinkedList stateQueue = new LinkedList();
 		// Add all states to the state queue.
 		stateQueue.addAll(Arrays.asList(dfa.getStates()));
-		// When a state is added to the DFA, make sure we know about it.
-		AutomataStateListener listener = new AutomataStateListener() {
-			public void automataStateChange(AutomataStateEvent e) {
-				if (!e.isAdd())
-					return;
-				// When the DFA gets a new state, add the state to
-				// the end of the queue.
-				stateQueue.addLast(e.getState());
-			}
-		};
-		dfa.addStateListener(listener);
-
-		while (stateQueue.size() != 0)
-			expandState((State) stateQueue.removeFirst());
-
-		// Remove the state listener.
-		dfa.removeStateListener(listener);
+		// The views hear of the new states and transitions only at the end.
+		dfa.beginBulkUpdate();
+		try {
+			// New states go to the end of the queue.
+			while (stateQueue.size() != 0)
+				stateQueue.addAll(expandState((State) stateQueue.removeFirst()));
+		} finally {
+			dfa.endBulkUpdate();
+		}
 	}
 
 	/**
@@ -605,14 +605,16 @@ public class ArrowTool extends Tool {
             Transition[] trans = tm.getTransitions();
             
             for (int i = 0; i < trans.length; ++i){
-                TMTransition tmTrans = (TMTransition)trans[i];
+                // Change a copy, so the machine can index what it reads.
+                TMTransition tmTrans = (TMTransition)trans[i].clone();
+                tmTrans.setBlockTransition(((TMTransition)trans[i]).isBlockTransition());
                 for(int k = 0; k < tmTrans.tapes(); k++){
                     String read = tmTrans.getRead(k);
                     tmTrans.setRead(k, read.replaceAll(toReplace, replaceWith));
                     String write = tmTrans.getWrite(k);
                     tmTrans.setWrite (k,write.replaceAll(toReplace, replaceWith));
                 }
-
+                tm.replaceTransition(trans[i], tmTrans);
             }
         }
 		
@@ -19,15 +19,11 @@
 
 package gui.editor;
 
+import gui.environment.EnvironmentFrame;
 import gui.environment.Universe;
-import gui.environment.Profile;
-
-import java.util.Deque;
-import java.util.LinkedList;
 
 import automata.Automaton;
-import automata.turing.TuringMachine;
-import debug.EDebug;
+import automata.UndoLog;
 
 /**
  * This class will store the states between actions, that we may undo them.
@@ -42,22 +38,16 @@ public class UndoKeeper {
     	
     private Automaton myMaster;	
     
-    private Deque<Automaton> myDeck;
-    private Deque<Automaton> myBackDeck;
-
-    //private final int DEFAULT_NUM = 50;
+    /** The edits made to the master, step by step. */
+    private UndoLog myLog;
 
-    private int numUndo;
-    
     public UndoKeeper(Automaton master){
     	myMaster = master;
-    	myDeck = new LinkedList<Automaton>();
-    	myBackDeck = new LinkedList<Automaton>();
-        numUndo = Universe.curProfile.undo_num;
+        myLog = new UndoLog(master, Universe.curProfile.undo_num);
     }
 
     public void setNumUndo(int nn){
-        numUndo = nn;
+        myLog.setLimit(nn);
     }
 	
 	public boolean sensitive = false;
@@ -68,96 +58,33 @@ public class UndoKeeper {
     }
 	
     public void saveStatus(){
-//        EDebug.print("I have been called upon");
         if (wait){
         	wait = false;
         	return;
         }
-    	
-//        EDebug.print("\nFirst place");
-//        for (int i = 0; i < myDeck.size(); i++)
-//            EDebug.print(((LinkedList)myDeck).get(i).hashCode());
-
-//        if (myDeck.size() > 0)
-//            EDebug.print("The top of deck hash is " + myDeck.peek().hashCode());
-
-        myDeck.push((Automaton)myMaster.clone()); //push on head
-    	    
-//        EDebug.print("The master that is getting pushed on has hascode = " + myMaster.hashCode());
-        System.out.println();
-
-//        EDebug.print("Second place");
-//        for (int i = 0; i < myDeck.size(); i++)
-//            EDebug.print(((LinkedList)myDeck).get(i).hashCode());
-//
-//        EDebug.print("\n");
-        
-
-        if (myDeck.size() >= 2)
-        {
-        	Automaton first = myDeck.pop();
-        	Automaton second = myDeck.pop();
-//            EDebug.print("The first is " + first.hashCode() + "While the second is " + second.hashCode());
-        	if (first.hashCode() == second.hashCode()){
-        	    myDeck.push(first);	
-        	}
-        	else{
-        	    myDeck.push(second);	
-        	    myDeck.push(first);	
-                myBackDeck.clear();
-        	}
-        }
-
-//        EDebug.print("Third place");
-//        for (int i = 0; i < myDeck.size(); i++)
-//            EDebug.print(((LinkedList)myDeck).get(i).hashCode());
-//        EDebug.print(myDeck.size());
-
-        while (myDeck.size() > numUndo) myDeck.removeLast();
+        // Only the edits since the last save are kept, so a save with no
+        // edits since costs nothing.
+        myLog.mark();
     }
 
     /*Undo*/
     public void restoreStatus(){
-//        EDebug.print("I am mucking with that data structure.");
-    	if (myDeck.size() == 0) return;
-    	
-    	Automaton p = null;
-        while (myDeck.size() > 0 && (p = myDeck.pop()).hashCode() == myMaster.hashCode());
-        
-        
-        
-//        EDebug.print("Master's hash is " + myMaster.hashCode());
-//        EDebug.print("Top hash is " + p.hashCode());
-        
-        if (myDeck.size() == 0 && p.hashCode() == myMaster.hashCode()) return;
-        	
-        
-    	
 		sensitive = true;
-        myBackDeck.push((Automaton) myMaster.clone());
-
-        if (myMaster instanceof TuringMachine)
-            TuringMachine.become((TuringMachine) myMaster,(TuringMachine) p);
-        else
-            Automaton.become(myMaster, p); //pop off head
-
-		sensitive = false;
-		myMaster.getEnvironmentFrame().repaint();
+        boolean undone;
+        try {
+            undone = myLog.undo();
+        } finally {
+            sensitive = false;
+        }
+        if (undone) repaint();
     }
 
     public void redo(){
-//        EDebug.print("I am mucking with that data structure.");
-        if (myBackDeck.size() == 0) return;
-//        EDebug.print("Back deck is not empty.");
-//
-        myDeck.push((Automaton)myMaster.clone()); //push on head
-
-        if (myMaster instanceof TuringMachine)
-            TuringMachine.become((TuringMachine)myMaster, (TuringMachine)myBackDeck.pop()); //casting to the high heavens
-        else
-            Automaton.become(myMaster, myBackDeck.pop());
-
-		myMaster.getEnvironmentFrame().repaint();
+        if (myLog.redo()) repaint();
+    }
 
+    private void repaint(){
+        EnvironmentFrame frame = myMaster.getEnvironmentFrame();
+        if (frame != null) frame.repaint();
     }
 }
@@ -125,6 +125,31 @@ public abstract class ConvertController {
 		}
 	}
 
+	/**
+	 * Returns the productions for a state or transition. A subclass may leave
+	 * the productions for an object to be made when they are first revealed
+	 * by mapping the object to <CODE>null</CODE> in
+	 * {@link #objectToProduction}.
+	 * 
+	 * @param object
+	 *            the state or transition
+	 * @return the productions for the object, or <CODE>null</CODE> if there
+	 *         are none
+	 */
+	protected Production[] productionsFor(Object object) {
+		Production[] prods = (Production[]) objectToProduction.get(object);
+		if (prods != null || !objectToProduction.containsKey(object))
+			return prods;
+		if (object instanceof State)
+			prods = getProductions((State) object);
+		else
+			prods = getProductions((Transition) object);
+		objectToProduction.put(object, prods);
+		for (int j = 0; j < prods.length; j++)
+			productionToObject.put(prods[j], object);
+		return prods;
+	}
+
 	/**
 	 * Adds productions to the grammar pane, and makes them selected.
 	 * 
@@ -158,7 +183,7 @@ public abstract class ConvertController {
 	 *         revealed
 	 */
 	public Production[] revealObjectProductions(Object object) {
-		Production[] p = (Production[]) objectToProduction.get(object);
+		Production[] p = productionsFor(object);
 		if (p == null || p.length == 0) {
 			// There are no productions!
 			JOptionPane.showMessageDialog(convertPane,
@@ -184,15 +209,14 @@ public abstract class ConvertController {
 	 *         if no object remains to have its productions revealed
 	 */
 	public Object revealRandomProductions() {
-		Iterator it = objectToProduction.entrySet().iterator();
+		Iterator it = objectToProduction.keySet().iterator();
 		while (it.hasNext()) {
-			Map.Entry entry = (Map.Entry) it.next();
-			Object key = entry.getKey();
+			Object key = it.next();
 			if (alreadyDone.contains(key))
 				continue;
-			Production[] p = (Production[]) objectToProduction.get(key);
+			Production[] p = productionsFor(key);
 			addProductions(Arrays.asList(p));
-			alreadyDone.add(entry.getKey());
+			alreadyDone.add(key);
 			return key;
 		}
 		return null;
@@ -211,7 +235,7 @@ public abstract class ConvertController {
 		Iterator it = remaining.iterator();
 		Collection ps = new ArrayList();
 		while (it.hasNext()) {
-			Production[] p = (Production[]) objectToProduction.get(it.next());
+			Production[] p = productionsFor(it.next());
 			ps.addAll(Arrays.asList(p));
 		}
 		addProductions(ps);
@@ -328,7 +352,9 @@ public abstract class ConvertController {
 	/**
 	 * The mapping of either states or transitions to an array of productions.
 	 * If there are no productions for an object, the map will not contain the
-	 * key.
+	 * key; if they are yet to be made, the key maps to <CODE>null</CODE>.
+	 * 
+	 * @see #productionsFor
 	 */
 	protected HashMap objectToProduction = new HashMap();
 
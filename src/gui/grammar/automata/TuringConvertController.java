@@ -19,10 +19,15 @@
 
 package gui.grammar.automata;
 
+import java.io.File;
 import java.util.*;
 
+import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 
+import file.EncodeException;
+import file.XMLCodec;
+
 import grammar.ConvertedUnrestrictedGrammar;
 import grammar.Grammar;
 import grammar.Production;
@@ -31,6 +36,7 @@ import grammar.UselessProductionRemover;
 import grammar.cfg.ContextFreeGrammar;
 import gui.environment.FrameFactory;
 import gui.environment.GrammarEnvironment;
+import gui.environment.Universe;
 import gui.grammar.transform.UselessController;
 import gui.grammar.transform.UselessPane;
 import gui.viewer.SelectionDrawer;
@@ -77,6 +83,31 @@ public class TuringConvertController extends ConvertController {
 		fillMap();
 	}
 
+	/**
+	 * Fills the maps. The productions for the initial state are made at once,
+	 * but those for each transition that moves a tape are left to be made when
+	 * they are revealed, since for a large tape alphabet there may be too many
+	 * to hold all at once.
+	 */
+	protected void fillMap() {
+		State initial = myTuringMachine.getInitialState();
+		Production[] prods = getProductions(initial);
+		objectToProduction.put(initial, prods);
+		for (int i = 0; i < prods.length; i++)
+			productionToObject.put(prods[i], initial);
+		Transition[] transitions = myTuringMachine.getTransitions();
+		for (int i = 0; i < transitions.length; i++) {
+			TMTransition trans = (TMTransition) transitions[i];
+			for (int j = 0; j < trans.getTapeLength(); j++) {
+				String direction = trans.getDirection(j);
+				if (direction.equals("R") || direction.equals("L")) {
+					objectToProduction.put(trans, null);
+					break;
+				}
+			}
+		}
+	}
+
 	/**
 	 * Returns the productions for a particular state. This method will only be
 	 * called once.
@@ -217,6 +248,40 @@ public class TuringConvertController extends ConvertController {
 		}
 	}
 	
+	/**
+	 * Writes the whole grammar of the machine to a file the user chooses,
+	 * without revealing its productions. The productions are made one at a
+	 * time as they are written, so this works for machines whose grammars are
+	 * too large to show.
+	 * 
+	 * @return the file written, or <CODE>null</CODE> if none was
+	 */
+	public File saveGrammar() {
+		XMLCodec codec = new XMLCodec();
+		Universe.CHOOSER.resetChoosableFileFilters();
+		Universe.CHOOSER.addChoosableFileFilter(codec);
+		Universe.CHOOSER.setFileFilter(codec);
+		try {
+			if (Universe.CHOOSER.showSaveDialog(convertPane) != JFileChooser.APPROVE_OPTION)
+				return null;
+			File file = new File(Universe.CHOOSER.getCurrentDirectory(), codec
+					.proposeFilename(Universe.CHOOSER.getSelectedFile().getName(), null));
+			if (file.exists()
+					&& JOptionPane.showConfirmDialog(convertPane, "Overwrite "
+							+ file.getName() + "?", "Save Grammar",
+							JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION)
+				return null;
+			return codec.encodeProductions(
+					new TuringToGrammarConverter().productions(myTuringMachine), file);
+		} catch (EncodeException e) {
+			JOptionPane.showMessageDialog(convertPane, e.getMessage(),
+					"Write Error", JOptionPane.ERROR_MESSAGE);
+			return null;
+		} finally {
+			Universe.CHOOSER.resetChoosableFileFilters();
+		}
+	}
+	
 	/**
 	 * Trimming the grammar. Gets rid of variable V(aa) to regular variable "A" or "B"
 	 * NOTE: It is no longer used in this class 
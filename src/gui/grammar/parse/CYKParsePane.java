@@ -43,6 +43,7 @@ import javax.swing.tree.TreeNode;
 
 import java.util.*;
 
+import grammar.ChomskyNormalForm;
 import grammar.Grammar;
 import grammar.Production;
 import grammar.parse.BruteParser;
@@ -76,6 +77,13 @@ public class CYKParsePane extends BruteParsePane{
 
 	/** CNF Grammar that is transformed from the original grammar */
 	private Grammar myCNFGrammar;
+
+	/**
+	 * The Chomsky normal form that strings are tested with in place of the
+	 * parser, when the CNF grammar has no single letter form, or
+	 * <CODE>null</CODE>
+	 */
+	private ChomskyNormalForm myChomsky;
 	
 	/** Boolean variable telling whether grammar is accepted or not (If accepted, we can get trace) */
 	private boolean myTraceAvailable;
@@ -114,6 +122,19 @@ public class CYKParsePane extends BruteParsePane{
 		myModel=model;
 	}
 	
+	/**
+	 * Sets the Chomsky normal form to test strings with, for a grammar that
+	 * needs more than 26 variables in that form. Strings are then only
+	 * accepted or rejected, and no derivation is shown.
+	 *
+	 * @param chomsky
+	 *            the normal form, or <CODE>null</CODE> to parse with the CNF
+	 *            grammar
+	 */
+	public void setChomskyNormalForm(ChomskyNormalForm chomsky) {
+		myChomsky = chomsky;
+	}
+
 	/**
 	 * Initialize the view
 	 */
@@ -165,6 +186,14 @@ public class CYKParsePane extends BruteParsePane{
 		treePanel.repaint();
 		derivationModel.setRowCount(0);
 		myStepAction.setEnabled(false);
+		if (myChomsky != null)
+		{
+			progress.setText(myChomsky.accepts(string) ? "String is Accepted!"
+					: "String is Rejected!");
+			statusDisplay.setText("No derivation is shown for grammars that "
+					+ "need more than 26 variables in CNF.");
+			return;
+		}
 		if (myParser.solve(string))
 		{
 			progress.setText("String is Accepted!");
@@ -188,7 +217,8 @@ public class CYKParsePane extends BruteParsePane{
 			//System.out.println("ROW = "+row);
 			row++;			
 			//System.out.println("String is = "+inputs[row][0]);
-			if (myParser.solve(inputs[row][0]))
+			if (myChomsky != null ? myChomsky.accepts(inputs[row][0])
+					: myParser.solve(inputs[row][0]))
 				myModel.setResult(row, "Accept", null, environment.myTransducerStrings, row);
 			else
 				myModel.setResult(row, "Reject", null, environment.myTransducerStrings, row);
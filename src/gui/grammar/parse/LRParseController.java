@@ -248,7 +248,7 @@ class LRParseController {
 	 */
 	private DefaultTreeModel parseTree(String string, Grammar grammar,
 			LRParseTable table) {
-		string = string + "$";
+		CompiledLRParseTable compiled = table.compile();
 		int p = 0;
 		int numberOfIterations = 0, numberTillNextWarning = 500;
 		IntStack stack = new IntStack();
@@ -257,14 +257,12 @@ class LRParseController {
 		ArrayList nodeList = new ArrayList();
 		while (true) {
 			int state = stack.peekInt();
-			String read = "" + string.charAt(p);
-			String entry = "";
-			try {
-				entry = table.getValueAt(state, read);
-			} catch (IllegalArgumentException e) {
-
-			}
-			if (entry.length() == 0 || Character.isDigit(entry.charAt(0))) {
+			int read = p < string.length() ? compiled.terminalIndex(string
+					.charAt(p)) : compiled.endMarker();
+			int action = read < 0 || state < 0 ? CompiledLRParseTable.ERROR
+					: compiled.action(state, read);
+			int kind = CompiledLRParseTable.kind(action);
+			if (kind == CompiledLRParseTable.ERROR) {
 				// Error! No derivation.
 				DefaultMutableTreeNode node = new DefaultMutableTreeNode();
 				Object[] elements = stack.toArray();
@@ -273,16 +271,17 @@ class LRParseController {
 						node.add((MutableTreeNode) elements[i]);
 				nodes = (TreeNode[]) nodeList.toArray(new TreeNode[0]);
 				return new DefaultTreeModel(node);
-			} else if (entry.charAt(0) == 's') {
+			} else if (kind == CompiledLRParseTable.SHIFT) {
 				// Shift!
-				TreeNode node = new DefaultMutableTreeNode(read, false);
+				TreeNode node = new DefaultMutableTreeNode(""
+						+ string.charAt(p), false);
 				stack.push(node); // Push the symbol.
 				nodeList.add(node);
-				stack.push(Integer.parseInt(entry.substring(1)));
+				stack.push(CompiledLRParseTable.operand(action));
 				p++; // Move to next input symbol.
-			} else if (entry.charAt(0) == 'r') {
+			} else if (kind == CompiledLRParseTable.REDUCE) {
 				// Reduce!
-				int prodNumber = Integer.parseInt(entry.substring(1));
+				int prodNumber = CompiledLRParseTable.operand(action);
 				Production red = productions[prodNumber];
 				DefaultMutableTreeNode node = new DefaultMutableTreeNode(red
 						.getLHS());
@@ -300,10 +299,10 @@ class LRParseController {
 				}
 				state = stack.peekInt();
 				stack.push(node);
-				stack.push(Integer.parseInt(table.getValueAt(state, red
-						.getLHS())));
+				stack.push(compiled.gotoState(state, compiled
+						.productionVariable(prodNumber)));
 				nodeList.add(node);
-			} else if (entry.charAt(0) == 'a') {
+			} else {
 				stack.pop();
 				nodes = (TreeNode[]) nodeList.toArray(new TreeNode[0]);
 				return new DefaultTreeModel((TreeNode) stack.pop());
@@ -33,6 +33,9 @@ import java.awt.Image;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -45,6 +48,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JSpinner;
 import javax.swing.JTextField;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -113,9 +117,12 @@ public class DisplayPane extends JPanel {
 	 * Updates the display.Graphics2D;
 	 */
 	private void updateDisplay() {
-		int recursionDepth = spinnerModel.getNumber().intValue();
-		final List expansion = expander.expansionForLevel(recursionDepth);
-		progressBar.setMaximum(expansion.size() * 2);
+		final Collection expansion = expansion();
+		// The size of a stochastic expansion is only known by walking it, so
+		// its progress is not measured; otherwise the size is found with the
+		// drawing, off the event thread.
+		final boolean counted = !lsystem.nondeterministic();
+		progressBar.setIndeterminate(true);
 		imageDisplay.setImage(null);
 		Image renderImage = null;
 
@@ -130,9 +137,23 @@ public class DisplayPane extends JPanel {
 
 		final Thread drawThread = new Thread() {
 			public void run() {
-				if (expansion.size() < 70) {
+				if (counted) {
+					final int size = expansion.size();
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							progressBar.setMaximum(size);
+							progressBar.setIndeterminate(false);
+						}
+					});
+				}
+				// Read no more of the expansion than is shown.
+				List start = new ArrayList();
+				Iterator it = expansion.iterator();
+				while (it.hasNext() && start.size() < 70)
+					start.add(it.next());
+				if (start.size() < 70) {
 					String expansionString = LSystemInputPane
-							.listAsString(expansion);
+							.listAsString(start);
 					expansionDisplay.setText(expansionString);
 				} else
 					expansionDisplay.setText("Suffice to say, quite long.");
@@ -154,12 +175,33 @@ public class DisplayPane extends JPanel {
 				t.stop();
 				imageDisplay.repaint();
 				imageDisplay.revalidate();
-				progressBar.setValue(progressBar.getMaximum());
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						progressBar.setIndeterminate(false);
+						progressBar.setValue(progressBar.getMaximum());
+					}
+				});
 			}
 		};
 		drawThread.start();
 	}
 
+	/**
+	 * Returns the expansion at the current recursion depth. The same
+	 * collection is returned until the depth changes, so that the renderer can
+	 * tell when it has already read it.
+	 * 
+	 * @return the expansion at the current recursion depth
+	 */
+	private Collection expansion() {
+		int recursionDepth = spinnerModel.getNumber().intValue();
+		if (expansion == null || recursionDepth != expansionDepth) {
+			expansion = expander.lazyExpansionForLevel(recursionDepth);
+			expansionDepth = recursionDepth;
+		}
+		return expansion;
+	}
+
 	/**
 	 * Prints the current displayed L-system.
 	 * 
@@ -167,8 +209,7 @@ public class DisplayPane extends JPanel {
 	 *            the graphics interface for the printer device
 	 */
 	public void printComponent(Graphics g) {
-		int recursionDepth = spinnerModel.getNumber().intValue();
-		List expansion = expander.expansionForLevel(recursionDepth);
+		Collection expansion = expansion();
 		// Now, set the display.
 		Map parameters = lsystem.getValues();
 		Matrix m = new Matrix();
@@ -197,6 +238,11 @@ public class DisplayPane extends JPanel {
 	/** The current expander. */
 	private Expander expander = null;
 
+	/** The expansion at the last recursion depth, and that depth. */
+	private Collection expansion = null;
+
+	private int expansionDepth;
+
 	/** The renderer. */
 	private Renderer renderer = new Renderer();
 
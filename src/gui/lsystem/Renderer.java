@@ -26,11 +26,14 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.RenderingHints;
+import java.awt.Stroke;
 import java.awt.geom.GeneralPath;
-import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EmptyStackException;
 import java.util.HashMap;
@@ -110,9 +113,8 @@ public class Renderer {
 	/**
 	 * Returns the progress in the current rendering.
 	 * 
-	 * @return the number of symbols processed, the max value of which is twice
-	 *         the number of symbols passed into the <CODE>render</CODE>
-	 *         method
+	 * @return the number of symbols processed, the max value of which is the
+	 *         number of symbols passed into the <CODE>render</CODE> method
 	 */
 	public int getDoneSymbols() {
 		return completedSymbols;
@@ -145,12 +147,21 @@ public class Renderer {
 	}
 
 	/**
-	 * Given a list of symbols and a dictionary of parameters, this will render
-	 * a representation of those symbols to either a graphics, or a returned
-	 * image.
+	 * Given a collection of symbols and a dictionary of parameters, this will
+	 * render a representation of those symbols to either a graphics, or a
+	 * returned image.
+	 * <P>
+	 * 
+	 * The symbols are read once, and the lines and polygons the turtle makes
+	 * are recorded as points in the turtle's own space, before any view
+	 * matrix. The image is then drawn from the recording, seen through the
+	 * matrix. If the same collection and parameters are passed in again, as
+	 * when only the matrix has changed, the recording is drawn again without
+	 * reading the symbols, so the collection should not be changed between
+	 * calls.
 	 * 
 	 * @param symbols
-	 *            a list of symbols
+	 *            a collection of symbols, iterated in order
 	 * @param parameters
 	 *            the parameters
 	 * @param matrix
@@ -170,141 +181,211 @@ public class Renderer {
 	 *             if there is a passed in graphics object and its clip area is
 	 *             not set
 	 */
-	public Image render(List symbols, Map parameters, Matrix matrix,
+	public Image render(Collection symbols, Map parameters, Matrix matrix,
 			Graphics2D graphics, Point2D origin) {
 		BufferedImage image = null;
-		Rectangle2D bounds = new Rectangle2D.Double();
 		if (graphics != null && graphics.getClip() == null)
 			throw new IllegalArgumentException(
 					"Graphics needs a non-null clip!");
 		if (matrix == null)
 			matrix = new Matrix();
-		totalSymbols = symbols.size() * 2;
-		completedSymbols = 0;
 		isActive = true;
-		for (int i = 0; i < 2; i++) {
-			areDrawing = i == 1;
-			drawnSofar = 0;
-			// Set up the initial conditions.
-			turtleStack.clear();
-			currentTurtle = new Turtle();
-			currentTurtle.matrix = matrix;
-			currentTurtle = new Turtle(currentTurtle);
-			// Set up the graphics object.
-			if (!areDrawing || graphics == null) {
-				image = new BufferedImage((int) bounds.getWidth() + 10,
-						(int) bounds.getHeight() + 10,
-						BufferedImage.TYPE_INT_ARGB);
-				g = image.createGraphics();
-				if (areDrawing) {
-					g.translate(-bounds.getX() + 5.0, -bounds.getY() + 5.0);
-					origin
-							.setLocation(5.0 - bounds.getX(), 5.0 - bounds
-									.getY());
-					g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-							RenderingHints.VALUE_ANTIALIAS_ON);
-				}
-			} else {
-				image = null;
-				g = (Graphics2D) graphics.create();
-				Rectangle2D newBounds = new Rectangle2D.Double(
-						bounds.getX() - 5.0, bounds.getY() - 5.0, bounds
-								.getWidth() + 10.0, bounds.getHeight() + 10.0);
-				Rectangle2D ourBounds = g.getClipBounds();
-				double aRatio = newBounds.getWidth() / newBounds.getHeight();
-				double vRatio = ourBounds.getWidth() / ourBounds.getHeight();
-				if (aRatio > vRatio) {
-					// The L-system is wider than the clip bounds.
-					double targetHeight = newBounds.getWidth() / vRatio;
-					targetHeight -= newBounds.getHeight();
-					// Must extend by targetHeight.
-					newBounds.setRect(newBounds.getX(), newBounds.getY()
-							- targetHeight / 2.0, newBounds.getWidth(),
-							newBounds.getHeight() + targetHeight);
-				} else {
-					// The L-system is taller than the clip bounds.
-					double targetWidth = newBounds.getHeight() * vRatio;
-					targetWidth -= newBounds.getWidth();
-					// Extend by targetWidth.
-					newBounds.setRect(newBounds.getX() - targetWidth / 2.0,
-							newBounds.getY(), newBounds.getWidth()
-									+ targetWidth, newBounds.getHeight());
-				}
-				double scale = ourBounds.getWidth() / newBounds.getWidth();
-				g.scale(scale, scale);
-				g.translate(ourBounds.getX() - newBounds.getX(), ourBounds
-						.getY()
-						- newBounds.getY());
-				origin.setLocation(ourBounds.getX() - newBounds.getX(),
-						ourBounds.getY() - newBounds.getY());
-			}
-			// Do the initial parameters.
-			Iterator it = parameters.entrySet().iterator();
-			while (it.hasNext()) {
-				Map.Entry entry = (Map.Entry) it.next();
-				try {
-					assign((String) entry.getKey(), (String) entry.getValue());
-				} catch (Throwable e) {
-					// We have an error in the handler!
-				}
+		if (symbols != recordedSymbols || parameters != recordedParameters) {
+			record(symbols, parameters);
+			recordedSymbols = symbols;
+			recordedParameters = parameters;
+		}
+		completedSymbols = totalSymbols;
+		// Place the recorded points in the view, and find their bounds.
+		float[] points = new float[coordinateCount / 3 * 2];
+		double minX = 0.0, minY = 0.0, maxX = 0.0, maxY = 0.0;
+		for (int i = 0, j = 0; i < coordinateCount; i += 3, j += 2) {
+			double x = 0.0, y = 0.0;
+			for (int k = 0; k < 3; k++) {
+				x += matrix.valueAt(k, 0) * coordinates[i + k];
+				y += matrix.valueAt(k, 1) * coordinates[i + k];
 			}
-			// Set the initial drawing state.
-			g.setColor(currentTurtle.getColor());
-			capLinePath();
-			// Repeatedly read symbols, and call the appropriate
-			// command handler.
-			it = symbols.iterator();
-			while (it.hasNext()) {
-				completedSymbols++;
-				String symbol = (String) it.next();
-				Renderer.CommandHandler handler = getHandler(symbol);
-				if (handler != null) {
-					try {
-						handler.handle(null);
-					} catch (Throwable e) {
-						// We have an error!
-					}
-					continue;
-				}
-				// OKAY, perhaps this is an assignment?
-				int equalsPosition = symbol.indexOf('=');
-				if (equalsPosition != -1) {
-					String key = symbol.substring(0, equalsPosition);
-					String value = symbol.substring(equalsPosition + 1);
-					// Get the assignment.
-					assign(key, value);
-				}
-				// Well, let's go on. Perhaps this is a symbol with
-				// an argument.
-				int leftParenPosition = symbol.indexOf('('), rightParenPosition = symbol
-						.lastIndexOf(')');
-				if (leftParenPosition != -1 && rightParenPosition != -1
-						&& leftParenPosition < rightParenPosition) {
-					String key = symbol.substring(0, leftParenPosition);
-					String value = symbol.substring(leftParenPosition + 1,
-							rightParenPosition);
-					handler = getHandler(key);
-					try {
-						handler.handle(value);
-					} catch (Throwable e) {
-						// Another error. Whew.
-					}
-					continue;
-				}
+			points[j] = (float) x;
+			points[j + 1] = (float) y;
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+		}
+		Rectangle2D bounds = new Rectangle2D.Double(minX, minY, maxX - minX,
+				maxY - minY);
+		// Set up the graphics object.
+		if (graphics == null) {
+			image = new BufferedImage((int) bounds.getWidth() + 10,
+					(int) bounds.getHeight() + 10, BufferedImage.TYPE_INT_ARGB);
+			g = image.createGraphics();
+			g.translate(-bounds.getX() + 5.0, -bounds.getY() + 5.0);
+			origin.setLocation(5.0 - bounds.getX(), 5.0 - bounds.getY());
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+					RenderingHints.VALUE_ANTIALIAS_ON);
+		} else {
+			g = (Graphics2D) graphics.create();
+			Rectangle2D newBounds = new Rectangle2D.Double(bounds.getX() - 5.0,
+					bounds.getY() - 5.0, bounds.getWidth() + 10.0, bounds
+							.getHeight() + 10.0);
+			Rectangle2D ourBounds = g.getClipBounds();
+			double aRatio = newBounds.getWidth() / newBounds.getHeight();
+			double vRatio = ourBounds.getWidth() / ourBounds.getHeight();
+			if (aRatio > vRatio) {
+				// The L-system is wider than the clip bounds.
+				double targetHeight = newBounds.getWidth() / vRatio;
+				targetHeight -= newBounds.getHeight();
+				// Must extend by targetHeight.
+				newBounds.setRect(newBounds.getX(), newBounds.getY()
+						- targetHeight / 2.0, newBounds.getWidth(), newBounds
+						.getHeight()
+						+ targetHeight);
+			} else {
+				// The L-system is taller than the clip bounds.
+				double targetWidth = newBounds.getHeight() * vRatio;
+				targetWidth -= newBounds.getWidth();
+				// Extend by targetWidth.
+				newBounds.setRect(newBounds.getX() - targetWidth / 2.0,
+						newBounds.getY(), newBounds.getWidth() + targetWidth,
+						newBounds.getHeight());
 			}
-			capLinePath();
-			g.dispose();
-			// We pop all the turtle stacks to make sure the bounds
-			// are okay...
-			while (!turtleStack.isEmpty())
-				popTurtleStack();
-			bounds = currentTurtle.getBounds();
+			double scale = ourBounds.getWidth() / newBounds.getWidth();
+			g.scale(scale, scale);
+			g.translate(ourBounds.getX() - newBounds.getX(), ourBounds.getY()
+					- newBounds.getY());
+			origin.setLocation(ourBounds.getX() - newBounds.getX(), ourBounds
+					.getY()
+					- newBounds.getY());
 		}
+		draw(points);
+		g.dispose();
 		isActive = false;
-		areDrawing = false;
 		return image;
 	}
 
+	/**
+	 * Reads the symbols, recording what the turtle draws.
+	 * 
+	 * @param symbols
+	 *            a collection of symbols
+	 * @param parameters
+	 *            the parameters
+	 */
+	private void record(Collection symbols, Map parameters) {
+		operationCount = coordinateCount = 0;
+		styles.clear();
+		totalSymbols = symbols.size();
+		completedSymbols = 0;
+		// Set up the initial conditions.
+		turtleStack.clear();
+		currentTurtle = new Turtle();
+		polygon = false;
+		// Do the initial parameters.
+		Iterator it = parameters.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry entry = (Map.Entry) it.next();
+			try {
+				assign((String) entry.getKey(), (String) entry.getValue());
+			} catch (Throwable e) {
+				// We have an error in the handler!
+			}
+		}
+		// Set the initial drawing state.
+		recordStyle(COLOR, currentTurtle.getColor());
+		capLinePath();
+		// Repeatedly read symbols, and call the appropriate
+		// command handler.
+		it = symbols.iterator();
+		while (it.hasNext()) {
+			completedSymbols++;
+			String symbol = (String) it.next();
+			Command command = (Command) commands.get(symbol);
+			if (command == null) {
+				command = new Command(symbol);
+				commands.put(symbol, command);
+			}
+			command.run();
+		}
+		capLinePath();
+		turtleStack.clear();
+	}
+
+	/**
+	 * Draws the recording to the graphics.
+	 * 
+	 * @param points
+	 *            the recorded points placed in the view, as pairs of
+	 *            coordinates
+	 */
+	private void draw(float[] points) {
+		GeneralPath linePath = new GeneralPath(), polygonPath = null;
+		for (int i = 0, j = 0; i < operationCount; i++) {
+			switch (operations[i]) {
+			case MOVE_TO:
+				linePath.moveTo(points[j++], points[j++]);
+				break;
+			case LINE_TO:
+				linePath.lineTo(points[j++], points[j++]);
+				break;
+			case POLYGON_LINE_TO:
+				polygonPath.lineTo(points[j++], points[j++]);
+				break;
+			case CAP:
+				g.draw(linePath); // Dump the path to the graphics...
+				linePath.reset(); // Clear the path...
+				linePath.moveTo(points[j++], points[j++]);
+				break;
+			case BEGIN_POLYGON:
+				polygonPath = new GeneralPath();
+				polygonPath.moveTo(points[j++], points[j++]);
+				break;
+			case FILL:
+				polygonPath.closePath();
+				g.setColor((Color) styles.get(operations[++i]));
+				g.fill(polygonPath);
+				polygonPath = null;
+				break;
+			case COLOR:
+				g.setColor((Color) styles.get(operations[++i]));
+				break;
+			case STROKE:
+				g.setStroke((Stroke) styles.get(operations[++i]));
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Records an operation.
+	 */
+	private void record(int operation) {
+		if (operationCount == operations.length)
+			operations = Arrays.copyOf(operations, operationCount * 2);
+		operations[operationCount++] = operation;
+	}
+
+	/**
+	 * Records an operation at the current location of the turtle.
+	 */
+	private void recordPoint(int operation) {
+		record(operation);
+		if (coordinateCount == coordinates.length)
+			coordinates = Arrays.copyOf(coordinates, coordinateCount * 2);
+		double[] location = currentTurtle.location;
+		coordinates[coordinateCount++] = (float) location[0];
+		coordinates[coordinateCount++] = (float) location[1];
+		coordinates[coordinateCount++] = (float) location[2];
+	}
+
+	/**
+	 * Records an operation with a color or stroke.
+	 */
+	private void recordStyle(int operation, Object style) {
+		record(operation);
+		record(styles.size());
+		styles.add(style);
+	}
+
 	public boolean isActive() {
 		return isActive;
 	}
@@ -315,35 +396,93 @@ public class Renderer {
 	private void popTurtleStack() {
 		try {
 			Turtle lt = (Turtle) turtleStack.pop();
-			lt.updateBounds(currentTurtle);
 			currentTurtle = lt;
-			g.setColor(currentTurtle.getColor());
-			g.setStroke(currentTurtle.getStroke());
+			recordStyle(COLOR, currentTurtle.getColor());
+			recordStyle(STROKE, currentTurtle.getStroke());
 		} catch (EmptyStackException e) {
 			// We just ignore it.
 		}
 	}
 
 	/**
-	 * 
+	 * Records that the line path is drawn and started anew at the turtle.
 	 */
 	private final void capLinePath() {
-		g.draw(linePath); // Dump the path to the graphics...
-		linePath.reset(); // Clear the path...
-		linePath.moveTo((float) currentTurtle.position.getX(),
-				(float) currentTurtle.position.getY());
-		// We've started anew!
+		recordPoint(CAP);
+	}
+
+	/**
+	 * The commands of a symbol, found once for each distinct symbol.
+	 */
+	private class Command {
+		/**
+		 * Finds the commands of a symbol.
+		 * 
+		 * @param symbol
+		 *            the symbol
+		 */
+		public Command(String symbol) {
+			handler = getHandler(symbol);
+			if (handler != null)
+				return;
+			// OKAY, perhaps this is an assignment?
+			int equalsPosition = symbol.indexOf('=');
+			if (equalsPosition != -1) {
+				key = symbol.substring(0, equalsPosition);
+				value = symbol.substring(equalsPosition + 1);
+			}
+			// Perhaps this is a symbol with an argument.
+			int leftParenPosition = symbol.indexOf('('), rightParenPosition = symbol
+					.lastIndexOf(')');
+			if (leftParenPosition != -1 && rightParenPosition != -1
+					&& leftParenPosition < rightParenPosition) {
+				argumentHandler = getHandler(symbol.substring(0,
+						leftParenPosition));
+				argument = symbol.substring(leftParenPosition + 1,
+						rightParenPosition);
+			}
+		}
+
+		/**
+		 * Does the commands of the symbol.
+		 */
+		public void run() {
+			if (handler != null) {
+				try {
+					handler.handle(null);
+				} catch (Throwable e) {
+					// We have an error!
+				}
+				return;
+			}
+			if (key != null)
+				assign(key, value);
+			if (argumentHandler != null) {
+				try {
+					argumentHandler.handle(argument);
+				} catch (Throwable e) {
+					// Another error. Whew.
+				}
+			}
+		}
+
+		/** The handler of the symbol itself. */
+		private CommandHandler handler;
+
+		/** The key and value of an assignment. */
+		private String key, value;
+
+		/** The handler for a symbol with an argument, and the argument. */
+		private CommandHandler argumentHandler;
+
+		private String argument;
 	}
 
 	/** The command handler maps from symbols to the appropriate handler. */
 	private Map handlers = new HashMap();
 
-	/**
-	 * <CODE>true</CODE> if we are actually drawing, elsewise we're in the
-	 * phase where we're still trying to discover the bounds (in which case
-	 * actually drawing isn't strictly required).
-	 */
-	private boolean areDrawing = false;
+	/** The commands for each symbol read so far. */
+	private Map commands = new HashMap();
 
 	private boolean isActive = false;
 
@@ -356,14 +495,33 @@ public class Renderer {
 	/** The current graphics object. */
 	private Graphics2D g;
 
-	/** The polygon. Null if no polygon is being drawn right now. */
-	private GeneralPath polygon = null;
+	/** If a polygon is being drawn right now. */
+	private boolean polygon = false;
+
+	/** The recorded operations, each followed by a style index if it has one. */
+	private int[] operations = new int[64];
+
+	private int operationCount;
+
+	/**
+	 * The coordinates of the turtle for each recorded operation at a point,
+	 * three to a point.
+	 */
+	private float[] coordinates = new float[192];
 
-	/** Lines paths. */
-	private GeneralPath linePath = new GeneralPath();
+	private int coordinateCount;
 
-	/** The number of objects drawn sofar. */
-	private int drawnSofar;
+	/** The colors and strokes of the recorded operations. */
+	private List styles = new ArrayList();
+
+	/** The symbols and parameters that were recorded. */
+	private Collection recordedSymbols;
+
+	private Map recordedParameters;
+
+	/** The recorded operations. */
+	private static final int MOVE_TO = 0, LINE_TO = 1, POLYGON_LINE_TO = 2,
+			CAP = 3, BEGIN_POLYGON = 4, FILL = 5, COLOR = 6, STROKE = 7;
 
 	/** The number of symbols completed sofar. */
 	private int completedSymbols;
@@ -425,25 +583,15 @@ public class Renderer {
 			if (symbol == null)
 				currentTurtle.go(forward);
 			else {
-				double d = currentTurtle.valueOf(symbol).doubleValue();
+				double d = currentTurtle.evaluate(symbol);
 				currentTurtle.go(forward ? d : -d);
 			}
 
-			if (!areDrawing)
-				return;
 			if (pendown) {
-				if (polygon == null) {
-					// We're not adding to the polygon!
-					linePath.lineTo((float) currentTurtle.position.getX(),
-							(float) currentTurtle.position.getY());
-				} else {
-					// We are adding to the polygon!
-					polygon.lineTo((float) currentTurtle.position.getX(),
-							(float) currentTurtle.position.getY());
-				}
+				// Either add to the polygon, or not.
+				recordPoint(polygon ? POLYGON_LINE_TO : LINE_TO);
 			} else {
-				linePath.moveTo((float) currentTurtle.position.getX(),
-						(float) currentTurtle.position.getY());
+				recordPoint(MOVE_TO);
 			}
 
 		}
@@ -451,8 +599,6 @@ public class Renderer {
 		private boolean pendown;
 
 		private boolean forward;
-
-		private Line2D line = new Line2D.Double();
 	}
 
 	/**
@@ -468,7 +614,7 @@ public class Renderer {
 			if (symbol == null)
 				currentTurtle.turn(clockwise);
 			else {
-				double d = currentTurtle.valueOf(symbol).doubleValue();
+				double d = currentTurtle.evaluate(symbol);
 				currentTurtle.turn(clockwise ? -d : d);
 			}
 		}
@@ -488,7 +634,7 @@ public class Renderer {
 			if (symbol == null)
 				currentTurtle.pitch(down);
 			else {
-				double d = currentTurtle.valueOf(symbol).doubleValue();
+				double d = currentTurtle.evaluate(symbol);
 				currentTurtle.pitch(down ? d : -d);
 			}
 		}
@@ -508,7 +654,7 @@ public class Renderer {
 			if (symbol == null)
 				currentTurtle.roll(right);
 			else {
-				double d = currentTurtle.valueOf(symbol).doubleValue();
+				double d = currentTurtle.evaluate(symbol);
 				currentTurtle.roll(right ? -d : d);
 			}
 		}
@@ -549,10 +695,10 @@ public class Renderer {
 			if (symbol == null)
 				currentTurtle.changeLineWidth(increment);
 			else {
-				double d = currentTurtle.valueOf(symbol).doubleValue();
+				double d = currentTurtle.evaluate(symbol);
 				currentTurtle.changeLineWidth(increment ? d : -d);
 			}
-			g.setStroke(currentTurtle.getStroke());
+			recordStyle(STROKE, currentTurtle.getStroke());
 		}
 
 		private boolean increment;
@@ -563,11 +709,9 @@ public class Renderer {
 	 */
 	private class DrawColorHandler extends CommandHandler {
 		public final void handle(String symbol) {
-			if (!areDrawing)
-				return;
 			capLinePath();
 			currentTurtle.setColor(symbol);
-			g.setColor(currentTurtle.getColor());
+			recordStyle(COLOR, currentTurtle.getColor());
 		}
 	}
 
@@ -576,8 +720,6 @@ public class Renderer {
 	 */
 	private class PolygonColorHandler extends CommandHandler {
 		public final void handle(String symbol) {
-			if (!areDrawing)
-				return;
 			currentTurtle.setPolygonColor(symbol);
 		}
 	}
@@ -596,11 +738,9 @@ public class Renderer {
 	 */
 	private class LineWidthHandler extends CommandHandler {
 		public final void handle(String symbol) {
-			if (!areDrawing)
-				return;
 			capLinePath();
 			currentTurtle.setLineWidth(Double.parseDouble(symbol));
-			g.setStroke(currentTurtle.getStroke());
+			recordStyle(STROKE, currentTurtle.getStroke());
 		}
 	}
 
@@ -627,12 +767,11 @@ public class Renderer {
 	 */
 	private class BeginPolygonHandler extends CommandHandler {
 		public final void handle(String symbol) {
-			if (!areDrawing || polygon != null)
+			if (polygon)
 				return; // Hrm.
 			capLinePath();
-			polygon = new GeneralPath();
-			polygon.moveTo((float) currentTurtle.position.getX(),
-					(float) currentTurtle.position.getY());
+			polygon = true;
+			recordPoint(BEGIN_POLYGON);
 		}
 	}
 
@@ -641,15 +780,12 @@ public class Renderer {
 	 */
 	private class ClosePolygonHandler extends CommandHandler {
 		public final void handle(String symbol) {
-			if (!areDrawing)
-				return;
 			capLinePath();
-			polygon.closePath();
-			g.setColor(currentTurtle.polygonColor);
-			g.fill(polygon);
-			polygon = null;
-			g.setColor(currentTurtle.color);
-			drawnSofar++;
+			if (!polygon)
+				return;
+			recordStyle(FILL, currentTurtle.polygonColor);
+			polygon = false;
+			recordStyle(COLOR, currentTurtle.color);
 		}
 	}
 
@@ -681,8 +817,6 @@ public class Renderer {
 		}
 
 		public final void handle(String symbol) {
-			if (!areDrawing)
-				return;
 			capLinePath();
 			if (symbol == null)
 				if (polygon)
@@ -690,14 +824,14 @@ public class Renderer {
 				else
 					currentTurtle.changeHue(add);
 			else {
-				double d = currentTurtle.valueOf(symbol).doubleValue();
+				double d = currentTurtle.evaluate(symbol);
 				d = add ? d : -d;
 				if (polygon)
 					currentTurtle.changePolygonHue(d);
 				else
 					currentTurtle.changeHue(d);
 			}
-			g.setColor(currentTurtle.getColor());
+			recordStyle(COLOR, currentTurtle.getColor());
 		}
 
 		private boolean add, polygon;
@@ -41,6 +41,7 @@ class Turtle implements Cloneable, Serializable {
 	 */
 	public Turtle() {
 		parametersToNumbers = new HashMap();
+		expressions = new HashMap();
 
 		setDistance(15.0);
 		setAngleChange(15.0);
@@ -63,7 +64,8 @@ class Turtle implements Cloneable, Serializable {
 		// The position settings.
 		distance = turtle.distance;
 		bounds = null; // Invalidate
-		matrix.origin(position);
+		matrix.origin(location);
+		position.setLocation(location[0], location[1]);
 
 		// The line width variables.
 		lineWidth = turtle.lineWidth;
@@ -76,6 +78,8 @@ class Turtle implements Cloneable, Serializable {
 		angleChange = turtle.angleChange;
 		// The parameters to the number values.
 		parametersToNumbers = new HashMap(turtle.parametersToNumbers);
+		// The compiled expressions are the same for every turtle.
+		expressions = turtle.expressions;
 	}
 
 	/**
@@ -225,7 +229,8 @@ class Turtle implements Cloneable, Serializable {
 	 */
 	public final void go(double distance) {
 		matrix.translate(0.0, -distance, 0.0);
-		matrix.origin(position);
+		matrix.origin(location);
+		position.setLocation(location[0], location[1]);
 	}
 
 	/**
@@ -514,26 +519,45 @@ class Turtle implements Cloneable, Serializable {
 	 * @return the value of the evaluation
 	 */
 	public Number valueOf(String string) {
-		return valueOf(string, parametersToNumbers);
+		return new Double(evaluate(string));
 	}
 
 	/**
 	 * Given a string representing a mathematical expression, this returns the
-	 * value of that expression. If there are any variables in the expression
-	 * they should be contained within the map of values.
+	 * value of that expression. Each distinct expression is parsed only once;
+	 * after that its value is found from the parsed form, with the current
+	 * values of the parameters.
 	 * 
 	 * @param string
 	 *            the mathematical expression
-	 * @param values
-	 *            the map of string objects to number objects
+	 * @return the value of the evaluation
+	 */
+	public double evaluate(String string) {
+		if (expressions == null)
+			expressions = new HashMap();
+		Expression expression = (Expression) expressions.get(string);
+		if (expression == null) {
+			expression = compile(string);
+			expressions.put(string, expression);
+		}
+		return expression.value(parametersToNumbers);
+	}
+
+	/**
+	 * Given a string representing a mathematical expression, this returns the
+	 * parsed expression. Variables in the expression are looked up when it is
+	 * evaluated.
+	 * 
+	 * @param string
+	 *            the mathematical expression
+	 * @return the parsed expression
 	 */
-	private static Number valueOf(String string, Map values) {
+	private static Expression compile(String string) {
 		string = string.replaceAll("-", " -");
 		StringReader reader = new StringReader(string);
 		StreamTokenizer st = new StreamTokenizer(reader);
 		st.ordinaryChar('/');
 		ArrayList list = new ArrayList();
-		Number zero = new Integer(0);
 		boolean number = false;
 		Character plus = new Character('+');
 
@@ -541,18 +565,17 @@ class Turtle implements Cloneable, Serializable {
 			while (st.nextToken() != StreamTokenizer.TT_EOF) {
 				switch (st.ttype) {
 				case StreamTokenizer.TT_WORD:
-					// Attempt to resolve the symbol to a number.
-					Number n = (Number) values.get(st.sval);
+					// The symbol is resolved to a number when evaluated.
 					if (number)
 						list.add(plus);
 					number = true;
-					list.add(n == null ? zero : n);
+					list.add(new Variable(st.sval));
 					break;
 				case StreamTokenizer.TT_NUMBER:
 					if (number)
 						list.add(plus);
 					number = true;
-					list.add(new Double(st.nval));
+					list.add(new Constant(st.nval));
 					break;
 				case StreamTokenizer.TT_EOL:
 					// Who cares?
@@ -564,27 +587,29 @@ class Turtle implements Cloneable, Serializable {
 				}
 			}
 		} catch (IOException e) {
-			return new Double(Double.NaN); // We canna do it, captain!
+			return new Constant(Double.NaN); // We canna do it, captain!
 		}
 		// So now we have all these symbols in a list... great!
 		Iterator it = list.iterator();
-		return valueOf(it);
+		return compile(it);
 	}
 
 	/**
-	 * The recursive helper function for the <CODE>valueOf</CODE> function.
+	 * The recursive helper function for the <CODE>compile</CODE> function.
+	 * This collapses operators in just the order they would be applied in
+	 * evaluating the expression directly, but into an expression tree.
 	 * 
 	 * @param it
-	 *            the iterator through operators and numbers
+	 *            the iterator through operators and expressions
 	 */
-	private static Number valueOf(Iterator it) {
+	private static Expression compile(Iterator it) {
 		Stack values = new Stack();
 		Stack operators = new Stack();
-		values.push(new Double(0.0));
+		values.push(new Constant(0.0));
 
 		while (it.hasNext()) {
 			Object o = it.next();
-			if (o instanceof Number) {
+			if (o instanceof Expression) {
 				values.push(o);
 				continue;
 			}
@@ -593,7 +618,7 @@ class Turtle implements Cloneable, Serializable {
 			if (c == ')')
 				break; // Done!
 			if (c == '(') {
-				values.push(valueOf(it));
+				values.push(compile(it));
 				continue;
 			}
 			while (!operators.isEmpty()) {
@@ -619,29 +644,10 @@ class Turtle implements Cloneable, Serializable {
 				if (!toCollapse)
 					break; // Let it be.
 				// Collapse!
-				double b = ((Number) values.pop()).doubleValue(), a = ((Number) values
-						.pop()).doubleValue();
+				Expression b = (Expression) values.pop(), a = (Expression) values
+						.pop();
 				operators.pop(); // Get rid of it...
-				switch (last) {
-				case '^':
-					a = Math.pow(a, b);
-					break;
-				case '*':
-					a *= b;
-					break;
-				case '/':
-					a /= b;
-					break;
-				case '+':
-					a += b;
-					break;
-				case '-':
-					a -= b;
-					break;
-				default:
-				// Eh.
-				}
-				values.push(new Double(a));
+				values.push(new Operation(last, a, b));
 			}
 			operators.push(character);
 			continue;
@@ -652,30 +658,88 @@ class Turtle implements Cloneable, Serializable {
 		while (!operators.isEmpty()) {
 			// Collapse!
 			char last = ((Character) operators.pop()).charValue();
-			double b = ((Number) values.pop()).doubleValue(), a = ((Number) values
-					.pop()).doubleValue();
-			switch (last) {
+			Expression b = (Expression) values.pop(), a = (Expression) values
+					.pop();
+			values.push(new Operation(last, a, b));
+		}
+		return (Expression) values.pop();
+	}
+
+	/**
+	 * A parsed mathematical expression.
+	 */
+	private static abstract class Expression {
+		/**
+		 * Returns the value of this expression.
+		 * 
+		 * @param values
+		 *            the map of string objects to number objects
+		 */
+		public abstract double value(Map values);
+	}
+
+	/**
+	 * A number in an expression.
+	 */
+	private static class Constant extends Expression {
+		public Constant(double value) {
+			this.value = value;
+		}
+
+		public double value(Map values) {
+			return value;
+		}
+
+		private double value;
+	}
+
+	/**
+	 * A parameter in an expression, which is 0 if it has no value.
+	 */
+	private static class Variable extends Expression {
+		public Variable(String name) {
+			this.name = name;
+		}
+
+		public double value(Map values) {
+			Number n = (Number) values.get(name);
+			return n == null ? 0.0 : n.doubleValue();
+		}
+
+		private String name;
+	}
+
+	/**
+	 * An operator applied to two expressions.
+	 */
+	private static class Operation extends Expression {
+		public Operation(char operator, Expression a, Expression b) {
+			this.operator = operator;
+			this.a = a;
+			this.b = b;
+		}
+
+		public double value(Map values) {
+			double a = this.a.value(values), b = this.b.value(values);
+			switch (operator) {
 			case '^':
-				a = Math.pow(a, b);
-				break;
+				return Math.pow(a, b);
 			case '*':
-				a *= b;
-				break;
+				return a * b;
 			case '/':
-				a /= b;
-				break;
+				return a / b;
 			case '+':
-				a += b;
-				break;
+				return a + b;
 			case '-':
-				a -= b;
-				break;
+				return a - b;
 			default:
-			// Eh.
+				return a; // Eh.
 			}
-			values.push(new Double(a));
 		}
-		return (Number) values.pop();
+
+		private char operator;
+
+		private Expression a, b;
 	}
 
 	/**
@@ -719,6 +783,12 @@ class Turtle implements Cloneable, Serializable {
 	/** The old location. */
 	public final Point2D oldPosition = new Point2D.Double();
 
+	/**
+	 * The current location in three dimensions, of which the position is the
+	 * first two.
+	 */
+	public final double[] location = new double[3];
+
 	/** The current bounds that this turtle has travelled. */
 	public Rectangle2D bounds = null;
 
@@ -746,6 +816,9 @@ class Turtle implements Cloneable, Serializable {
 	/** The mapping of string parameter names to numbers. */
 	public Map parametersToNumbers;
 
+	/** The mapping of expression strings to their parsed expressions. */
+	private transient Map expressions;
+
 	/**
 	 * The current matrix. The translation of the origin into this matrix
 	 * represents the current point.
@@ -399,6 +399,19 @@ public class FSAToREController {
 	 * next step.
 	 */
 	public void moveNextStep() {
+		// The views hear of the changes only once the step is done.
+		automaton.beginBulkUpdate();
+		try {
+			doNextStep();
+		} finally {
+			automaton.endBulkUpdate();
+		}
+	}
+
+	/**
+	 * Does the work of {@link #moveNextStep}.
+	 */
+	private void doNextStep() {
 		switch (currentStep) {
 		case CREATE_SINGLE_FINAL:
 			JOptionPane.showMessageDialog(frame,
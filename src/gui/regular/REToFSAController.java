@@ -246,8 +246,13 @@ public class REToFSAController {
 	 * Does everything.
 	 */
 	public void completeAll() {
-		while (action != 0 || toDo.size() > 0)
-			completeStep();
+		automaton.beginBulkUpdate();
+		try {
+			while (action != 0 || toDo.size() > 0)
+				completeStep();
+		} finally {
+			automaton.endBulkUpdate();
+		}
 	}
 
 	/**
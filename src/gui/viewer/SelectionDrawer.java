@@ -61,6 +61,13 @@ public class SelectionDrawer extends AutomatonDrawer {
 	protected void stateChange(AutomataStateEvent event) {
 		if (event.isDelete())
 			selected.remove(event.getState());
+		if (event.getState() == null) {
+			// Many states may have changed, so keep those still there.
+			Iterator it = selected.iterator();
+			while (it.hasNext())
+				if (!getAutomaton().isState((State) it.next()))
+					it.remove();
+		}
 		super.stateChange(event);
 	}
 
@@ -0,0 +1,367 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package regular;
+
+import java.awt.Point;
+import java.util.*;
+
+import automata.State;
+import automata.fsa.FSATransition;
+import automata.fsa.FiniteStateAutomaton;
+
+/**
+ * The <CODE>DerivativeMatcher</CODE> decides membership in the language of a
+ * regular expression with Brzozowski derivatives. The derivative of an
+ * expression by a symbol is the expression for the rest of the strings of
+ * the language that begin with that symbol, so a string is in the language
+ * if the derivative by all of its symbols in turn contains lambda.
+ * <P>
+ *
+ * Expressions are kept unique, so that two equal expressions are the same
+ * object, and they are built so that unions are flattened, sorted, and free
+ * of repeats. Then an expression has only finitely many derivatives, and
+ * these may be taken as the states of a deterministic automaton for the
+ * expression, which is usually minimal or close to it. Each derivative is
+ * taken only once and remembered, so checking many strings against one
+ * matcher soon stops making any new expressions at all.
+ *
+ * @see RegularExpressionCompiler
+ */
+
+public class DerivativeMatcher {
+	/**
+	 * Creates a matcher for an expression.
+	 *
+	 * @param expression
+	 *            the regular expression
+	 * @throws UnsupportedOperationException
+	 *             if the expression is not well formed
+	 */
+	public DerivativeMatcher(RegularExpression expression) {
+		empty = intern(new Term(EMPTY, -1, null));
+		lambda = intern(new Term(LAMBDA, -1, null));
+		root = convert(RegularExpressionCompiler.parse(expression));
+	}
+
+	/**
+	 * Returns if a string is in the language of the expression.
+	 *
+	 * @param input
+	 *            the string to check
+	 * @return <CODE>true</CODE> if the string is in the language
+	 */
+	public boolean matches(String input) {
+		Term term = root;
+		for (int i = 0; i < input.length() && term != empty; i++) {
+			Integer symbol = (Integer) symbols.get(new Character(input
+					.charAt(i)));
+			if (symbol == null)
+				return false;
+			term = derivative(term, symbol.intValue());
+		}
+		return term.nullable;
+	}
+
+	/**
+	 * Returns a deterministic automaton for the expression, whose states are
+	 * the derivatives of the expression other than the empty set. The
+	 * automaton is not complete: on a symbol that leads nowhere it has no
+	 * transition.
+	 *
+	 * @return a deterministic finite state automaton for the expression
+	 */
+	public FiniteStateAutomaton getDFA() {
+		FiniteStateAutomaton automaton = new FiniteStateAutomaton();
+		Map states = new HashMap();
+		List queue = new ArrayList();
+		states.put(root, newState(automaton, 0));
+		queue.add(root);
+		automaton.setInitialState((State) states.get(root));
+		for (int i = 0; i < queue.size(); i++) {
+			Term term = (Term) queue.get(i);
+			State from = (State) states.get(term);
+			if (term.nullable)
+				automaton.addFinalState(from);
+			for (int a = 0; a < alphabet.size(); a++) {
+				Term next = derivative(term, a);
+				if (next == empty)
+					continue;
+				State to = (State) states.get(next);
+				if (to == null) {
+					to = newState(automaton, queue.size());
+					states.put(next, to);
+					queue.add(next);
+				}
+				automaton.addTransition(new FSATransition(from, to,
+						(String) alphabet.get(a)));
+			}
+		}
+		return automaton;
+	}
+
+	/**
+	 * Makes a new state, placing the states in rows.
+	 */
+	private static State newState(FiniteStateAutomaton automaton, int n) {
+		return automaton.createStateWithId(new Point(60 + 80 * (n % 10),
+				60 + 80 * (n / 10)), n);
+	}
+
+	/**
+	 * Returns the derivative of an expression by a symbol, taking it only if
+	 * it has not been taken before.
+	 *
+	 * @param term
+	 *            the expression
+	 * @param symbol
+	 *            the index of the symbol in the alphabet
+	 * @return the derivative
+	 */
+	private Term derivative(Term term, int symbol) {
+		if (term.derivatives == null)
+			term.derivatives = new Term[alphabet.size()];
+		Term d = term.derivatives[symbol];
+		if (d != null)
+			return d;
+		switch (term.kind) {
+		case SYMBOL:
+			d = term.symbol == symbol ? lambda : empty;
+			break;
+		case OR:
+			List parts = new ArrayList();
+			for (int i = 0; i < term.children.length; i++)
+				parts.add(derivative(term.children[i], symbol));
+			d = or(parts);
+			break;
+		case CAT:
+			Term head = term.children[0], tail = term.children[1];
+			d = cat(derivative(head, symbol), tail);
+			if (head.nullable)
+				d = or(Arrays.asList(new Term[] { d,
+						derivative(tail, symbol) }));
+			break;
+		case STAR:
+			d = cat(derivative(term.children[0], symbol), term);
+			break;
+		default:
+			d = empty;
+		}
+		term.derivatives[symbol] = d;
+		return d;
+	}
+
+	/**
+	 * Turns a parsed expression into a unique expression, adding its symbols
+	 * to the alphabet.
+	 */
+	private Term convert(RegularExpressionCompiler.Node node) {
+		switch (node.kind) {
+		case RegularExpressionCompiler.SYMBOL:
+			Character c = new Character(node.symbol.charAt(0));
+			Integer symbol = (Integer) symbols.get(c);
+			if (symbol == null) {
+				symbol = new Integer(alphabet.size());
+				symbols.put(c, symbol);
+				alphabet.add(node.symbol);
+			}
+			return intern(new Term(SYMBOL, symbol.intValue(), null));
+		case RegularExpressionCompiler.LAMBDA:
+			return lambda;
+		case RegularExpressionCompiler.OR:
+			List parts = new ArrayList();
+			for (int i = 0; i < node.children.length; i++)
+				parts.add(convert(node.children[i]));
+			return or(parts);
+		case RegularExpressionCompiler.CAT:
+			Term[] children = new Term[node.children.length];
+			for (int i = 0; i < children.length; i++)
+				children[i] = convert(node.children[i]);
+			Term term = children[children.length - 1];
+			for (int i = children.length - 2; i >= 0; i--)
+				term = cat(children[i], term);
+			return term;
+		case RegularExpressionCompiler.STAR:
+			return star(convert(node.children[0]));
+		default:
+			return empty;
+		}
+	}
+
+	/**
+	 * Returns the unique expression equal to an expression.
+	 */
+	private Term intern(Term term) {
+		Term old = (Term) terms.get(term);
+		if (old != null)
+			return old;
+		term.id = terms.size();
+		terms.put(term, term);
+		return term;
+	}
+
+	/**
+	 * Returns the union of expressions. Unions among the expressions are
+	 * flattened, the empty set is dropped, and the rest are sorted by when
+	 * they were made, so that the same choices always give the same union.
+	 */
+	private Term or(Collection parts) {
+		SortedSet choices = new TreeSet();
+		boolean nullable = false;
+		Iterator it = parts.iterator();
+		while (it.hasNext()) {
+			Term term = (Term) it.next();
+			if (term.kind == OR)
+				choices.addAll(Arrays.asList(term.children));
+			else if (term != empty)
+				choices.add(term);
+		}
+		it = choices.iterator();
+		while (it.hasNext()) {
+			Term term = (Term) it.next();
+			nullable |= term.nullable && term != lambda;
+		}
+		// Lambda adds nothing to a union with another nullable choice.
+		if (nullable)
+			choices.remove(lambda);
+		if (choices.isEmpty())
+			return empty;
+		if (choices.size() == 1)
+			return (Term) choices.first();
+		return intern(new Term(OR, -1, (Term[]) choices
+				.toArray(new Term[0])));
+	}
+
+	/**
+	 * Returns the concatenation of two expressions, kept nested to the right.
+	 */
+	private Term cat(Term head, Term tail) {
+		if (head == empty || tail == empty)
+			return empty;
+		if (head == lambda)
+			return tail;
+		if (tail == lambda)
+			return head;
+		if (head.kind == CAT)
+			return cat(head.children[0], cat(head.children[1], tail));
+		return intern(new Term(CAT, -1, new Term[] { head, tail }));
+	}
+
+	/**
+	 * Returns the star of an expression.
+	 */
+	private Term star(Term term) {
+		if (term == empty || term == lambda)
+			return lambda;
+		if (term.kind == STAR)
+			return term;
+		return intern(new Term(STAR, -1, new Term[] { term }));
+	}
+
+	/**
+	 * A unique expression. Two terms are equal if they are of the same kind
+	 * on the same symbol or the same children; since the children are
+	 * themselves unique, they are compared by identity.
+	 */
+	private static class Term implements Comparable {
+		Term(int kind, int symbol, Term[] children) {
+			this.kind = kind;
+			this.symbol = symbol;
+			this.children = children;
+			boolean nullable = false;
+			switch (kind) {
+			case LAMBDA:
+			case STAR:
+				nullable = true;
+				break;
+			case OR:
+				for (int i = 0; i < children.length; i++)
+					nullable |= children[i].nullable;
+				break;
+			case CAT:
+				nullable = children[0].nullable && children[1].nullable;
+			}
+			this.nullable = nullable;
+		}
+
+		public boolean equals(Object object) {
+			if (this == object)
+				return true;
+			if (!(object instanceof Term))
+				return false;
+			Term term = (Term) object;
+			if (kind != term.kind || symbol != term.symbol)
+				return false;
+			if (children == null || term.children == null)
+				return children == term.children;
+			if (children.length != term.children.length)
+				return false;
+			for (int i = 0; i < children.length; i++)
+				if (children[i] != term.children[i])
+					return false;
+			return true;
+		}
+
+		public int hashCode() {
+			int hash = kind * 31 + symbol;
+			for (int i = 0; children != null && i < children.length; i++)
+				hash = hash * 31 + children[i].id;
+			return hash;
+		}
+
+		public int compareTo(Object object) {
+			return id - ((Term) object).id;
+		}
+
+		final int kind;
+
+		/** The index of the symbol of a symbol term. */
+		final int symbol;
+
+		final Term[] children;
+
+		/** If lambda is in the language of this term. */
+		final boolean nullable;
+
+		int id;
+
+		/** The derivatives by each symbol of the alphabet taken so far. */
+		Term[] derivatives;
+	}
+
+	/** The kinds of term. */
+	private static final int EMPTY = 0, LAMBDA = 1, SYMBOL = 2, STAR = 3,
+			CAT = 4, OR = 5;
+
+	/** The unique terms. */
+	private Map terms = new HashMap();
+
+	/** The empty set and lambda. */
+	private Term empty, lambda;
+
+	/** The expression to match. */
+	private Term root;
+
+	/** The symbols of the expression, in the order they appear. */
+	private List alphabet = new ArrayList();
+
+	/** Maps characters to their index in the alphabet. */
+	private Map symbols = new HashMap();
+}
@@ -0,0 +1,416 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package regular;
+
+import gui.environment.Universe;
+
+import java.awt.Point;
+import java.util.*;
+
+import automata.State;
+import automata.fsa.FSATransition;
+import automata.fsa.FiniteStateAutomaton;
+
+/**
+ * The <CODE>RegularExpressionCompiler</CODE> turns a regular expression into
+ * an equivalent finite state automaton without any user interaction. The
+ * expression is parsed once into a tree, rather than split over and over
+ * again by the {@link Discretizer}, and the automaton is made from the tree
+ * in one of two ways.
+ * <P>
+ *
+ * {@link #thompson} makes the automaton of Thompson's construction, with
+ * lambda transitions, but without the extra states the textbook construction
+ * puts around each concatenation and union: each part of the expression is
+ * made between two states given to it, so the number of states and
+ * transitions is linear in the length of the expression.
+ * <P>
+ *
+ * {@link #glushkov} makes the position automaton of Glushkov, which has no
+ * lambda transitions and one state for each occurrence of a symbol in the
+ * expression plus an initial state. It may have a number of transitions
+ * quadratic in the length of the expression.
+ * <P>
+ *
+ * In an expression, <CODE>+</CODE> is union, <CODE>*</CODE> is the star,
+ * both <CODE>!</CODE> and the lambda character of the current profile stand
+ * for lambda, and {@link automata.fsa.FSAToRegularExpressionConverter#EMPTY}
+ * stands for the empty set. Every other character is a symbol.
+ *
+ * @see gui.regular.REToFSAController
+ */
+
+public class RegularExpressionCompiler {
+	/**
+	 * Parses an expression.
+	 *
+	 * @param expression
+	 *            the expression
+	 */
+	private RegularExpressionCompiler(RegularExpression expression) {
+		string = expression.asCheckedString();
+		lambda = Universe.curProfile.getEmptyString();
+		root = parseUnion();
+		if (position != string.length())
+			throw new UnsupportedOperationException(
+					"Operators are poorly formatted.");
+	}
+
+	/**
+	 * Returns an automaton for an expression by Thompson's construction.
+	 *
+	 * @param expression
+	 *            the regular expression
+	 * @return a finite state automaton for the language of the expression
+	 * @throws UnsupportedOperationException
+	 *             if the expression is not well formed
+	 */
+	public static FiniteStateAutomaton thompson(RegularExpression expression) {
+		RegularExpressionCompiler compiler = new RegularExpressionCompiler(
+				expression);
+		compiler.automaton = new FiniteStateAutomaton();
+		State initial = compiler.newState();
+		State last = compiler.newState();
+		compiler.automaton.setInitialState(initial);
+		compiler.automaton.addFinalState(last);
+		compiler.thompson(compiler.root, initial, last);
+		return compiler.automaton;
+	}
+
+	/**
+	 * Returns the lambda free position automaton of an expression by
+	 * Glushkov's construction.
+	 *
+	 * @param expression
+	 *            the regular expression
+	 * @return a finite state automaton for the language of the expression
+	 * @throws UnsupportedOperationException
+	 *             if the expression is not well formed
+	 */
+	public static FiniteStateAutomaton glushkov(RegularExpression expression) {
+		RegularExpressionCompiler compiler = new RegularExpressionCompiler(
+				expression);
+		return compiler.glushkov();
+	}
+
+	/**
+	 * Returns the parse tree of an expression, for the other headless tools
+	 * of this package.
+	 *
+	 * @param expression
+	 *            the regular expression
+	 * @return the root of the parse tree
+	 * @throws UnsupportedOperationException
+	 *             if the expression is not well formed
+	 */
+	static Node parse(RegularExpression expression) {
+		return new RegularExpressionCompiler(expression).root;
+	}
+
+	/**
+	 * Parses a union, that is, concatenations separated by <CODE>+</CODE>.
+	 */
+	private Node parseUnion() {
+		Node node = parseConcatenation();
+		if (!at('+'))
+			return node;
+		List parts = new ArrayList();
+		parts.add(node);
+		while (at('+')) {
+			position++;
+			parts.add(parseConcatenation());
+		}
+		return new Node(OR, parts);
+	}
+
+	/**
+	 * Parses a concatenation of starred atoms.
+	 */
+	private Node parseConcatenation() {
+		List parts = new ArrayList();
+		while (position < string.length() && !at('+') && !at(')'))
+			parts.add(parseStar());
+		if (parts.isEmpty())
+			throw new UnsupportedOperationException(
+					"Operators are poorly formatted.");
+		return parts.size() == 1 ? (Node) parts.get(0) : new Node(CAT, parts);
+	}
+
+	/**
+	 * Parses an atom followed by any number of stars.
+	 */
+	private Node parseStar() {
+		Node node = parseAtom();
+		while (at('*')) {
+			position++;
+			if (node.kind != STAR)
+				node = new Node(STAR, Collections.singletonList(node));
+		}
+		return node;
+	}
+
+	/**
+	 * Parses a symbol, lambda, the empty set, or a parenthesized union.
+	 */
+	private Node parseAtom() {
+		char c = string.charAt(position++);
+		if (c == '(') {
+			Node node = parseUnion();
+			if (!at(')'))
+				throw new UnsupportedOperationException(
+						"The parentheses are unbalanced!");
+			position++;
+			return node;
+		}
+		if (c == ')' || c == '+' || c == '*')
+			throw new UnsupportedOperationException(
+					"Operators are poorly formatted.");
+		if (c == '!' || lambda.indexOf(c) != -1)
+			return new Node(LAMBDA, null);
+		if (c == EMPTY_SET)
+			return new Node(EMPTY, null);
+		Node node = new Node(SYMBOL, null);
+		node.symbol = String.valueOf(c);
+		return node;
+	}
+
+	/**
+	 * Returns if the next character is a given character.
+	 */
+	private boolean at(char c) {
+		return position < string.length() && string.charAt(position) == c;
+	}
+
+	/**
+	 * Makes the transitions that take one state to another on the strings of
+	 * an expression. The states are only ever left through the transitions
+	 * for the expression, or for other choices of a union, so no part of the
+	 * expression needs states of its own except to concatenate and to star.
+	 *
+	 * @param node
+	 *            the expression
+	 * @param from
+	 *            the state to start in
+	 * @param to
+	 *            the state to end in
+	 */
+	private void thompson(Node node, State from, State to) {
+		switch (node.kind) {
+		case SYMBOL:
+			automaton.addTransition(new FSATransition(from, to, node.symbol));
+			return;
+		case LAMBDA:
+			if (from != to)
+				automaton.addTransition(new FSATransition(from, to, ""));
+			return;
+		case EMPTY:
+			return;
+		case OR:
+			for (int i = 0; i < node.children.length; i++)
+				thompson(node.children[i], from, to);
+			return;
+		case CAT:
+			for (int i = 0; i < node.children.length; i++) {
+				State next = i == node.children.length - 1 ? to : newState();
+				thompson(node.children[i], from, next);
+				from = next;
+			}
+			return;
+		case STAR:
+			State hub = newState();
+			automaton.addTransition(new FSATransition(from, hub, ""));
+			thompson(node.children[0], hub, hub);
+			automaton.addTransition(new FSATransition(hub, to, ""));
+			return;
+		}
+	}
+
+	/**
+	 * Makes the position automaton.
+	 */
+	private FiniteStateAutomaton glushkov() {
+		List positions = new ArrayList();
+		number(root, positions);
+		follow = new BitSet[positions.size()];
+		for (int i = 0; i < follow.length; i++)
+			follow[i] = new BitSet();
+		analyze(root);
+
+		automaton = new FiniteStateAutomaton();
+		State initial = newState();
+		automaton.setInitialState(initial);
+		State[] states = new State[positions.size()];
+		for (int i = 0; i < states.length; i++)
+			states[i] = newState();
+		for (int q = root.first.nextSetBit(0); q >= 0; q = root.first
+				.nextSetBit(q + 1))
+			automaton.addTransition(new FSATransition(initial, states[q],
+					((Node) positions.get(q)).symbol));
+		for (int p = 0; p < states.length; p++)
+			for (int q = follow[p].nextSetBit(0); q >= 0; q = follow[p]
+					.nextSetBit(q + 1))
+				automaton.addTransition(new FSATransition(states[p],
+						states[q], ((Node) positions.get(q)).symbol));
+		for (int p = root.last.nextSetBit(0); p >= 0; p = root.last
+				.nextSetBit(p + 1))
+			automaton.addFinalState(states[p]);
+		if (root.nullable)
+			automaton.addFinalState(initial);
+		return automaton;
+	}
+
+	/**
+	 * Numbers the symbols of an expression from left to right.
+	 */
+	private void number(Node node, List positions) {
+		if (node.kind == SYMBOL) {
+			node.position = positions.size();
+			positions.add(node);
+		}
+		for (int i = 0; node.children != null && i < node.children.length; i++)
+			number(node.children[i], positions);
+	}
+
+	/**
+	 * Finds if an expression is nullable and its first and last positions,
+	 * and adds to the follow sets of the positions.
+	 */
+	private void analyze(Node node) {
+		node.first = new BitSet();
+		node.last = new BitSet();
+		for (int i = 0; node.children != null && i < node.children.length; i++)
+			analyze(node.children[i]);
+		switch (node.kind) {
+		case SYMBOL:
+			node.first.set(node.position);
+			node.last.set(node.position);
+			return;
+		case LAMBDA:
+			node.nullable = true;
+			return;
+		case EMPTY:
+			return;
+		case OR:
+			for (int i = 0; i < node.children.length; i++) {
+				Node child = node.children[i];
+				node.nullable |= child.nullable;
+				node.first.or(child.first);
+				node.last.or(child.last);
+			}
+			return;
+		case CAT:
+			node.nullable = true;
+			for (int i = 0; i < node.children.length; i++) {
+				Node child = node.children[i];
+				// What ends the part so far is followed by what starts this.
+				addFollow(node.last, child.first);
+				if (node.nullable)
+					node.first.or(child.first);
+				if (!child.nullable)
+					node.last.clear();
+				node.last.or(child.last);
+				node.nullable &= child.nullable;
+			}
+			return;
+		case STAR:
+			Node child = node.children[0];
+			node.nullable = true;
+			node.first.or(child.first);
+			node.last.or(child.last);
+			addFollow(child.last, child.first);
+			return;
+		}
+	}
+
+	/**
+	 * Adds a set of positions to the follow sets of other positions.
+	 */
+	private void addFollow(BitSet from, BitSet to) {
+		if (to.isEmpty())
+			return;
+		for (int p = from.nextSetBit(0); p >= 0; p = from.nextSetBit(p + 1))
+			follow[p].or(to);
+	}
+
+	/**
+	 * Makes a new state, placing the states in rows. The states are numbered
+	 * in the order they are made.
+	 */
+	private State newState() {
+		int n = count++;
+		return automaton.createStateWithId(new Point(60 + 80 * (n % 10),
+				60 + 80 * (n / 10)), n);
+	}
+
+	/**
+	 * A node of the parsed expression.
+	 */
+	static class Node {
+		Node(int kind, List children) {
+			this.kind = kind;
+			if (children != null)
+				this.children = (Node[]) children.toArray(new Node[0]);
+		}
+
+		final int kind;
+
+		Node[] children;
+
+		/** The symbol of a symbol node. */
+		String symbol;
+
+		/** The number of a symbol node among the symbols. */
+		int position;
+
+		/** For the position automaton. */
+		boolean nullable;
+
+		BitSet first, last;
+	}
+
+	/** The kinds of node. */
+	static final int SYMBOL = 0, LAMBDA = 1, EMPTY = 2, OR = 3,
+			CAT = 4, STAR = 5;
+
+	/** The character for the empty set. */
+	private static final char EMPTY_SET = '\u00F8';
+
+	/** The expression. */
+	private String string;
+
+	/** The lambda string of the current profile. */
+	private String lambda;
+
+	/** The position of the parser in the expression. */
+	private int position = 0;
+
+	/** The parsed expression. */
+	private Node root;
+
+	/** The automaton being made. */
+	private FiniteStateAutomaton automaton;
+
+	/** The number of states made. */
+	private int count = 0;
+
+	/** The follow sets of the positions. */
+	private BitSet[] follow;
+}
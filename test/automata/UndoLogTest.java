@@ -0,0 +1,275 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import automata.fsa.FSATransition;
+import automata.fsa.FiniteStateAutomaton;
+import automata.mealy.MooreMachine;
+import automata.mealy.MooreTransition;
+import automata.turing.TMTransition;
+import automata.turing.TuringMachine;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link UndoLog} with random runs of edits. After each step of edits
+ * the automaton is written down; undoing every step must then give back each
+ * of those automata in turn, and redoing every step must give them back
+ * again in the other order.
+ *
+ * @see UndoLog
+ */
+
+public class UndoLogTest {
+	@Test
+	public void finiteAutomaton() {
+		Random random = new Random(1);
+		for (int run = 0; run < RUNS; run++)
+			check(new FiniteStateAutomaton(), random);
+	}
+
+	@Test
+	public void mooreMachine() {
+		Random random = new Random(2);
+		for (int run = 0; run < RUNS; run++)
+			check(new MooreMachine(), random);
+	}
+
+	@Test
+	public void turingMachine() {
+		Random random = new Random(3);
+		for (int run = 0; run < RUNS; run++)
+			check(new TuringMachine(1), random);
+	}
+
+	@Test
+	public void undoWithNothingToUndo() {
+		FiniteStateAutomaton automaton = new FiniteStateAutomaton();
+		UndoLog log = new UndoLog(automaton, 10);
+		assertFalse(log.undo());
+		assertFalse(log.redo());
+		automaton.createState(new Point(10, 10));
+		log.mark();
+		assertTrue(log.undo());
+		assertEquals(0, automaton.getStates().length);
+		assertTrue(log.redo());
+		assertEquals(1, automaton.getStates().length);
+	}
+
+	@Test
+	public void limitForgetsOldestSteps() {
+		FiniteStateAutomaton automaton = new FiniteStateAutomaton();
+		UndoLog log = new UndoLog(automaton, 3);
+		for (int i = 0; i < 5; i++) {
+			automaton.createState(new Point(10 * i, 10));
+			log.mark();
+		}
+		int undone = 0;
+		while (log.undo())
+			undone++;
+		assertEquals(3, undone);
+		assertEquals(2, automaton.getStates().length);
+	}
+
+	/**
+	 * Makes random steps of edits to an automaton, then undoes and redoes all
+	 * of them, checking the automaton after each.
+	 */
+	private static void check(Automaton automaton, Random random) {
+		UndoLog log = new UndoLog(automaton, STEPS);
+		List history = new ArrayList();
+		history.add(describe(automaton));
+		for (int step = 0; step < STEPS; step++) {
+			if (random.nextInt(5) == 0) {
+				automaton.beginBulkUpdate();
+				try {
+					edit(automaton, random, 2 + random.nextInt(6));
+				} finally {
+					automaton.endBulkUpdate();
+				}
+			} else {
+				edit(automaton, random, 1 + random.nextInt(3));
+			}
+			// A step that changes nothing is not a step to undo.
+			if (describe(automaton).equals(history.get(history.size() - 1)))
+				automaton.createState(point(random));
+			log.mark();
+			history.add(describe(automaton));
+		}
+		for (int i = history.size() - 2; i >= 0; i--) {
+			log.undo();
+			assertEquals("undo to step " + i, history.get(i),
+					describe(automaton));
+		}
+		for (int i = 1; i < history.size(); i++) {
+			log.redo();
+			assertEquals("redo to step " + i, history.get(i),
+					describe(automaton));
+		}
+	}
+
+	/**
+	 * Makes some random edits to an automaton.
+	 */
+	private static void edit(Automaton automaton, Random random, int edits) {
+		for (int i = 0; i < edits; i++) {
+			State[] states = automaton.getStates();
+			Transition[] transitions = automaton.getTransitions();
+			List notes = automaton.getNotes();
+			int kind = random.nextInt(12);
+			if (states.length < 2 || kind < 2) {
+				automaton.createState(point(random));
+				continue;
+			}
+			State state = states[random.nextInt(states.length)];
+			switch (kind) {
+			case 2:
+				automaton.removeState(state);
+				break;
+			case 3:
+				automaton.addTransition(transition(automaton, state,
+						states[random.nextInt(states.length)], random));
+				break;
+			case 4:
+				if (transitions.length > 0)
+					automaton.removeTransition(transitions[random
+							.nextInt(transitions.length)]);
+				break;
+			case 5:
+				automaton.setInitialState(state);
+				break;
+			case 6:
+				if (automaton.isFinalState(state))
+					automaton.removeFinalState(state);
+				else
+					automaton.addFinalState(state);
+				break;
+			case 7:
+				// A drag moves a state many times in one step.
+				for (int k = 0; k < 3; k++)
+					state.setPoint(point(random));
+				break;
+			case 8:
+				if (random.nextBoolean())
+					state.setName("s" + random.nextInt(4));
+				else
+					state.setLabel(random.nextBoolean() ? null : "label"
+							+ random.nextInt(4));
+				break;
+			case 9:
+				if (transitions.length > 0)
+					transitions[random.nextInt(transitions.length)]
+							.setControl(point(random));
+				break;
+			case 10:
+				// A Moore transition hashes by the output of the state it
+				// goes to, so the automaton loses track of the transitions
+				// into a state whose output changes; only states with none
+				// are given new outputs.
+				if (automaton instanceof MooreMachine
+						&& automaton.getTransitionsToState(state).length == 0)
+					((MooreMachine) automaton).setOutput(state, ""
+							+ (char) ('x' + random.nextInt(3)));
+				break;
+			default:
+				if (notes.isEmpty() || random.nextBoolean())
+					automaton.addNote(new Note(point(random), "note "
+							+ random.nextInt(10)));
+				else if (random.nextBoolean())
+					automaton.deleteNote((Note) notes.get(random
+							.nextInt(notes.size())));
+				else
+					((Note) notes.get(random.nextInt(notes.size())))
+							.setText("edited " + random.nextInt(10));
+			}
+		}
+	}
+
+	/**
+	 * Returns a transition of the right kind for an automaton.
+	 */
+	private static Transition transition(Automaton automaton, State from,
+			State to, Random random) {
+		String symbol = "" + (char) ('a' + random.nextInt(3));
+		if (automaton instanceof MooreMachine)
+			return new MooreTransition(from, to, symbol);
+		if (automaton instanceof TuringMachine)
+			return new TMTransition(from, to, new String[] { symbol },
+					new String[] { "" + (char) ('a' + random.nextInt(3)) },
+					new String[] { random.nextBoolean() ? "R" : "L" });
+		return new FSATransition(from, to, symbol);
+	}
+
+	private static Point point(Random random) {
+		return new Point(random.nextInt(400), random.nextInt(400));
+	}
+
+	/**
+	 * Writes down everything about an automaton that the log undoes, in an
+	 * order that does not depend on how the automaton stores it.
+	 */
+	private static String describe(Automaton automaton) {
+		List lines = new ArrayList();
+		State[] states = automaton.getStates();
+		for (int i = 0; i < states.length; i++) {
+			State s = states[i];
+			String line = "state " + s.getID() + " " + s.getName() + " "
+					+ s.getLabel() + " " + s.getPoint();
+			if (automaton.getInitialState() == s)
+				line += " initial";
+			if (automaton.isFinalState(s))
+				line += " final";
+			if (automaton instanceof MooreMachine)
+				line += " " + ((MooreMachine) automaton).getOutput(s);
+			lines.add(line);
+		}
+		Transition[] transitions = automaton.getTransitions();
+		for (int i = 0; i < transitions.length; i++) {
+			Transition t = transitions[i];
+			lines.add("transition " + t.getFromState().getID() + " "
+					+ t.getToState().getID() + " " + t.getDescription() + " "
+					+ t.getControl());
+		}
+		List notes = automaton.getNotes();
+		for (int i = 0; i < notes.size(); i++) {
+			Note note = (Note) notes.get(i);
+			lines.add("note " + note.getText() + " " + note.getAutoPoint());
+		}
+		Collections.sort(lines);
+		return lines.toString();
+	}
+
+	/** The random runs made for each kind of automaton. */
+	private static final int RUNS = 100;
+
+	/** The steps of edits in each run. */
+	private static final int STEPS = 25;
+}
@@ -0,0 +1,197 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.fsa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import automata.State;
+import automata.Transition;
+import automata.graph.FSAEqualityChecker;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import regular.ConvertedExpressions;
+
+/**
+ * Checks the expressions of the {@link StateEliminationConverter}: the
+ * automaton the converter pane makes for each must accept the same language
+ * as the automaton it came from, and the same language as the expression of
+ * the {@link FSAToRegularExpressionConverter}. The automaton must also be
+ * left as it was.
+ *
+ * @see StateEliminationConverter
+ */
+
+public class StateEliminationConverterTest {
+	@Test
+	public void endsInAbb() {
+		FiniteStateAutomaton automaton = automaton(4, new String[] { "0a1",
+				"0b0", "1a1", "1b2", "2a1", "2b3", "3a1", "3b0" }, 3);
+		check(automaton);
+	}
+
+	@Test
+	public void lambdaTransitions() {
+		FiniteStateAutomaton automaton = automaton(4, new String[] { "0a1",
+				"1 2", "2b2", "2 3", "3a0" }, 3);
+		check(automaton);
+	}
+
+	@Test
+	public void initialStateIsFinal() {
+		FiniteStateAutomaton automaton = automaton(2, new String[] { "0a1",
+				"1b0", "1a1" }, 0);
+		check(automaton);
+	}
+
+	@Test
+	public void manyFinalStates() {
+		FiniteStateAutomaton automaton = automaton(4, new String[] { "0a1",
+				"0b2", "1a3", "2b3", "3a3" }, 1);
+		automaton.addFinalState(automaton.getStates()[2]);
+		automaton.addFinalState(automaton.getStates()[3]);
+		check(automaton);
+	}
+
+	@Test
+	public void randomAutomata() {
+		Random random = new Random(1);
+		for (int run = 0; run < RUNS; run++) {
+			int n = 2 + random.nextInt(4);
+			FiniteStateAutomaton automaton = automaton(n, new String[0], 1
+					+ random.nextInt(n - 1));
+			State[] states = automaton.getStates();
+			int transitions = random.nextInt(3 * n);
+			for (int i = 0; i < transitions; i++)
+				automaton.addTransition(new FSATransition(states[random
+						.nextInt(n)], states[random.nextInt(n)], SYMBOLS[random
+						.nextInt(SYMBOLS.length)]));
+			check(automaton);
+		}
+	}
+
+	/**
+	 * Checks the expression for an automaton.
+	 */
+	private static void check(FiniteStateAutomaton automaton) {
+		String before = describe(automaton);
+		String expression = StateEliminationConverter
+				.convertToRegularExpression(automaton);
+		assertEquals("the automaton is changed", before, describe(automaton));
+		// The converter pane first makes the automaton simple.
+		FiniteStateAutomaton simple = (FiniteStateAutomaton) automaton.clone();
+		FSAToRegularExpressionConverter.convertToSimpleAutomaton(simple);
+		String old = FSAToRegularExpressionConverter
+				.convertToRegularExpression(simple);
+		assertNotNull(old);
+		// The converter pane reads the empty set as a symbol.
+		if (expression.equals(EMPTY)) {
+			assertFalse(before, reachesFinalState(automaton));
+			assertEquals(before, EMPTY, old);
+			return;
+		}
+		FiniteStateAutomaton converted = ConvertedExpressions
+				.convert(expression);
+		assertTrue(expression + " for " + before, CHECKER.equals(converted,
+				automaton));
+		assertTrue(expression + " against " + old, CHECKER.equals(converted,
+				ConvertedExpressions.convert(old)));
+	}
+
+	/**
+	 * Returns an automaton with states 0 to <CODE>n</CODE>-1, state 0 the
+	 * initial state, one final state, and transitions written as the from
+	 * state, the label and the to state, with a space for lambda.
+	 */
+	private static FiniteStateAutomaton automaton(int n, String[] transitions,
+			int finalState) {
+		FiniteStateAutomaton automaton = new FiniteStateAutomaton();
+		for (int i = 0; i < n; i++)
+			automaton.createState(new Point(60 * i, 60));
+		State[] states = automaton.getStates();
+		automaton.setInitialState(states[0]);
+		automaton.addFinalState(states[finalState]);
+		for (int i = 0; i < transitions.length; i++) {
+			String t = transitions[i];
+			automaton.addTransition(new FSATransition(states[t.charAt(0) - '0'],
+					states[t.charAt(2) - '0'], t.substring(1, 2).trim()));
+		}
+		return automaton;
+	}
+
+	/**
+	 * Returns if a final state can be reached from the initial state.
+	 */
+	private static boolean reachesFinalState(FiniteStateAutomaton automaton) {
+		List reached = new ArrayList();
+		reached.add(automaton.getInitialState());
+		for (int i = 0; i < reached.size(); i++) {
+			State state = (State) reached.get(i);
+			if (automaton.isFinalState(state))
+				return true;
+			Transition[] out = automaton.getTransitionsFromState(state);
+			for (int k = 0; k < out.length; k++)
+				if (!reached.contains(out[k].getToState()))
+					reached.add(out[k].getToState());
+		}
+		return false;
+	}
+
+	/**
+	 * Writes down the states and transitions of an automaton.
+	 */
+	private static String describe(FiniteStateAutomaton automaton) {
+		List lines = new ArrayList();
+		State[] states = automaton.getStates();
+		for (int i = 0; i < states.length; i++)
+			lines.add("state " + states[i].getID()
+					+ (automaton.getInitialState() == states[i] ? " initial" : "")
+					+ (automaton.isFinalState(states[i]) ? " final" : ""));
+		Transition[] transitions = automaton.getTransitions();
+		for (int i = 0; i < transitions.length; i++)
+			lines.add("transition " + transitions[i].getFromState().getID()
+					+ " " + transitions[i].getToState().getID() + " "
+					+ transitions[i].getDescription());
+		Collections.sort(lines);
+		return lines.toString();
+	}
+
+	/** The checker of languages. */
+	private static final FSAEqualityChecker CHECKER = new FSAEqualityChecker();
+
+	/** The empty set, as the converters write it. */
+	private static final String EMPTY = FSAToRegularExpressionConverter.EMPTY;
+
+	/** The labels of random transitions; the empty label is lambda. */
+	private static final String[] SYMBOLS = { "a", "b", "c", "" };
+
+	/** The random automata checked. */
+	private static final int RUNS = 200;
+}
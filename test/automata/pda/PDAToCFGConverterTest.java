@@ -0,0 +1,197 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.pda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import automata.State;
+import automata.Transition;
+import grammar.ChomskyNormalForm;
+import grammar.Grammar;
+import grammar.Production;
+import grammar.cfg.ContextFreeGrammar;
+import gui.grammar.GrammarTableModel;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the grammars of the {@link PDAToCFGConverter} against those of the
+ * converter pane, which makes the productions for each transition in turn and
+ * then trims those that are useless. The useful productions must be the same
+ * productions the pane keeps, and the two grammars must derive the same
+ * strings.
+ *
+ * @see PDAToCFGConverter
+ */
+
+public class PDAToCFGConverterTest {
+	@Test
+	public void equalAsAndBs() {
+		PushdownAutomaton automaton = automaton(3, new String[] { "0aZAZ0",
+				"0aAAA0", "0bA 1", "1bA 1", "0 Z 2", "1 Z 2" });
+		Grammar grammar = check(automaton);
+		ChomskyNormalForm normalForm = new ChomskyNormalForm(grammar);
+		assertTrue(normalForm.accepts(""));
+		assertTrue(normalForm.accepts("aaabbb"));
+		assertFalse(normalForm.accepts("aab"));
+		assertFalse(normalForm.accepts("abab"));
+	}
+
+	@Test
+	public void evenPalindromes() {
+		PushdownAutomaton automaton = automaton(3, new String[] { "0aZAZ0",
+				"0aAAA0", "0aBAB0", "0bZBZ0", "0bABA0", "0bBBB0", "0aZAZ1",
+				"0aAAA1", "0aBAB1", "0bZBZ1", "0bABA1", "0bBBB1", "1aA 1",
+				"1bB 1", "1 Z 2", "0 Z 2" });
+		Grammar grammar = check(automaton);
+		ChomskyNormalForm normalForm = new ChomskyNormalForm(grammar);
+		assertTrue(normalForm.accepts("abba"));
+		assertTrue(normalForm.accepts("baaaab"));
+		assertFalse(normalForm.accepts("aba"));
+		assertFalse(normalForm.accepts("abab"));
+	}
+
+	@Test
+	public void randomAutomata() {
+		Random random = new Random(1);
+		for (int run = 0; run < RUNS; run++) {
+			int n = 2 + random.nextInt(2);
+			int count = 1 + random.nextInt(4 * n);
+			String[] transitions = new String[count];
+			for (int i = 0; i < count; i++) {
+				int to = random.nextInt(n);
+				// Only transitions that pop the bottom go to the final state.
+				String pop = to == n - 1 ? "Z" : STACK[random
+						.nextInt(STACK.length)];
+				String push = random.nextBoolean() ? " " : STACK[random
+						.nextInt(STACK.length)]
+						+ STACK[random.nextInt(STACK.length)];
+				transitions[i] = "" + random.nextInt(n)
+						+ SYMBOLS[random.nextInt(SYMBOLS.length)] + pop + push
+						+ to;
+			}
+			check(automaton(n, transitions));
+		}
+	}
+
+	/**
+	 * Checks the grammar for an automaton against the pane's, and returns it.
+	 */
+	private static Grammar check(PushdownAutomaton automaton) {
+		PDAToCFGConverter converter = new PDAToCFGConverter();
+		List useful = describe((Production[]) converter.getUsefulProductions(
+				automaton).toArray(new Production[0]));
+		Grammar grammar = converter.convertToContextFreeGrammar(automaton);
+
+		converter = new PDAToCFGConverter();
+		converter.initializeConverter();
+		GrammarTableModel model = new GrammarTableModel();
+		Transition[] transitions = automaton.getTransitions();
+		for (int i = 0; i < transitions.length; i++) {
+			List productions = converter.createProductionsForTransition(
+					transitions[i], automaton);
+			for (int k = 0; k < productions.size(); k++)
+				model.addProduction((Production) productions.get(k));
+		}
+		converter.purgeProductions(automaton, model);
+		Production[] kept = model.getProductions();
+		assertEquals(useful, describe(kept));
+
+		ContextFreeGrammar paneGrammar = new ContextFreeGrammar();
+		paneGrammar.setStartVariable("S");
+		for (int i = 0; i < kept.length; i++)
+			paneGrammar.addProduction(converter
+					.getSimplifiedProduction(kept[i]));
+		ChomskyNormalForm normalForm = new ChomskyNormalForm(grammar);
+		ChomskyNormalForm paneNormalForm = new ChomskyNormalForm(paneGrammar);
+		List strings = new ArrayList();
+		strings.add("");
+		for (int i = 0; i < strings.size(); i++) {
+			String s = (String) strings.get(i);
+			assertEquals(s + " for " + useful, paneNormalForm.accepts(s),
+					normalForm.accepts(s));
+			if (s.length() < LENGTH)
+				for (int k = 0; k < ALPHABET.length(); k++)
+					strings.add(s + ALPHABET.charAt(k));
+		}
+		return grammar;
+	}
+
+	/**
+	 * Returns a pushdown automaton with states 0 to <CODE>n</CODE>-1, state
+	 * 0 the initial state and the last the final state, and transitions
+	 * written as the from state, the input, the symbol popped, the two symbols
+	 * pushed or a space for none, and the to state, with a space for lambda
+	 * input.
+	 */
+	private static PushdownAutomaton automaton(int n, String[] transitions) {
+		PushdownAutomaton automaton = new PushdownAutomaton();
+		for (int i = 0; i < n; i++)
+			automaton.createState(new Point(60 * i, 60));
+		State[] states = automaton.getStates();
+		automaton.setInitialState(states[0]);
+		automaton.addFinalState(states[n - 1]);
+		for (int i = 0; i < transitions.length; i++) {
+			String t = transitions[i];
+			automaton.addTransition(new PDATransition(
+					states[t.charAt(0) - '0'],
+					states[t.charAt(t.length() - 1) - '0'], t.substring(1, 2)
+							.trim(), t.substring(2, 3), t.substring(3,
+							t.length() - 1).trim()));
+		}
+		return automaton;
+	}
+
+	/**
+	 * Writes down productions in an order that does not depend on how they
+	 * were made.
+	 */
+	private static List describe(Production[] productions) {
+		List lines = new ArrayList();
+		for (int i = 0; i < productions.length; i++)
+			lines.add(productions[i].getLHS() + "->" + productions[i].getRHS());
+		Collections.sort(lines);
+		return lines;
+	}
+
+	/** The input symbols of random transitions; a space is lambda. */
+	private static final String[] SYMBOLS = { "a", "b", " " };
+
+	/** The stack symbols of random transitions. */
+	private static final String[] STACK = { "Z", "A" };
+
+	/** The input symbols of the strings checked. */
+	private static final String ALPHABET = "ab";
+
+	/** The longest string checked. */
+	private static final int LENGTH = 6;
+
+	/** The random automata checked. */
+	private static final int RUNS = 300;
+}
@@ -0,0 +1,244 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import file.xml.DOMPrettier;
+import file.xml.StreamTransducer;
+import file.xml.Transducer;
+import file.xml.TransducerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+/**
+ * Checks that the stream reader and writer of {@link XMLCodec} agree with the
+ * DOM reader and writer. Each sample file is read both ways, each structure
+ * read is written both ways, and all four files written must hold the same
+ * document as the sample.
+ * <P>
+ *
+ * The documents are compared in a canonical form, with the children of each
+ * element sorted and the white space between elements and the comments
+ * dropped, since the states and transitions of an automaton are written in
+ * the order they hash in, which is not the same for two reads of one file.
+ *
+ * @see XMLCodec
+ */
+
+public class XMLCodecRoundTripTest {
+	@Test
+	public void finiteAutomaton() throws Exception {
+		roundTrip("fa.jff");
+	}
+
+	@Test
+	public void pushdownAutomaton() throws Exception {
+		roundTrip("pda.jff");
+	}
+
+	@Test
+	public void turingMachineWithNestedBlocks() throws Exception {
+		roundTrip("tm-blocks.jff");
+	}
+
+	@Test
+	public void mealyMachine() throws Exception {
+		roundTrip("mealy.jff");
+	}
+
+	@Test
+	public void mooreMachine() throws Exception {
+		roundTrip("moore.jff");
+	}
+
+	@Test
+	public void grammar() throws Exception {
+		roundTrip("grammar.jff");
+	}
+
+	@Test
+	public void lSystem() throws Exception {
+		roundTrip("lsystem.jff");
+	}
+
+	/**
+	 * Reads a sample both ways, writes each structure both ways, and checks
+	 * that every document written is the sample.
+	 *
+	 * @param name
+	 *            the name of the sample file
+	 */
+	private void roundTrip(String name) throws Exception {
+		File file = new File(getClass().getResource(SAMPLES + name).toURI());
+		Serializable streamed = readStream(file);
+		assertNotNull(name + " could not be read as a stream", streamed);
+		Serializable parsed = readDOM(file);
+		String expected = canonical(parse(file));
+		assertEquals(name + ", stream read, stream written", expected,
+				canonical(writeStream(streamed)));
+		assertEquals(name + ", stream read, DOM written", expected,
+				canonical(writeDOM(streamed)));
+		assertEquals(name + ", DOM read, stream written", expected,
+				canonical(writeStream(parsed)));
+		assertEquals(name + ", DOM read, DOM written", expected,
+				canonical(writeDOM(parsed)));
+	}
+
+	/**
+	 * Reads a structure in one pass, as {@link XMLCodec#decode} first tries.
+	 *
+	 * @return the structure, or <CODE>null</CODE> if the file needs the DOM
+	 */
+	private static Serializable readStream(File file) throws Exception {
+		InputStream stream = new BufferedInputStream(new FileInputStream(file));
+		try {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+			XMLStreamReader reader = factory.createXMLStreamReader(stream);
+			Transducer transducer = TransducerFactory.getTransducer(reader);
+			return ((StreamTransducer) transducer).fromStream(reader);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Reads a structure through a DOM document.
+	 */
+	private static Serializable readDOM(File file) throws Exception {
+		Document document = parse(file);
+		return TransducerFactory.getTransducer(document).fromDOM(document);
+	}
+
+	/**
+	 * Writes a structure in one pass, as {@link XMLCodec#encode} does.
+	 */
+	private static Document writeStream(Serializable structure)
+			throws Exception {
+		StringWriter out = new StringWriter();
+		XMLStreamWriter writer = XMLOutputFactory.newInstance()
+				.createXMLStreamWriter(out);
+		StreamTransducer transducer = (StreamTransducer) TransducerFactory
+				.getTransducer(structure);
+		transducer.toStream(structure, writer);
+		writer.close();
+		return parse(out.toString());
+	}
+
+	/**
+	 * Writes a structure through a DOM document, as files were written before
+	 * the stream writer.
+	 */
+	private static Document writeDOM(Serializable structure) throws Exception {
+		Document document = TransducerFactory.getTransducer(structure).toDOM(
+				structure);
+		DOMPrettier.makePretty(document);
+		StringWriter out = new StringWriter();
+		TransformerFactory.newInstance().newTransformer().transform(
+				new DOMSource(document), new StreamResult(out));
+		return parse(out.toString());
+	}
+
+	private static Document parse(File file) throws Exception {
+		return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+				file);
+	}
+
+	private static Document parse(String text) throws Exception {
+		return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+				new InputSource(new StringReader(text)));
+	}
+
+	private static String canonical(Document document) {
+		return canonical(document.getDocumentElement());
+	}
+
+	/**
+	 * Returns the canonical form of an element: its name, its attributes
+	 * sorted, and either its text, if it has no child elements, or the
+	 * canonical forms of its children, sorted.
+	 */
+	private static String canonical(Element element) {
+		StringBuffer buffer = new StringBuffer("<" + element.getTagName());
+		NamedNodeMap attributes = element.getAttributes();
+		String[] pairs = new String[attributes.getLength()];
+		for (int i = 0; i < pairs.length; i++) {
+			Attr attribute = (Attr) attributes.item(i);
+			pairs[i] = attribute.getName() + "=\"" + attribute.getValue() + "\"";
+		}
+		Arrays.sort(pairs);
+		for (int i = 0; i < pairs.length; i++)
+			buffer.append(" " + pairs[i]);
+		buffer.append(">");
+		NodeList nodes = element.getChildNodes();
+		List children = new ArrayList();
+		StringBuffer text = new StringBuffer();
+		for (int i = 0; i < nodes.getLength(); i++) {
+			Node node = nodes.item(i);
+			if (node.getNodeType() == Node.ELEMENT_NODE)
+				children.add(canonical((Element) node));
+			else if (node.getNodeType() == Node.TEXT_NODE
+					|| node.getNodeType() == Node.CDATA_SECTION_NODE)
+				text.append(node.getNodeValue());
+		}
+		if (children.isEmpty()) {
+			buffer.append(text);
+		} else {
+			Collections.sort(children);
+			for (int i = 0; i < children.size(); i++)
+				buffer.append("\n" + children.get(i));
+		}
+		return buffer.append("</" + element.getTagName() + ">").toString();
+	}
+
+	/** Where the sample files are, on the class path. */
+	private static final String SAMPLES = "/file/roundtrip/";
+}
@@ -0,0 +1,231 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar.parse;
+
+import static org.junit.Assert.assertEquals;
+
+import grammar.ChomskyNormalForm;
+import grammar.Grammar;
+import gui.environment.Universe;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.Stack;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeModel;
+
+import org.junit.Test;
+
+/**
+ * Checks the {@link LLParser} against a parse that follows the
+ * {@link LLParseTable} one symbol at a time, as the LL parse pane does: both
+ * must make the same expansions at the same places and accept the same
+ * strings. For LL(1) grammars the strings accepted must also be the strings
+ * of the grammar's language.
+ *
+ * @see LLParser
+ */
+
+public class LLParserTest {
+	@Test
+	public void expressions() {
+		// Brackets stand in for parentheses, which the normal form reserves.
+		check(OperationsTest.grammar("E", new String[] { "E->TR", "R->+TR",
+				"R->", "T->FU", "U->*FU", "U->", "F->[E]", "F->a" }), "a+*[]",
+				true);
+	}
+
+	@Test
+	public void balancedBrackets() {
+		check(OperationsTest.grammar("S", new String[] { "S->[S]S", "S->" }),
+				"[]a", true);
+	}
+
+	@Test
+	public void equalAsAndBs() {
+		check(OperationsTest.grammar("S", new String[] { "S->aSb", "S->" }),
+				"ab", true);
+	}
+
+	@Test
+	public void notLL1() {
+		// Both productions are in the entry for a; the first sorted is used.
+		check(OperationsTest.grammar("S", new String[] { "S->aS", "S->a" }),
+				"ab", false);
+	}
+
+	@Test
+	public void randomGrammars() {
+		Random random = new Random(1);
+		int checked = 0;
+		while (checked < RUNS) {
+			Grammar grammar = OperationsTest.random(random);
+			if (!isLL1(LLParseTableGenerator.generate(grammar), grammar))
+				continue;
+			check(grammar, "abc", true);
+			checked++;
+		}
+	}
+
+	/**
+	 * Checks the parser for a grammar on every short string of some symbols.
+	 */
+	private static void check(Grammar grammar, String alphabet,
+			boolean language) {
+		String name = Arrays.asList(grammar.getProductions()).toString();
+		LLParseTable table = LLParseTableGenerator.generate(grammar);
+		LLParser parser = new LLParser(table, grammar.getStartVariable());
+		ChomskyNormalForm normalForm = new ChomskyNormalForm(grammar);
+		List strings = new ArrayList();
+		strings.add("");
+		for (int i = 0; i < strings.size(); i++) {
+			String s = (String) strings.get(i);
+			List expected = parse(table, grammar, s);
+			boolean accepted = expected.remove(expected.size() - 1).equals(
+					"accept");
+			final List expansions = new ArrayList();
+			try {
+				assertEquals(name + " on " + s, accepted, parser.parse(
+						new StringReader(s), new LLParserListener() {
+							public void variableExpanded(String variable,
+									String expansion, long position) {
+								expansions.add(variable + "->" + expansion
+										+ " at " + position);
+							}
+						}));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			assertEquals(name + " on " + s, expected, expansions);
+			assertEquals(name + " on " + s, accepted, parser.parse(s));
+			assertEquals(name + " on " + s, strip(expected), expansions(parser
+					.parseTree(s)));
+			if (language)
+				assertEquals(name + " on " + s, normalForm.accepts(s), accepted);
+			if (s.length() < LENGTH)
+				for (int k = 0; k < alphabet.length(); k++)
+					strings.add(s + alphabet.charAt(k));
+		}
+	}
+
+	/**
+	 * Parses a string by following the table, and returns the expansions made
+	 * followed by "accept" or "reject".
+	 */
+	private static List parse(LLParseTable table, Grammar grammar,
+			String input) {
+		List expansions = new ArrayList();
+		Stack stack = new Stack();
+		stack.push(grammar.getStartVariable());
+		int p = 0;
+		while (!stack.empty()) {
+			String top = (String) stack.peek();
+			String read = p < input.length() ? input.substring(p, p + 1) : "$";
+			if (!grammar.isVariable(top)) {
+				if (!top.equals(read))
+					break;
+				stack.pop();
+				p++;
+				continue;
+			}
+			if (!read.equals("$") && !grammar.isTerminal(read))
+				break;
+			SortedSet entry = table.get(top, read);
+			if (entry.isEmpty())
+				break;
+			String expansion = (String) entry.first();
+			expansions.add(top + "->" + expansion + " at " + p);
+			stack.pop();
+			for (int k = expansion.length() - 1; k >= 0; k--)
+				stack.push(expansion.substring(k, k + 1));
+		}
+		expansions.add(stack.empty() && p == input.length() ? "accept"
+				: "reject");
+		return expansions;
+	}
+
+	/**
+	 * Returns the expansions without where they were made.
+	 */
+	private static List strip(List expansions) {
+		List stripped = new ArrayList();
+		for (int i = 0; i < expansions.size(); i++) {
+			String expansion = (String) expansions.get(i);
+			stripped.add(expansion.substring(0, expansion.lastIndexOf(" at ")));
+		}
+		return stripped;
+	}
+
+	/**
+	 * Returns the expansions of a parse tree in the order a leftmost
+	 * derivation makes them.
+	 */
+	private static List expansions(TreeModel tree) {
+		List expansions = new ArrayList();
+		String lambda = Universe.curProfile.getEmptyString();
+		Enumeration nodes = ((DefaultMutableTreeNode) tree.getRoot())
+				.preorderEnumeration();
+		while (nodes.hasMoreElements()) {
+			DefaultMutableTreeNode node = (DefaultMutableTreeNode) nodes
+					.nextElement();
+			if (node.isLeaf())
+				continue;
+			String expansion = "";
+			for (int i = 0; i < node.getChildCount(); i++) {
+				Object child = ((DefaultMutableTreeNode) node.getChildAt(i))
+						.getUserObject();
+				if (!child.equals(lambda))
+					expansion += child;
+			}
+			expansions.add(node.getUserObject() + "->" + expansion);
+		}
+		return expansions;
+	}
+
+	/**
+	 * Returns if a table has at most one expansion in each entry.
+	 */
+	private static boolean isLL1(LLParseTable table, Grammar grammar) {
+		String[] variables = grammar.getVariables();
+		String[] terminals = grammar.getTerminals();
+		for (int i = 0; i < variables.length; i++) {
+			if (table.get(variables[i], "$").size() > 1)
+				return false;
+			for (int k = 0; k < terminals.length; k++)
+				if (table.get(variables[i], terminals[k]).size() > 1)
+					return false;
+		}
+		return true;
+	}
+
+	/** The longest string checked. */
+	private static final int LENGTH = 6;
+
+	/** The random LL(1) grammars checked. */
+	private static final int RUNS = 200;
+}
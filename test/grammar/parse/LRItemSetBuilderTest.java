@@ -0,0 +1,275 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import automata.State;
+import automata.fsa.FSATransition;
+import automata.fsa.FiniteStateAutomaton;
+import grammar.Grammar;
+import grammar.Production;
+import grammar.cfg.ContextFreeGrammar;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Checks the tables of the {@link LRItemSetBuilder} against the SLR(1) table
+ * the parse pane makes, whose goto graph is built from the item sets of
+ * {@link Operations#closure} and {@link Operations#goTo} and whose table comes
+ * from the {@link LRParseTableGenerator}. States are matched by their item
+ * sets, since the two number them differently.
+ * <P>
+ *
+ * JFLAP has no other LALR(1) table, so that table is checked against the
+ * SLR(1) table it refines: it must have the same shifts and gotos, and reduce
+ * on no lookahead outside the FOLLOW set.
+ *
+ * @see LRItemSetBuilder
+ */
+
+public class LRItemSetBuilderTest {
+	@Test
+	public void expressions() {
+		Grammar grammar = grammar("E", new String[] { "E->E+T", "E->T",
+				"T->T*F", "T->F", "F->(E)", "F->a" });
+		check(grammar);
+		Grammar augmented = Operations.getAugmentedGrammar(grammar);
+		LRItemSetBuilder builder = new LRItemSetBuilder(augmented);
+		assertEquals(12, builder.getStateCount());
+		assertEquals(0, conflicts(builder.getSLRParseTable(), augmented, builder));
+		assertEquals(0, conflicts(builder.getLALRParseTable(), augmented, builder));
+	}
+
+	@Test
+	public void assignments() {
+		// The textbook grammar that is LALR(1) but not SLR(1).
+		Grammar grammar = grammar("S", new String[] { "S->L=R", "S->R",
+				"L->*R", "L->a", "R->L" });
+		check(grammar);
+		Grammar augmented = Operations.getAugmentedGrammar(grammar);
+		LRItemSetBuilder builder = new LRItemSetBuilder(augmented);
+		assertEquals(1, conflicts(builder.getSLRParseTable(), augmented, builder));
+		assertEquals(0, conflicts(builder.getLALRParseTable(), augmented, builder));
+	}
+
+	@Test
+	public void lambdaProductions() {
+		check(grammar("S", new String[] { "S->aSb", "S->" }));
+		check(grammar("S", new String[] { "S->(S)S", "S->" }));
+		check(grammar("S", new String[] { "S->AB", "A->aA", "A->", "B->b",
+				"B->" }));
+	}
+
+	@Test
+	public void ambiguous() {
+		check(grammar("S", new String[] { "S->SS", "S->a" }));
+		check(grammar("E", new String[] { "E->E+E", "E->E*E", "E->a" }));
+	}
+
+	@Test
+	public void randomGrammars() {
+		Random random = new Random(1);
+		for (int run = 0; run < RUNS; run++) {
+			List productions = new ArrayList();
+			int count = 2 + random.nextInt(6);
+			for (int i = 0; i < count; i++) {
+				// The first production makes sure the start variable has one.
+				String lhs = i == 0 ? "S" : "" + VARIABLES.charAt(random
+						.nextInt(VARIABLES.length()));
+				String rhs = "";
+				int length = random.nextInt(4);
+				for (int k = 0; k < length; k++)
+					rhs += SYMBOLS.charAt(random.nextInt(SYMBOLS.length()));
+				productions.add(lhs + "->" + rhs);
+			}
+			check(grammar("S", (String[]) productions.toArray(new String[0])));
+		}
+	}
+
+	/**
+	 * Checks both tables of the builder for a grammar against the pane's
+	 * SLR(1) table.
+	 */
+	private static void check(Grammar grammar) {
+		String name = Arrays.asList(grammar.getProductions()).toString();
+		Grammar augmented = Operations.getAugmentedGrammar(grammar);
+		LRItemSetBuilder builder = new LRItemSetBuilder(augmented);
+
+		// Build the goto graph as the pane does when every step is done.
+		FiniteStateAutomaton dfa = new FiniteStateAutomaton();
+		Map stateToItems = new HashMap(), itemsToState = new HashMap();
+		Production start = augmented.getProductions()[0];
+		Set initial = new HashSet();
+		initial.add(new Production(start.getLHS(), Operations.ITEM_POSITION
+				+ start.getRHS()));
+		List sets = new ArrayList();
+		sets.add(Operations.closure(augmented, initial));
+		for (int i = 0; i < sets.size(); i++) {
+			Set items = (Set) sets.get(i);
+			State state = dfa.createState(new Point(60 * i, 60));
+			if (i == 0)
+				dfa.setInitialState(state);
+			stateToItems.put(state, items);
+			itemsToState.put(items, state);
+			Iterator it = items.iterator();
+			while (it.hasNext())
+				if (((Production) it.next()).getRHS().endsWith(
+						"" + Operations.ITEM_POSITION))
+					dfa.addFinalState(state);
+		}
+		for (int i = 0; i < sets.size(); i++) {
+			Set items = (Set) sets.get(i);
+			String[] symbols = Operations.getCanGoto(items);
+			for (int k = 0; k < symbols.length; k++) {
+				Set to = Operations.goTo(augmented, items, symbols[k]);
+				if (!itemsToState.containsKey(to)) {
+					State state = dfa.createState(new Point(0, 0));
+					sets.add(to);
+					stateToItems.put(state, to);
+					itemsToState.put(to, state);
+					Iterator it = to.iterator();
+					while (it.hasNext())
+						if (((Production) it.next()).getRHS().endsWith(
+								"" + Operations.ITEM_POSITION))
+							dfa.addFinalState(state);
+				}
+				dfa.addTransition(new FSATransition((State) itemsToState
+						.get(items), (State) itemsToState.get(to), symbols[k]));
+			}
+		}
+		LRParseTable pane = LRParseTableGenerator.generate(augmented, dfa,
+				stateToItems, itemsToState, Operations.follow(grammar));
+
+		// Match the builder's states to the pane's by their item sets.
+		assertEquals(name, dfa.getStates().length, builder
+				.getStateCount());
+		int[] match = new int[builder.getStateCount()];
+		for (int s = 0; s < match.length; s++) {
+			State state = (State) itemsToState.get(new HashSet(Arrays
+					.asList(builder.getItems(s))));
+			assertTrue(name + " state " + s, state != null);
+			match[s] = state.getID();
+		}
+
+		LRParseTable slr = builder.getSLRParseTable();
+		LRParseTable lalr = builder.getLALRParseTable();
+		String[] symbols = symbols(augmented);
+		for (int s = 0; s < match.length; s++)
+			for (int k = 0; k < symbols.length; k++) {
+				String where = name + " state " + s + " on " + symbols[k];
+				SortedSet directives = renumber(slr.getSetAt(s, symbols[k]),
+						match);
+				assertEquals(where, pane.getSetAt(match[s], symbols[k]),
+						directives);
+				SortedSet lookaheads = renumber(lalr.getSetAt(s, symbols[k]),
+						match);
+				Iterator it = lookaheads.iterator();
+				while (it.hasNext())
+					assertTrue(where, directives.contains(it.next()));
+				it = directives.iterator();
+				while (it.hasNext()) {
+					String directive = (String) it.next();
+					if (!directive.startsWith("r"))
+						assertTrue(where, lookaheads.contains(directive));
+				}
+			}
+	}
+
+	/**
+	 * Returns the directives of a table entry with the builder's state
+	 * numbers changed to the pane's.
+	 */
+	private static SortedSet renumber(Set directives, int[] match) {
+		SortedSet renumbered = new TreeSet();
+		Iterator it = directives.iterator();
+		while (it.hasNext()) {
+			String directive = (String) it.next();
+			if (directive.startsWith("s"))
+				directive = "s" + match[Integer.parseInt(directive.substring(1))];
+			else if (Character.isDigit(directive.charAt(0)))
+				directive = "" + match[Integer.parseInt(directive)];
+			renumbered.add(directive);
+		}
+		return renumbered;
+	}
+
+	/**
+	 * Returns the number of entries of a table with more than one directive.
+	 */
+	private static int conflicts(LRParseTable table, Grammar augmented,
+			LRItemSetBuilder builder) {
+		String[] symbols = symbols(augmented);
+		int conflicts = 0;
+		for (int s = 0; s < builder.getStateCount(); s++)
+			for (int k = 0; k < symbols.length; k++)
+				if (table.getSetAt(s, symbols[k]).size() > 1)
+					conflicts++;
+		return conflicts;
+	}
+
+	/**
+	 * Returns the symbols of the columns of a table for a grammar.
+	 */
+	private static String[] symbols(Grammar grammar) {
+		List symbols = new ArrayList(Arrays.asList(grammar.getTerminals()));
+		symbols.add("$");
+		symbols.addAll(Arrays.asList(grammar.getVariables()));
+		return (String[]) symbols.toArray(new String[0]);
+	}
+
+	/**
+	 * Returns a grammar from productions written with an arrow.
+	 */
+	private static Grammar grammar(String start, String[] productions) {
+		Grammar grammar = new ContextFreeGrammar();
+		for (int i = 0; i < productions.length; i++) {
+			int arrow = productions[i].indexOf("->");
+			grammar.addProduction(new Production(productions[i].substring(0,
+					arrow), productions[i].substring(arrow + 2)));
+		}
+		grammar.setStartVariable(start);
+		return grammar;
+	}
+
+	/** The variables of random grammars other than the start variable. */
+	private static final String VARIABLES = "AB";
+
+	/** The symbols of the right hand sides of random grammars. */
+	private static final String SYMBOLS = "SABab";
+
+	/** The random grammars checked. */
+	private static final int RUNS = 300;
+}
@@ -0,0 +1,214 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar.parse;
+
+import static org.junit.Assert.assertEquals;
+
+import grammar.Grammar;
+import grammar.Production;
+import grammar.cfg.ContextFreeGrammar;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Checks the FIRST and FOLLOW sets of {@link Operations} against those found
+ * the way it found them before it kept them as bit sets: by going over every
+ * production again and again until no set grows.
+ *
+ * @see Operations#first(Grammar)
+ * @see Operations#follow(Grammar)
+ */
+
+public class OperationsTest {
+	@Test
+	public void sampleGrammars() {
+		check(grammar("E", new String[] { "E->TR", "R->+TR", "R->", "T->FU",
+				"U->*FU", "U->", "F->(E)", "F->a" }));
+		check(grammar("S", new String[] { "S->AB", "A->aA", "A->", "B->b",
+				"B->" }));
+		check(grammar("S", new String[] { "S->ABC", "A->", "B->", "C->c",
+				"C->AB" }));
+		check(grammar("S", new String[] { "S->Sa", "S->b" }));
+	}
+
+	@Test
+	public void randomGrammars() {
+		Random random = new Random(1);
+		for (int run = 0; run < RUNS; run++)
+			check(random(random));
+	}
+
+	@Test
+	public void changedGrammar() {
+		Grammar grammar = grammar("S", new String[] { "S->aA", "A->b" });
+		check(grammar);
+		grammar.addProduction(new Production("A", ""));
+		grammar.addProduction(new Production("A", "Sc"));
+		check(grammar);
+		grammar.removeProduction(new Production("A", ""));
+		check(grammar);
+	}
+
+	/**
+	 * Checks the sets for a grammar, and the FIRST sets of the ends of its
+	 * right hand sides.
+	 */
+	private static void check(Grammar grammar) {
+		String name = Arrays.asList(grammar.getProductions()).toString();
+		Map first = first(grammar);
+		assertEquals(name, first, Operations.first(grammar));
+		assertEquals(name, follow(grammar, first), Operations.follow(grammar));
+		Production[] productions = grammar.getProductions();
+		for (int i = 0; i < productions.length; i++) {
+			String rhs = productions[i].getRHS();
+			for (int k = 0; k <= rhs.length(); k++)
+				assertEquals(name + " " + rhs.substring(k), first(first, rhs
+						.substring(k)), Operations.first(Operations
+						.first(grammar), rhs.substring(k)));
+		}
+	}
+
+	/**
+	 * Returns the FIRST sets of the symbols of a grammar.
+	 */
+	private static Map first(Grammar grammar) {
+		Map first = new HashMap();
+		String[] terminals = grammar.getTerminals();
+		for (int i = 0; i < terminals.length; i++)
+			first.put(terminals[i], new HashSet(Arrays
+					.asList(new String[] { terminals[i] })));
+		String[] variables = grammar.getVariables();
+		for (int i = 0; i < variables.length; i++)
+			first.put(variables[i], new HashSet());
+		Production[] productions = grammar.getProductions();
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = 0; i < productions.length; i++)
+				if (((Set) first.get(productions[i].getLHS())).addAll(first(
+						first, productions[i].getRHS())))
+					changed = true;
+		}
+		return first;
+	}
+
+	/**
+	 * Returns the FIRST set of a string of symbols.
+	 */
+	private static Set first(Map first, String sequence) {
+		Set set = new HashSet();
+		for (int i = 0; i < sequence.length(); i++) {
+			Set symbol = new HashSet((Set) first.get(sequence.substring(i,
+					i + 1)));
+			boolean lambda = symbol.remove("");
+			set.addAll(symbol);
+			if (!lambda)
+				return set;
+		}
+		set.add("");
+		return set;
+	}
+
+	/**
+	 * Returns the FOLLOW sets of the variables of a grammar.
+	 */
+	private static Map follow(Grammar grammar, Map first) {
+		Map follow = new HashMap();
+		String[] variables = grammar.getVariables();
+		for (int i = 0; i < variables.length; i++)
+			follow.put(variables[i], new HashSet());
+		follow.put(grammar.getStartVariable(), new HashSet(Arrays
+				.asList(new String[] { "$" })));
+		Production[] productions = grammar.getProductions();
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = 0; i < productions.length; i++) {
+				String rhs = productions[i].getRHS();
+				for (int k = 0; k < rhs.length(); k++) {
+					String variable = rhs.substring(k, k + 1);
+					if (!grammar.isVariable(variable))
+						continue;
+					Set rest = first(first, rhs.substring(k + 1));
+					Set set = (Set) follow.get(variable);
+					if (rest.remove("")
+							&& set.addAll((Set) follow.get(productions[i]
+									.getLHS())))
+						changed = true;
+					if (set.addAll(rest))
+						changed = true;
+				}
+			}
+		}
+		return follow;
+	}
+
+	/**
+	 * Returns a random grammar on the variables S, A and B, each with at
+	 * least one production.
+	 */
+	static Grammar random(Random random) {
+		Grammar grammar = new ContextFreeGrammar();
+		for (int i = 0; i < VARIABLES.length(); i++) {
+			int count = 1 + random.nextInt(3);
+			for (int k = 0; k < count; k++) {
+				String rhs = "";
+				int length = random.nextInt(4);
+				for (int j = 0; j < length; j++)
+					rhs += SYMBOLS.charAt(random.nextInt(SYMBOLS.length()));
+				grammar.addProduction(new Production(VARIABLES.substring(i,
+						i + 1), rhs));
+			}
+		}
+		grammar.setStartVariable("S");
+		return grammar;
+	}
+
+	/**
+	 * Returns a grammar from productions written with an arrow.
+	 */
+	static Grammar grammar(String start, String[] productions) {
+		Grammar grammar = new ContextFreeGrammar();
+		for (int i = 0; i < productions.length; i++) {
+			int arrow = productions[i].indexOf("->");
+			grammar.addProduction(new Production(productions[i].substring(0,
+					arrow), productions[i].substring(arrow + 2)));
+		}
+		grammar.setStartVariable(start);
+		return grammar;
+	}
+
+	/** The variables of random grammars. */
+	private static final String VARIABLES = "SAB";
+
+	/** The symbols of the right hand sides of random grammars. */
+	private static final String SYMBOLS = "SABab";
+
+	/** The random grammars checked. */
+	private static final int RUNS = 500;
+}
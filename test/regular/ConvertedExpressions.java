@@ -0,0 +1,97 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package regular;
+
+import automata.State;
+import automata.fsa.FSATransition;
+import automata.fsa.FiniteStateAutomaton;
+import gui.environment.RegularEnvironment;
+import gui.environment.Universe;
+import gui.regular.ConvertToAutomatonPane;
+import gui.regular.REToFSAController;
+
+import java.awt.Point;
+import java.util.Random;
+
+/**
+ * Converts regular expressions to automata the way the converter pane does,
+ * step by step through the {@link REToFSAController}, so that tests can check
+ * other converters against it, and makes random expressions to convert.
+ */
+
+public class ConvertedExpressions {
+	/**
+	 * Returns the automaton the converter pane makes for an expression when
+	 * every step is done at once.
+	 * 
+	 * @param expression
+	 *            the expression, in the form typed into an editor
+	 * @return the automaton for the expression
+	 */
+	public static FiniteStateAutomaton convert(String expression) {
+		RegularExpression regular = new RegularExpression(expression);
+		ConvertToAutomatonPane pane = new ConvertToAutomatonPane(
+				new RegularEnvironment(regular));
+		FiniteStateAutomaton automaton = new FiniteStateAutomaton();
+		State initialState = automaton.createState(new Point(60, 40));
+		State finalState = automaton.createState(new Point(450, 250));
+		automaton.setInitialState(initialState);
+		automaton.addFinalState(finalState);
+		automaton.addTransition(new FSATransition(initialState, finalState,
+				Discretizer.delambda(regular.asString().replace('!',
+						Universe.curProfile.getEmptyString().charAt(0)))));
+		new REToFSAController(pane, automaton).completeAll();
+		return automaton;
+	}
+
+	/**
+	 * Returns a random expression over <CODE>a</CODE>, <CODE>b</CODE> and
+	 * lambda, written with <CODE>!</CODE>.
+	 * 
+	 * @param random
+	 *            the source of the choices
+	 * @param depth
+	 *            the most operators nested in the expression
+	 * @return the expression
+	 */
+	public static String random(Random random, int depth) {
+		if (depth == 0 || random.nextInt(4) == 0)
+			return "" + "ab!".charAt(random.nextInt(3));
+		switch (random.nextInt(3)) {
+		case 0:
+			return random(random, depth - 1) + "+" + random(random, depth - 1);
+		case 1:
+			return group(random(random, depth - 1))
+					+ group(random(random, depth - 1));
+		default:
+			return group(random(random, depth - 1)) + "*";
+		}
+	}
+
+	/**
+	 * Puts parentheses around an expression unless it is a single symbol;
+	 * lambda may not be concatenated without them.
+	 */
+	private static String group(String expression) {
+		return expression.length() == 1 && !expression.equals("!") ? expression
+				: "(" + expression + ")";
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package regular;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import automata.Transition;
+import automata.fsa.FSANondeterminismDetector;
+import automata.fsa.FSAStepByStateSimulator;
+import automata.fsa.FSATransition;
+import automata.fsa.FiniteStateAutomaton;
+import automata.fsa.NFAToDFA;
+import automata.graph.FSAEqualityChecker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the {@link DerivativeMatcher} against the automaton the converter
+ * pane makes for the same expression: it must match the same strings, and
+ * its automaton must be deterministic and accept the same language.
+ *
+ * @see DerivativeMatcher
+ */
+
+public class DerivativeMatcherTest {
+	@Test
+	public void sampleExpressions() {
+		for (int i = 0; i < SAMPLES.length; i++)
+			check(SAMPLES[i]);
+	}
+
+	@Test
+	public void randomExpressions() {
+		Random random = new Random(1);
+		for (int run = 0; run < RUNS; run++)
+			check(ConvertedExpressions.random(random, 4));
+	}
+
+	@Test
+	public void symbolsNotInTheExpression() {
+		DerivativeMatcher matcher = new DerivativeMatcher(
+				new RegularExpression("(a+b)*"));
+		assertTrue(matcher.matches("abba"));
+		assertFalse(matcher.matches("abca"));
+		assertFalse(matcher.matches("c"));
+	}
+
+	@Test
+	public void poorlyFormedExpressions() {
+		String[] expressions = { "a+", "(a+b", "a(+b)", "*a" };
+		for (int i = 0; i < expressions.length; i++) {
+			try {
+				new DerivativeMatcher(new RegularExpression(expressions[i]));
+				fail(expressions[i]);
+			} catch (UnsupportedOperationException e) {
+			}
+		}
+	}
+
+	/**
+	 * Checks the matcher for an expression against the pane's automaton on
+	 * every short string, then checks the matcher's automaton.
+	 */
+	private static void check(String expression) {
+		FiniteStateAutomaton converted = ConvertedExpressions
+				.convert(expression);
+		// The simulator may not end on lambda cycles, so it runs a DFA.
+		FSAStepByStateSimulator simulator = new FSAStepByStateSimulator(
+				new NFAToDFA().convertToDFA((FiniteStateAutomaton) converted
+						.clone()));
+		DerivativeMatcher matcher = new DerivativeMatcher(
+				new RegularExpression(expression));
+		List strings = new ArrayList();
+		strings.add("");
+		for (int i = 0; i < strings.size(); i++) {
+			String s = (String) strings.get(i);
+			assertEquals(expression + " on " + s, simulator.simulateInput(s),
+					matcher.matches(s));
+			if (s.length() < LENGTH)
+				for (int k = 0; k < ALPHABET.length(); k++)
+					strings.add(s + ALPHABET.charAt(k));
+		}
+
+		FiniteStateAutomaton dfa = matcher.getDFA();
+		assertEquals(expression, 0, new FSANondeterminismDetector()
+				.getNondeterministicStates(dfa).length);
+		Transition[] transitions = dfa.getTransitions();
+		for (int i = 0; i < transitions.length; i++)
+			assertFalse(expression, ((FSATransition) transitions[i])
+					.getLabel().length() == 0);
+		assertTrue(expression, CHECKER.equals(converted, dfa));
+	}
+
+	/** The checker of languages. */
+	private static final FSAEqualityChecker CHECKER = new FSAEqualityChecker();
+
+	/** Expressions with each kind of operator, and lambda. */
+	private static final String[] SAMPLES = { "a", "ab+c", "(a+b)*abb",
+			"a*b*", "(ab)*+b", "!", "a(b+!)c*", "((a+b)(a+b))*", "a**",
+			"(a+!)*b", "(a*b*)*a(a+b)(a+b)" };
+
+	/**
+	 * The symbols of the strings checked; <CODE>c</CODE> is in only some of
+	 * the expressions.
+	 */
+	private static final String ALPHABET = "abc";
+
+	/** The longest string checked. */
+	private static final int LENGTH = 5;
+
+	/** The random expressions checked. */
+	private static final int RUNS = 300;
+}
@@ -0,0 +1,122 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package regular;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import automata.Transition;
+import automata.fsa.FSAToRegularExpressionConverter;
+import automata.fsa.FSATransition;
+import automata.fsa.FiniteStateAutomaton;
+import automata.graph.FSAEqualityChecker;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the automata of the {@link RegularExpressionCompiler} against those
+ * the converter pane makes for the same expressions.
+ *
+ * @see RegularExpressionCompiler
+ */
+
+public class RegularExpressionCompilerTest {
+	@Test
+	public void sampleExpressions() {
+		for (int i = 0; i < SAMPLES.length; i++)
+			check(SAMPLES[i]);
+	}
+
+	@Test
+	public void randomExpressions() {
+		Random random = new Random(1);
+		for (int run = 0; run < RUNS; run++)
+			check(ConvertedExpressions.random(random, 4));
+	}
+
+	@Test
+	public void glushkovHasAStateForEachSymbol() {
+		for (int i = 0; i < SAMPLES.length; i++) {
+			FiniteStateAutomaton automaton = RegularExpressionCompiler
+					.glushkov(new RegularExpression(SAMPLES[i]));
+			int symbols = 0;
+			for (int k = 0; k < SAMPLES[i].length(); k++)
+				if ("+*()!".indexOf(SAMPLES[i].charAt(k)) == -1)
+					symbols++;
+			assertEquals(SAMPLES[i], symbols + 1, automaton.getStates().length);
+			Transition[] transitions = automaton.getTransitions();
+			for (int k = 0; k < transitions.length; k++)
+				assertFalse(SAMPLES[i], ((FSATransition) transitions[k])
+						.getLabel().length() == 0);
+		}
+	}
+
+	@Test
+	public void emptySet() {
+		String expression = "a" + FSAToRegularExpressionConverter.EMPTY + "+b";
+		FiniteStateAutomaton b = ConvertedExpressions.convert("b");
+		assertTrue(CHECKER.equals(b, RegularExpressionCompiler
+				.thompson(new RegularExpression(expression))));
+		assertTrue(CHECKER.equals(b, RegularExpressionCompiler
+				.glushkov(new RegularExpression(expression))));
+	}
+
+	@Test
+	public void poorlyFormedExpressions() {
+		String[] expressions = { "a+", "(a+b", "a(+b)", "*a" };
+		for (int i = 0; i < expressions.length; i++) {
+			try {
+				RegularExpressionCompiler.thompson(new RegularExpression(
+						expressions[i]));
+				fail(expressions[i]);
+			} catch (UnsupportedOperationException e) {
+			}
+		}
+	}
+
+	/**
+	 * Checks both constructions for an expression against the pane's.
+	 */
+	private static void check(String expression) {
+		RegularExpression regular = new RegularExpression(expression);
+		FiniteStateAutomaton converted = ConvertedExpressions
+				.convert(expression);
+		assertTrue("Thompson " + expression, CHECKER.equals(converted,
+				RegularExpressionCompiler.thompson(regular)));
+		assertTrue("Glushkov " + expression, CHECKER.equals(converted,
+				RegularExpressionCompiler.glushkov(regular)));
+	}
+
+	/** The checker of languages. */
+	private static final FSAEqualityChecker CHECKER = new FSAEqualityChecker();
+
+	/** Expressions with each kind of operator, and lambda. */
+	private static final String[] SAMPLES = { "a", "ab+c", "(a+b)*abb",
+			"a*b*", "(ab)*+b", "!", "a(b+!)c*", "((a+b)(a+b))*", "a**",
+			"(a+!)*b", "(a*b*)*a(a+b)(a+b)" };
+
+	/** The random expressions checked. */
+	private static final int RUNS = 300;
+}